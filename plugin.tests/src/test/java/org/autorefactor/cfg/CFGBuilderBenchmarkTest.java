@@ -0,0 +1,144 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.util.List;
+
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+import org.junit.Test;
+
+import static org.autorefactor.cfg.test.TestUtils.*;
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+public class CFGBuilderBenchmarkTest {
+
+    /** Set this system property to true to run the benchmarks, their timings depend on the machine. */
+    private static final String BENCHMARKS_PROPERTY = "autorefactor.benchmarks";
+    /** The JIT compiler must have compiled the CFG builder before timing it. */
+    private static final int NB_WARM_UP_RUNS = 100;
+    private static final int NB_RUNS = 100;
+
+    @Test
+    public void testExceptionEdgesOnTryHeavyCorpus() throws Exception {
+        final String source = newTryHeavyCorpus();
+        final TypeDeclaration typeDecl = parseTryHeavyCorpus(source);
+        assertTrue("Exception edges should have been built",
+                buildControlFlowGraphs(source, typeDecl, true) > buildControlFlowGraphs(source, typeDecl, false));
+    }
+
+    @Test
+    public void benchmarkExceptionEdgesOnTryHeavyCorpus() throws Exception {
+        assumeTrue(Boolean.getBoolean(BENCHMARKS_PROPERTY));
+        final String source = newTryHeavyCorpus();
+        final TypeDeclaration typeDecl = parseTryHeavyCorpus(source);
+        for (int i = 0; i < NB_WARM_UP_RUNS; i++) {
+            buildControlFlowGraphs(source, typeDecl, false);
+            buildControlFlowGraphs(source, typeDecl, true);
+        }
+
+        long withoutExceptionEdgesTime = Long.MAX_VALUE;
+        long withExceptionEdgesTime = Long.MAX_VALUE;
+        for (int i = 0; i < NB_RUNS; i++) {
+            final long startWithout = System.nanoTime();
+            buildControlFlowGraphs(source, typeDecl, false);
+            withoutExceptionEdgesTime = Math.min(withoutExceptionEdgesTime, System.nanoTime() - startWithout);
+
+            final long startWith = System.nanoTime();
+            buildControlFlowGraphs(source, typeDecl, true);
+            withExceptionEdgesTime = Math.min(withExceptionEdgesTime, System.nanoTime() - startWith);
+        }
+
+        final double ratio = (double) withExceptionEdgesTime / withoutExceptionEdgesTime;
+        assertTrue("Building the CFGs of " + typeDecl.getMethods().length + " methods with exception edges"
+                + " should take at most 1.2 times as long as without them, but took "
+                + (withExceptionEdgesTime / 1000000) + "ms instead of " + (withoutExceptionEdgesTime / 1000000)
+                + "ms (ratio " + ratio + ")",
+                ratio <= 1.2);
+    }
+
+    private TypeDeclaration parseTryHeavyCorpus(String source) throws Exception {
+        final CompilationUnit astRoot = parseSource("TryHeavySample", source);
+        return (TypeDeclaration) astRoot.types().get(0);
+    }
+
+    /** Returns the total number of edges of the built CFGs. */
+    private int buildControlFlowGraphs(String source, TypeDeclaration typeDecl, boolean exceptionEdges) {
+        final CFGBuilder builder = new CFGBuilder(source, newJavaProjectOptions(), exceptionEdges);
+        final List<ControlFlowGraph> cfgs = builder.buildControlFlowGraphs(typeDecl);
+        int nbEdges = 0;
+        for (ControlFlowGraph cfg : cfgs) {
+            nbEdges += cfg.getNbEdges();
+        }
+        return nbEdges;
+    }
+
+    private String newTryHeavyCorpus() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("package org.autorefactor.cfg;\n\n");
+        sb.append("import java.io.IOException;\n\n");
+        sb.append("public class TryHeavySample {\n\n");
+        sb.append("    private void read(String s) throws IOException {\n");
+        sb.append("        if (s == null) {\n");
+        sb.append("            throw new IOException();\n");
+        sb.append("        }\n");
+        sb.append("    }\n");
+        for (int i = 0; i < 500; i++) {
+            sb.append("\n");
+            sb.append("    public int method").append(i).append("(int[] values, String s) throws IOException {\n");
+            sb.append("        int result = ").append(i).append(";\n");
+            sb.append("        try {\n");
+            sb.append("            result += values[0] / values.length;\n");
+            sb.append("            try {\n");
+            sb.append("                result += s.length();\n");
+            sb.append("                read(s);\n");
+            sb.append("            } catch (IllegalArgumentException e) {\n");
+            sb.append("                result = -1;\n");
+            sb.append("            } finally {\n");
+            sb.append("                result++;\n");
+            sb.append("            }\n");
+            sb.append("            for (int j = 0; j < values.length; j++) {\n");
+            sb.append("                try {\n");
+            sb.append("                    result += Integer.parseInt(s) % values[j];\n");
+            sb.append("                } catch (NumberFormatException | ArithmeticException e) {\n");
+            sb.append("                    result--;\n");
+            sb.append("                }\n");
+            sb.append("            }\n");
+            sb.append("        } catch (IOException e) {\n");
+            sb.append("            throw e;\n");
+            sb.append("        } catch (RuntimeException e) {\n");
+            sb.append("            result = 0;\n");
+            sb.append("        } finally {\n");
+            sb.append("            values[0] = result;\n");
+            sb.append("        }\n");
+            sb.append("        return result;\n");
+            sb.append("    }\n");
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+}
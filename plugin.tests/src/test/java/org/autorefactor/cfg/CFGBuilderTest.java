@@ -45,6 +45,7 @@ import org.eclipse.jdt.core.IPackageFragment;
 import org.eclipse.jdt.core.dom.AST;
 import org.eclipse.jdt.core.dom.ASTParser;
 import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
@@ -112,6 +113,11 @@ public class CFGBuilderTest {
         final File dotFileOut = new File("src/test/resources/org/autorefactor/cfg", testName + "_out.dot");
         writeAll(dotFileOut, actual);
         assertEquals(testName + ": wrong output;", dotSource, actual);
+
+        final ControlFlowGraph cfg = builder.buildControlFlowGraph((MethodDeclaration) block.getNode());
+        assertEquals(testName + ": wrong output for compact CFG;", dotSource, new CFGDotPrinter().toDot(cfg).trim());
+        assertTrue(testName + ": compact CFG should use less memory: " + cfg.getMemoryReport(),
+                cfg.estimateMemoryUsage() < cfg.getLinkedMemoryUsage());
     }
 
     private void writeAll(File file, String fileContent) throws Exception {
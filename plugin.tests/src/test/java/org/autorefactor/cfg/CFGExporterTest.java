@@ -0,0 +1,123 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+
+import org.autorefactor.cfg.CFGExporter.Format;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.junit.Test;
+
+import static org.autorefactor.cfg.test.TestUtils.*;
+import static org.junit.Assert.*;
+
+public class CFGExporterTest {
+
+    @Test
+    public void testExportJsonLines() throws Exception {
+        final List<ControlFlowGraph> cfgs = buildControlFlowGraphs("WhileLoopsSample");
+        final StringWriter out = new StringWriter();
+        final StringWriter summary = new StringWriter();
+        final CFGExporter exporter = new CFGExporter(out, Format.JSON_LINES, summary);
+        for (ControlFlowGraph cfg : cfgs) {
+            exporter.export(cfg);
+        }
+        exporter.finish();
+
+        final String[] lines = out.toString().split("\n");
+        assertEquals(cfgs.size(), lines.length);
+        for (int i = 0; i < lines.length; i++) {
+            final ControlFlowGraph cfg = cfgs.get(i);
+            assertTrue(lines[i], lines[i].startsWith("{\"file\":\"WhileLoopsSample.java\""));
+            assertTrue(lines[i], lines[i].contains("\"nbBlocks\":" + cfg.getNbBlocks() + ","));
+            assertTrue(lines[i], lines[i].contains("\"nbEdges\":" + cfg.getNbEdges() + ","));
+            assertTrue(lines[i], lines[i].endsWith("]}"));
+        }
+
+        final String[] summaryLines = summary.toString().split("\n");
+        assertEquals(cfgs.size() + 1, summaryLines.length);
+        assertEquals(exporter.getSummary(), summaryLines[cfgs.size()]);
+    }
+
+    @Test
+    public void testExportDot() throws Exception {
+        final ControlFlowGraph cfg = buildControlFlowGraphs("LoopsSample").get(0);
+        final StringWriter out = new StringWriter();
+        final StringWriter summary = new StringWriter();
+        final CFGExporter exporter = new CFGExporter(out, Format.DOT, summary);
+        exporter.export(cfg);
+        exporter.finish();
+
+        final String dot = out.toString();
+        assertTrue(dot, dot.startsWith("digraph \"LoopsSample.java sample()\" {\n"));
+        assertTrue(dot, dot.endsWith("}\n"));
+        assertEquals(3, cfg.getCyclomaticComplexity());
+        assertTrue(summary.toString(),
+                summary.toString().startsWith("LoopsSample.java sample(): " + cfg.getNbBlocks() + " blocks, "
+                        + cfg.getNbEdges() + " edges, cyclomatic complexity 3\n"));
+    }
+
+    @Test
+    public void testExportCompilationUnits() throws Exception {
+        final String enumSource = "package org.autorefactor;\n"
+                + "public enum EnumSample {\n"
+                + "    ONE;\n"
+                + "    int enumMethod(int i) {\n"
+                + "        if (i > 0) {\n"
+                + "            return i;\n"
+                + "        }\n"
+                + "        return -i;\n"
+                + "    }\n"
+                + "    Runnable methodWithAnonymousClass() {\n"
+                + "        return new Runnable() {\n"
+                + "            public void run() {\n"
+                + "                System.out.println();\n"
+                + "            }\n"
+                + "        };\n"
+                + "    }\n"
+                + "}\n";
+        final int nbLoopsSampleMethods = buildControlFlowGraphs("LoopsSample").size();
+        final List<ICompilationUnit> compilationUnits = Arrays.asList(
+                createCompilationUnit("LoopsSample", readSample("LoopsSample")),
+                createCompilationUnit("EnumSample", enumSource));
+        final StringWriter out = new StringWriter();
+        final CFGExporter exporter = new CFGExporter(out, Format.JSON_LINES, null);
+        exporter.export(compilationUnits, newJavaProjectOptions(), 2);
+        exporter.finish();
+
+        final String export = out.toString();
+        assertEquals(nbLoopsSampleMethods + 3, export.split("\n").length);
+        assertTrue(export, export.contains("{\"file\":\"EnumSample.java\",\"method\":\"enumMethod\","));
+        assertTrue(export,
+                export.contains("{\"file\":\"EnumSample.java\",\"method\":\"methodWithAnonymousClass\","));
+        assertTrue(export, export.contains("{\"file\":\"EnumSample.java\",\"method\":\"run\","));
+        assertTrue(exporter.getSummary(),
+                exporter.getSummary().startsWith((nbLoopsSampleMethods + 3) + " methods, "));
+        assertTrue(exporter.getSummary(), exporter.getSummary().endsWith(" 0 unsupported methods"));
+    }
+}
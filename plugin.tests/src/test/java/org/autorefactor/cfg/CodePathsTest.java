@@ -0,0 +1,97 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.util.Iterator;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ForStatement;
+import org.eclipse.jdt.core.dom.ReturnStatement;
+import org.eclipse.jdt.core.dom.WhileStatement;
+import org.junit.Test;
+
+import static org.autorefactor.cfg.test.TestUtils.*;
+import static org.junit.Assert.*;
+
+public class CodePathsTest {
+
+    @Test
+    public void testIfElseIf() throws Exception {
+        final ControlFlowGraph cfg = buildControlFlowGraphs("IfElseIfSample").get(0);
+        final CodePaths paths = new CodePaths(cfg);
+        final int returnStmt = findBlock(cfg, ReturnStatement.class);
+
+        assertEquals(3, paths.getNbPaths(Long.MAX_VALUE));
+        assertEquals(2, paths.getNbPaths(2));
+        assertTrue(paths.isOnAllPaths(returnStmt));
+        assertTrue(paths.getShortestPathLength() < paths.getLongestPathLength());
+
+        int nbPaths = 0;
+        for (int[] path : paths) {
+            assertEquals(cfg.getEntryBlock(), path[0]);
+            assertEquals(cfg.getExitBlock(), path[path.length - 1]);
+            nbPaths++;
+        }
+        assertEquals(3, nbPaths);
+    }
+
+    @Test
+    public void testLoops() throws Exception {
+        final ControlFlowGraph cfg = buildControlFlowGraphs("LoopsSample").get(0);
+        final CodePaths paths = new CodePaths(cfg);
+        final int forCondition = findBlock(cfg, ForStatement.class);
+        final int whileCondition = findBlock(cfg, WhileStatement.class);
+
+        assertEquals(1, paths.getNbPaths(Long.MAX_VALUE));
+        for (int b = 0; b < cfg.getNbBlocks(); b++) {
+            assertTrue(paths.isReachable(b));
+        }
+        assertTrue(paths.isOnAllPaths(forCondition));
+        assertFalse(paths.isOnAllPaths(whileCondition));
+        assertTrue(paths.getShortestPathLength() < paths.getLongestPathLength());
+
+        final Iterator<int[]> it = paths.iterator();
+        assertTrue(it.hasNext());
+        final int[] path = it.next();
+        assertEquals(paths.getShortestPathLength(), path.length);
+        assertFalse(it.hasNext());
+    }
+
+    /** Finds the block created for the statement of the provided type, or for its condition. */
+    private int findBlock(ControlFlowGraph cfg, Class<? extends ASTNode> stmtClass) {
+        for (int b = 0; b < cfg.getNbBlocks(); b++) {
+            final ASTNode node = cfg.getBlockNode(b);
+            if (stmtClass.isInstance(node)
+                    || (stmtClass.isInstance(node.getParent())
+                            && "expression".equals(node.getLocationInParent().getId()))) {
+                return b;
+            }
+        }
+        fail("Could not find a block for a " + stmtClass.getSimpleName());
+        return -1;
+    }
+
+}
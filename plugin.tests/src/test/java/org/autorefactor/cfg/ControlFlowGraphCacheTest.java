@@ -0,0 +1,144 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.util.List;
+
+import org.autorefactor.util.IllegalStateException;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+import org.junit.Test;
+
+import static org.autorefactor.cfg.test.TestUtils.*;
+import static org.junit.Assert.*;
+
+public class ControlFlowGraphCacheTest {
+
+    @Test
+    public void testLazyCaching() throws Exception {
+        final TypeDeclaration typeDecl = (TypeDeclaration) parseSample("LoopsSample").types().get(0);
+        final MethodDeclaration method = typeDecl.getMethods()[0];
+        final ControlFlowGraphCache cache =
+                new ControlFlowGraphCache(readSample("LoopsSample"), newJavaProjectOptions());
+
+        final ControlFlowGraph cfg = cache.getControlFlowGraph(method);
+        assertNotNull(cfg);
+        assertSame(method, cfg.getNode());
+        assertSame(cfg, cache.getControlFlowGraph(method));
+        assertSame(cache.getLiveVariables(method), cache.getLiveVariables(method));
+        assertSame(cache.getReachingDefinitions(method), cache.getReachingDefinitions(method));
+        assertSame(cfg.getDominatorTree(), cache.getDominatorTree(method));
+        assertSame(cfg.getPostDominatorTree(), cache.getPostDominatorTree(method));
+        assertSame(cfg.getLoopNestingForest(), cache.getLoopNestingForest(method));
+    }
+
+    @Test
+    public void testParallelBuild() throws Exception {
+        final TypeDeclaration typeDecl = (TypeDeclaration) parseSample("WhileLoopsSample").types().get(0);
+        final String source = readSample("WhileLoopsSample");
+        final ControlFlowGraphCache parallelCache = new ControlFlowGraphCache(source, newJavaProjectOptions());
+        final ControlFlowGraphCache sequentialCache = new ControlFlowGraphCache(source, newJavaProjectOptions());
+
+        final List<ControlFlowGraph> cfgs = parallelCache.getControlFlowGraphs(typeDecl, true);
+        assertEquals(sequentialCache.getControlFlowGraphs(typeDecl, false).size(), cfgs.size());
+        final CFGDotPrinter printer = new CFGDotPrinter();
+        for (ControlFlowGraph cfg : cfgs) {
+            final MethodDeclaration method = (MethodDeclaration) cfg.getNode();
+            assertSame(cfg, parallelCache.getControlFlowGraph(method));
+            assertEquals(printer.toDot(sequentialCache.getControlFlowGraph(method)), printer.toDot(cfg));
+        }
+    }
+
+    @Test
+    public void testUpdateStatement() throws Exception {
+        final ControlFlowGraphCache newCache = assertUpdate("unused = 2;", "unused = 3;");
+        assertTrue(newCache.getStatistics(), newCache.getStatistics().contains("(1 updated"));
+    }
+
+    @Test
+    public void testUpdateVariableAccesses() throws Exception {
+        final ControlFlowGraphCache newCache = assertUpdate("unused = 2;", "unused = sum * 2;");
+        assertTrue(newCache.getStatistics(), newCache.getStatistics().contains("(0 updated"));
+    }
+
+    @Test
+    public void testUpdateControlStructure() throws Exception {
+        final ControlFlowGraphCache newCache = assertUpdate("unused = 2;", "if (n > 0) { unused = 2; }");
+        assertTrue(newCache.getStatistics(), newCache.getStatistics().contains("(0 updated"));
+    }
+
+    /**
+     * Edits DataFlowSample, then checks that updating its CFG gives the same result as building it from scratch.
+     */
+    private ControlFlowGraphCache assertUpdate(String oldCode, String newCode) throws Exception {
+        final String source = readSample("DataFlowSample");
+        final MethodDeclaration method =
+                ((TypeDeclaration) parseSample("DataFlowSample").types().get(0)).getMethods()[0];
+        final ControlFlowGraphCache cache = new ControlFlowGraphCache(source, newJavaProjectOptions());
+        final LiveVariables liveVariables = cache.getLiveVariables(method);
+        assertNotNull(cache.getReachingDefinitions(method));
+        assertNotNull(cache.getLoopNestingForest(method));
+
+        final String newSource = source.replace(oldCode, newCode);
+        final MethodDeclaration newMethod =
+                ((TypeDeclaration) parseSource("DataFlowSample", newSource).types().get(0)).getMethods()[0];
+        final ControlFlowGraphCache newCache = cache.update(newSource);
+        final ControlFlowGraph updated = newCache.getControlFlowGraph(newMethod);
+        final ControlFlowGraph expected =
+                new CFGBuilder(newSource, newJavaProjectOptions()).buildControlFlowGraph(newMethod);
+
+        assertSame(newMethod, updated.getNode());
+        assertEquals(new CFGDotPrinter().toDot(expected), new CFGDotPrinter().toDot(updated));
+        assertEquals(expected.getNbVariableAccesses(), updated.getNbVariableAccesses());
+        for (int a = 0; a < expected.getNbVariableAccesses(); a++) {
+            assertSame(expected.getAccessNode(a), updated.getAccessNode(a));
+            assertEquals(expected.getAccessType(a), updated.getAccessType(a));
+            assertEquals(expected.getVariableName(expected.getAccessedVariable(a)).getFullyQualifiedName(),
+                    updated.getVariableName(updated.getAccessedVariable(a)).getFullyQualifiedName());
+        }
+        final LiveVariables expectedLiveVariables = new LiveVariables(expected);
+        final LiveVariables updatedLiveVariables = newCache.getLiveVariables(newMethod);
+        for (int b = 0; b < expected.getNbBlocks(); b++) {
+            assertEquals(expectedLiveVariables.getLiveIn(b), updatedLiveVariables.getLiveIn(b));
+        }
+        if (updated.hasSameDataFlowAs(liveVariables.getControlFlowGraph())) {
+            assertEquals(liveVariables.getLiveIn(0), updatedLiveVariables.getLiveIn(0));
+        }
+        return newCache;
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testInvalidate() throws Exception {
+        final TypeDeclaration typeDecl = (TypeDeclaration) parseSample("LoopsSample").types().get(0);
+        final MethodDeclaration method = typeDecl.getMethods()[0];
+        final ControlFlowGraphCache cache =
+                new ControlFlowGraphCache(readSample("LoopsSample"), newJavaProjectOptions());
+        assertNotNull(cache.getControlFlowGraph(method));
+
+        cache.invalidate();
+        cache.getControlFlowGraph(method);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jdt.core.dom.Name;
+import org.junit.Test;
+
+import static org.autorefactor.cfg.ReachingDefinitions.*;
+import static org.autorefactor.cfg.test.TestUtils.*;
+import static org.junit.Assert.*;
+
+public class DataFlowAnalysisTest {
+
+    @Test
+    public void testLiveVariables() throws Exception {
+        final ControlFlowGraph cfg = buildControlFlowGraphs("DataFlowSample").get(0);
+        final LiveVariables liveVariables = new LiveVariables(cfg);
+
+        final int n = accesses(cfg, "n").get(0);
+        assertTrue("parameter n should be live after its declaration", liveVariables.isLiveAfter(n));
+        assertTrue(liveVariables.isLiveOut(cfg.getEntryBlock(), cfg.getAccessedVariable(n)));
+        assertFalse(liveVariables.isLiveIn(cfg.getEntryBlock(), cfg.getAccessedVariable(n)));
+
+        final List<Integer> unusedAccesses = accesses(cfg, "unused");
+        assertEquals(2, unusedAccesses.size());
+        for (int unused : unusedAccesses) {
+            assertFalse("unused should never be live", liveVariables.isLiveAfter(unused));
+        }
+
+        final List<Integer> sumAccesses = accesses(cfg, "sum");
+        assertTrue("sum should be live after its declaration", liveVariables.isLiveAfter(sumAccesses.get(0)));
+        assertFalse("sum should be dead after it is returned",
+                liveVariables.isLiveAfter(sumAccesses.get(sumAccesses.size() - 1)));
+    }
+
+    @Test
+    public void testReachingDefinitions() throws Exception {
+        final ControlFlowGraph cfg = buildControlFlowGraphs("DataFlowSample").get(0);
+        final ReachingDefinitions reachingDefs = new ReachingDefinitions(cfg);
+
+        final List<Integer> sumAccesses = accesses(cfg, "sum");
+        final int sumDecl = sumAccesses.get(0);
+        final int returnedSum = sumAccesses.get(sumAccesses.size() - 1);
+        assertFalse(isDefinition(cfg.getAccessType(returnedSum)));
+        final int sumVariable = cfg.getAccessedVariable(sumDecl);
+        // "int sum = 0" and "sum += i" both reach "return sum"
+        assertEquals(reachingDefs.getDefinitions(sumVariable), reachingDefs.getDefinitionsReaching(returnedSum));
+        assertEquals(2, reachingDefs.getDefinitionsReaching(returnedSum).cardinality());
+
+        final List<Integer> unusedAccesses = accesses(cfg, "unused");
+        final int unusedWrite = unusedAccesses.get(1);
+        // "unused = 2" kills "int unused = 1"
+        assertEquals(1, reachingDefs.getReachingDefinitions(cfg.getExitBlock(),
+                cfg.getAccessedVariable(unusedWrite)).cardinality());
+        assertTrue(reachingDefs.getReachingDefinitions(cfg.getExitBlock()).get(unusedWrite));
+    }
+
+    /** Returns the ids of the accesses to the provided variable, in source order. */
+    private List<Integer> accesses(ControlFlowGraph cfg, String variableName) {
+        final List<Integer> results = new ArrayList<Integer>();
+        for (int b = 0; b < cfg.getNbBlocks(); b++) {
+            for (int a = cfg.getVariableAccessesBegin(b); a < cfg.getVariableAccessesEnd(b); a++) {
+                final Name name = cfg.getVariableName(cfg.getAccessedVariable(a));
+                if (name != null && variableName.equals(name.getFullyQualifiedName())) {
+                    results.add(a);
+                }
+            }
+        }
+        sortBySourcePosition(cfg, results);
+        return results;
+    }
+
+    private void sortBySourcePosition(final ControlFlowGraph cfg, List<Integer> accesses) {
+        for (int i = 1; i < accesses.size(); i++) {
+            for (int j = i; j > 0 && position(cfg, accesses.get(j - 1)) > position(cfg, accesses.get(j)); j--) {
+                accesses.add(j - 1, accesses.remove(j));
+            }
+        }
+    }
+
+    private int position(ControlFlowGraph cfg, int access) {
+        return cfg.getAccessNode(access).getStartPosition();
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ForStatement;
+import org.eclipse.jdt.core.dom.ReturnStatement;
+import org.eclipse.jdt.core.dom.WhileStatement;
+import org.junit.Test;
+
+import static org.autorefactor.cfg.test.TestUtils.*;
+import static org.junit.Assert.*;
+
+public class DominatorTreeTest {
+
+    @Test
+    public void testDominators() throws Exception {
+        final ControlFlowGraph cfg = buildControlFlowGraphs("LoopsSample").get(0);
+        final DominatorTree dominators = cfg.getDominatorTree();
+        final int forCondition = findBlock(cfg, ForStatement.class);
+        final int whileCondition = findBlock(cfg, WhileStatement.class);
+        final int returnStmt = findBlock(cfg, ReturnStatement.class);
+
+        for (int b = 0; b < cfg.getNbBlocks(); b++) {
+            assertTrue(dominators.dominates(cfg.getEntryBlock(), b));
+        }
+        assertTrue(dominators.strictlyDominates(forCondition, whileCondition));
+        assertTrue(dominators.dominates(forCondition, returnStmt));
+        assertFalse(dominators.dominates(whileCondition, returnStmt));
+        assertFalse(dominators.dominates(whileCondition, forCondition));
+        assertEquals(forCondition, dominators.getNearestCommonDominator(whileCondition, returnStmt));
+    }
+
+    @Test
+    public void testPostDominators() throws Exception {
+        final ControlFlowGraph cfg = buildControlFlowGraphs("LoopsSample").get(0);
+        final DominatorTree postDominators = cfg.getPostDominatorTree();
+        final int forCondition = findBlock(cfg, ForStatement.class);
+        final int whileCondition = findBlock(cfg, WhileStatement.class);
+        final int returnStmt = findBlock(cfg, ReturnStatement.class);
+
+        assertEquals(cfg.getExitBlock(), postDominators.getRoot());
+        for (int b = 0; b < cfg.getNbBlocks(); b++) {
+            assertTrue(postDominators.dominates(cfg.getExitBlock(), b));
+        }
+        assertTrue(postDominators.dominates(returnStmt, cfg.getEntryBlock()));
+        assertTrue(postDominators.dominates(forCondition, whileCondition));
+        assertFalse(postDominators.dominates(whileCondition, forCondition));
+    }
+
+    @Test
+    public void testLoopNestingForest() throws Exception {
+        final ControlFlowGraph cfg = buildControlFlowGraphs("LoopsSample").get(0);
+        final LoopNestingForest loops = cfg.getLoopNestingForest();
+        final int forCondition = findBlock(cfg, ForStatement.class);
+        final int whileCondition = findBlock(cfg, WhileStatement.class);
+        final int returnStmt = findBlock(cfg, ReturnStatement.class);
+
+        assertEquals(2, loops.getNbLoops());
+        final int forLoop = loops.getInnermostLoop(forCondition);
+        final int whileLoop = loops.getInnermostLoop(whileCondition);
+        assertEquals(forCondition, loops.getHeader(forLoop));
+        assertEquals(whileCondition, loops.getHeader(whileLoop));
+        assertEquals(-1, loops.getParent(forLoop));
+        assertEquals(forLoop, loops.getParent(whileLoop));
+        assertTrue(loops.contains(forLoop, whileCondition));
+        assertFalse(loops.contains(whileLoop, forCondition));
+        assertEquals(2, loops.getLoopDepth(whileCondition));
+        assertEquals(0, loops.getLoopDepth(returnStmt));
+        assertTrue(loops.getExitBlocks(forLoop).get(returnStmt));
+    }
+
+    /** Finds the block created for the statement of the provided type, or for its condition. */
+    private int findBlock(ControlFlowGraph cfg, Class<? extends ASTNode> stmtClass) {
+        for (int b = 0; b < cfg.getNbBlocks(); b++) {
+            final ASTNode node = cfg.getBlockNode(b);
+            if (stmtClass.isInstance(node)
+                    || (stmtClass.isInstance(node.getParent())
+                            && "expression".equals(node.getLocationInParent().getId()))) {
+                return b;
+            }
+        }
+        fail("Could not find a block for a " + stmtClass.getSimpleName());
+        return -1;
+    }
+
+}
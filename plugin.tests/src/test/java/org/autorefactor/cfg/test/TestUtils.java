@@ -29,6 +29,24 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.lang.reflect.Method;
+import java.util.List;
+
+import org.autorefactor.cfg.CFGBuilder;
+import org.autorefactor.cfg.ControlFlowGraph;
+import org.autorefactor.refactoring.JavaProjectOptions;
+import org.autorefactor.refactoring.Release;
+import org.autorefactor.refactoring.rules.JavaCoreHelper;
+import org.autorefactor.ui.ApplyRefactoringsJob;
+import org.autorefactor.ui.JavaProjectOptionsImpl;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+
+import static org.junit.Assert.*;
 
 public class TestUtils {
 
@@ -53,4 +71,63 @@ public class TestUtils {
         }
     }
 
+    /**
+     * Builds the compact CFGs of all the methods of the first type declared in the provided sample.
+     */
+    public static List<ControlFlowGraph> buildControlFlowGraphs(String testName) throws Exception {
+        final TypeDeclaration typeDecl = (TypeDeclaration) parseSample(testName).types().get(0);
+        return new CFGBuilder(readSample(testName), newJavaProjectOptions()).buildControlFlowGraphs(typeDecl);
+    }
+
+    public static String readSample(String testName) throws IOException {
+        final File javaFile = new File("src/test/java/org/autorefactor/cfg", testName + ".java");
+        assertTrue(testName + ": sample in java file " + javaFile + " should exist", javaFile.exists());
+        return readAll(javaFile);
+    }
+
+    public static JavaProjectOptions newJavaProjectOptions() {
+        final JavaProjectOptionsImpl options = new JavaProjectOptionsImpl();
+        options.setJavaSERelease(Release.javaSE("1.7"));
+        options.setTabSize(4);
+        return options;
+    }
+
+    /**
+     * Parses the provided sample with resolved bindings.
+     */
+    public static CompilationUnit parseSample(String testName) throws Exception {
+        return parseSource(testName, readSample(testName));
+    }
+
+    /**
+     * Parses the provided java source of a sample with resolved bindings.
+     */
+    public static CompilationUnit parseSource(String testName, String javaSource) throws Exception {
+        final ICompilationUnit cu = createCompilationUnit(testName, javaSource);
+
+        final ASTParser parser = ASTParser.newParser(AST.JLS4);
+        autoRefactorHandler_resetParser(cu, parser, newJavaProjectOptions());
+        return (CompilationUnit) parser.createAST(null);
+    }
+
+    /**
+     * Creates a compilation unit holding the provided java source of a sample in the test java project.
+     */
+    public static ICompilationUnit createCompilationUnit(String testName, String javaSource) throws Exception {
+        final IPackageFragment packageFragment = JavaCoreHelper.getPackageFragment();
+        final ICompilationUnit cu = packageFragment.createCompilationUnit(
+                testName + ".java", javaSource, true, null);
+        cu.getBuffer().setContents(javaSource);
+        cu.save(null, true);
+        return cu;
+    }
+
+    private static void autoRefactorHandler_resetParser(ICompilationUnit cu, ASTParser parser,
+            JavaProjectOptions options) throws Exception {
+        final Method m = ApplyRefactoringsJob.class.getDeclaredMethod(
+                "resetParser", ICompilationUnit.class, ASTParser.class, JavaProjectOptions.class);
+        m.setAccessible(true);
+        m.invoke(null, cu, parser, options);
+    }
+
 }
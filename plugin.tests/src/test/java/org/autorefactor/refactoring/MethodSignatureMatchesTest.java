@@ -0,0 +1,109 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.junit.Test;
+
+import static org.autorefactor.cfg.test.TestUtils.*;
+import static org.junit.Assert.*;
+
+public class MethodSignatureMatchesTest {
+
+    private static final String SOURCE = "package org.autorefactor.refactoring;\n"
+            + "\n"
+            + "public class MethodSignatureMatchesSample {\n"
+            + "    public boolean sample(String s, StringBuilder sb) {\n"
+            + "        sb.append(s);\n"
+            + "        return s.equals(\"a\") || s.equals(\"b\");\n"
+            + "    }\n"
+            + "}\n";
+
+    @Test
+    public void testMemoizedIsMethod() throws Exception {
+        final CompilationUnit astRoot = parseSource("MethodSignatureMatchesSample", SOURCE);
+        final List<MethodInvocation> invocations = collectMethodInvocations(astRoot);
+        assertEquals(3, invocations.size());
+        final MethodInvocation append = invocations.get(0);
+        final MethodInvocation equals1 = invocations.get(1);
+        final MethodInvocation equals2 = invocations.get(2);
+        final IMethodBinding equalsBinding = equals1.resolveMethodBinding();
+        final MethodSignature equalsSignature =
+                MethodSignature.of("java.lang.Object", "equals", "java.lang.Object");
+        final MethodSignatureMatches matches = MethodSignatureMatches.of(astRoot.getAST());
+        assertSame(matches, MethodSignatureMatches.of(astRoot.getAST()));
+
+        assertFalse(matches.isMemoized(equalsBinding, equalsSignature));
+        assertTrue(ASTHelper.isMethod(equals1, equalsSignature));
+        assertTrue(matches.isMemoized(equalsBinding, equalsSignature));
+        // the second invocation of the same method is served from the memoized result
+        assertTrue(matches.isMemoized(equals2.resolveMethodBinding(), equalsSignature));
+        assertTrue(ASTHelper.isMethod(equals2, equalsSignature));
+        assertTrue(ASTHelper.isMethod(equals2, "java.lang.Object", "equals", "java.lang.Object"));
+
+        // failed matches are memoized too
+        final MethodSignature appendSignature =
+                MethodSignature.of("java.lang.StringBuilder", "append", "java.lang.Object");
+        assertFalse(ASTHelper.isMethod(append, appendSignature));
+        assertTrue(matches.isMemoized(append.resolveMethodBinding(), appendSignature));
+        assertFalse(ASTHelper.isMethod(append, appendSignature));
+        assertTrue(ASTHelper.isMethod(append, "java.lang.StringBuilder", "append", "java.lang.String"));
+    }
+
+    @Test
+    public void testMatchesAreMemoizedPerCompilationUnit() throws Exception {
+        final CompilationUnit astRoot1 = parseSource("MethodSignatureMatchesSample", SOURCE);
+        final CompilationUnit astRoot2 = parseSource("MethodSignatureMatchesSample", SOURCE);
+        final MethodSignature equalsSignature =
+                MethodSignature.of("java.lang.Object", "equals", "java.lang.Object");
+        assertNotSame(MethodSignatureMatches.of(astRoot1.getAST()), MethodSignatureMatches.of(astRoot2.getAST()));
+
+        final MethodInvocation equals1 = collectMethodInvocations(astRoot1).get(1);
+        final MethodInvocation equals2 = collectMethodInvocations(astRoot2).get(1);
+        assertTrue(ASTHelper.isMethod(equals1, equalsSignature));
+        assertFalse(MethodSignatureMatches.of(astRoot2.getAST())
+                .isMemoized(equals2.resolveMethodBinding(), equalsSignature));
+        assertTrue(ASTHelper.isMethod(equals2, equalsSignature));
+    }
+
+    private List<MethodInvocation> collectMethodInvocations(CompilationUnit astRoot) {
+        final List<MethodInvocation> results = new ArrayList<MethodInvocation>();
+        astRoot.accept(new ASTVisitor() {
+            @Override
+            public boolean visit(MethodInvocation node) {
+                results.add(node);
+                return true;
+            }
+        });
+        return results;
+    }
+}
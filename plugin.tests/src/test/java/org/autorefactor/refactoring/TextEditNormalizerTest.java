@@ -0,0 +1,173 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.text.edits.DeleteEdit;
+import org.eclipse.text.edits.InsertEdit;
+import org.eclipse.text.edits.MalformedTreeException;
+import org.eclipse.text.edits.MultiTextEdit;
+import org.eclipse.text.edits.ReplaceEdit;
+import org.eclipse.text.edits.TextEdit;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TextEditNormalizerTest {
+
+    @Test
+    public void applyToSortsEdits() throws Exception {
+        final MultiTextEdit root = new MultiTextEdit();
+        root.addChild(new ReplaceEdit(4, 1, "X"));
+        final TextEditNormalizer edits = new TextEditNormalizer(root);
+        edits.addEdit(new DeleteEdit(8, 2));
+        edits.addEdit(new InsertEdit(0, "<"));
+        edits.addEdit(new ReplaceEdit(1, 2, "BC"));
+        assertTrue(edits.isFlat());
+        assertEquals("<0BC3X567", edits.applyTo("0123456789"));
+    }
+
+    @Test
+    public void normalizeMergesAdjacentEdits() throws Exception {
+        final TextEditNormalizer edits = new TextEditNormalizer(new MultiTextEdit());
+        edits.addEdit(new DeleteEdit(3, 1));
+        edits.addEdit(new DeleteEdit(1, 1));
+        edits.addEdit(new ReplaceEdit(2, 1, "b"));
+        edits.addEdit(new InsertEdit(7, "!"));
+
+        final List<ReplaceEdit> normalized = edits.normalize();
+        assertEquals(2, normalized.size());
+        assertEdit(normalized.get(0), 1, 3, "b");
+        assertEdit(normalized.get(1), 7, 0, "!");
+        assertEquals("0b456!789", edits.applyTo("0123456789"));
+    }
+
+    @Test
+    public void insertionsAtSameOffsetKeepTheirOrder() throws Exception {
+        final MultiTextEdit root = new MultiTextEdit();
+        root.addChild(new InsertEdit(2, "a"));
+        final TextEditNormalizer edits = new TextEditNormalizer(root);
+        edits.addEdit(new ReplaceEdit(2, 2, "_"));
+        edits.addEdit(new InsertEdit(2, "b"));
+        edits.addEdit(new InsertEdit(4, "c"));
+        assertEquals("01ab_c456789", edits.applyTo("0123456789"));
+    }
+
+    @Test(expected = MalformedTreeException.class)
+    public void overlappingEdits() throws Exception {
+        final TextEditNormalizer edits = new TextEditNormalizer(new MultiTextEdit());
+        edits.addEdit(new DeleteEdit(1, 3));
+        edits.addEdit(new ReplaceEdit(2, 3, "x"));
+        edits.normalize();
+    }
+
+    @Test
+    public void overlapsWithTreeEdits() throws Exception {
+        final MultiTextEdit root = new MultiTextEdit();
+        root.addChild(new DeleteEdit(2, 2));
+        root.addChild(new InsertEdit(7, "x"));
+        final TextEditNormalizer edits = new TextEditNormalizer(root);
+        edits.addEdit(new DeleteEdit(10, 2));
+
+        assertFalse(edits.overlapsWithTreeEdits(new SourceLocation(0, 1)));
+        assertTrue(edits.overlapsWithTreeEdits(new SourceLocation(0, 2)));
+        assertTrue(edits.overlapsWithTreeEdits(new SourceLocation(3, 0)));
+        assertTrue(edits.overlapsWithTreeEdits(new SourceLocation(4, 1)));
+        assertFalse(edits.overlapsWithTreeEdits(new SourceLocation(5, 1)));
+        assertTrue(edits.overlapsWithTreeEdits(new SourceLocation(5, 2)));
+        assertTrue(edits.overlapsWithTreeEdits(new SourceLocation(7, 3)));
+        // edits added after construction are not part of the edit tree
+        assertFalse(edits.overlapsWithTreeEdits(new SourceLocation(9, 3)));
+    }
+
+    @Test
+    public void applyToRandomEdits() throws Exception {
+        final Random random = new Random(42);
+        for (int iter = 0; iter < 1000; iter++) {
+            final StringBuilder source = new StringBuilder();
+            final int sourceLength = random.nextInt(200);
+            for (int i = 0; i < sourceLength; i++) {
+                source.append((char) ('a' + random.nextInt(26)));
+            }
+
+            // non overlapping edits, at most one edit per offset
+            final List<TextEdit> expectedEdits = new ArrayList<TextEdit>();
+            int pos = 0;
+            while (pos <= sourceLength) {
+                final int offset = pos + random.nextInt(5);
+                if (offset > sourceLength) {
+                    break;
+                }
+                final int length = random.nextInt(Math.min(4, sourceLength - offset + 1));
+                final String text = random.nextBoolean() ? "" : Integer.toString(random.nextInt(100));
+                if (length == 0) {
+                    expectedEdits.add(new InsertEdit(offset, text));
+                } else if (text.length() == 0) {
+                    expectedEdits.add(new DeleteEdit(offset, length));
+                } else {
+                    expectedEdits.add(new ReplaceEdit(offset, length, text));
+                }
+                pos = offset + Math.max(length, 1);
+            }
+            final String expected = applyInReverseOrder(source.toString(), expectedEdits);
+
+            final List<TextEdit> shuffled = new ArrayList<TextEdit>(expectedEdits);
+            Collections.shuffle(shuffled, random);
+            final TextEditNormalizer edits = new TextEditNormalizer(new MultiTextEdit());
+            for (TextEdit edit : shuffled) {
+                edits.addEdit(edit);
+            }
+            assertEquals(expected, edits.applyTo(source.toString()));
+        }
+    }
+
+    private String applyInReverseOrder(String source, List<TextEdit> sortedEdits) {
+        final StringBuilder sb = new StringBuilder(source);
+        for (int i = sortedEdits.size() - 1; i >= 0; i--) {
+            final TextEdit edit = sortedEdits.get(i);
+            final String text;
+            if (edit instanceof ReplaceEdit) {
+                text = ((ReplaceEdit) edit).getText();
+            } else if (edit instanceof InsertEdit) {
+                text = ((InsertEdit) edit).getText();
+            } else {
+                text = "";
+            }
+            sb.replace(edit.getOffset(), edit.getOffset() + edit.getLength(), text);
+        }
+        return sb.toString();
+    }
+
+    private void assertEdit(ReplaceEdit edit, int offset, int length, String text) {
+        assertEquals(offset, edit.getOffset());
+        assertEquals(length, edit.getLength());
+        assertEquals(text, edit.getText());
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring;
+
+import java.util.Set;
+
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.SingleVariableDeclaration;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.autorefactor.cfg.test.TestUtils.*;
+import static org.junit.Assert.*;
+
+public class TypeHierarchyCacheTest {
+
+    private static final String SOURCE = "package org.autorefactor.refactoring;\n"
+            + "\n"
+            + "public class TypeHierarchyCacheSample implements Runnable {\n"
+            + "    public void run() {\n"
+            + "    }\n"
+            + "\n"
+            + "    public void sample(java.util.ArrayList<String> strings, java.util.ArrayList<Integer> ints) {\n"
+            + "        run();\n"
+            + "    }\n"
+            + "}\n";
+
+    @After
+    public void tearDown() {
+        TypeHierarchyCache.setCurrent(null);
+    }
+
+    @Test
+    public void testSecondLookupIsServedFromCache() throws Exception {
+        final TypeDeclaration typeDecl = parseTypeDeclaration(SOURCE);
+        final ITypeBinding typeBinding = typeDecl.resolveBinding();
+        final TypeHierarchyCache cache = new TypeHierarchyCache("test");
+
+        final Set<String> supertypes = cache.getSupertypes(typeBinding);
+        assertTrue(supertypes.contains("java.lang.Object"));
+        assertTrue(supertypes.contains("java.lang.Runnable"));
+        assertSame(supertypes, cache.getSupertypes(typeBinding));
+        assertTrue(cache.getStatistics(), cache.getStatistics().contains(" hits=1 misses=1 "));
+
+        final TypeDeclaration typeDeclInOtherAST = parseTypeDeclaration(SOURCE);
+        assertNotSame(typeBinding, typeDeclInOtherAST.resolveBinding());
+        // binding keys are shared by all the ASTs of the java project
+        assertSame(supertypes, cache.getSupertypes(typeDeclInOtherAST.resolveBinding()));
+        assertTrue(cache.getStatistics(), cache.getStatistics().contains(" hits=2 misses=1 "));
+    }
+
+    @Test
+    public void testSupertypesAreErasures() throws Exception {
+        final MethodDeclaration method = parseTypeDeclaration(SOURCE).getMethods()[1];
+        final ITypeBinding strings = getParameterType(method, 0);
+        final ITypeBinding ints = getParameterType(method, 1);
+        final TypeHierarchyCache cache = new TypeHierarchyCache("test");
+
+        final Set<String> stringsSupertypes = cache.getSupertypes(strings);
+        assertTrue(stringsSupertypes.contains("java.util.List"));
+        assertTrue(stringsSupertypes.contains("java.util.Collection"));
+        assertFalse(stringsSupertypes.contains("java.util.List<java.lang.String>"));
+        assertEquals(stringsSupertypes, cache.getSupertypes(ints));
+
+        TypeHierarchyCache.setCurrent(cache);
+        assertTrue(ASTHelper.instanceOf(strings, "java.lang.Iterable"));
+        assertTrue(ASTHelper.instanceOf(ints, "java.util.AbstractCollection"));
+        assertFalse(ASTHelper.instanceOf(ints, "java.util.Map"));
+        assertTrue(cache.getStatistics(), cache.getStatistics().contains(" hits=3 misses=2 "));
+    }
+
+    @Test
+    public void testInvalidateIfTypeDeclarationsChanged() throws Exception {
+        final CompilationUnit before = parseSource("TypeHierarchyCacheSample", SOURCE);
+        final ITypeBinding typeBinding = getTypeBinding(before);
+        final TypeHierarchyCache cache = new TypeHierarchyCache("test");
+        final Set<String> supertypes = cache.getSupertypes(typeBinding);
+
+        final CompilationUnit sameTypes = parseSource("TypeHierarchyCacheSample",
+                SOURCE.replace("        run();\n", "        run();\n        run();\n"));
+        cache.invalidateIfTypeDeclarationsChanged(before, sameTypes);
+        assertSame(supertypes, cache.getSupertypes(typeBinding));
+        assertTrue(cache.getStatistics(), cache.getStatistics().contains(" invalidations=0 "));
+
+        final CompilationUnit changedTypes = parseSource("TypeHierarchyCacheSample",
+                SOURCE.replace("implements Runnable", "implements Runnable, Cloneable"));
+        cache.invalidateIfTypeDeclarationsChanged(before, changedTypes);
+        assertTrue(cache.getStatistics(), cache.getStatistics().contains(" invalidations=1 "));
+        final Set<String> newSupertypes = cache.getSupertypes(getTypeBinding(changedTypes));
+        assertNotSame(supertypes, newSupertypes);
+        assertTrue(newSupertypes.contains("java.lang.Cloneable"));
+    }
+
+    private TypeDeclaration parseTypeDeclaration(String source) throws Exception {
+        return (TypeDeclaration) parseSource("TypeHierarchyCacheSample", source).types().get(0);
+    }
+
+    private ITypeBinding getTypeBinding(CompilationUnit astRoot) {
+        return ((TypeDeclaration) astRoot.types().get(0)).resolveBinding();
+    }
+
+    private ITypeBinding getParameterType(MethodDeclaration method, int index) {
+        return ((SingleVariableDeclaration) method.parameters().get(index)).getType().resolveBinding();
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import static org.autorefactor.refactoring.rules.CommentLexer.*;
+import static org.junit.Assert.*;
+
+/**
+ * Checks {@link CommentLexer} gives exactly the same results as the regular expressions it replaced,
+ * and compares their performance on a javadoc heavy corpus.
+ */
+public class CommentLexerTest {
+
+    private static final Pattern EMPTY_LINE_COMMENT = Pattern.compile("//\\s*");
+    private static final Pattern EMPTY_BLOCK_COMMENT = Pattern.compile("/\\*\\s*(\\*\\s*)*\\*/");
+    private static final Pattern EMPTY_JAVADOC = Pattern.compile("/\\*\\*\\s*(\\*\\s*)*\\*/");
+    private static final Pattern EMPTY_LINE_AT_START_OF_BLOCK_COMMENT = Pattern.compile("(/\\*)(?:\\s*\\*)+(\\s*\\*)");
+    private static final Pattern EMPTY_LINE_AT_START_OF_JAVADOC = Pattern.compile("(/\\*\\*)(?:\\s*\\*)+(\\s*\\*)");
+    private static final Pattern EMPTY_LINE_AT_END_OF_BLOCK_COMMENT = Pattern.compile("(?:\\*\\s*)*\\*\\s*(\\*/)");
+    private static final Pattern JAVADOC_ONLY_INHERITDOC =
+            Pattern.compile("/\\*\\*\\s*(\\*\\s*)*\\{@inheritDoc\\}\\s*(\\*\\s*)*\\*/");
+    private static final Pattern ECLIPSE_GENERATED_TODOS = Pattern.compile("//\\s*"
+            + "(:?"
+            +   "(?:TODO Auto-generated (?:(?:(?:method|constructor) stub)|(?:catch block)))"
+            + "|"
+            +   "(?:TODO: handle exception)"
+            + ")"
+            + "\\s*");
+    private static final Pattern TOOLS_CONTROL_INSTRUCTIONS = Pattern.compile("//\\s*@\\w+:\\w+");
+    private static final Pattern JAVADOC_HAS_PUNCTUATION = Pattern.compile("\\.|\\?|!|:");
+    private static final Pattern JAVADOC_WITHOUT_PUNCTUATION =
+            Pattern.compile("(.*?)((?:\\s*(?:\\r|\\n|\\r\\n)*\\s*)*(?:\\*/)?)", Pattern.DOTALL);
+    private static final Pattern FIRST_JAVADOC_TAG =
+            Pattern.compile("(^|\\/\\*\\*)\\s*(?:\\*\\s*)?@\\w+", Pattern.MULTILINE);
+    private static final Pattern JAVADOC_FIRST_LETTER_LOWERCASE =
+            Pattern.compile("(/\\*\\*\\s*(?:(?:\\r|\\n|\\r\\n|\\s)\\s*\\*)*\\s*)(\\w)(.*)", Pattern.DOTALL);
+
+    private static final String[] TOKENS = {
+        " ", "\t", "\n", "\r", "\r\n", "\f", "\u000B", "\u0085", "\u2028",
+        "*", "*", "/", "/*", "/**", "*/", "@", "@param", "@return", ":", ".", "?", "!",
+        "a", "B", "x", "_", "9", "foo", "Bar", "{@inheritDoc}", "{@link Foo}",
+        "TODO Auto-generated method stub", "TODO Auto-generated constructor stub",
+        "TODO Auto-generated catch block", "TODO: handle exception", "@formatter", "off",
+    };
+
+    // @DataProvider
+    public Object[] getLineComments() {
+        return new Object[] {
+            // @formatter:off
+            "//", "//   ", "// foo", "//\t\r",
+            "// TODO Auto-generated method stub", "//TODO Auto-generated constructor stub  ",
+            "// :TODO Auto-generated catch block", "// TODO: handle exception",
+            "// :TODO: handle exception", "// TODO Auto-generated method stub.",
+            "// @formatter:off", "//@checkstyle:on", "// @formatter:", "// @:off", "// @formatter:off foo",
+            // @formatter:on
+        };
+    }
+
+    // @DataProvider
+    public Object[] getBlockComments() {
+        return new Object[] {
+            // @formatter:off
+            "/**/", "/* */", "/***/", "/* * * */", "/* foo */", "/*\n *\n * foo\n */",
+            "/*\n * foo\n *\n */", "/* foo **/", "/* x /*** */", "/*\r\n * foo\r\n *\r\n */",
+            // @formatter:on
+        };
+    }
+
+    // @DataProvider
+    public Object[] getJavadocs() {
+        return new Object[] {
+            // @formatter:off
+            "/***/", "/** */", "/**\n *\n */", "/** {@inheritDoc} */", "/**\n * {@inheritDoc}\n */",
+            "/** {@inheritDoc} foo */", "/** foo */", "/** Foo. */", "/** foo? */", "/**\n * foo\n */",
+            "/**\n *\n * foo\n */", "/**\n * foo\n *\n */", "/** foo **/",
+            "/**\n * foo\n * @param bar\n */", "/** @return foo */", "/**\n * @param foo bar\n */",
+            "/**\n * Foo\n * @param bar the bar\n * @return baz\n */",
+            "/*** foo */", "/** ** foo */", "/**\r\n * foo\r\n * bar\r\n */",
+            // @formatter:on
+        };
+    }
+
+    @Test
+    public void classifyLineComment() {
+        for (Object comment : getLineComments()) {
+            checkLineComment((String) comment);
+        }
+        final Random random = new Random(0);
+        for (int i = 0; i < 20000; i++) {
+            checkLineComment(randomComment(random, random.nextBoolean() ? "//" : "/", ""));
+        }
+    }
+
+    @Test
+    public void classifyBlockComment() {
+        for (Object comment : getBlockComments()) {
+            checkBlockComment((String) comment);
+        }
+        final Random random = new Random(0);
+        for (int i = 0; i < 20000; i++) {
+            checkBlockComment(randomComment(random, "/*", "*/"));
+        }
+    }
+
+    @Test
+    public void classifyJavadoc() {
+        for (Object comment : getJavadocs()) {
+            checkJavadoc((String) comment);
+        }
+        final Random random = new Random(0);
+        for (int i = 0; i < 20000; i++) {
+            checkJavadoc(randomComment(random, "/**", "*/"));
+        }
+    }
+
+    @Test
+    public void testJavadocHeavyCorpus() {
+        final List<String> corpus = newJavadocHeavyCorpus();
+        assertEquals(runRegexes(corpus), runLexer(corpus));
+    }
+
+    private List<String> newJavadocHeavyCorpus() {
+        final Random random = new Random(0);
+        final List<String> corpus = new ArrayList<String>();
+        for (int i = 0; i < 2000; i++) {
+            final StringBuilder sb = new StringBuilder("/**\n");
+            final int nbLines = 1 + random.nextInt(200);
+            for (int j = 0; j < nbLines; j++) {
+                sb.append("     * ");
+                if (j == 0 && random.nextBoolean()) {
+                    sb.append("lowercase ");
+                }
+                sb.append("Some javadoc text with a {@link Foo} and <code>some code</code>");
+                if (random.nextInt(10) == 0) {
+                    sb.append("\n     *");
+                }
+                sb.append("\n");
+            }
+            if (random.nextBoolean()) {
+                sb.append("     *\n     * @param foo the foo\n     * @return the bar\n");
+            }
+            sb.append("     */");
+            corpus.add(sb.toString());
+        }
+        return corpus;
+    }
+
+    private int runRegexes(List<String> corpus) {
+        int result = 0;
+        for (String javadoc : corpus) {
+            if (EMPTY_JAVADOC.matcher(javadoc).matches()) {
+                result++;
+            }
+            if (JAVADOC_ONLY_INHERITDOC.matcher(javadoc).matches()) {
+                result++;
+            }
+            if (JAVADOC_HAS_PUNCTUATION.matcher(javadoc).find()) {
+                result++;
+            }
+            final Matcher m = JAVADOC_FIRST_LETTER_LOWERCASE.matcher(javadoc);
+            if (m.matches() && Character.isLowerCase(m.group(2).charAt(0))) {
+                result++;
+            }
+            final Matcher tagMatcher = FIRST_JAVADOC_TAG.matcher(javadoc);
+            final int firstTag = tagMatcher.find() ? tagMatcher.start() : javadoc.length();
+            final Matcher punctuationMatcher = JAVADOC_WITHOUT_PUNCTUATION.matcher(javadoc.substring(0, firstTag));
+            if (punctuationMatcher.matches()) {
+                result += punctuationMatcher.end(1);
+            }
+        }
+        return result;
+    }
+
+    private int runLexer(List<String> corpus) {
+        int result = 0;
+        for (String javadoc : corpus) {
+            final int kind = CommentLexer.classifyJavadoc(javadoc);
+            result += Integer.bitCount(kind);
+            final int firstTag = indexOfFirstJavadocTag(javadoc);
+            result += indexOfMissingPunctuation(javadoc, firstTag != -1 ? firstTag : javadoc.length());
+        }
+        return result;
+    }
+
+    private String randomComment(Random random, String prefix, String suffix) {
+        final StringBuilder sb = new StringBuilder(prefix);
+        final int nbTokens = random.nextInt(12);
+        for (int i = 0; i < nbTokens; i++) {
+            sb.append(TOKENS[random.nextInt(TOKENS.length)]);
+        }
+        return sb.append(suffix).toString();
+    }
+
+    private void checkLineComment(String comment) {
+        final int kind = CommentLexer.classifyLineComment(comment);
+        final boolean isEmpty = EMPTY_LINE_COMMENT.matcher(comment).matches();
+        final boolean isTodo = !isEmpty && ECLIPSE_GENERATED_TODOS.matcher(comment).matches();
+        final boolean isTools = !isEmpty && !isTodo && TOOLS_CONTROL_INSTRUCTIONS.matcher(comment).matches();
+        assertEquals(escape(comment), isEmpty, (kind & EMPTY) != 0);
+        assertEquals(escape(comment), isTodo, (kind & GENERATED_TODO) != 0);
+        assertEquals(escape(comment), isTools, (kind & TOOLS_CONTROL_INSTRUCTION) != 0);
+    }
+
+    private void checkBlockComment(String comment) {
+        final int kind = CommentLexer.classifyBlockComment(comment);
+        assertEquals(escape(comment), EMPTY_BLOCK_COMMENT.matcher(comment).matches(), (kind & EMPTY) != 0);
+        assertEquals(escape(comment),
+                removeEmptyLineAtStart(EMPTY_LINE_AT_START_OF_BLOCK_COMMENT, comment),
+                removeEmptyLinesAtStart(comment, false));
+        assertEquals(escape(comment), removeEmptyLineAtEnd(comment), removeEmptyLinesAtEnd(comment));
+        assertEquals(escape(comment),
+                toSingleLineWithRegexes(comment, false),
+                toSingleLine(comment, 2, comment.length() - 2));
+    }
+
+    private void checkJavadoc(String comment) {
+        final int kind = CommentLexer.classifyJavadoc(comment);
+        assertEquals(escape(comment), EMPTY_JAVADOC.matcher(comment).matches(), (kind & EMPTY) != 0);
+        assertEquals(escape(comment),
+                JAVADOC_ONLY_INHERITDOC.matcher(comment).matches(), (kind & ONLY_INHERIT_DOC) != 0);
+        assertEquals(escape(comment),
+                JAVADOC_HAS_PUNCTUATION.matcher(comment).find(), (kind & HAS_PUNCTUATION) != 0);
+
+        final Matcher m = JAVADOC_FIRST_LETTER_LOWERCASE.matcher(comment);
+        final boolean matches = m.matches();
+        assertEquals(escape(comment),
+                matches && Character.isLowerCase(m.group(2).charAt(0)), (kind & FIRST_LETTER_LOWERCASE) != 0);
+        assertEquals(escape(comment), matches ? m.start(2) : -1, indexOfJavadocFirstLetter(comment));
+
+        assertEquals(escape(comment),
+                removeEmptyLineAtStart(EMPTY_LINE_AT_START_OF_JAVADOC, comment),
+                removeEmptyLinesAtStart(comment, true));
+        assertEquals(escape(comment), removeEmptyLineAtEnd(comment), removeEmptyLinesAtEnd(comment));
+
+        final Matcher tagMatcher = FIRST_JAVADOC_TAG.matcher(comment);
+        final int firstTag = tagMatcher.find() ? tagMatcher.start() : -1;
+        assertEquals(escape(comment), firstTag, indexOfFirstJavadocTag(comment));
+
+        final int beforeFirstTag = firstTag != -1 ? firstTag : comment.length();
+        final Matcher punctuationMatcher = JAVADOC_WITHOUT_PUNCTUATION.matcher(comment.substring(0, beforeFirstTag));
+        assertTrue(punctuationMatcher.matches());
+        assertEquals(escape(comment), punctuationMatcher.end(1), indexOfMissingPunctuation(comment, beforeFirstTag));
+        assertEquals(escape(comment),
+                toSingleLineWithRegexes(comment, true),
+                toSingleLine(comment, 3, comment.length() - 2));
+    }
+
+    private String removeEmptyLineAtStart(Pattern pattern, String comment) {
+        final Matcher m = pattern.matcher(comment);
+        return m.find() ? m.replaceFirst(m.group(1) + m.group(2)) : null;
+    }
+
+    private String removeEmptyLineAtEnd(String comment) {
+        final Matcher m = EMPTY_LINE_AT_END_OF_BLOCK_COMMENT.matcher(comment);
+        return m.find() ? m.replaceFirst(m.group(1)) : null;
+    }
+
+    private String toSingleLineWithRegexes(String comment, boolean isJavadoc) {
+        String commentNoStartNorEnd = comment.substring(0, comment.length() - 2).substring(isJavadoc ? 3 : 2);
+        String commentWithSpaces = commentNoStartNorEnd.replaceAll("\\s*(\\r\\n|\\r|\\n)\\s*\\*", " ");
+        return commentWithSpaces.replaceAll("\\s+", " ").trim();
+    }
+
+    private String escape(String comment) {
+        return comment.replace("\r", "\\r").replace("\n", "\\n");
+    }
+}
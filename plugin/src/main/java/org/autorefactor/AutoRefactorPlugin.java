@@ -81,6 +81,17 @@ public class AutoRefactorPlugin extends AbstractUIPlugin {
         log.log(new Status(severity, PLUGIN_ID, message, e));
     }
 
+    /**
+     * Logs an information message into Eclipse workspace logs.
+     * Contrary to warnings and errors, information messages are logged even when debug mode is on.
+     *
+     * @param message the message to log
+     */
+    public static void logInfo(String message) {
+        final ILog log = getDefault().getLog();
+        log.log(new Status(IStatus.INFO, PLUGIN_ID, message));
+    }
+
     /**
      * Logs a warning into Eclipse workspace logs.
      *
@@ -30,6 +30,8 @@ import java.util.List;
 
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.ForStatement;
+import org.eclipse.jdt.core.dom.StructuralPropertyDescriptor;
 
 /**
  * Helper class for printing AST information.
@@ -40,6 +42,26 @@ public final class ASTPrintHelper {
         // hide utility class ctor
     }
 
+    /**
+     * Returns the code excerpt of the basic block created for the provided node.
+     * <p>
+     * The basic blocks of for statement initializers and updaters are created for the first expression,
+     * but they display all the expressions of the list.
+     * </p>
+     *
+     * @param node the node for which a basic block has been created
+     * @return the code excerpt of the basic block
+     */
+    @SuppressWarnings("unchecked")
+    static String blockCodeExcerpt(ASTNode node) {
+        final StructuralPropertyDescriptor locationInParent = node.getLocationInParent();
+        if (locationInParent == ForStatement.INITIALIZERS_PROPERTY
+                || locationInParent == ForStatement.UPDATERS_PROPERTY) {
+            return codeExcerpt((List<Expression>) node.getParent().getStructuralProperty(locationInParent));
+        }
+        return codeExcerpt(node);
+    }
+
     static String codeExcerpt(List<Expression> expressions) {
         final StringBuilder sb = new StringBuilder();
         for (final Iterator<Expression> iter = expressions.iterator(); iter.hasNext();) {
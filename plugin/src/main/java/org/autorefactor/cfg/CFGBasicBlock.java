@@ -25,8 +25,8 @@
  */
 package org.autorefactor.cfg;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedList;
 
 import org.autorefactor.util.IllegalArgumentException;
 import org.eclipse.jdt.core.dom.ASTNode;
@@ -49,13 +49,14 @@ public class CFGBasicBlock implements Comparable<CFGBasicBlock> {
 
     private final ASTNode node;
     private final String fileName;
-    private final String codeExcerpt;
+    /** Lazily computed from the node when not provided. */
+    private String codeExcerpt;
     private final boolean isDecision;
     /** true means entry block, false means exit block, null means neither entry nor exit block. */
     private final Boolean isEntryBlock;
     private final LineAndColumn lineAndColumn;
-    private final Collection<CFGEdge> incomingEdges = new LinkedList<CFGEdge>();
-    private final Collection<Object> outgoingEdgesAndVariableAccesses = new LinkedList<Object>();
+    private final Collection<CFGEdge> incomingEdges = new ArrayList<CFGEdge>();
+    private final Collection<Object> outgoingEdgesAndVariableAccesses = new ArrayList<Object>();
 
     private CFGBasicBlock(ASTNode node, String fileName, String codeExcerpt, boolean isDecision, Boolean isEntryBlock,
             LineAndColumn lineAndColumn) {
@@ -72,7 +73,8 @@ public class CFGBasicBlock implements Comparable<CFGBasicBlock> {
      *
      * @param node the AST node that led to the creation of this block
      * @param fileName the file name where this block is coming from
-     * @param codeExcerpt a code excerpt to display for this block
+     * @param codeExcerpt a code excerpt to display for this block,
+     *        or null to lazily compute it from the AST node
      * @param isDecision whether this block is a decision block
      * @param lineAndColumn the line and column information for this block
      */
@@ -86,7 +88,8 @@ public class CFGBasicBlock implements Comparable<CFGBasicBlock> {
      *
      * @param node the AST node that led to the creation of this entry block
      * @param fileName the file name where this entry block is coming from
-     * @param codeExcerpt a code excerpt to display for this block
+     * @param codeExcerpt a code excerpt to display for this block,
+     *        or null to lazily compute it from the AST node
      * @return a new entry block
      */
     public static CFGBasicBlock buildEntryBlock(ASTNode node, String fileName, String codeExcerpt) {
@@ -98,7 +101,8 @@ public class CFGBasicBlock implements Comparable<CFGBasicBlock> {
      *
      * @param node the AST node that led to the creation of this exit block
      * @param fileName the file name where this exit block is coming from
-     * @param codeExcerpt a code excerpt to display for this block
+     * @param codeExcerpt a code excerpt to display for this block,
+     *        or null to lazily compute it from the AST node
      * @param lineAndColumn the line and column information for this exit block
      * @return a new exit block
      */
@@ -161,6 +165,15 @@ public class CFGBasicBlock implements Comparable<CFGBasicBlock> {
         return outgoingEdgesAndVariableAccesses;
     }
 
+    /**
+     * Returns a collection of the incoming edges of this basic block.
+     *
+     * @return a collection of the incoming edges of this basic block.
+     */
+    Collection<CFGEdge> getIncomingEdges() {
+        return incomingEdges;
+    }
+
     /**
      * Adds an incoming edge to this basic block.
      *
@@ -252,6 +265,9 @@ public class CFGBasicBlock implements Comparable<CFGBasicBlock> {
      * @return a code excerpt for this basic block
      */
     public String getCodeExcerpt() {
+        if (codeExcerpt == null && node != null) {
+            codeExcerpt = ASTPrintHelper.blockCodeExcerpt(node);
+        }
         return codeExcerpt;
     }
 
@@ -291,7 +307,7 @@ public class CFGBasicBlock implements Comparable<CFGBasicBlock> {
      * @return the provided string builder
      */
     StringBuilder appendDotNodeLabel(StringBuilder sb) {
-        sb.append(this.codeExcerpt).append("\\n(");
+        sb.append(getCodeExcerpt()).append("\\n(");
         LineAndColumn lal = this.lineAndColumn;
         sb.append(lal.getLine()).append(",").append(lal.getColumn()).append(")");
         return sb;
@@ -306,7 +322,7 @@ public class CFGBasicBlock implements Comparable<CFGBasicBlock> {
     }
 
     private void toString(final StringBuilder sb) {
-        if (this.codeExcerpt == null) {
+        if (getCodeExcerpt() == null) {
             return;
         }
         appendDotNodeLabel(sb);
@@ -25,19 +25,18 @@
  */
 package org.autorefactor.cfg;
 
-import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.util.Collection;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.regex.MatchResult;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -76,6 +75,7 @@ import org.eclipse.jdt.core.dom.FieldDeclaration;
 import org.eclipse.jdt.core.dom.ForStatement;
 import org.eclipse.jdt.core.dom.IMethodBinding;
 import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
 import org.eclipse.jdt.core.dom.IfStatement;
 import org.eclipse.jdt.core.dom.InfixExpression;
 import org.eclipse.jdt.core.dom.Initializer;
@@ -126,8 +126,8 @@ import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
 import org.eclipse.jdt.core.dom.WhileStatement;
 import org.eclipse.jdt.core.dom.WildcardType;
 
-import static org.autorefactor.cfg.ASTPrintHelper.*;
 import static org.autorefactor.cfg.CFGEdgeBuilder.*;
+import static org.autorefactor.cfg.ExceptionTypes.*;
 import static org.autorefactor.cfg.VariableAccess.*;
 import static org.autorefactor.refactoring.ASTHelper.*;
 import static org.eclipse.jdt.core.dom.ASTNode.*;
@@ -194,7 +194,8 @@ public class CFGBuilder {
         }
 
         private LivenessState nextStmtsAreDeadCode() {
-            return copyLiveEdges();
+            // the live edges entered the current block, or leave the live block which now jumps elsewhere
+            return new LivenessState();
         }
 
         private boolean requireNewBlock() {
@@ -225,6 +226,8 @@ public class CFGBuilder {
 
     private final String source;
     private final int tabSize;
+    /** Lazily computed end positions of each line separator in the source. */
+    private int[] lineEndPositions;
     /**
      * Edges to be built after visiting the statement used as the key.
      * <p>
@@ -241,24 +244,36 @@ public class CFGBuilder {
     /** The exit block for the CFG being built. */
     private CFGBasicBlock exitBlock;
 
+    /** The exception types implicitly thrown by expressions, for the AST of the CFG being built. */
+    private ExceptionTypes exceptionTypes;
+    /** Whether to build the edges followed when an exception is thrown, only disabled to measure their cost. */
+    private final boolean exceptionEdges;
+
     /**
-     * Cache of "manually" resolved type bindings.
-     * <p>
-     * Cannot be made static because for {@link ITypeBinding#equals(Object)} to
-     * work, all type bindings must have been loaded from the same
-     * CompilationUnit.
+     * Builds an instance of this class.
+     *
+     * @param source the java source code to work from
+     * @param options the Java project options used to compile the project
      */
-    private final Map<String, ITypeBinding> typeBindingsCache = new HashMap<String, ITypeBinding>();
+    public CFGBuilder(String source, JavaProjectOptions options) {
+        this(source, options, true);
+    }
 
     /**
      * Builds an instance of this class.
      *
      * @param source the java source code to work from
      * @param options the Java project options used to compile the project
+     * @param exceptionEdges false to only build the normal control flow edges
      */
-    public CFGBuilder(String source, JavaProjectOptions options) {
+    CFGBuilder(String source, JavaProjectOptions options, boolean exceptionEdges) {
         this.source = source;
         this.tabSize = options.getTabSize();
+        this.exceptionEdges = exceptionEdges;
+    }
+
+    private ThrowerBlocks newThrowerBlocks() {
+        return new ThrowerBlocks(exceptionEdges ? exceptionTypes : null, exceptionEdges);
     }
 
     /**
@@ -273,22 +288,29 @@ public class CFGBuilder {
         switch (node.getNodeType()) {
         case ARRAY_ACCESS:
             ArrayAccess aa = (ArrayAccess) node;
-            addVariableAccess(basicBlock, aa.getArray(), flags, throwers);
-            addVariableAccess(basicBlock, aa.getIndex(), flags, throwers);
-            throwers.addThrow(aa, newException(node, "java.lang.ArrayIndexOutOfBoundsException"));
+            // writing to an array element only reads the array and index variables
+            addVariableAccess(basicBlock, aa.getArray(), READ, throwers);
+            addVariableAccess(basicBlock, aa.getIndex(), READ, throwers);
+            throwers.addImplicitThrow(basicBlock, NULL_POINTER_EXCEPTION | ARRAY_INDEX_OUT_OF_BOUNDS_EXCEPTION);
             return true;
         case ARRAY_CREATION:
             ArrayCreation ac = (ArrayCreation) node;
             boolean acMightThrow1 = addVariableAccess(basicBlock, ac.getInitializer(), flags, throwers);
             boolean acMightThrow2 = addVariableAccesses(basicBlock, ac.dimensions(), flags, throwers);
+            if (!ac.dimensions().isEmpty()) {
+                throwers.addImplicitThrow(basicBlock, NEGATIVE_ARRAY_SIZE_EXCEPTION);
+            }
             return acMightThrow1 || acMightThrow2;
         case ARRAY_INITIALIZER:
             ArrayInitializer ai = (ArrayInitializer) node;
             return addVariableAccesses(basicBlock, ai.expressions(), flags, throwers);
         case ASSIGNMENT:
             Assignment a = (Assignment) node;
-            boolean aMightThrow1 = addVariableAccess(basicBlock, a.getLeftHandSide(), WRITE, throwers);
+            // the right hand side is evaluated before the left hand side is written,
+            // and compound assignments also read the left hand side
+            final int lhsFlags = Assignment.Operator.ASSIGN.equals(a.getOperator()) ? WRITE : READ | WRITE;
             boolean aMightThrow2 = addVariableAccess(basicBlock, a.getRightHandSide(), READ, throwers);
+            boolean aMightThrow1 = addVariableAccess(basicBlock, a.getLeftHandSide(), lhsFlags, throwers);
             return aMightThrow1 || aMightThrow2;
         case BOOLEAN_LITERAL:
         case CHARACTER_LITERAL:
@@ -300,15 +322,19 @@ public class CFGBuilder {
             return false;
         case CAST_EXPRESSION:
             CastExpression cae = (CastExpression) node;
+            if (!cae.getType().isPrimitiveType()) {
+                throwers.addImplicitThrow(basicBlock, CLASS_CAST_EXCEPTION);
+            }
             return addVariableAccess(basicBlock, cae.getExpression(), flags, throwers);
         case CLASS_INSTANCE_CREATION:
             ClassInstanceCreation cic = (ClassInstanceCreation) node;
             addVariableAccess(basicBlock, cic.getExpression(), flags, throwers);
             addVariableAccesses(basicBlock, cic.arguments(), flags, throwers);
             IMethodBinding cicBinding = cic.resolveConstructorBinding();
+            addInvocationImplicitThrows(basicBlock, throwers);
             if (cicBinding != null) {
                 ITypeBinding[] declaredThrows = cicBinding.getExceptionTypes();
-                throwers.addThrow(cic, declaredThrows);
+                throwers.addThrow(basicBlock, declaredThrows);
                 return declaredThrows.length > 0;
             }
             return false;
@@ -320,10 +346,12 @@ public class CFGBuilder {
             return mightThrow1 || mightThrow2 || mightThrow3;
         case FIELD_ACCESS:
             FieldAccess fa = (FieldAccess) node;
-            boolean mightThrow = addVariableAccess(basicBlock, fa.getExpression(), flags, throwers);
+            boolean mightThrow = addVariableAccess(basicBlock, fa.getExpression(), READ, throwers);
             basicBlock.addVariableAccess(new VariableAccess(fa, flags));
             if (is(flags, READ)) {
-                throwers.addThrow(fa, newException(node, "java.lang.NullPointerException"));
+                if (fa.getExpression().getNodeType() != THIS_EXPRESSION) {
+                    throwers.addImplicitThrow(basicBlock, NULL_POINTER_EXCEPTION);
+                }
                 mightThrow = true;
             }
             return mightThrow;
@@ -331,6 +359,9 @@ public class CFGBuilder {
             InfixExpression ie = (InfixExpression) node;
             boolean ieMightThrow1 = addVariableAccess(basicBlock, ie.getLeftOperand(), flags, throwers);
             boolean ieMightThrow2 = addVariableAccess(basicBlock, ie.getRightOperand(), flags, throwers);
+            if (isIntegerDivision(ie)) {
+                throwers.addImplicitThrow(basicBlock, ARITHMETIC_EXCEPTION);
+            }
             return ieMightThrow1 || ieMightThrow2;
         case INSTANCEOF_EXPRESSION:
             InstanceofExpression ioe = (InstanceofExpression) node;
@@ -340,9 +371,10 @@ public class CFGBuilder {
             addVariableAccess(basicBlock, mi.getExpression(), flags, throwers);
             addVariableAccesses(basicBlock, mi.arguments(), flags, throwers);
             IMethodBinding methodBinding = mi.resolveMethodBinding();
+            addInvocationImplicitThrows(basicBlock, throwers);
             if (methodBinding != null) {
                 ITypeBinding[] declaredThrows = methodBinding.getExceptionTypes();
-                throwers.addThrow(mi, declaredThrows);
+                throwers.addThrow(basicBlock, declaredThrows);
                 return declaredThrows.length > 0;
             }
             return false;
@@ -350,24 +382,29 @@ public class CFGBuilder {
             SimpleName sn = (SimpleName) node;
             basicBlock.addVariableAccess(new VariableAccess(sn, flags));
             if (is(flags, READ)) {
-                throwers.addThrow(sn, newException(node, "java.lang.NullPointerException"));
+                // reading a variable cannot throw, but this still ends the current block
                 return true;
             }
             return false;
         case QUALIFIED_NAME:
             QualifiedName qn = (QualifiedName) node;
             basicBlock.addVariableAccess(new VariableAccess(qn, flags));
-            throwers.addThrow(qn, newException(node, "java.lang.NullPointerException"));
+            if (qn.getQualifier().resolveBinding() instanceof IVariableBinding) {
+                throwers.addImplicitThrow(basicBlock, NULL_POINTER_EXCEPTION);
+            }
             return true;
         case PARENTHESIZED_EXPRESSION:
             ParenthesizedExpression pe = (ParenthesizedExpression) node;
             return addVariableAccess(basicBlock, pe.getExpression(), flags, throwers);
         case POSTFIX_EXPRESSION:
             PostfixExpression poe = (PostfixExpression) node;
-            return addVariableAccess(basicBlock, poe.getOperand(), flags, throwers);
+            // increments and decrements both read and write their operand
+            return addVariableAccess(basicBlock, poe.getOperand(), READ | WRITE, throwers);
         case PREFIX_EXPRESSION:
             PrefixExpression pre = (PrefixExpression) node;
-            return addVariableAccess(basicBlock, pre.getOperand(), flags, throwers);
+            final boolean isIncOrDec = PrefixExpression.Operator.INCREMENT.equals(pre.getOperator())
+                    || PrefixExpression.Operator.DECREMENT.equals(pre.getOperator());
+            return addVariableAccess(basicBlock, pre.getOperand(), isIncOrDec ? READ | WRITE : flags, throwers);
         case SUPER_FIELD_ACCESS:
             SuperFieldAccess sfa = (SuperFieldAccess) node;
             boolean sfaMightThrow1 = addVariableAccess(basicBlock, sfa.getQualifier(), flags, throwers);
@@ -378,9 +415,10 @@ public class CFGBuilder {
             addVariableAccess(basicBlock, smi.getQualifier(), flags, throwers);
             addVariableAccess(basicBlock, smi.getName(), flags, throwers);
             IMethodBinding sMethodBinding = smi.resolveMethodBinding();
+            addInvocationImplicitThrows(basicBlock, throwers);
             if (sMethodBinding != null) {
                 ITypeBinding[] declaredThrows = sMethodBinding.getExceptionTypes();
-                throwers.addThrow(smi, declaredThrows);
+                throwers.addThrow(basicBlock, declaredThrows);
                 return declaredThrows.length > 0;
             }
             return false;
@@ -399,58 +437,19 @@ public class CFGBuilder {
         return (flags & flag) == flag;
     }
 
-    private ITypeBinding newException(Expression node, String fullyQualifiedName) {
-        ITypeBinding typeBinding = typeBindingsCache.get(fullyQualifiedName);
-        if (typeBinding == null) {
-            typeBinding = resolveWellKnownType(node, fullyQualifiedName);
-            typeBindingsCache.put(typeBinding.getQualifiedName(), typeBinding);
-        }
-        return typeBinding;
+    /** Any invoked method or constructor can throw an unchecked exception. */
+    private void addInvocationImplicitThrows(CFGBasicBlock basicBlock, ThrowerBlocks throwers) {
+        throwers.addImplicitThrow(basicBlock, INVOCATION_EXCEPTIONS);
     }
 
-    /**
-     * FIXME Horribly brittle hack that uses reflection to resolve type bindings.
-     * <p>
-     * But how could I do otherwise?
-     * <p>
-     *
-     * @see org.eclipse.jdt.core.dom.DefaultBindingResolver#resolveWellKnownType(String)
-     */
-    private ITypeBinding resolveWellKnownType(Expression node, String fullyQualifiedName) {
-        try {
-            final ITypeBinding typeBinding = node.resolveTypeBinding();
-
-            final Field f1 = typeBinding.getClass().getDeclaredField("resolver");
-            f1.setAccessible(true);
-            Object bindingResolver = f1.get(typeBinding);
-
-            final Field f2 = bindingResolver.getClass().getDeclaredField("scope");
-            f2.setAccessible(true);
-            Object compilationUnitScope = f2.get(bindingResolver);
-
-            final Method m2 = compilationUnitScope.getClass().getSuperclass()
-                    .getDeclaredMethod("getType", char[][].class, int.class);
-            m2.setAccessible(true);
-            final char[][] simpleNamesArray = toSimpleNamesArray(fullyQualifiedName);
-            final Object internalTypeBinding =
-                    m2.invoke(compilationUnitScope, simpleNamesArray, 3);
-
-            final Method m1 = bindingResolver.getClass().getDeclaredMethod("getTypeBinding",
-                    internalTypeBinding.getClass().getSuperclass().getSuperclass());
-            m1.setAccessible(true);
-            return (ITypeBinding) m1.invoke(bindingResolver, internalTypeBinding);
-        } catch (Exception e) {
-            throw new UnhandledException(node, e);
-        }
-    }
-
-    private char[][] toSimpleNamesArray(String fullyQualifiedName) {
-        final String[] simpleNames = fullyQualifiedName.split("\\.");
-        final char[][] result = new char[simpleNames.length][];
-        for (int i = 0; i < simpleNames.length; i++) {
-            result[i] = simpleNames[i].toCharArray();
+    private boolean isIntegerDivision(InfixExpression node) {
+        if (!InfixExpression.Operator.DIVIDE.equals(node.getOperator())
+                && !InfixExpression.Operator.REMAINDER.equals(node.getOperator())) {
+            return false;
         }
-        return result;
+        final ITypeBinding typeBinding = node.resolveTypeBinding();
+        return typeBinding != null
+                && (typeBinding.getName().equals("int") || typeBinding.getName().equals("long"));
     }
 
     /**
@@ -647,13 +646,104 @@ public class CFGBuilder {
      * @return the entry block to the CFG of this method declaration
      */
     public CFGBasicBlock buildCFG(MethodDeclaration node) {
+        return buildMethodCFG(node, newExitBlock(node));
+    }
+
+    /**
+     * Builds a compact CFG for the provided method declaration.
+     *
+     * @param node the method declaration for which to build a CFG.
+     * @return the compact CFG of this method declaration
+     * @see ControlFlowGraph
+     */
+    public ControlFlowGraph buildControlFlowGraph(MethodDeclaration node) {
+        final CFGBasicBlock exitBlock = newExitBlock(node);
+        final CFGBasicBlock entryBlock = buildMethodCFG(node, exitBlock);
+        return ControlFlowGraph.compact(entryBlock, exitBlock);
+    }
+
+    /**
+     * Updates the compact CFG previously built for a method declaration, after the compilation unit
+     * has been edited and parsed again.
+     * <p>
+     * When the edit is limited to the expressions of straight-line statements which keep the same structure,
+     * only the variable accesses of the basic blocks covering the edited statements are rebuilt.
+     * The rest of the CFG, including its blocks, its edges and the analyses computed from them,
+     * is carried over to the new AST.
+     * Otherwise, for example when the edit changes the control structure of the method,
+     * a new CFG is built from scratch.
+     * </p>
+     *
+     * @param previous the CFG built for the method declaration before the edit
+     * @param previousSource the java source code the previous CFG was built from
+     * @param node the method declaration, in the AST parsed after the edit
+     * @return the compact CFG of this method declaration
+     * @see ControlFlowGraph
+     */
+    public ControlFlowGraph updateControlFlowGraph(ControlFlowGraph previous, String previousSource,
+            MethodDeclaration node) {
+        final ControlFlowGraph result = new CFGUpdater(this, previous, previousSource, source, node).update();
+        return result != null ? result : buildControlFlowGraph(node);
+    }
+
+    /**
+     * Adds the variable accesses of a straight-line statement to the provided basic block.
+     *
+     * @param basicBlock the basic block where to add the variable accesses
+     * @param node the expression statement or variable declaration statement
+     * @param throwers the thrower blocks information
+     * @return whether the statement can throw an exception and end the basic block
+     */
+    boolean addStatementVariableAccesses(CFGBasicBlock basicBlock, Statement node, ThrowerBlocks throwers) {
+        this.exceptionTypes = ExceptionTypes.of(node);
+        try {
+            switch (node.getNodeType()) {
+            case EXPRESSION_STATEMENT:
+                return addVariableAccess(basicBlock, ((ExpressionStatement) node).getExpression(), READ, throwers);
+            case VARIABLE_DECLARATION_STATEMENT:
+                // variable declaration statements never end a basic block
+                final VariableDeclarationStatement vds = (VariableDeclarationStatement) node;
+                addDeclarations(basicBlock, fragments(vds), vds.getType(), throwers);
+                return false;
+            default:
+                throw new NotImplementedException(node);
+            }
+        } finally {
+            this.exceptionTypes = null;
+        }
+    }
+
+    /**
+     * Builds compact CFGs for all the methods with a body in the provided type declaration
+     * and its member types.
+     *
+     * @param node the type declaration for which to build the CFGs.
+     * @return the compact CFGs of the methods of this type declaration
+     * @see ControlFlowGraph
+     */
+    public List<ControlFlowGraph> buildControlFlowGraphs(TypeDeclaration node) {
+        final List<ControlFlowGraph> results = new ArrayList<ControlFlowGraph>();
+        for (MethodDeclaration methodDecl : node.getMethods()) {
+            if (methodDecl.getBody() != null) {
+                results.add(buildControlFlowGraph(methodDecl));
+            }
+        }
+        for (TypeDeclaration typeDeclaration : node.getTypes()) {
+            results.addAll(buildControlFlowGraphs(typeDeclaration));
+        }
+        return results;
+    }
+
+    private CFGBasicBlock buildMethodCFG(MethodDeclaration node, CFGBasicBlock exitBlock) {
         final CFGBasicBlock entryBlock = newEntryBlock(node);
-        this.exitBlock = newExitBlock(node);
+        this.exitBlock = exitBlock;
+        this.exceptionTypes = ExceptionTypes.of(node);
 
         addDeclarations(entryBlock, parameters(node));
 
         try {
-            final ThrowerBlocks throwers = new ThrowerBlocks();
+            // implicit exceptions are only wired inside try statements
+            final ThrowerBlocks throwers = new ThrowerBlocks(null, exceptionEdges);
             final CFGEdgeBuilder liveEdge = new CFGEdgeBuilder(entryBlock);
             final LivenessState liveAfterBody = buildCFG(node.getBody(), LivenessState.of(liveEdge), throwers);
             if (!liveAfterBody.liveEdges.isEmpty()) {
@@ -670,22 +760,29 @@ public class CFGBuilder {
                 throw new IllegalStateException(node,
                         "At this point, there should not be any edges left to build. Left edges: " + this.edgesToBuild);
             }
-            List<CFGBasicBlock> throwingBlocks = throwers.selectBlocksThrowing(null);
-            if (!throwingBlocks.isEmpty()) {
-                for (CFGBasicBlock throwingBlock : throwingBlocks) {
-                    // TODO JNR
-                }
-            }
-            List<CFGEdgeBuilder> throwingEdges = throwers.selectEdgesThrowing(null);
-            if (!throwingEdges.isEmpty()) {
-                for (CFGEdgeBuilder throwingEdge : throwingEdges) {
-                    // TODO JNR
+            // exceptions escaping the method body go to the exit block
+            for (CFGBasicBlock throwingBlock : throwers.getExplicitThrowingBlocks()) {
+                if (!hasEdge(throwingBlock, exitBlock)) {
+                    buildEdge(throwingBlock, exitBlock);
                 }
             }
             return entryBlock;
         } finally {
             this.exitBlock = null;
+            this.exceptionTypes = null;
+        }
+    }
+
+    private boolean hasEdge(CFGBasicBlock sourceBlock, CFGBasicBlock targetBlock) {
+        for (Object obj : sourceBlock.getOutgoingEdgesAndVariableAccesses()) {
+            if (obj instanceof CFGEdge) {
+                final CFGEdge edge = (CFGEdge) obj;
+                if (edge.getTargetBlock() == targetBlock && edge.getCondition() == null) {
+                    return true;
+                }
+            }
         }
+        return false;
     }
 
     /**
@@ -814,54 +911,67 @@ public class CFGBuilder {
      * @return the blocks liveness state after current node
      */
     public LivenessState buildCFG(TryStatement node, LivenessState state, ThrowerBlocks throwers) {
-        final ThrowerBlocks localThrowers = new ThrowerBlocks();
-
+        final ThrowerBlocks localThrowers = newThrowerBlocks();
         final LivenessState liveAfterTry = buildCFG(node.getBody(), state, localThrowers);
-        final LivenessState liveAfterCatchClauses = new LivenessState();
+        // exceptions going through the finally block, or escaping the try statement when there is none
+        final ThrowerBlocks escapingThrowers = newThrowerBlocks();
+        final LivenessState liveAfterTryStmt = new LivenessState();
+        liveAfterTryStmt.addAll(liveAfterTry);
 
-        final Set<ITypeBinding> caughtExceptions = new HashSet<ITypeBinding>();
+        final List<ITypeBinding> caughtExceptions = new ArrayList<ITypeBinding>();
         for (CatchClause catchClause : catchClauses(node)) {
-            final LivenessState catchState = new LivenessState();
-            CFGBasicBlock catchBasicBlock = getCFGBasicBlock(catchClause, catchState);
             final SingleVariableDeclaration exceptionDecl = catchClause.getException();
-            addDeclaration(catchBasicBlock, exceptionDecl, DECL_INIT);
-
-            final ITypeBinding caughtException = exceptionDecl.getType().resolveBinding();
-            caughtExceptions.add(caughtException);
+            final List<ITypeBinding> caughtByClause = resolveCaughtExceptions(exceptionDecl.getType());
 
-            final List<CFGBasicBlock> throwingBlocksInTry = localThrowers.selectBlocksThrowing(caughtException);
-            if (throwingBlocksInTry.isEmpty()) {
-                // TODO JNR dead code found!!
+            final LivenessState catchState = new LivenessState();
+            for (CFGBasicBlock throwingBlockInTry : localThrowers.selectBlocksThrowing(
+                    caughtByClause, caughtExceptions)) {
+                catchState.add(new CFGEdgeBuilder(throwingBlockInTry, true));
             }
-            final List<CFGEdgeBuilder> liveBeforeCatchClause = new LinkedList<CFGEdgeBuilder>();
-            for (CFGBasicBlock throwingBlockInTry : throwingBlocksInTry) {
-                // TODO JNR if a Statement throws an exception, it must break the current basicBlock
-                // TODO JNR how to specify this edge is due to an exception?
-                liveBeforeCatchClause.add(new CFGEdgeBuilder(throwingBlockInTry));
+            if (catchState.liveEdges.isEmpty()) {
+                // TODO JNR dead code found!!
             }
+            final CFGBasicBlock catchBasicBlock = getCFGBasicBlock(catchClause, catchState);
+            addDeclaration(catchBasicBlock, exceptionDecl, DECL_INIT);
+            caughtExceptions.addAll(caughtByClause);
 
-            final LivenessState liveAfterCatchClause = buildCFG(catchClause.getBody(), catchState, new ThrowerBlocks());
-            liveAfterCatchClauses.addAll(liveAfterCatchClause);
+            final LivenessState liveAfterCatchClause = buildCFG(catchClause.getBody(),
+                    LivenessState.of(new CFGEdgeBuilder(catchBasicBlock)), escapingThrowers);
+            liveAfterTryStmt.addAll(liveAfterCatchClause);
         }
+        localThrowers.addUncaughtThrowsTo(escapingThrowers, caughtExceptions);
 
-        // TODO JNR move uncaught exceptions from localThrowers to throwers
-        final Map<CFGBasicBlock, Set<ITypeBinding>> throwUncaughtExceptions =
-                localThrowers.selectBlocksThrowingOtherThan(caughtExceptions);
-        for (Entry<CFGBasicBlock, Set<ITypeBinding>> throwing : throwUncaughtExceptions.entrySet()) {
-            final CFGEdgeBuilder uncaughtExceptionEdge = new CFGEdgeBuilder(throwing.getKey(), true);
-            liveAfterCatchClauses.add(uncaughtExceptionEdge);
-            throwers.addThrow(uncaughtExceptionEdge, throwing.getValue());
+        if (node.getFinally() == null) {
+            throwers.addAll(escapingThrowers);
+            return liveAfterTryStmt;
+        }
+        for (CFGBasicBlock throwingBlock : escapingThrowers.getThrowingBlocks()) {
+            final CFGEdgeBuilder exceptionEdge = new CFGEdgeBuilder(throwingBlock, true);
+            if (!liveAfterTryStmt.liveEdges.contains(exceptionEdge)) {
+                // no normal edge already goes from this block to the finally block
+                liveAfterTryStmt.add(exceptionEdge);
+            }
         }
+        final LivenessState liveAfterFinally = buildCFG(node.getFinally(), liveAfterTryStmt, throwers);
+        // escaping exceptions are thrown again once the finally block completes
+        final List<CFGBasicBlock> finallyEndBlocks = new ArrayList<CFGBasicBlock>();
+        for (CFGEdgeBuilder liveEdge : liveAfterFinally.liveEdges) {
+            finallyEndBlocks.add(liveEdge.getSourceBlock());
+        }
+        escapingThrowers.addRethrowsTo(throwers, finallyEndBlocks);
+        return liveAfterFinally;
+    }
 
-        if (node.getFinally() != null) {
-            final LivenessState liveBeforeFinally = new LivenessState();
-            liveBeforeFinally.addAll(liveAfterTry);
-            liveBeforeFinally.addAll(liveAfterCatchClauses);
-            final LivenessState liveAfterFinally = buildCFG(node.getFinally(), liveBeforeFinally, throwers);
-            return liveAfterFinally;
+    private List<ITypeBinding> resolveCaughtExceptions(Type type) {
+        final List<ITypeBinding> results = new ArrayList<ITypeBinding>();
+        if (type instanceof UnionType) {
+            for (Object unionedType : ((UnionType) type).types()) {
+                results.add(((Type) unionedType).resolveBinding());
+            }
         } else {
-            return liveAfterCatchClauses.copyLiveBasicBlock();
+            results.add(type.resolveBinding());
         }
+        return results;
     }
 
     /**
@@ -886,8 +996,11 @@ public class CFGBuilder {
         addVariableAccess(conditionBlock, node.getExpression(), READ, throwers);
 
         final CFGEdgeBuilder liveEdge = new CFGEdgeBuilder(node.getExpression(), true, conditionBlock);
-        final LivenessState liveAfterStmt = buildCFG(node.getBody(), LivenessState.of(liveEdge), throwers);
-        liveAfterStmt.add(new CFGEdgeBuilder(node.getExpression(), false, conditionBlock));
+        final LivenessState liveAfterBody = buildCFG(node.getBody(), LivenessState.of(liveEdge), throwers);
+        buildEdges(liveAfterBody, conditionBlock);
+
+        final LivenessState liveAfterStmt = LivenessState.of(
+                new CFGEdgeBuilder(node.getExpression(), false, conditionBlock));
         buildEdgesAfterBranchableStmt(node, liveAfterStmt, conditionBlock);
         return liveAfterStmt.nextStmtWillCreateNewBlock();
     }
@@ -1015,7 +1128,7 @@ public class CFGBuilder {
     public LivenessState buildCFG(ThrowStatement node, LivenessState state, ThrowerBlocks throwers) {
         CFGBasicBlock basicBlock = getCFGBasicBlock(node, state);
         final Expression throwingExpr = node.getExpression();
-        addVariableAccess(state.liveBasicBlock, throwingExpr, READ, throwers);
+        addVariableAccess(basicBlock, throwingExpr, READ, throwers);
         throwers.addThrow(basicBlock, throwingExpr.resolveTypeBinding());
         return state.nextStmtsAreDeadCode();
     }
@@ -1647,7 +1760,6 @@ public class CFGBuilder {
         if (!isNewBlock && mightThrow) {
             final CFGBasicBlock currentBlock = getCFGBasicBlock(node, state.nextStmtWillCreateNewBlock());
             return new LivenessState(currentBlock, new CFGEdgeBuilder(currentBlock));
-            // TODO JNR create a new CFGBasicBlock from here to catch / finally / exit
         }
         return getInBlockStmtResult(state, basicBlock);
     }
@@ -1682,7 +1794,7 @@ public class CFGBuilder {
         }
         final LineAndColumn lineCol = getLineAndColumn(node);
         final CFGBasicBlock basicBlock = new CFGBasicBlock(node,
-                getFileName(node), codeExcerpt(node), isDecision, lineCol);
+                getFileName(node), null, isDecision, lineCol);
         buildEdges(state, basicBlock);
         return basicBlock;
     }
@@ -1691,8 +1803,9 @@ public class CFGBuilder {
         if (isNotEmpty(expressions)) {
             final Expression firstExpr = expressions.get(0);
             final LineAndColumn lineCol = getLineAndColumn(firstExpr.getStartPosition());
-            final CFGBasicBlock basicBlock = new CFGBasicBlock(expressions.get(0),
-                    getFileName(firstExpr), codeExcerpt(expressions), false, lineCol);
+            // the code excerpt of all the expressions is lazily computed from the first one
+            final CFGBasicBlock basicBlock = new CFGBasicBlock(firstExpr,
+                    getFileName(firstExpr), null, false, lineCol);
             buildEdges(state, basicBlock);
             return basicBlock;
         }
@@ -1700,44 +1813,56 @@ public class CFGBuilder {
     }
 
     private CFGBasicBlock newEntryBlock(MethodDeclaration node) {
-        return CFGBasicBlock.buildEntryBlock(node, getFileName(node),
-                codeExcerpt(node));
+        return CFGBasicBlock.buildEntryBlock(node, getFileName(node), null);
     }
 
     private CFGBasicBlock newExitBlock(MethodDeclaration node) {
         final LineAndColumn lineCol = getLineAndColumn(node
                 .getStartPosition() + node.getLength());
-        return CFGBasicBlock.buildExitBlock(node, getFileName(node),
-                codeExcerpt(node), lineCol);
+        return CFGBasicBlock.buildExitBlock(node, getFileName(node), null, lineCol);
     }
 
     private LineAndColumn getLineAndColumn(ASTNode node) {
         return getLineAndColumn(node.getStartPosition());
     }
 
-    private LineAndColumn getLineAndColumn(final int position) {
+    LineAndColumn getLineAndColumn(final int position) {
         // TODO Use CompilationUnit.getLineNumber() and CompilationUnit.getColumnNumber()
         // Return SourceLocation class with also startNodePosition to be used for graph node names
         // line number and column number are then used as comments for the node
         // file starts with line 1
-        int lineNo = 1;
-        int lastMatchPosition = 0;
-        final Matcher matcher = NEWLINE.matcher(source);
-        while (matcher.find()) {
-            final MatchResult matchResult = matcher.toMatchResult();
-            if (matchResult.end() >= position) {
-                final String startOfLine = this.source.substring(
-                        lastMatchPosition, position);
-                final int nbChars = countCharacters(startOfLine, tabSize);
-                // + 1 because line starts with column 1
-                return new LineAndColumn(position, lineNo, nbChars + 1);
-            }
-            lastMatchPosition = matchResult.end();
-            ++lineNo;
+        final int[] lineEnds = getLineEndPositions();
+        // find the first line separator ending at or after the position
+        int idx = Arrays.binarySearch(lineEnds, position);
+        if (idx < 0) {
+            idx = -idx - 1;
+        }
+        if (idx < lineEnds.length) {
+            final int lastMatchPosition = idx > 0 ? lineEnds[idx - 1] : 0;
+            final String startOfLine = this.source.substring(lastMatchPosition, position);
+            final int nbChars = countCharacters(startOfLine, tabSize);
+            // + 1 because line starts with column 1
+            return new LineAndColumn(position, idx + 1, nbChars + 1);
         }
         throw new IllegalStateException(null, "A line and column number should have been found");
     }
 
+    private int[] getLineEndPositions() {
+        if (lineEndPositions == null) {
+            int[] results = new int[16];
+            int nbLines = 0;
+            final Matcher matcher = NEWLINE.matcher(source);
+            while (matcher.find()) {
+                if (nbLines == results.length) {
+                    results = Arrays.copyOf(results, 2 * nbLines);
+                }
+                results[nbLines++] = matcher.end();
+            }
+            lineEndPositions = Arrays.copyOf(results, nbLines);
+        }
+        return lineEndPositions;
+    }
+
     private int countCharacters(String s, int tabSize) {
         int result = 0;
         for (int i = 0; i < s.length(); i++) {
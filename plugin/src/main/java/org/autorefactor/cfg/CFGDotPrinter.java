@@ -103,6 +103,17 @@ public class CFGDotPrinter {
         return sb.toString();
     }
 
+    /**
+     * Returns a String representing the compact CFG in the dot format.
+     *
+     * @param cfg
+     *            the compact CFG to print
+     * @return a String representing the CFG in the dot format.
+     */
+    public String toDot(final ControlFlowGraph cfg) {
+        return toDot(cfg.toBasicBlocks()[cfg.getEntryBlock()]);
+    }
+
     private void appendGraph(final CFGBasicBlock startblock,
             final CFGSubGraph graph, Set<CFGEdge> edges, final StringBuilder sb) {
         final boolean needDigraph = sb.length() == 0;
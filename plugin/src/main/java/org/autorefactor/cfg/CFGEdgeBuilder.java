@@ -109,6 +109,15 @@ public class CFGEdgeBuilder {
                 && equal(targetBlock, other.targetBlock);
     }
 
+    /**
+     * Returns the source block of the edge.
+     *
+     * @return the source block of the edge
+     */
+    CFGBasicBlock getSourceBlock() {
+        return sourceBlock;
+    }
+
     /**
      * Sets the target block of the edge.
      *
@@ -0,0 +1,402 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.autorefactor.refactoring.JavaProjectOptions;
+import org.autorefactor.util.NotImplementedException;
+import org.autorefactor.util.UnhandledException;
+import org.eclipse.jdt.core.ICompilationUnit;
+import org.eclipse.jdt.core.JavaModelException;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTParser;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+
+/**
+ * Streams the CFGs of many methods to a {@link Writer}, one method at a time.
+ * <p>
+ * Contrary to {@link CFGDotPrinter}, which builds one string holding a whole CFG with its nested clusters,
+ * this class writes each method's CFG as soon as it has been built, and does not retain it afterwards.
+ * It is therefore suited to exporting the CFGs of whole projects for offline analysis.
+ * </p>
+ * <p>
+ * Each method is written as a flat DOT digraph, or as one JSON object per line (JSON Lines).
+ * An optional summary writer receives one line per method with its number of blocks, edges
+ * and its cyclomatic complexity.
+ * </p>
+ * <p>
+ * Example command to output images from a DOT export:
+ *
+ * <pre>
+ * dot export.dot -Tpng -O
+ * </pre>
+ * </p>
+ * <p>
+ * This class is thread safe: each method's output is rendered separately, then written atomically.
+ * </p>
+ */
+public class CFGExporter {
+
+    /** The output formats supported by {@link CFGExporter}. */
+    public enum Format {
+        /** One flat DOT digraph per method. */
+        DOT,
+        /** One JSON object per line and per method. */
+        JSON_LINES
+    }
+
+    private final Writer out;
+    private final Format format;
+    private final Writer summary;
+    private final AtomicLong nbMethods = new AtomicLong();
+    private final AtomicLong nbUnsupportedMethods = new AtomicLong();
+    private final AtomicLong nbBlocks = new AtomicLong();
+    private final AtomicLong nbEdges = new AtomicLong();
+
+    /**
+     * Builds an instance of this class.
+     *
+     * @param out where to write the CFGs
+     * @param format the output format
+     * @param summary where to write the per method summary, can be null
+     */
+    public CFGExporter(Writer out, Format format, Writer summary) {
+        this.out = out;
+        this.format = format;
+        this.summary = summary;
+    }
+
+    /**
+     * Builds an instance of this class writing the CFGs in UTF-8 to the provided channel,
+     * for example a {@link java.nio.channels.FileChannel}.
+     *
+     * @param out where to write the CFGs
+     * @param format the output format
+     * @param summary where to write the per method summary, can be null
+     */
+    public CFGExporter(WritableByteChannel out, Format format, Writer summary) {
+        this(Channels.newWriter(out, "UTF-8"), format, summary);
+    }
+
+    /**
+     * Exports the CFGs of all the methods declared in the provided compilation units.
+     * <p>
+     * This includes the methods of enums, of member, local and anonymous classes,
+     * but not the initializers.
+     * </p>
+     * <p>
+     * The compilation units are processed concurrently. Each thread parses one compilation unit at a time,
+     * then builds, writes and discards the CFG of each of its methods in turn,
+     * so memory usage is bounded by the number of threads, not by the number of compilation units.
+     * </p>
+     *
+     * @param compilationUnits the compilation units to export
+     * @param options the Java project options used to compile the project
+     * @param nbThreads the maximum number of threads to use
+     * @throws IOException if writing fails
+     */
+    public void export(final List<ICompilationUnit> compilationUnits, final JavaProjectOptions options,
+            int nbThreads) throws IOException {
+        final int nbWorkers = Math.max(1, Math.min(nbThreads, compilationUnits.size()));
+        final AtomicInteger nextCompilationUnit = new AtomicInteger();
+        final ExecutorService executor = Executors.newFixedThreadPool(nbWorkers);
+        try {
+            final List<Future<Void>> futures = new ArrayList<Future<Void>>(nbWorkers);
+            for (int i = 0; i < nbWorkers; i++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws IOException {
+                        final ASTParser parser = ASTParser.newParser(AST.JLS4);
+                        int idx;
+                        while ((idx = nextCompilationUnit.getAndIncrement()) < compilationUnits.size()) {
+                            export(compilationUnits.get(idx), parser, options);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnhandledException(null, e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new UnhandledException(null, cause);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void export(ICompilationUnit compilationUnit, ASTParser parser, JavaProjectOptions options)
+            throws IOException {
+        parser.setSource(compilationUnit);
+        parser.setResolveBindings(true);
+        parser.setCompilerOptions(options.getCompilerOptions());
+        final CompilationUnit astRoot = (CompilationUnit) parser.createAST(null);
+        final String source;
+        try {
+            source = compilationUnit.getSource();
+        } catch (JavaModelException e) {
+            throw new UnhandledException(astRoot, e);
+        }
+
+        export(astRoot, source, options);
+    }
+
+    private void export(CompilationUnit astRoot, String source, JavaProjectOptions options) throws IOException {
+        final List<MethodDeclaration> methods = new ArrayList<MethodDeclaration>();
+        astRoot.accept(new ASTVisitor() {
+            @Override
+            public boolean visit(MethodDeclaration node) {
+                if (node.getBody() != null) {
+                    methods.add(node);
+                }
+                return true;
+            }
+        });
+
+        CFGBuilder builder = new CFGBuilder(source, options);
+        for (MethodDeclaration method : methods) {
+            final ControlFlowGraph cfg;
+            try {
+                cfg = builder.buildControlFlowGraph(method);
+            } catch (NotImplementedException e) {
+                nbUnsupportedMethods.incrementAndGet();
+                // the builder may be left in an inconsistent state
+                builder = new CFGBuilder(source, options);
+                continue;
+            }
+            export(cfg);
+        }
+    }
+
+    /**
+     * Writes the provided CFG, and its summary if a summary writer was provided.
+     *
+     * @param cfg the CFG to write
+     * @throws IOException if writing fails
+     */
+    public void export(ControlFlowGraph cfg) throws IOException {
+        final StringBuilder sb = new StringBuilder();
+        if (format == Format.DOT) {
+            appendDot(cfg, sb);
+        } else {
+            appendJson(cfg, sb);
+        }
+        synchronized (out) {
+            out.append(sb);
+        }
+        nbMethods.incrementAndGet();
+        nbBlocks.addAndGet(cfg.getNbBlocks());
+        nbEdges.addAndGet(cfg.getNbEdges());
+
+        if (summary != null) {
+            final String line = cfg.getFileName() + " " + getMethodName(cfg) + "(): "
+                    + cfg.getNbBlocks() + " blocks, " + cfg.getNbEdges() + " edges, cyclomatic complexity "
+                    + cfg.getCyclomaticComplexity() + "\n";
+            synchronized (summary) {
+                summary.write(line);
+            }
+        }
+    }
+
+    /**
+     * Writes the totals to the summary writer if any, then flushes all the writers.
+     *
+     * @throws IOException if writing fails
+     */
+    public void finish() throws IOException {
+        synchronized (out) {
+            out.flush();
+        }
+        if (summary != null) {
+            synchronized (summary) {
+                summary.write(getSummary());
+                summary.write("\n");
+                summary.flush();
+            }
+        }
+    }
+
+    /**
+     * Returns the totals of what has been exported so far.
+     *
+     * @return the totals of what has been exported so far
+     */
+    public String getSummary() {
+        return nbMethods.get() + " methods, " + nbBlocks.get() + " blocks, " + nbEdges.get() + " edges, "
+                + nbUnsupportedMethods.get() + " unsupported methods";
+    }
+
+    private void appendDot(ControlFlowGraph cfg, StringBuilder sb) {
+        sb.append("digraph \"").append(escape(getGraphLabel(cfg))).append("\" {\n");
+        for (int block = 0; block < cfg.getNbBlocks(); block++) {
+            sb.append("B").append(block);
+            if (cfg.isEntryBlock(block)) {
+                sb.append(" [label=\"Entry\",style=\"filled\",fillcolor=\"red\",fontcolor=\"white\"];\n");
+            } else if (cfg.isExitBlock(block)) {
+                sb.append(" [label=\"Exit\",style=\"filled\",fillcolor=\"black\",fontcolor=\"white\"];\n");
+            } else {
+                sb.append(" [label=\"").append(escape(getCodeExcerpt(cfg, block)))
+                    .append("\\n(").append(cfg.getBlockLine(block))
+                    .append(",").append(cfg.getBlockColumn(block)).append(")\"");
+                if (cfg.isDecision(block)) {
+                    sb.append(",shape=\"triangle\"");
+                }
+                sb.append("];\n");
+            }
+        }
+        for (int edge = 0; edge < cfg.getNbEdges(); edge++) {
+            sb.append("B").append(cfg.getEdgeSource(edge)).append(" -> B").append(cfg.getEdgeTarget(edge));
+            if (cfg.getEdgeCondition(edge) != null) {
+                sb.append(" [label=\"").append(cfg.getEdgeEvaluationResult(edge)).append("\"]");
+            }
+            sb.append(";\n");
+        }
+        sb.append("}\n");
+    }
+
+    private void appendJson(ControlFlowGraph cfg, StringBuilder sb) {
+        sb.append("{\"file\":");
+        appendJsonString(cfg.getFileName(), sb);
+        sb.append(",\"method\":");
+        appendJsonString(getMethodName(cfg), sb);
+        sb.append(",\"line\":").append(cfg.getBlockLine(cfg.getEntryBlock()));
+        sb.append(",\"nbBlocks\":").append(cfg.getNbBlocks());
+        sb.append(",\"nbEdges\":").append(cfg.getNbEdges());
+        sb.append(",\"cyclomaticComplexity\":").append(cfg.getCyclomaticComplexity());
+        sb.append(",\"blocks\":[");
+        for (int block = 0; block < cfg.getNbBlocks(); block++) {
+            if (block > 0) {
+                sb.append(",");
+            }
+            sb.append("{\"id\":").append(block)
+                .append(",\"line\":").append(cfg.getBlockLine(block))
+                .append(",\"column\":").append(cfg.getBlockColumn(block))
+                .append(",\"kind\":\"").append(getKind(cfg, block)).append("\"}");
+        }
+        sb.append("],\"edges\":[");
+        for (int edge = 0; edge < cfg.getNbEdges(); edge++) {
+            if (edge > 0) {
+                sb.append(",");
+            }
+            sb.append("[").append(cfg.getEdgeSource(edge)).append(",").append(cfg.getEdgeTarget(edge));
+            if (cfg.getEdgeCondition(edge) != null) {
+                sb.append(",").append(cfg.getEdgeEvaluationResult(edge));
+            }
+            sb.append("]");
+        }
+        sb.append("]}\n");
+    }
+
+    private String getKind(ControlFlowGraph cfg, int block) {
+        if (cfg.isEntryBlock(block)) {
+            return "entry";
+        } else if (cfg.isExitBlock(block)) {
+            return "exit";
+        } else if (cfg.isDecision(block)) {
+            return "decision";
+        }
+        return "block";
+    }
+
+    /**
+     * Does not use {@link ControlFlowGraph#getCodeExcerpt(int)} which retains the code excerpts.
+     */
+    private String getCodeExcerpt(ControlFlowGraph cfg, int block) {
+        final ASTNode node = cfg.getBlockNode(block);
+        return node != null ? ASTPrintHelper.blockCodeExcerpt(node) : "";
+    }
+
+    private String getGraphLabel(ControlFlowGraph cfg) {
+        return cfg.getFileName() + " " + getMethodName(cfg) + "()";
+    }
+
+    private String getMethodName(ControlFlowGraph cfg) {
+        final ASTNode node = cfg.getNode();
+        return node instanceof MethodDeclaration
+                ? ((MethodDeclaration) node).getName().getIdentifier() : String.valueOf(node);
+    }
+
+    private String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n").replace("\r", "");
+    }
+
+    private void appendJsonString(String s, StringBuilder sb) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            switch (c) {
+            case '"':
+                sb.append("\\\"");
+                break;
+            case '\\':
+                sb.append("\\\\");
+                break;
+            case '\n':
+                sb.append("\\n");
+                break;
+            case '\r':
+                sb.append("\\r");
+                break;
+            case '\t':
+                sb.append("\\t");
+                break;
+            default:
+                if (c < 0x20) {
+                    sb.append(String.format("\\u%04x", (int) c));
+                } else {
+                    sb.append(c);
+                }
+                break;
+            }
+        }
+        sb.append('"');
+    }
+}
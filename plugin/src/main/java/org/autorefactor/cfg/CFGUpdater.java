@@ -0,0 +1,482 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.Block;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.IBinding;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.Name;
+import org.eclipse.jdt.core.dom.NodeFinder;
+import org.eclipse.jdt.core.dom.Statement;
+
+import static org.autorefactor.refactoring.ASTHelper.*;
+import static org.autorefactor.refactoring.SourceLocation.*;
+import static org.eclipse.jdt.core.dom.ASTNode.*;
+
+/**
+ * Carries a CFG over to the new AST of its method, after its compilation unit has been edited and parsed again.
+ * <p>
+ * The edit is the range of the method source which changed, found by skipping the unchanged prefix and suffix.
+ * The blocks and edges of the previous CFG are kept when the edit is limited to straight-line statements
+ * (expression statements and variable declaration statements) which:
+ * </p>
+ * <ul>
+ * <li>are not inside a try statement, where they could throw to a catch clause,</li>
+ * <li>have been replaced one for one by statements of the same kind,</li>
+ * <li>end their basic block (by possibly throwing an exception) exactly when the statements they replace did.</li>
+ * </ul>
+ * <p>
+ * In this case only the variable accesses of the edited statements are rebuilt, the other AST nodes referenced by
+ * the CFG being relocated to the new AST. Otherwise the update gives up and the CFG must be built from scratch.
+ * </p>
+ */
+final class CFGUpdater {
+
+    private static final int UNDEFINED = -1;
+
+    private final CFGBuilder builder;
+    private final ControlFlowGraph previous;
+    private final MethodDeclaration node;
+    private final SourceEdit edit;
+    /** The edited statements in the previous AST. */
+    private final List<Statement> previousStmts = new ArrayList<Statement>();
+    /** The statements of the new AST replacing the edited statements, at the same indices. */
+    private final List<Statement> newStmts = new ArrayList<Statement>();
+    /** The statement list containing the edited statements, in the previous AST. */
+    private List<Statement> previousStmtList;
+
+    /**
+     * Builds an instance of this class.
+     *
+     * @param builder the CFG builder working on the new source
+     * @param previous the CFG built for the previous AST
+     * @param previousSource the source of the previous AST
+     * @param newSource the source of the new AST
+     * @param node the method declaration in the new AST
+     */
+    CFGUpdater(CFGBuilder builder, ControlFlowGraph previous, String previousSource, String newSource,
+            MethodDeclaration node) {
+        this.builder = builder;
+        this.previous = previous;
+        this.node = node;
+        final ASTNode previousNode = previous.getNode();
+        this.edit = SourceEdit.between(previousSource, previousNode.getStartPosition(), getEndPosition(previousNode),
+                newSource, node.getStartPosition(), getEndPosition(node));
+    }
+
+    /**
+     * Updates the CFG for the new AST.
+     *
+     * @return the updated CFG, or null if the CFG must be built from scratch
+     */
+    ControlFlowGraph update() {
+        if (!edit.isEmpty() && !findEditedStatements()) {
+            return null;
+        }
+        final int nbBlocks = previous.getNbBlocks();
+        final ASTNode[] blockNodes = new ASTNode[nbBlocks];
+        final int[] blockPositions = new int[nbBlocks];
+        final int[] blockLines = new int[nbBlocks];
+        final int[] blockColumns = new int[nbBlocks];
+        for (int b = 0; b < nbBlocks; b++) {
+            if (previous.isEntryBlock(b) || previous.isExitBlock(b)) {
+                blockNodes[b] = node;
+            } else {
+                blockNodes[b] = relocateBlockNode(previous.getBlockNode(b));
+                if (blockNodes[b] == null) {
+                    return null;
+                }
+            }
+            if (previous.isEntryBlock(b)) {
+                blockPositions[b] = previous.getBlockStartPosition(b);
+                blockLines[b] = previous.getBlockLine(b);
+                blockColumns[b] = previous.getBlockColumn(b);
+            } else {
+                final int position = previous.isExitBlock(b)
+                        ? getEndPosition(node) : blockNodes[b].getStartPosition();
+                final LineAndColumn lineCol = builder.getLineAndColumn(position);
+                blockPositions[b] = position;
+                blockLines[b] = lineCol.getLine();
+                blockColumns[b] = lineCol.getColumn();
+            }
+        }
+
+        Expression[] edgeConditions = null;
+        for (int e = 0; e < previous.getNbEdges(); e++) {
+            final Expression condition = previous.getEdgeCondition(e);
+            if (condition != null) {
+                if (edgeConditions == null) {
+                    edgeConditions = new Expression[previous.getNbEdges()];
+                }
+                edgeConditions[e] = (Expression) relocate(condition);
+                if (edgeConditions[e] == null) {
+                    return null;
+                }
+            }
+        }
+
+        return updateVariableAccesses(blockNodes, blockPositions, blockLines, blockColumns, edgeConditions);
+    }
+
+    private ASTNode relocateBlockNode(ASTNode blockNode) {
+        final int idx = indexOfIdentical(previousStmts, blockNode);
+        return idx != UNDEFINED ? newStmts.get(idx) : relocate(blockNode);
+    }
+
+    private static int indexOfIdentical(List<?> list, Object obj) {
+        for (int i = 0; i < list.size(); i++) {
+            if (list.get(i) == obj) {
+                return i;
+            }
+        }
+        return UNDEFINED;
+    }
+
+    /**
+     * Finds the node of the new AST with the same type as the provided node of the previous AST,
+     * and located at the relocated position.
+     *
+     * @return the relocated node, or null if the provided node is located in the edited range
+     */
+    private ASTNode relocate(ASTNode previousNode) {
+        if (previousNode == null) {
+            return null;
+        }
+        final int start = edit.relocateStart(previousNode.getStartPosition());
+        final int end = edit.relocateEnd(getEndPosition(previousNode));
+        if (start == UNDEFINED || end == UNDEFINED || end < start) {
+            return null;
+        }
+        // the covering node is the innermost node with exactly this range, if any
+        ASTNode result = new NodeFinder(node, start, end - start).getCoveringNode();
+        while (result != null && result.getStartPosition() == start && getEndPosition(result) == end) {
+            if (result.getNodeType() == previousNode.getNodeType()) {
+                return result;
+            }
+            result = result.getParent();
+        }
+        return null;
+    }
+
+    /**
+     * Finds the edited statements and checks they can be rebuilt without changing the blocks or edges.
+     *
+     * @return true if the edited statements can be rebuilt in place, false otherwise
+     */
+    private boolean findEditedStatements() {
+        final MethodDeclaration previousNode = (MethodDeclaration) previous.getNode();
+        if (!previousNode.getName().getIdentifier().equals(node.getName().getIdentifier())) {
+            return false;
+        }
+        final Block previousBlock = findEditedBlock(previousNode);
+        if (previousBlock == null) {
+            return false;
+        }
+        final Block newBlock = (Block) relocate(previousBlock);
+        if (newBlock == null) {
+            return false;
+        }
+        previousStmtList = statements(previousBlock);
+        collectTouchedStatements(previousStmtList, edit.getPreviousStart(), edit.getPreviousEnd(), previousStmts);
+        collectTouchedStatements(statements(newBlock), edit.getNewStart(), edit.getNewEnd(), newStmts);
+        if (previousStmts.size() != newStmts.size()) {
+            return false;
+        }
+        for (int i = 0; i < previousStmts.size(); i++) {
+            final int nodeType = previousStmts.get(i).getNodeType();
+            if (!isStraightLine(previousStmts.get(i)) || nodeType != newStmts.get(i).getNodeType()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the innermost block whose braces strictly contain the edited range,
+     * or null if there is none or if it is inside a try statement or a nested type.
+     */
+    private Block findEditedBlock(MethodDeclaration previousNode) {
+        final ASTNode covering = new NodeFinder(previousNode, edit.getPreviousStart(),
+                edit.getPreviousEnd() - edit.getPreviousStart()).getCoveringNode();
+        Block result = null;
+        for (ASTNode n = covering; n != null && n != previousNode; n = n.getParent()) {
+            switch (n.getNodeType()) {
+            case BLOCK:
+                if (result == null
+                        && n.getStartPosition() < edit.getPreviousStart()
+                        && edit.getPreviousEnd() < getEndPosition(n)) {
+                    result = (Block) n;
+                }
+                break;
+            case TRY_STATEMENT:
+            case ANONYMOUS_CLASS_DECLARATION:
+            case TYPE_DECLARATION_STATEMENT:
+                return null;
+            default:
+                break;
+            }
+        }
+        return result;
+    }
+
+    private static void collectTouchedStatements(List<Statement> stmts, int start, int end,
+            List<Statement> results) {
+        for (Statement stmt : stmts) {
+            if (stmt.getStartPosition() <= end && start <= getEndPosition(stmt)) {
+                results.add(stmt);
+            }
+        }
+    }
+
+    private static boolean isStraightLine(Statement stmt) {
+        return stmt.getNodeType() == EXPRESSION_STATEMENT || stmt.getNodeType() == VARIABLE_DECLARATION_STATEMENT;
+    }
+
+    private ControlFlowGraph updateVariableAccesses(ASTNode[] blockNodes, int[] blockPositions,
+            int[] blockLines, int[] blockColumns, Expression[] edgeConditions) {
+        final Map<ASTNode, Integer> blockIds = new IdentityHashMap<ASTNode, Integer>();
+        for (int b = previous.getNbBlocks() - 1; b >= 0; b--) {
+            blockIds.put(previous.getBlockNode(b), b);
+        }
+
+        // the variable accesses replacing the ones of the edited statements,
+        // each replacement being described by the range of previous accesses it replaces
+        final int nbReplacements = previousStmts.size();
+        final int[] replacedBlocks = new int[nbReplacements];
+        final int[] replacedBegins = new int[nbReplacements];
+        final int[] replacedEnds = new int[nbReplacements];
+        final List<List<VariableAccess>> replacements = new ArrayList<List<VariableAccess>>(nbReplacements);
+        for (int i = 0; i < nbReplacements; i++) {
+            final Statement previousStmt = previousStmts.get(i);
+            final List<VariableAccess> previousAccesses = new ArrayList<VariableAccess>();
+            final ThrowerBlocks previousThrowers = new ThrowerBlocks();
+            final boolean previousMightThrow =
+                    collectVariableAccesses(previousStmt, previousThrowers, previousAccesses);
+            final List<VariableAccess> newAccesses = new ArrayList<VariableAccess>();
+            final ThrowerBlocks newThrowers = new ThrowerBlocks();
+            final boolean newMightThrow = collectVariableAccesses(newStmts.get(i), newThrowers, newAccesses);
+            if (previousMightThrow != newMightThrow
+                    || previousThrowers.getExplicitThrowingBlocks().isEmpty()
+                        != newThrowers.getExplicitThrowingBlocks().isEmpty()) {
+                // the statement now ends its block, or now throws to the exit block
+                return null;
+            }
+
+            final int block = findAccessesBlock(previousStmt, previousMightThrow, blockIds);
+            if (block == UNDEFINED) {
+                return null;
+            }
+            // the accesses of a block are ordered like its statements
+            int begin = previous.getVariableAccessesBegin(block);
+            final int blockEnd = previous.getVariableAccessesEnd(block);
+            while (begin < blockEnd && getAccessPosition(begin) < previousStmt.getStartPosition()) {
+                begin++;
+            }
+            int end = begin;
+            while (end < blockEnd && getAccessPosition(end) < getEndPosition(previousStmt)) {
+                end++;
+            }
+            if (end - begin != previousAccesses.size()
+                    || (i > 0 && (block < replacedBlocks[i - 1] || begin < replacedEnds[i - 1]))) {
+                // the accesses of this statement are not where they were expected
+                return null;
+            }
+            replacedBlocks[i] = block;
+            replacedBegins[i] = begin;
+            replacedEnds[i] = end;
+            replacements.add(newAccesses);
+        }
+
+        return spliceVariableAccesses(replacedBlocks, replacedBegins, replacedEnds, replacements,
+                blockNodes, blockPositions, blockLines, blockColumns, edgeConditions);
+    }
+
+    private int getAccessPosition(int access) {
+        return previous.getAccessNode(access).getStartPosition();
+    }
+
+    private boolean collectVariableAccesses(Statement stmt, ThrowerBlocks throwers, List<VariableAccess> results) {
+        final CFGBasicBlock scratchBlock = new CFGBasicBlock(stmt, previous.getFileName(), null, false,
+                new LineAndColumn(stmt.getStartPosition(), 0, 0));
+        final boolean mightThrow = builder.addStatementVariableAccesses(scratchBlock, stmt, throwers);
+        for (Object obj : scratchBlock.getOutgoingEdgesAndVariableAccesses()) {
+            results.add((VariableAccess) obj);
+        }
+        return mightThrow;
+    }
+
+    /**
+     * Returns the block holding the variable accesses of the provided statement in the previous CFG,
+     * following the way {@link CFGBuilder} builds blocks for straight-line statements.
+     */
+    private int findAccessesBlock(Statement stmt, boolean mightThrow, Map<ASTNode, Integer> blockIds) {
+        final int idx = indexOfIdentical(previousStmtList, stmt);
+        final Integer ownBlock = blockIds.get(stmt);
+        if (ownBlock != null) {
+            if (!mightThrow || stmt.getNodeType() != EXPRESSION_STATEMENT) {
+                return ownBlock;
+            }
+            // an expression statement which might throw starts a new block after its accesses,
+            // unless it already started a new block
+            if (idx == 0) {
+                return stmt.getParent().getParent() == previous.getNode() ? ownBlock : UNDEFINED;
+            } else if (!isStraightLine(previousStmtList.get(idx - 1))) {
+                return UNDEFINED;
+            }
+        }
+        // the accesses were added to the block of the preceding statements
+        for (int i = idx - 1; i >= 0; i--) {
+            final Statement precedingStmt = previousStmtList.get(i);
+            if (!isStraightLine(precedingStmt)) {
+                return UNDEFINED;
+            }
+            final Integer block = blockIds.get(precedingStmt);
+            if (block != null) {
+                return block;
+            }
+        }
+        return UNDEFINED;
+    }
+
+    private ControlFlowGraph spliceVariableAccesses(int[] replacedBlocks, int[] replacedBegins, int[] replacedEnds,
+            List<List<VariableAccess>> replacements, ASTNode[] blockNodes, int[] blockPositions,
+            int[] blockLines, int[] blockColumns, Expression[] edgeConditions) {
+        final List<Name> variableNames = new ArrayList<Name>();
+        final Map<String, Integer> variableIds = new HashMap<String, Integer>();
+        for (int v = 0; v < previous.getNbVariables(); v++) {
+            final Name previousName = previous.getVariableName(v);
+            final Name name = (Name) relocate(previousName);
+            variableNames.add(name);
+            if (previousName != null) {
+                // the variable may only be named in the edited statements now
+                variableIds.put(getVariableKey(name != null ? name : previousName), v);
+            }
+        }
+
+        int nbAccesses = previous.getNbVariableAccesses();
+        for (int i = 0; i < replacements.size(); i++) {
+            nbAccesses += replacements.get(i).size() - (replacedEnds[i] - replacedBegins[i]);
+        }
+        final int nbBlocks = previous.getNbBlocks();
+        final int[] accessesOffsets = new int[nbBlocks + 1];
+        final ASTNode[] accessNodes = new ASTNode[nbAccesses];
+        final int[] accessVariables = new int[nbAccesses];
+        final int[] accessTypes = new int[nbAccesses];
+        int access = 0;
+        int replacement = 0;
+        for (int b = 0; b < nbBlocks; b++) {
+            accessesOffsets[b] = access;
+            final int blockEnd = previous.getVariableAccessesEnd(b);
+            int a = previous.getVariableAccessesBegin(b);
+            while (true) {
+                if (replacement < replacedBlocks.length
+                        && replacedBlocks[replacement] == b && replacedBegins[replacement] == a) {
+                    for (VariableAccess varAccess : replacements.get(replacement)) {
+                        final Name name = ControlFlowGraph.getName(varAccess);
+                        accessNodes[access] = varAccess.getAstNode();
+                        accessVariables[access] = getVariableId(name, variableIds, variableNames);
+                        accessTypes[access] = varAccess.getAccessType();
+                        access++;
+                    }
+                    a = replacedEnds[replacement];
+                    replacement++;
+                    continue;
+                }
+                if (a >= blockEnd) {
+                    break;
+                }
+                accessNodes[access] = relocate(previous.getAccessNode(a));
+                if (accessNodes[access] == null) {
+                    return null;
+                }
+                accessVariables[access] = previous.getAccessedVariable(a);
+                accessTypes[access] = previous.getAccessType(a);
+                access++;
+                a++;
+            }
+        }
+        accessesOffsets[nbBlocks] = access;
+        if (replacement != replacedBlocks.length || access != nbAccesses) {
+            return null;
+        }
+        return new ControlFlowGraph(previous, node, blockNodes, blockPositions, blockLines, blockColumns,
+                edgeConditions, accessesOffsets, accessNodes, accessVariables, accessTypes,
+                removeUnaccessedVariables(accessVariables, variableNames));
+    }
+
+    /**
+     * Removes the variables which were only accessed by the edited statements, renumbering the other ones.
+     */
+    private static Name[] removeUnaccessedVariables(int[] accessVariables, List<Name> variableNames) {
+        final int[] newIds = new int[variableNames.size()];
+        Arrays.fill(newIds, UNDEFINED);
+        for (int variable : accessVariables) {
+            newIds[variable] = 0;
+        }
+        final List<Name> results = new ArrayList<Name>(variableNames.size());
+        for (int v = 0; v < newIds.length; v++) {
+            if (newIds[v] != UNDEFINED) {
+                newIds[v] = results.size();
+                results.add(variableNames.get(v));
+            }
+        }
+        for (int a = 0; a < accessVariables.length; a++) {
+            accessVariables[a] = newIds[accessVariables[a]];
+        }
+        return results.toArray(new Name[results.size()]);
+    }
+
+    private int getVariableId(Name name, Map<String, Integer> variableIds, List<Name> variableNames) {
+        if (name != null) {
+            final String key = getVariableKey(name);
+            final Integer variable = variableIds.get(key);
+            if (variable != null) {
+                if (variableNames.get(variable) == null) {
+                    variableNames.set(variable, name);
+                }
+                return variable;
+            }
+            variableIds.put(key, variableNames.size());
+        }
+        variableNames.add(name);
+        return variableNames.size() - 1;
+    }
+
+    /** Same as the variable keys used by {@link ControlFlowGraph}, but stable across ASTs. */
+    private static String getVariableKey(Name name) {
+        final IBinding binding = name.resolveBinding();
+        return binding != null ? "binding:" + binding.getKey() : "name:" + name.getFullyQualifiedName();
+    }
+}
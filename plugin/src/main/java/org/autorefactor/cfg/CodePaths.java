@@ -0,0 +1,381 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Statistics about the code paths going from the entry block to the exit block of a {@link ControlFlowGraph}.
+ * <p>
+ * Enumerating code paths is exponential: a method with 30 sequential if statements has 2<sup>30</sup> of them.
+ * So this class answers questions about code paths with dynamic programming over the acyclic condensation of the
+ * CFG, where each strongly connected component (i.e. each loop) is collapsed into a single node.
+ * Computing all the statistics is linear in the size of the CFG.
+ * </p>
+ * <p>
+ * Code which really needs explicit code paths can use {@link #iterator()} which lazily enumerates them.
+ * </p>
+ */
+public final class CodePaths implements Iterable<int[]> {
+
+    private static final int UNDEFINED = -1;
+
+    private final ControlFlowGraph cfg;
+    /** Strongly connected component of each block, {@link #UNDEFINED} if unreachable from the entry block. */
+    private final int[] components;
+    private final int[] componentSizes;
+    private final int nbComponents;
+    /** Number of paths from each component to the exit block, saturated at {@link Long#MAX_VALUE}. */
+    private final long[] nbPathsToExit;
+    /** Number of blocks on the longest path from each component to the exit block. */
+    private final int[] longestPathsToExit;
+    private final int shortestPathLength;
+
+    /**
+     * Computes the code path statistics of the provided CFG.
+     *
+     * @param cfg the control flow graph
+     */
+    public CodePaths(ControlFlowGraph cfg) {
+        this.cfg = cfg;
+        final int nbBlocks = cfg.getNbBlocks();
+        this.components = new int[nbBlocks];
+        Arrays.fill(components, UNDEFINED);
+        this.nbComponents = computeStronglyConnectedComponents();
+        this.componentSizes = new int[nbComponents];
+        for (int block = 0; block < nbBlocks; block++) {
+            if (components[block] != UNDEFINED) {
+                componentSizes[components[block]]++;
+            }
+        }
+        this.nbPathsToExit = new long[nbComponents];
+        this.longestPathsToExit = new int[nbComponents];
+        computePathsToExit();
+        this.shortestPathLength = computeShortestPathLength();
+    }
+
+    /**
+     * Iterative version of Tarjan's algorithm, starting from the entry block.
+     * Components are numbered in the order they are completed, which is a reverse topological order:
+     * all the successors of a component have a lower number.
+     */
+    private int computeStronglyConnectedComponents() {
+        final int nbBlocks = cfg.getNbBlocks();
+        final int[] indexes = new int[nbBlocks];
+        final int[] lowLinks = new int[nbBlocks];
+        final boolean[] onStack = new boolean[nbBlocks];
+        final int[] sccStack = new int[nbBlocks];
+        final int[] dfsBlocks = new int[nbBlocks];
+        final int[] dfsEdges = new int[nbBlocks];
+        Arrays.fill(indexes, UNDEFINED);
+        int sccStackSize = 0;
+        int dfsSize = 0;
+        int index = 0;
+        int nbComps = 0;
+
+        final int entry = cfg.getEntryBlock();
+        indexes[entry] = lowLinks[entry] = index++;
+        sccStack[sccStackSize++] = entry;
+        onStack[entry] = true;
+        dfsBlocks[dfsSize] = entry;
+        dfsEdges[dfsSize++] = cfg.getSuccessorsBegin(entry);
+        while (dfsSize > 0) {
+            final int block = dfsBlocks[dfsSize - 1];
+            final int edge = dfsEdges[dfsSize - 1];
+            if (edge < cfg.getSuccessorsEnd(block)) {
+                dfsEdges[dfsSize - 1]++;
+                final int succ = cfg.getEdgeTarget(edge);
+                if (indexes[succ] == UNDEFINED) {
+                    indexes[succ] = lowLinks[succ] = index++;
+                    sccStack[sccStackSize++] = succ;
+                    onStack[succ] = true;
+                    dfsBlocks[dfsSize] = succ;
+                    dfsEdges[dfsSize++] = cfg.getSuccessorsBegin(succ);
+                } else if (onStack[succ]) {
+                    lowLinks[block] = Math.min(lowLinks[block], indexes[succ]);
+                }
+                continue;
+            }
+
+            dfsSize--;
+            if (lowLinks[block] == indexes[block]) {
+                int member;
+                do {
+                    member = sccStack[--sccStackSize];
+                    onStack[member] = false;
+                    components[member] = nbComps;
+                } while (member != block);
+                nbComps++;
+            }
+            if (dfsSize > 0) {
+                final int parent = dfsBlocks[dfsSize - 1];
+                lowLinks[parent] = Math.min(lowLinks[parent], lowLinks[block]);
+            }
+        }
+        return nbComps;
+    }
+
+    private void computePathsToExit() {
+        Arrays.fill(longestPathsToExit, UNDEFINED);
+        final int exit = cfg.getExitBlock();
+        // group the blocks by component, components being already in reverse topological order
+        final int[] componentsOffsets = new int[nbComponents + 1];
+        for (int c = 0; c < nbComponents; c++) {
+            componentsOffsets[c + 1] = componentsOffsets[c] + componentSizes[c];
+        }
+        final int[] blocksByComponent = new int[componentsOffsets[nbComponents]];
+        final int[] fill = Arrays.copyOf(componentsOffsets, nbComponents);
+        for (int block = 0; block < cfg.getNbBlocks(); block++) {
+            if (components[block] != UNDEFINED) {
+                blocksByComponent[fill[components[block]]++] = block;
+            }
+        }
+
+        for (int c = 0; c < nbComponents; c++) {
+            long nbPaths = 0;
+            int longest = UNDEFINED;
+            for (int i = componentsOffsets[c]; i < componentsOffsets[c + 1]; i++) {
+                final int block = blocksByComponent[i];
+                if (block == exit) {
+                    nbPaths = 1;
+                    longest = 0;
+                }
+                for (int e = cfg.getSuccessorsBegin(block); e < cfg.getSuccessorsEnd(block); e++) {
+                    final int succComponent = components[cfg.getEdgeTarget(e)];
+                    if (succComponent != c && longestPathsToExit[succComponent] != UNDEFINED) {
+                        nbPaths = saturatedAdd(nbPaths, nbPathsToExit[succComponent]);
+                        longest = Math.max(longest, longestPathsToExit[succComponent]);
+                    }
+                }
+            }
+            nbPathsToExit[c] = nbPaths;
+            longestPathsToExit[c] = longest != UNDEFINED ? longest + componentSizes[c] : UNDEFINED;
+        }
+    }
+
+    private static long saturatedAdd(long a, long b) {
+        final long result = a + b;
+        return result < 0 ? Long.MAX_VALUE : result;
+    }
+
+    /** Breadth first search on the CFG itself, since the shortest path never goes around a loop. */
+    private int computeShortestPathLength() {
+        final int exit = cfg.getExitBlock();
+        if (exit == UNDEFINED || components[exit] == UNDEFINED) {
+            return UNDEFINED;
+        }
+        final int[] distances = new int[cfg.getNbBlocks()];
+        Arrays.fill(distances, UNDEFINED);
+        final int[] queue = new int[cfg.getNbBlocks()];
+        int head = 0;
+        int tail = 0;
+        final int entry = cfg.getEntryBlock();
+        distances[entry] = 1;
+        queue[tail++] = entry;
+        while (head < tail) {
+            final int block = queue[head++];
+            if (block == exit) {
+                return distances[block];
+            }
+            for (int e = cfg.getSuccessorsBegin(block); e < cfg.getSuccessorsEnd(block); e++) {
+                final int succ = cfg.getEdgeTarget(e);
+                if (distances[succ] == UNDEFINED) {
+                    distances[succ] = distances[block] + 1;
+                    queue[tail++] = succ;
+                }
+            }
+        }
+        return UNDEFINED;
+    }
+
+    /**
+     * Returns the control flow graph.
+     *
+     * @return the control flow graph
+     */
+    public ControlFlowGraph getControlFlowGraph() {
+        return cfg;
+    }
+
+    /**
+     * Returns the number of code paths from the entry block to the exit block, saturated at the provided bound.
+     * <p>
+     * Each loop counts as a single step: its blocks are collapsed into one node of the acyclic condensation,
+     * so going around a loop does not create new code paths, but each distinct edge leaving a loop does.
+     * </p>
+     *
+     * @param bound the maximum number of code paths to return
+     * @return the number of code paths, or the provided bound if there are more code paths
+     */
+    public long getNbPaths(long bound) {
+        final int entryComponent = components[cfg.getEntryBlock()];
+        return Math.min(nbPathsToExit[entryComponent], bound);
+    }
+
+    /**
+     * Returns whether the provided block is reachable from the entry block.
+     *
+     * @param block the block id
+     * @return true if the provided block is reachable from the entry block, false otherwise
+     */
+    public boolean isReachable(int block) {
+        return components[block] != UNDEFINED;
+    }
+
+    /**
+     * Returns whether the provided block can reach the exit block, after being reached from the entry block.
+     *
+     * @param block the block id
+     * @return true if the provided block lies on at least one code path, false otherwise
+     */
+    public boolean isOnSomePath(int block) {
+        return isReachable(block) && longestPathsToExit[components[block]] != UNDEFINED;
+    }
+
+    /**
+     * Returns whether all the code paths from the entry block to the exit block go through the provided block.
+     * This is answered with the dominator tree cached by the CFG.
+     *
+     * @param block the block id
+     * @return true if all the code paths go through the provided block, false otherwise.
+     *         Also false when there is no code path at all.
+     */
+    public boolean isOnAllPaths(int block) {
+        final int exit = cfg.getExitBlock();
+        return isOnSomePath(block) && cfg.getDominatorTree().dominates(block, exit);
+    }
+
+    /**
+     * Returns the number of blocks on the shortest code path, entry and exit blocks included.
+     *
+     * @return the number of blocks on the shortest code path, or -1 if the exit block is not reachable
+     */
+    public int getShortestPathLength() {
+        return shortestPathLength;
+    }
+
+    /**
+     * Returns an upper bound of the number of distinct blocks on the longest code path,
+     * entry and exit blocks included.
+     * <p>
+     * All the blocks of a loop are counted once, as if a code path went through all of them.
+     * </p>
+     *
+     * @return an upper bound of the number of distinct blocks on the longest code path,
+     *         or -1 if the exit block is not reachable
+     */
+    public int getLongestPathLength() {
+        return longestPathsToExit[components[cfg.getEntryBlock()]];
+    }
+
+    /**
+     * Returns an iterator lazily enumerating the code paths going from the entry block to the exit block.
+     * Each code path is an array of block ids, from the entry block to the exit block included.
+     * Code paths never go through the same block twice, so loops are only entered once.
+     * <p>
+     * The number of code paths can be exponential in the size of the CFG: use {@link #getNbPaths(long)} first.
+     * </p>
+     *
+     * @return an iterator lazily enumerating the code paths
+     */
+    @Override
+    public Iterator<int[]> iterator() {
+        return new PathIterator();
+    }
+
+    /** Depth first search with an explicit stack, suspended each time the exit block is reached. */
+    private final class PathIterator implements Iterator<int[]> {
+
+        private final int[] pathBlocks = new int[cfg.getNbBlocks()];
+        private final int[] pathEdges = new int[cfg.getNbBlocks()];
+        private final boolean[] onPath = new boolean[cfg.getNbBlocks()];
+        private int pathSize;
+        private int[] next;
+
+        private PathIterator() {
+            final int entry = cfg.getEntryBlock();
+            if (isOnSomePath(entry)) {
+                push(entry);
+                next = advance();
+            }
+        }
+
+        private void push(int block) {
+            pathBlocks[pathSize] = block;
+            pathEdges[pathSize++] = cfg.getSuccessorsBegin(block);
+            onPath[block] = true;
+        }
+
+        private int[] advance() {
+            final int exit = cfg.getExitBlock();
+            while (pathSize > 0) {
+                final int block = pathBlocks[pathSize - 1];
+                if (block == exit) {
+                    final int[] result = Arrays.copyOf(pathBlocks, pathSize);
+                    pop();
+                    return result;
+                }
+                final int edge = pathEdges[pathSize - 1];
+                if (edge < cfg.getSuccessorsEnd(block)) {
+                    pathEdges[pathSize - 1]++;
+                    final int succ = cfg.getEdgeTarget(edge);
+                    if (!onPath[succ] && isOnSomePath(succ)) {
+                        push(succ);
+                    }
+                } else {
+                    pop();
+                }
+            }
+            return null;
+        }
+
+        private void pop() {
+            onPath[pathBlocks[--pathSize]] = false;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public int[] next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            final int[] result = next;
+            next = advance();
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,961 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.FieldAccess;
+import org.eclipse.jdt.core.dom.FieldDeclaration;
+import org.eclipse.jdt.core.dom.IBinding;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.Name;
+import org.eclipse.jdt.core.dom.SingleVariableDeclaration;
+import org.eclipse.jdt.core.dom.Type;
+import org.eclipse.jdt.core.dom.VariableDeclaration;
+import org.eclipse.jdt.core.dom.VariableDeclarationExpression;
+import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
+
+/**
+ * Compact, array based, representation of the Control Flow Graph of a method.
+ * <p>
+ * Basic blocks are identified by dense integer ids. Blocks reachable from the entry block are numbered in
+ * reverse post-order, the entry block being block 0. Unreachable blocks come next, in source order.
+ * </p>
+ * <p>
+ * Edges are stored in compressed sparse row form: the outgoing edges of block {@code b} are the edge ids in
+ * {@code [getSuccessorsBegin(b), getSuccessorsEnd(b))} and the incoming edges of block {@code b} are the
+ * edge ids returned by {@link #getPredecessorEdge(int)} for the indices in
+ * {@code [getPredecessorsBegin(b), getPredecessorsEnd(b))}.
+ * Variable accesses are stored in a separate packed table indexed the same way,
+ * and each accessed variable is identified by a dense integer id.
+ * </p>
+ * <p>
+ * Code excerpts are only computed when requested.
+ * Use {@link #toBasicBlocks()} to get the linked {@link CFGBasicBlock} representation back,
+ * for example to print it with {@link CFGDotPrinter}.
+ * </p>
+ */
+public final class ControlFlowGraph {
+
+    private static final byte DECISION = 1 << 0;
+    private static final byte ENTRY = 1 << 1;
+    private static final byte EXIT = 1 << 2;
+
+    /** Assumes a 64-bit JVM with compressed references. */
+    private static final int OBJECT_HEADER_SIZE = 12;
+    private static final int ARRAY_HEADER_SIZE = 16;
+    private static final int REFERENCE_SIZE = 4;
+    private static final int DEFAULT_ARRAY_LIST_CAPACITY = 10;
+
+    private final ASTNode node;
+    private final String fileName;
+    private final int exitBlock;
+
+    private final ASTNode[] blockNodes;
+    private final int[] blockPositions;
+    private final int[] blockLines;
+    private final int[] blockColumns;
+    private final byte[] blockFlags;
+    /** Lazily allocated and filled. */
+    private String[] codeExcerpts;
+
+    private final int[] successorsOffsets;
+    private final int[] edgeSources;
+    private final int[] edgeTargets;
+    /** Null when no edge has a condition. */
+    private final Expression[] edgeConditions;
+    private final BitSet edgeEvaluationResults;
+    private final int[] predecessorsOffsets;
+    private final int[] predecessorEdges;
+
+    private final int[] accessesOffsets;
+    private final ASTNode[] accessNodes;
+    private final int[] accessVariables;
+    private final int[] accessTypes;
+    private final Name[] variableNames;
+
+    /** Estimated memory used by the linked representation this CFG was compacted from. */
+    private final long linkedMemoryUsage;
+
+    /** Lazily computed. */
+    private DominatorTree dominatorTree;
+    /** Lazily computed. */
+    private DominatorTree postDominatorTree;
+    /** Lazily computed. */
+    private LoopNestingForest loopNestingForest;
+
+    private ControlFlowGraph(List<CFGBasicBlock> blocks, int exitBlock) {
+        final Map<CFGBasicBlock, Integer> blockIds = new IdentityHashMap<CFGBasicBlock, Integer>();
+        for (CFGBasicBlock block : blocks) {
+            blockIds.put(block, blockIds.size());
+        }
+
+        final int nbBlocks = blocks.size();
+        int nbEdges = 0;
+        int nbAccesses = 0;
+        boolean hasConditions = false;
+        for (CFGBasicBlock block : blocks) {
+            for (Object obj : block.getOutgoingEdgesAndVariableAccesses()) {
+                if (obj instanceof CFGEdge) {
+                    nbEdges++;
+                    hasConditions |= ((CFGEdge) obj).getCondition() != null;
+                } else {
+                    nbAccesses++;
+                }
+            }
+        }
+
+        this.node = blocks.get(0).getNode();
+        this.fileName = blocks.get(0).getFileName();
+        this.exitBlock = exitBlock;
+        this.blockNodes = new ASTNode[nbBlocks];
+        this.blockPositions = new int[nbBlocks];
+        this.blockLines = new int[nbBlocks];
+        this.blockColumns = new int[nbBlocks];
+        this.blockFlags = new byte[nbBlocks];
+        this.successorsOffsets = new int[nbBlocks + 1];
+        this.edgeSources = new int[nbEdges];
+        this.edgeTargets = new int[nbEdges];
+        this.edgeConditions = hasConditions ? new Expression[nbEdges] : null;
+        this.edgeEvaluationResults = new BitSet(nbEdges);
+        this.accessesOffsets = new int[nbBlocks + 1];
+        this.accessNodes = new ASTNode[nbAccesses];
+        this.accessVariables = new int[nbAccesses];
+        this.accessTypes = new int[nbAccesses];
+
+        final Map<Object, Integer> variableIds = new HashMap<Object, Integer>();
+        final List<Name> names = new ArrayList<Name>();
+        int edge = 0;
+        int access = 0;
+        for (int blockId = 0; blockId < nbBlocks; blockId++) {
+            final CFGBasicBlock block = blocks.get(blockId);
+            final LineAndColumn lal = block.getLineAndColumn();
+            blockNodes[blockId] = block.getNode();
+            blockPositions[blockId] = lal.getStartPosition();
+            blockLines[blockId] = lal.getLine();
+            blockColumns[blockId] = lal.getColumn();
+            blockFlags[blockId] = toFlags(block);
+            successorsOffsets[blockId] = edge;
+            accessesOffsets[blockId] = access;
+            for (Object obj : block.getOutgoingEdgesAndVariableAccesses()) {
+                if (obj instanceof CFGEdge) {
+                    final CFGEdge cfgEdge = (CFGEdge) obj;
+                    edgeSources[edge] = blockId;
+                    edgeTargets[edge] = blockIds.get(cfgEdge.getTargetBlock());
+                    if (edgeConditions != null) {
+                        edgeConditions[edge] = cfgEdge.getCondition();
+                    }
+                    edgeEvaluationResults.set(edge, cfgEdge.getEvaluationResult());
+                    edge++;
+                } else {
+                    final VariableAccess varAccess = (VariableAccess) obj;
+                    final Name name = getName(varAccess);
+                    final Object key = getVariableKey(varAccess, name);
+                    Integer varId = variableIds.get(key);
+                    if (varId == null) {
+                        varId = names.size();
+                        variableIds.put(key, varId);
+                        names.add(name);
+                    }
+                    accessNodes[access] = varAccess.getAstNode();
+                    accessVariables[access] = varId;
+                    accessTypes[access] = varAccess.getAccessType();
+                    access++;
+                }
+            }
+        }
+        successorsOffsets[nbBlocks] = edge;
+        accessesOffsets[nbBlocks] = access;
+        this.variableNames = names.toArray(new Name[names.size()]);
+
+        // counting sort of the edges by target block gives the predecessors
+        this.predecessorsOffsets = new int[nbBlocks + 1];
+        for (int e = 0; e < nbEdges; e++) {
+            predecessorsOffsets[edgeTargets[e] + 1]++;
+        }
+        for (int b = 0; b < nbBlocks; b++) {
+            predecessorsOffsets[b + 1] += predecessorsOffsets[b];
+        }
+        this.predecessorEdges = new int[nbEdges];
+        final int[] nextPredecessor = predecessorsOffsets.clone();
+        for (int e = 0; e < nbEdges; e++) {
+            predecessorEdges[nextPredecessor[edgeTargets[e]]++] = e;
+        }
+
+        this.linkedMemoryUsage = estimateMemoryUsage(blocks);
+    }
+
+    /**
+     * Builds a CFG sharing the blocks and edges of the provided CFG, for a new AST of the same method.
+     * The lazily computed analyses which only depend on blocks and edges are shared too.
+     *
+     * @param previous the CFG built for the previous AST
+     * @param node the method declaration in the new AST
+     * @param blockNodes the AST node of each block, in the new AST
+     * @param blockPositions the start position of each block, in the new source
+     * @param blockLines the line of each block, in the new source
+     * @param blockColumns the column of each block, in the new source
+     * @param edgeConditions the condition of each edge, in the new AST, or null if no edge has a condition
+     * @param accessesOffsets the offset of the variable accesses of each block
+     * @param accessNodes the AST node of each variable access, in the new AST
+     * @param accessVariables the variable id of each variable access
+     * @param accessTypes the type of each variable access
+     * @param variableNames the name of each variable, in the new AST
+     */
+    ControlFlowGraph(ControlFlowGraph previous, ASTNode node,
+            ASTNode[] blockNodes, int[] blockPositions, int[] blockLines, int[] blockColumns,
+            Expression[] edgeConditions, int[] accessesOffsets, ASTNode[] accessNodes,
+            int[] accessVariables, int[] accessTypes, Name[] variableNames) {
+        this.node = node;
+        this.fileName = previous.fileName;
+        this.exitBlock = previous.exitBlock;
+        this.blockNodes = blockNodes;
+        this.blockPositions = blockPositions;
+        this.blockLines = blockLines;
+        this.blockColumns = blockColumns;
+        this.blockFlags = previous.blockFlags;
+        this.successorsOffsets = previous.successorsOffsets;
+        this.edgeSources = previous.edgeSources;
+        this.edgeTargets = previous.edgeTargets;
+        this.edgeConditions = edgeConditions;
+        this.edgeEvaluationResults = previous.edgeEvaluationResults;
+        this.predecessorsOffsets = previous.predecessorsOffsets;
+        this.predecessorEdges = previous.predecessorEdges;
+        this.accessesOffsets = accessesOffsets;
+        this.accessNodes = accessNodes;
+        this.accessVariables = accessVariables;
+        this.accessTypes = accessTypes;
+        this.variableNames = variableNames;
+        this.linkedMemoryUsage = previous.linkedMemoryUsage;
+        synchronized (previous) {
+            if (previous.dominatorTree != null) {
+                this.dominatorTree = previous.dominatorTree.copyFor(this);
+            }
+            if (previous.postDominatorTree != null) {
+                this.postDominatorTree = previous.postDominatorTree.copyFor(this);
+            }
+            if (previous.loopNestingForest != null) {
+                this.loopNestingForest = previous.loopNestingForest.copyFor(this);
+            }
+        }
+    }
+
+    /**
+     * Compacts the linked CFG starting at the provided entry block.
+     *
+     * @param entryBlock the entry block of the CFG
+     * @param exitBlock the exit block of the CFG
+     * @return the compact representation of the CFG
+     */
+    static ControlFlowGraph compact(CFGBasicBlock entryBlock, CFGBasicBlock exitBlock) {
+        final List<CFGBasicBlock> blocks = reversePostOrder(entryBlock);
+        final List<CFGBasicBlock> unreachableBlocks = collectUnreachableBlocks(blocks, exitBlock);
+        Collections.sort(unreachableBlocks);
+        blocks.addAll(unreachableBlocks);
+        return new ControlFlowGraph(blocks, blocks.indexOf(exitBlock));
+    }
+
+    private static List<CFGBasicBlock> reversePostOrder(CFGBasicBlock entryBlock) {
+        // iterative depth first search to support deeply nested code
+        final Map<CFGBasicBlock, Boolean> visited = new IdentityHashMap<CFGBasicBlock, Boolean>();
+        final List<CFGBasicBlock> results = new ArrayList<CFGBasicBlock>();
+        final List<CFGBasicBlock> blocksStack = new ArrayList<CFGBasicBlock>();
+        final List<Iterator<Object>> successorsStack = new ArrayList<Iterator<Object>>();
+        visited.put(entryBlock, Boolean.TRUE);
+        blocksStack.add(entryBlock);
+        successorsStack.add(entryBlock.getOutgoingEdgesAndVariableAccesses().iterator());
+        while (!blocksStack.isEmpty()) {
+            final CFGBasicBlock successor = nextSuccessor(successorsStack.get(successorsStack.size() - 1));
+            if (successor == null) {
+                successorsStack.remove(successorsStack.size() - 1);
+                results.add(blocksStack.remove(blocksStack.size() - 1));
+            } else if (visited.put(successor, Boolean.TRUE) == null) {
+                blocksStack.add(successor);
+                successorsStack.add(successor.getOutgoingEdgesAndVariableAccesses().iterator());
+            }
+        }
+        Collections.reverse(results);
+        return results;
+    }
+
+    /** Returns the target block of the next edge, or null when there are no more edges. */
+    private static CFGBasicBlock nextSuccessor(Iterator<Object> edgesAndVariableAccesses) {
+        while (edgesAndVariableAccesses.hasNext()) {
+            final Object obj = edgesAndVariableAccesses.next();
+            if (obj instanceof CFGEdge) {
+                return ((CFGEdge) obj).getTargetBlock();
+            }
+        }
+        return null;
+    }
+
+    /** Collects the blocks connected to the provided blocks, but not reachable from the entry block. */
+    private static List<CFGBasicBlock> collectUnreachableBlocks(List<CFGBasicBlock> reachableBlocks,
+            CFGBasicBlock exitBlock) {
+        final Map<CFGBasicBlock, Boolean> seen = new IdentityHashMap<CFGBasicBlock, Boolean>();
+        final List<CFGBasicBlock> toVisit = new ArrayList<CFGBasicBlock>(reachableBlocks);
+        final List<CFGBasicBlock> results = new ArrayList<CFGBasicBlock>();
+        for (CFGBasicBlock block : reachableBlocks) {
+            seen.put(block, Boolean.TRUE);
+        }
+        if (seen.put(exitBlock, Boolean.TRUE) == null) {
+            results.add(exitBlock);
+            toVisit.add(exitBlock);
+        }
+        for (int i = 0; i < toVisit.size(); i++) {
+            final CFGBasicBlock block = toVisit.get(i);
+            for (Object obj : block.getOutgoingEdgesAndVariableAccesses()) {
+                if (obj instanceof CFGEdge) {
+                    addUnseenBlock(((CFGEdge) obj).getTargetBlock(), seen, toVisit, results);
+                }
+            }
+            for (CFGEdge edge : block.getIncomingEdges()) {
+                addUnseenBlock(edge.getSourceBlock(), seen, toVisit, results);
+            }
+        }
+        return results;
+    }
+
+    private static void addUnseenBlock(CFGBasicBlock block, Map<CFGBasicBlock, Boolean> seen,
+            List<CFGBasicBlock> toVisit, List<CFGBasicBlock> results) {
+        if (seen.put(block, Boolean.TRUE) == null) {
+            results.add(block);
+            toVisit.add(block);
+        }
+    }
+
+    private static byte toFlags(CFGBasicBlock block) {
+        byte flags = 0;
+        if (block.isDecision()) {
+            flags |= DECISION;
+        }
+        if (block.isEntryBlock()) {
+            flags |= ENTRY;
+        }
+        if (block.isExitBlock()) {
+            flags |= EXIT;
+        }
+        return flags;
+    }
+
+    /**
+     * Returns the name of the variable accessed by the provided variable access.
+     *
+     * @param varAccess the variable access
+     * @return the name of the accessed variable, or null if it cannot be found
+     */
+    static Name getName(VariableAccess varAccess) {
+        if (varAccess.getName() != null) {
+            return varAccess.getName();
+        }
+        return getName(varAccess.getAstNode());
+    }
+
+    private static Name getName(ASTNode node) {
+        if (node instanceof Name) {
+            return (Name) node;
+        } else if (node instanceof VariableDeclaration) {
+            return ((VariableDeclaration) node).getName();
+        } else if (node instanceof FieldAccess) {
+            return ((FieldAccess) node).getName();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the key identifying the accessed variable: its binding when it can be resolved,
+     * otherwise its name, otherwise the AST node itself.
+     */
+    private static Object getVariableKey(VariableAccess varAccess, Name name) {
+        if (name == null) {
+            return varAccess.getAstNode();
+        }
+        final IBinding binding = name.resolveBinding();
+        return binding != null ? binding : name.getFullyQualifiedName();
+    }
+
+    /**
+     * Returns the AST node for which this CFG has been built.
+     *
+     * @return the AST node for which this CFG has been built
+     */
+    public ASTNode getNode() {
+        return node;
+    }
+
+    /**
+     * Returns the file name containing this CFG.
+     *
+     * @return the file name containing this CFG
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Returns the number of basic blocks in this CFG.
+     *
+     * @return the number of basic blocks in this CFG
+     */
+    public int getNbBlocks() {
+        return blockNodes.length;
+    }
+
+    /**
+     * Returns the id of the entry block.
+     *
+     * @return the id of the entry block
+     */
+    public int getEntryBlock() {
+        return 0;
+    }
+
+    /**
+     * Returns the id of the exit block.
+     *
+     * @return the id of the exit block
+     */
+    public int getExitBlock() {
+        return exitBlock;
+    }
+
+    /**
+     * Returns the AST node that led to the creation of the provided block.
+     *
+     * @param block the block id
+     * @return the AST node that led to the creation of the provided block
+     */
+    public ASTNode getBlockNode(int block) {
+        return blockNodes[block];
+    }
+
+    /**
+     * Returns the start position of the provided block in the source.
+     *
+     * @param block the block id
+     * @return the start position of the provided block in the source
+     */
+    public int getBlockStartPosition(int block) {
+        return blockPositions[block];
+    }
+
+    /**
+     * Returns the line of the provided block in the source.
+     *
+     * @param block the block id
+     * @return the line of the provided block in the source
+     */
+    public int getBlockLine(int block) {
+        return blockLines[block];
+    }
+
+    /**
+     * Returns the column of the provided block in the source.
+     *
+     * @param block the block id
+     * @return the column of the provided block in the source
+     */
+    public int getBlockColumn(int block) {
+        return blockColumns[block];
+    }
+
+    /**
+     * Returns whether the provided block is a decision block.
+     *
+     * @param block the block id
+     * @return true if the provided block is a decision block, false otherwise
+     */
+    public boolean isDecision(int block) {
+        return (blockFlags[block] & DECISION) != 0;
+    }
+
+    /**
+     * Returns whether the provided block is the entry block.
+     *
+     * @param block the block id
+     * @return true if the provided block is the entry block, false otherwise
+     */
+    public boolean isEntryBlock(int block) {
+        return (blockFlags[block] & ENTRY) != 0;
+    }
+
+    /**
+     * Returns whether the provided block is the exit block.
+     *
+     * @param block the block id
+     * @return true if the provided block is the exit block, false otherwise
+     */
+    public boolean isExitBlock(int block) {
+        return (blockFlags[block] & EXIT) != 0;
+    }
+
+    /**
+     * Returns a code excerpt for the provided block, computing it on first access.
+     *
+     * @param block the block id
+     * @return a code excerpt for the provided block
+     */
+    public synchronized String getCodeExcerpt(int block) {
+        if (codeExcerpts == null) {
+            codeExcerpts = new String[blockNodes.length];
+        }
+        if (codeExcerpts[block] == null) {
+            codeExcerpts[block] = ASTPrintHelper.blockCodeExcerpt(blockNodes[block]);
+        }
+        return codeExcerpts[block];
+    }
+
+    /**
+     * Returns the number of edges in this CFG.
+     *
+     * @return the number of edges in this CFG
+     */
+    public int getNbEdges() {
+        return edgeTargets.length;
+    }
+
+    /**
+     * Returns the cyclomatic complexity of this CFG, computed as {@code edges - blocks + 2}.
+     *
+     * @return the cyclomatic complexity of this CFG
+     * @see <a href="https://en.wikipedia.org/wiki/Cyclomatic_complexity">Cyclomatic complexity</a>
+     */
+    public int getCyclomaticComplexity() {
+        return Math.max(1, getNbEdges() - getNbBlocks() + 2);
+    }
+
+    /**
+     * Returns the first outgoing edge id of the provided block.
+     *
+     * @param block the block id
+     * @return the first outgoing edge id of the provided block
+     */
+    public int getSuccessorsBegin(int block) {
+        return successorsOffsets[block];
+    }
+
+    /**
+     * Returns the outgoing edge id following the last outgoing edge of the provided block.
+     *
+     * @param block the block id
+     * @return the outgoing edge id following the last outgoing edge of the provided block
+     */
+    public int getSuccessorsEnd(int block) {
+        return successorsOffsets[block + 1];
+    }
+
+    /**
+     * Returns the first index of the incoming edges of the provided block.
+     *
+     * @param block the block id
+     * @return the first index of the incoming edges of the provided block
+     * @see #getPredecessorEdge(int)
+     */
+    public int getPredecessorsBegin(int block) {
+        return predecessorsOffsets[block];
+    }
+
+    /**
+     * Returns the index following the last index of the incoming edges of the provided block.
+     *
+     * @param block the block id
+     * @return the index following the last index of the incoming edges of the provided block
+     * @see #getPredecessorEdge(int)
+     */
+    public int getPredecessorsEnd(int block) {
+        return predecessorsOffsets[block + 1];
+    }
+
+    /**
+     * Returns the incoming edge id at the provided index.
+     *
+     * @param index the index of the incoming edge
+     * @return the incoming edge id at the provided index
+     */
+    public int getPredecessorEdge(int index) {
+        return predecessorEdges[index];
+    }
+
+    /**
+     * Returns the source block id of the provided edge.
+     *
+     * @param edge the edge id
+     * @return the source block id of the provided edge
+     */
+    public int getEdgeSource(int edge) {
+        return edgeSources[edge];
+    }
+
+    /**
+     * Returns the target block id of the provided edge.
+     *
+     * @param edge the edge id
+     * @return the target block id of the provided edge
+     */
+    public int getEdgeTarget(int edge) {
+        return edgeTargets[edge];
+    }
+
+    /**
+     * Returns the decision condition that led to the creation of the provided edge.
+     *
+     * @param edge the edge id
+     * @return the decision condition that led to the creation of the provided edge, may be null
+     */
+    public Expression getEdgeCondition(int edge) {
+        return edgeConditions != null ? edgeConditions[edge] : null;
+    }
+
+    /**
+     * Returns the condition evaluation result of the provided edge.
+     *
+     * @param edge the edge id
+     * @return the condition evaluation result of the provided edge
+     */
+    public boolean getEdgeEvaluationResult(int edge) {
+        return edgeEvaluationResults.get(edge);
+    }
+
+    /**
+     * Returns the number of distinct variables accessed in this CFG.
+     *
+     * @return the number of distinct variables accessed in this CFG
+     */
+    public int getNbVariables() {
+        return variableNames.length;
+    }
+
+    /**
+     * Returns the name of the provided variable, as found at its first access.
+     *
+     * @param variable the variable id
+     * @return the name of the provided variable, may be null
+     */
+    public Name getVariableName(int variable) {
+        return variableNames[variable];
+    }
+
+    /**
+     * Returns the number of variable accesses in this CFG.
+     *
+     * @return the number of variable accesses in this CFG
+     */
+    public int getNbVariableAccesses() {
+        return accessNodes.length;
+    }
+
+    /**
+     * Returns the first variable access id of the provided block.
+     *
+     * @param block the block id
+     * @return the first variable access id of the provided block
+     */
+    public int getVariableAccessesBegin(int block) {
+        return accessesOffsets[block];
+    }
+
+    /**
+     * Returns the variable access id following the last variable access of the provided block.
+     *
+     * @param block the block id
+     * @return the variable access id following the last variable access of the provided block
+     */
+    public int getVariableAccessesEnd(int block) {
+        return accessesOffsets[block + 1];
+    }
+
+    /**
+     * Returns the id of the block containing the provided variable access.
+     *
+     * @param access the variable access id
+     * @return the id of the block containing the provided variable access
+     */
+    public int getVariableAccessBlock(int access) {
+        // find the last block whose accesses start at or before this access
+        int low = 0;
+        int high = getNbBlocks() - 1;
+        while (low < high) {
+            final int mid = (low + high + 1) >>> 1;
+            if (accessesOffsets[mid] <= access) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the AST node of the provided variable access.
+     *
+     * @param access the variable access id
+     * @return the AST node of the provided variable access
+     */
+    public ASTNode getAccessNode(int access) {
+        return accessNodes[access];
+    }
+
+    /**
+     * Returns the variable id of the provided variable access.
+     *
+     * @param access the variable access id
+     * @return the variable id of the provided variable access
+     */
+    public int getAccessedVariable(int access) {
+        return accessVariables[access];
+    }
+
+    /**
+     * Returns the access type of the provided variable access.
+     *
+     * @param access the variable access id
+     * @return the access type of the provided variable access
+     * @see VariableAccess#DECL_INIT
+     * @see VariableAccess#DECL_UNINIT
+     * @see VariableAccess#READ
+     * @see VariableAccess#WRITE
+     */
+    public int getAccessType(int access) {
+        return accessTypes[access];
+    }
+
+    /**
+     * Returns whether the dataflow facts computed for the provided CFG are also valid for this CFG,
+     * in other words whether both CFGs share the same edges and the same variable accesses.
+     *
+     * @param other the other CFG
+     * @return true if the dataflow facts of the other CFG are valid for this CFG, false otherwise
+     */
+    boolean hasSameDataFlowAs(ControlFlowGraph other) {
+        return successorsOffsets == other.successorsOffsets
+                && edgeTargets == other.edgeTargets
+                && variableNames.length == other.variableNames.length
+                && Arrays.equals(accessesOffsets, other.accessesOffsets)
+                && Arrays.equals(accessVariables, other.accessVariables)
+                && Arrays.equals(accessTypes, other.accessTypes);
+    }
+
+    /**
+     * Returns the dominator tree of this CFG, computing it on first access.
+     *
+     * @return the dominator tree of this CFG
+     */
+    public synchronized DominatorTree getDominatorTree() {
+        if (dominatorTree == null) {
+            dominatorTree = DominatorTree.dominators(this);
+        }
+        return dominatorTree;
+    }
+
+    /**
+     * Returns the post-dominator tree of this CFG, computing it on first access.
+     *
+     * @return the post-dominator tree of this CFG
+     */
+    public synchronized DominatorTree getPostDominatorTree() {
+        if (postDominatorTree == null) {
+            postDominatorTree = DominatorTree.postDominators(this);
+        }
+        return postDominatorTree;
+    }
+
+    /**
+     * Returns the loop-nesting forest of this CFG, computing it on first access.
+     *
+     * @return the loop-nesting forest of this CFG
+     */
+    public synchronized LoopNestingForest getLoopNestingForest() {
+        if (loopNestingForest == null) {
+            loopNestingForest = new LoopNestingForest(getDominatorTree());
+        }
+        return loopNestingForest;
+    }
+
+    /**
+     * Rebuilds the linked representation of this CFG.
+     *
+     * @return the basic blocks of this CFG, indexed by block id
+     */
+    public CFGBasicBlock[] toBasicBlocks() {
+        final int nbBlocks = getNbBlocks();
+        final CFGBasicBlock[] results = new CFGBasicBlock[nbBlocks];
+        for (int b = 0; b < nbBlocks; b++) {
+            final String codeExcerpt = codeExcerpts != null ? codeExcerpts[b] : null;
+            if (isEntryBlock(b)) {
+                results[b] = CFGBasicBlock.buildEntryBlock(blockNodes[b], fileName, codeExcerpt);
+            } else {
+                final LineAndColumn lal = new LineAndColumn(blockPositions[b], blockLines[b], blockColumns[b]);
+                if (isExitBlock(b)) {
+                    results[b] = CFGBasicBlock.buildExitBlock(blockNodes[b], fileName, codeExcerpt, lal);
+                } else {
+                    results[b] = new CFGBasicBlock(blockNodes[b], fileName, codeExcerpt, isDecision(b), lal);
+                }
+            }
+        }
+        for (int b = 0; b < nbBlocks; b++) {
+            for (int a = getVariableAccessesBegin(b); a < getVariableAccessesEnd(b); a++) {
+                final ASTNode accessNode = accessNodes[a];
+                results[b].addVariableAccess(
+                        new VariableAccess(accessNode, getName(accessNode), getType(accessNode), accessTypes[a]));
+            }
+            for (int e = getSuccessorsBegin(b); e < getSuccessorsEnd(b); e++) {
+                CFGEdgeBuilder.buildEdge(getEdgeCondition(e), getEdgeEvaluationResult(e),
+                        results[b], results[edgeTargets[e]]);
+            }
+        }
+        return results;
+    }
+
+    private static Type getType(ASTNode node) {
+        if (node instanceof SingleVariableDeclaration) {
+            return ((SingleVariableDeclaration) node).getType();
+        } else if (node instanceof VariableDeclaration) {
+            final ASTNode parent = node.getParent();
+            if (parent instanceof VariableDeclarationStatement) {
+                return ((VariableDeclarationStatement) parent).getType();
+            } else if (parent instanceof VariableDeclarationExpression) {
+                return ((VariableDeclarationExpression) parent).getType();
+            } else if (parent instanceof FieldDeclaration) {
+                return ((FieldDeclaration) parent).getType();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns an estimate of the memory used by this CFG, in bytes.
+     *
+     * @return an estimate of the memory used by this CFG, in bytes
+     */
+    public long estimateMemoryUsage() {
+        long result = align(OBJECT_HEADER_SIZE + 23 * REFERENCE_SIZE + 4 + 8);
+        result += referenceArraySize(blockNodes.length) + 3 * intArraySize(blockPositions.length)
+                + align(ARRAY_HEADER_SIZE + blockFlags.length);
+        result += 2 * intArraySize(successorsOffsets.length) + 3 * intArraySize(edgeTargets.length);
+        if (edgeConditions != null) {
+            result += referenceArraySize(edgeConditions.length);
+        }
+        result += align(OBJECT_HEADER_SIZE + REFERENCE_SIZE + 4 + 1)
+                + align(ARRAY_HEADER_SIZE + 8 * ((edgeTargets.length + 63) / 64));
+        result += intArraySize(accessesOffsets.length) + referenceArraySize(accessNodes.length)
+                + 2 * intArraySize(accessVariables.length) + referenceArraySize(variableNames.length);
+        final String[] excerpts = codeExcerpts;
+        if (excerpts != null) {
+            result += referenceArraySize(excerpts.length);
+            for (String excerpt : excerpts) {
+                result += stringSize(excerpt);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns an estimate of the memory used by the linked representation this CFG was compacted from,
+     * in bytes.
+     *
+     * @return an estimate of the memory used by the linked representation, in bytes
+     */
+    public long getLinkedMemoryUsage() {
+        return linkedMemoryUsage;
+    }
+
+    private static long estimateMemoryUsage(Collection<CFGBasicBlock> blocks) {
+        final long blockSize = align(OBJECT_HEADER_SIZE + 7 * REFERENCE_SIZE + 1);
+        final long lineAndColumnSize = align(OBJECT_HEADER_SIZE + 3 * 4);
+        final long edgeSize = align(OBJECT_HEADER_SIZE + 3 * REFERENCE_SIZE + 1);
+        final long variableAccessSize = align(OBJECT_HEADER_SIZE + 4 * REFERENCE_SIZE + 4);
+        long result = 0;
+        for (CFGBasicBlock block : blocks) {
+            result += blockSize + lineAndColumnSize;
+            result += arrayListSize(block.getIncomingEdges());
+            result += arrayListSize(block.getOutgoingEdgesAndVariableAccesses());
+            for (Object obj : block.getOutgoingEdgesAndVariableAccesses()) {
+                result += obj instanceof CFGEdge ? edgeSize : variableAccessSize;
+            }
+        }
+        return result;
+    }
+
+    private static long arrayListSize(Collection<?> col) {
+        final long listSize = align(OBJECT_HEADER_SIZE + 2 * 4 + REFERENCE_SIZE);
+        if (col.isEmpty()) {
+            return listSize;
+        }
+        return listSize + referenceArraySize(Math.max(col.size(), DEFAULT_ARRAY_LIST_CAPACITY));
+    }
+
+    private static long stringSize(String s) {
+        if (s == null) {
+            return 0;
+        }
+        return align(OBJECT_HEADER_SIZE + REFERENCE_SIZE + 2 * 4) + align(ARRAY_HEADER_SIZE + 2 * s.length());
+    }
+
+    private static long intArraySize(int length) {
+        return align(ARRAY_HEADER_SIZE + 4L * length);
+    }
+
+    private static long referenceArraySize(int length) {
+        return align(ARRAY_HEADER_SIZE + (long) REFERENCE_SIZE * length);
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+
+    /**
+     * Returns a report of the estimated memory used by this CFG before and after compaction.
+     *
+     * @return a report of the estimated memory used by this CFG before and after compaction
+     */
+    public String getMemoryReport() {
+        final long compactMemoryUsage = estimateMemoryUsage();
+        final String methodName = node instanceof MethodDeclaration
+                ? ((MethodDeclaration) node).getName().getIdentifier() : String.valueOf(node);
+        return fileName + " " + methodName + "(): "
+                + getNbBlocks() + " blocks, " + getNbEdges() + " edges, "
+                + getNbVariableAccesses() + " variable accesses: linked CFG ~" + linkedMemoryUsage
+                + " bytes, compact CFG ~" + compactMemoryUsage + " bytes ("
+                + (linkedMemoryUsage > 0 ? 100 * compactMemoryUsage / linkedMemoryUsage : 0) + "%)";
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return "CFG[" + getMemoryReport() + "]";
+    }
+}
@@ -0,0 +1,442 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.autorefactor.refactoring.JavaProjectOptions;
+import org.autorefactor.util.IllegalStateException;
+import org.autorefactor.util.NotImplementedException;
+import org.autorefactor.util.UnhandledException;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.AbstractTypeDeclaration;
+import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.SingleVariableDeclaration;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+
+import static org.autorefactor.refactoring.ASTHelper.*;
+
+/**
+ * Lazily populated cache of the CFGs of the methods of a compilation unit,
+ * and of the analyses derived from these CFGs.
+ * <p>
+ * A cache is only valid for the AST it was created for. {@link #invalidate()} must be called as soon as this AST is
+ * replaced, for example after refactorings have been applied to the compilation unit.
+ * Alternatively, {@link #update(String)} returns a cache for the new AST which updates the CFGs of this cache
+ * instead of building them from scratch, keeping the analyses which are still valid.
+ * </p>
+ * <p>
+ * This class is thread safe. Since {@link CFGBuilder} is not, each thread uses its own builder.
+ * </p>
+ */
+public class ControlFlowGraphCache {
+
+    private static final int NB_THREADS = Runtime.getRuntime().availableProcessors();
+
+    private final String source;
+    private final JavaProjectOptions options;
+    private final ConcurrentMap<MethodDeclaration, ControlFlowGraph> cfgs =
+            new ConcurrentHashMap<MethodDeclaration, ControlFlowGraph>();
+    /** Methods for which {@link CFGBuilder} does not support building a CFG yet. */
+    private final Set<MethodDeclaration> unsupportedMethods =
+            Collections.newSetFromMap(new ConcurrentHashMap<MethodDeclaration, Boolean>());
+    private final ConcurrentMap<ControlFlowGraph, LiveVariables> liveVariables =
+            new ConcurrentHashMap<ControlFlowGraph, LiveVariables>();
+    private final ConcurrentMap<ControlFlowGraph, ReachingDefinitions> reachingDefinitions =
+            new ConcurrentHashMap<ControlFlowGraph, ReachingDefinitions>();
+    /** The source of the AST the previous cache was created for, or null if there is no previous cache. */
+    private final String previousSource;
+    /** The CFGs of the previous cache not carried over to this cache yet, keyed by method. */
+    private final ConcurrentMap<String, ControlFlowGraph> previousCfgs;
+    private final Map<ControlFlowGraph, LiveVariables> previousLiveVariables;
+    private final Map<ControlFlowGraph, ReachingDefinitions> previousReachingDefinitions;
+    /**
+     * The executor building the CFGs concurrently, created on first use.
+     * It is shared with the caches updated from this cache, so one executor serves a whole refactoring run.
+     */
+    private final AtomicReference<ExecutorService> executor;
+    private volatile boolean invalidated;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong updates = new AtomicLong();
+
+    /**
+     * Builds an instance of this class.
+     *
+     * @param source the java source code of the compilation unit
+     * @param options the Java project options used to compile the project
+     */
+    public ControlFlowGraphCache(String source, JavaProjectOptions options) {
+        this.source = source;
+        this.options = options;
+        this.previousSource = null;
+        this.previousCfgs = new ConcurrentHashMap<String, ControlFlowGraph>();
+        this.previousLiveVariables = Collections.emptyMap();
+        this.previousReachingDefinitions = Collections.emptyMap();
+        this.executor = new AtomicReference<ExecutorService>();
+    }
+
+    private ControlFlowGraphCache(String source, ControlFlowGraphCache previous) {
+        this.source = source;
+        this.options = previous.options;
+        this.previousSource = previous.source;
+        this.previousCfgs = new ConcurrentHashMap<String, ControlFlowGraph>();
+        for (Entry<MethodDeclaration, ControlFlowGraph> entry : previous.cfgs.entrySet()) {
+            previousCfgs.put(getMethodKey(entry.getKey()), entry.getValue());
+        }
+        this.previousLiveVariables = new HashMap<ControlFlowGraph, LiveVariables>(previous.liveVariables);
+        this.previousReachingDefinitions =
+                new HashMap<ControlFlowGraph, ReachingDefinitions>(previous.reachingDefinitions);
+        this.executor = previous.executor;
+    }
+
+    /**
+     * Returns a cache for the AST parsed from the new source of the compilation unit, and invalidates this cache.
+     * <p>
+     * The returned cache lazily updates the CFGs of this cache rather than building them from scratch,
+     * so that the cost of getting a CFG after an edit depends on the size of the edit rather than on the size of
+     * the method.
+     * </p>
+     *
+     * @param newSource the new java source code of the compilation unit
+     * @return a new cache for the AST parsed from the new source
+     * @see CFGBuilder#updateControlFlowGraph(ControlFlowGraph, String, MethodDeclaration)
+     */
+    public ControlFlowGraphCache update(String newSource) {
+        checkValid(null);
+        final ControlFlowGraphCache result = new ControlFlowGraphCache(newSource, this);
+        invalidate();
+        return result;
+    }
+
+    /**
+     * Returns the CFG of the provided method, building it on first access.
+     *
+     * @param node the method declaration
+     * @return the CFG of the provided method,
+     *         or null if the method has no body or if a CFG cannot be built for it yet
+     */
+    public ControlFlowGraph getControlFlowGraph(MethodDeclaration node) {
+        checkValid(node);
+        final ControlFlowGraph cfg = cfgs.get(node);
+        if (cfg != null) {
+            hits.incrementAndGet();
+            return cfg;
+        }
+        if (node.getBody() == null || unsupportedMethods.contains(node)) {
+            return null;
+        }
+        misses.incrementAndGet();
+        return build(newCFGBuilder(), node);
+    }
+
+    /**
+     * Returns the CFGs of all the methods with a body in the provided type declaration and its member types,
+     * building the missing ones.
+     *
+     * @param node the type declaration
+     * @param parallel whether to build the missing CFGs concurrently
+     * @return the CFGs of the methods of the provided type declaration
+     */
+    public List<ControlFlowGraph> getControlFlowGraphs(TypeDeclaration node, boolean parallel) {
+        checkValid(node);
+        final List<MethodDeclaration> methods = new ArrayList<MethodDeclaration>();
+        collectMethods(node, methods);
+
+        final List<MethodDeclaration> toBuild = new ArrayList<MethodDeclaration>();
+        for (MethodDeclaration method : methods) {
+            if (!cfgs.containsKey(method) && !unsupportedMethods.contains(method)) {
+                toBuild.add(method);
+            }
+        }
+        if (parallel && toBuild.size() > 1) {
+            buildConcurrently(node, toBuild);
+        }
+
+        final List<ControlFlowGraph> results = new ArrayList<ControlFlowGraph>(methods.size());
+        for (MethodDeclaration method : methods) {
+            final ControlFlowGraph cfg = getControlFlowGraph(method);
+            if (cfg != null) {
+                results.add(cfg);
+            }
+        }
+        return results;
+    }
+
+    private void collectMethods(TypeDeclaration node, List<MethodDeclaration> results) {
+        for (MethodDeclaration method : node.getMethods()) {
+            if (method.getBody() != null) {
+                results.add(method);
+            }
+        }
+        for (TypeDeclaration memberType : node.getTypes()) {
+            collectMethods(memberType, results);
+        }
+    }
+
+    private void buildConcurrently(TypeDeclaration node, final List<MethodDeclaration> methods) {
+        final int nbThreads = Math.min(NB_THREADS, methods.size());
+        final ExecutorService executor = getExecutor();
+        try {
+            final List<Future<?>> futures = new ArrayList<Future<?>>(nbThreads);
+            for (int i = 0; i < nbThreads; i++) {
+                final int firstMethod = i;
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        CFGBuilder builder = newCFGBuilder();
+                        for (int j = firstMethod; j < methods.size(); j += nbThreads) {
+                            misses.incrementAndGet();
+                            if (build(builder, methods.get(j)) == null) {
+                                // the builder may be left in an inconsistent state
+                                builder = newCFGBuilder();
+                            }
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnhandledException(node, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new UnhandledException(node, e.getCause());
+        }
+    }
+
+    /**
+     * Returns the executor building the CFGs concurrently.
+     * Its threads are daemon threads which stop after being idle for a while, so it never needs to be shut down.
+     */
+    private ExecutorService getExecutor() {
+        final ExecutorService result = executor.get();
+        if (result != null) {
+            return result;
+        }
+        final ThreadPoolExecutor newExecutor = new ThreadPoolExecutor(NB_THREADS, NB_THREADS,
+                1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        final Thread thread = new Thread(r, "AutoRefactor CFG builder");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        newExecutor.allowCoreThreadTimeOut(true);
+        if (executor.compareAndSet(null, newExecutor)) {
+            return newExecutor;
+        }
+        newExecutor.shutdown();
+        return executor.get();
+    }
+
+    private CFGBuilder newCFGBuilder() {
+        return new CFGBuilder(source, options);
+    }
+
+    private ControlFlowGraph build(CFGBuilder builder, MethodDeclaration node) {
+        final ControlFlowGraph previousCfg = previousCfgs.isEmpty() ? null : previousCfgs.remove(getMethodKey(node));
+        final ControlFlowGraph cfg;
+        try {
+            if (previousCfg != null) {
+                cfg = builder.updateControlFlowGraph(previousCfg, previousSource, node);
+            } else {
+                cfg = builder.buildControlFlowGraph(node);
+            }
+        } catch (NotImplementedException e) {
+            unsupportedMethods.add(node);
+            return null;
+        }
+        final ControlFlowGraph previous = cfgs.putIfAbsent(node, cfg);
+        if (previous != null) {
+            return previous;
+        }
+        if (previousCfg != null && cfg.hasSameDataFlowAs(previousCfg)) {
+            updates.incrementAndGet();
+            final LiveVariables previousLive = previousLiveVariables.get(previousCfg);
+            if (previousLive != null) {
+                liveVariables.putIfAbsent(cfg, previousLive.copyFor(cfg));
+            }
+            final ReachingDefinitions previousReaching = previousReachingDefinitions.get(previousCfg);
+            if (previousReaching != null) {
+                reachingDefinitions.putIfAbsent(cfg, previousReaching.copyFor(cfg));
+            }
+        }
+        return cfg;
+    }
+
+    /** Identifies a method across successive ASTs of the same compilation unit. */
+    private static String getMethodKey(MethodDeclaration node) {
+        final IMethodBinding binding = node.resolveBinding();
+        if (binding != null) {
+            return binding.getKey();
+        }
+        final StringBuilder sb = new StringBuilder();
+        for (ASTNode n = node.getParent(); n != null; n = n.getParent()) {
+            if (n instanceof AbstractTypeDeclaration) {
+                sb.insert(0, ((AbstractTypeDeclaration) n).getName().getIdentifier() + ".");
+            }
+        }
+        sb.append(node.getName().getIdentifier()).append("(");
+        for (SingleVariableDeclaration param : parameters(node)) {
+            sb.append(param.getType()).append(",");
+        }
+        return sb.append(")").toString();
+    }
+
+    /**
+     * Returns the live variables analysis of the provided method, computing it on first access.
+     *
+     * @param node the method declaration
+     * @return the live variables analysis of the provided method, or null if it has no CFG
+     * @see #getControlFlowGraph(MethodDeclaration)
+     */
+    public LiveVariables getLiveVariables(MethodDeclaration node) {
+        final ControlFlowGraph cfg = getControlFlowGraph(node);
+        if (cfg == null) {
+            return null;
+        }
+        LiveVariables result = liveVariables.get(cfg);
+        if (result == null) {
+            result = new LiveVariables(cfg);
+            final LiveVariables previous = liveVariables.putIfAbsent(cfg, result);
+            if (previous != null) {
+                result = previous;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the reaching definitions analysis of the provided method, computing it on first access.
+     *
+     * @param node the method declaration
+     * @return the reaching definitions analysis of the provided method, or null if it has no CFG
+     * @see #getControlFlowGraph(MethodDeclaration)
+     */
+    public ReachingDefinitions getReachingDefinitions(MethodDeclaration node) {
+        final ControlFlowGraph cfg = getControlFlowGraph(node);
+        if (cfg == null) {
+            return null;
+        }
+        ReachingDefinitions result = reachingDefinitions.get(cfg);
+        if (result == null) {
+            result = new ReachingDefinitions(cfg);
+            final ReachingDefinitions previous = reachingDefinitions.putIfAbsent(cfg, result);
+            if (previous != null) {
+                result = previous;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the dominator tree of the provided method, computing it on first access.
+     *
+     * @param node the method declaration
+     * @return the dominator tree of the provided method, or null if it has no CFG
+     * @see #getControlFlowGraph(MethodDeclaration)
+     */
+    public DominatorTree getDominatorTree(MethodDeclaration node) {
+        final ControlFlowGraph cfg = getControlFlowGraph(node);
+        return cfg != null ? cfg.getDominatorTree() : null;
+    }
+
+    /**
+     * Returns the post-dominator tree of the provided method, computing it on first access.
+     *
+     * @param node the method declaration
+     * @return the post-dominator tree of the provided method, or null if it has no CFG
+     * @see #getControlFlowGraph(MethodDeclaration)
+     */
+    public DominatorTree getPostDominatorTree(MethodDeclaration node) {
+        final ControlFlowGraph cfg = getControlFlowGraph(node);
+        return cfg != null ? cfg.getPostDominatorTree() : null;
+    }
+
+    /**
+     * Returns the loop-nesting forest of the provided method, computing it on first access.
+     *
+     * @param node the method declaration
+     * @return the loop-nesting forest of the provided method, or null if it has no CFG
+     * @see #getControlFlowGraph(MethodDeclaration)
+     */
+    public LoopNestingForest getLoopNestingForest(MethodDeclaration node) {
+        final ControlFlowGraph cfg = getControlFlowGraph(node);
+        return cfg != null ? cfg.getLoopNestingForest() : null;
+    }
+
+    /**
+     * Invalidates this cache. It must not be used anymore after this method is called.
+     */
+    public void invalidate() {
+        invalidated = true;
+        cfgs.clear();
+        unsupportedMethods.clear();
+        liveVariables.clear();
+        reachingDefinitions.clear();
+    }
+
+    private void checkValid(ASTNode node) {
+        if (invalidated) {
+            throw new IllegalStateException(node, "This CFG cache has been invalidated: the AST has been replaced");
+        }
+    }
+
+    /**
+     * Returns statistics about the usage of this cache.
+     *
+     * @return statistics about the usage of this cache
+     */
+    public String getStatistics() {
+        return "CFG cache: " + hits.get() + " hits, " + misses.get() + " CFGs built "
+                + "(" + updates.get() + " updated keeping their dataflow facts), "
+                + unsupportedMethods.size() + " unsupported methods";
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.util.BitSet;
+
+/**
+ * Worklist based, bit-vector dataflow analysis over a {@link ControlFlowGraph}.
+ * <p>
+ * Subclasses describe the dataflow facts as bit indexes and each basic block as a pair of gen / kill sets.
+ * The facts at the end of a block (forward analyses) or at its start (backward analyses) are then computed as
+ * {@code gen | (facts - kill)}, where {@code facts} is the meet (union or intersection) of the facts coming from
+ * the predecessors (forward analyses) or the successors (backward analyses) of the block.
+ * </p>
+ * <p>
+ * Blocks are processed in reverse post-order for forward analyses and in post-order for backward analyses,
+ * so the analysis usually converges after a couple of passes over the CFG.
+ * </p>
+ */
+public abstract class DataFlowAnalysis {
+
+    /** The CFG being analyzed. */
+    protected final ControlFlowGraph cfg;
+    private final boolean forward;
+    private final boolean union;
+    /** The facts at the start of each block. */
+    private BitSet[] factsIn;
+    /** The facts at the end of each block. */
+    private BitSet[] factsOut;
+    private int nbIterations;
+
+    /**
+     * Builds an instance of this class.
+     *
+     * @param cfg the CFG to analyze
+     * @param forward true for a forward analysis, false for a backward analysis
+     * @param union true if the facts are merged with a union, false if they are merged with an intersection
+     */
+    protected DataFlowAnalysis(ControlFlowGraph cfg, boolean forward, boolean union) {
+        this.cfg = cfg;
+        this.forward = forward;
+        this.union = union;
+    }
+
+    /**
+     * Builds an instance of this class reusing the facts computed by the provided analysis.
+     *
+     * @param cfg the CFG to analyze
+     * @param other the analysis of a CFG with the same blocks, edges and variable accesses
+     */
+    protected DataFlowAnalysis(ControlFlowGraph cfg, DataFlowAnalysis other) {
+        this.cfg = cfg;
+        this.forward = other.forward;
+        this.union = other.union;
+        this.factsIn = other.factsIn;
+        this.factsOut = other.factsOut;
+        this.nbIterations = other.nbIterations;
+    }
+
+    /**
+     * Returns the number of dataflow facts, which bit indexes are in {@code [0, getNbFacts())}.
+     *
+     * @return the number of dataflow facts
+     */
+    protected abstract int getNbFacts();
+
+    /**
+     * Computes the facts generated and the facts killed by the provided block.
+     *
+     * @param block the block id
+     * @param gen the facts generated by the block, to fill in
+     * @param kill the facts killed by the block, to fill in
+     */
+    protected abstract void computeGenKill(int block, BitSet gen, BitSet kill);
+
+    /**
+     * Returns the facts holding at the start of blocks without predecessors for forward analyses,
+     * or at the end of blocks without successors for backward analyses. Defaults to no facts.
+     *
+     * @return the boundary facts
+     */
+    protected BitSet getBoundaryFacts() {
+        return new BitSet();
+    }
+
+    /**
+     * Solves the dataflow equations.
+     * Subclasses must call this method once all the data needed by {@link #computeGenKill(int, BitSet, BitSet)}
+     * is available.
+     */
+    protected final void solve() {
+        final int nbBlocks = cfg.getNbBlocks();
+        final int nbFacts = getNbFacts();
+        final BitSet[] gens = new BitSet[nbBlocks];
+        final BitSet[] kills = new BitSet[nbBlocks];
+        factsIn = new BitSet[nbBlocks];
+        factsOut = new BitSet[nbBlocks];
+        for (int b = 0; b < nbBlocks; b++) {
+            gens[b] = new BitSet(nbFacts);
+            kills[b] = new BitSet(nbFacts);
+            computeGenKill(b, gens[b], kills[b]);
+            factsIn[b] = newInitialFacts(nbFacts);
+            factsOut[b] = newInitialFacts(nbFacts);
+        }
+
+        // block ids are in reverse post-order: ranks reverse them for backward analyses
+        final BitSet pendingRanks = new BitSet(nbBlocks);
+        pendingRanks.set(0, nbBlocks);
+        final BitSet[] sources = forward ? factsOut : factsIn;
+        final BitSet[] targets = forward ? factsIn : factsOut;
+        final BitSet boundary = getBoundaryFacts();
+        nbIterations = 0;
+        for (int rank = pendingRanks.nextSetBit(0); rank >= 0; rank = pendingRanks.nextSetBit(0)) {
+            pendingRanks.clear(rank);
+            nbIterations++;
+            final int block = forward ? rank : nbBlocks - 1 - rank;
+
+            final BitSet meet = targets[block];
+            meet(block, sources, boundary, meet);
+            final BitSet result = (BitSet) meet.clone();
+            result.andNot(kills[block]);
+            result.or(gens[block]);
+            if (!result.equals(sources[block])) {
+                sources[block] = result;
+                addDependentBlocks(block, pendingRanks);
+            }
+        }
+    }
+
+    private BitSet newInitialFacts(int nbFacts) {
+        final BitSet facts = new BitSet(nbFacts);
+        if (!union) {
+            facts.set(0, nbFacts);
+        }
+        return facts;
+    }
+
+    /** Merges the facts flowing into the provided block. */
+    private void meet(int block, BitSet[] sources, BitSet boundary, BitSet result) {
+        final int begin = forward ? cfg.getPredecessorsBegin(block) : cfg.getSuccessorsBegin(block);
+        final int end = forward ? cfg.getPredecessorsEnd(block) : cfg.getSuccessorsEnd(block);
+        result.clear();
+        if (begin == end) {
+            result.or(boundary);
+            return;
+        }
+        for (int i = begin; i < end; i++) {
+            final int other = forward
+                    ? cfg.getEdgeSource(cfg.getPredecessorEdge(i))
+                    : cfg.getEdgeTarget(i);
+            if (i == begin) {
+                result.or(sources[other]);
+            } else if (union) {
+                result.or(sources[other]);
+            } else {
+                result.and(sources[other]);
+            }
+        }
+    }
+
+    private void addDependentBlocks(int block, BitSet pendingRanks) {
+        final int nbBlocks = cfg.getNbBlocks();
+        if (forward) {
+            for (int e = cfg.getSuccessorsBegin(block); e < cfg.getSuccessorsEnd(block); e++) {
+                pendingRanks.set(cfg.getEdgeTarget(e));
+            }
+        } else {
+            for (int i = cfg.getPredecessorsBegin(block); i < cfg.getPredecessorsEnd(block); i++) {
+                pendingRanks.set(nbBlocks - 1 - cfg.getEdgeSource(cfg.getPredecessorEdge(i)));
+            }
+        }
+    }
+
+    /**
+     * Returns the facts holding at the start of the provided block.
+     *
+     * @param block the block id
+     * @return the facts holding at the start of the provided block, must not be modified
+     */
+    protected BitSet factsIn(int block) {
+        return factsIn[block];
+    }
+
+    /**
+     * Returns the facts holding at the end of the provided block.
+     *
+     * @param block the block id
+     * @return the facts holding at the end of the provided block, must not be modified
+     */
+    protected BitSet factsOut(int block) {
+        return factsOut[block];
+    }
+
+    /**
+     * Returns a copy of the facts holding at the start of the provided block.
+     *
+     * @param block the block id
+     * @return a copy of the facts holding at the start of the provided block
+     */
+    public BitSet getFactsIn(int block) {
+        return (BitSet) factsIn[block].clone();
+    }
+
+    /**
+     * Returns a copy of the facts holding at the end of the provided block.
+     *
+     * @param block the block id
+     * @return a copy of the facts holding at the end of the provided block
+     */
+    public BitSet getFactsOut(int block) {
+        return (BitSet) factsOut[block].clone();
+    }
+
+    /**
+     * Returns the analyzed CFG.
+     *
+     * @return the analyzed CFG
+     */
+    public ControlFlowGraph getControlFlowGraph() {
+        return cfg;
+    }
+
+    /**
+     * Returns the number of blocks processed before reaching the fixed point.
+     *
+     * @return the number of blocks processed before reaching the fixed point
+     */
+    public int getNbIterations() {
+        return nbIterations;
+    }
+}
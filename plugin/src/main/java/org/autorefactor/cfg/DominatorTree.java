@@ -0,0 +1,397 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.util.Arrays;
+
+/**
+ * Dominator tree, or post-dominator tree, of a {@link ControlFlowGraph}.
+ * <p>
+ * Block {@code a} dominates block {@code b} when every path from the entry block to {@code b} goes through
+ * {@code a}. Block {@code a} post-dominates block {@code b} when every path from {@code b} to the exit block goes
+ * through {@code a}.
+ * </p>
+ * <p>
+ * Immediate dominators are computed with the Cooper, Harvey and Kennedy iterative algorithm. The dominator tree is
+ * then numbered with a depth first search so that dominance queries are answered in constant time.
+ * Blocks which are not reachable from the root (resp. cannot reach the exit block) are not part of the tree.
+ * </p>
+ *
+ * @see <a href="https://www.cs.rice.edu/~keith/EMBED/dom.pdf">A Simple, Fast Dominance Algorithm</a>
+ */
+public final class DominatorTree {
+
+    private static final int UNDEFINED = -1;
+
+    private final ControlFlowGraph cfg;
+    private final boolean postDominators;
+    private final int root;
+    private final int[] immediateDominators;
+    private final int[] childrenOffsets;
+    private final int[] children;
+    /** Pre-order number of each block in the dominator tree. */
+    private final int[] preOrder;
+    /** Post-order number of each block in the dominator tree. */
+    private final int[] postOrder;
+    private final int[] depths;
+
+    private DominatorTree(ControlFlowGraph cfg, boolean postDominators) {
+        this.cfg = cfg;
+        this.postDominators = postDominators;
+        this.root = postDominators ? cfg.getExitBlock() : cfg.getEntryBlock();
+        final int nbBlocks = cfg.getNbBlocks();
+        this.immediateDominators = new int[nbBlocks];
+        Arrays.fill(immediateDominators, UNDEFINED);
+        this.preOrder = new int[nbBlocks];
+        this.postOrder = new int[nbBlocks];
+        this.depths = new int[nbBlocks];
+        Arrays.fill(preOrder, UNDEFINED);
+        Arrays.fill(postOrder, UNDEFINED);
+        Arrays.fill(depths, UNDEFINED);
+        this.childrenOffsets = new int[nbBlocks + 1];
+        if (root == UNDEFINED) {
+            this.children = new int[0];
+            return;
+        }
+
+        computeImmediateDominators(cfgPostOrder());
+
+        // build the children arrays with a counting sort
+        for (int b = 0; b < nbBlocks; b++) {
+            if (b != root && immediateDominators[b] != UNDEFINED) {
+                childrenOffsets[immediateDominators[b] + 1]++;
+            }
+        }
+        for (int b = 0; b < nbBlocks; b++) {
+            childrenOffsets[b + 1] += childrenOffsets[b];
+        }
+        this.children = new int[childrenOffsets[nbBlocks]];
+        final int[] nextChild = childrenOffsets.clone();
+        for (int b = 0; b < nbBlocks; b++) {
+            if (b != root && immediateDominators[b] != UNDEFINED) {
+                children[nextChild[immediateDominators[b]]++] = b;
+            }
+        }
+
+        numberDominatorTree();
+    }
+
+    private DominatorTree(DominatorTree other, ControlFlowGraph cfg) {
+        this.cfg = cfg;
+        this.postDominators = other.postDominators;
+        this.root = other.root;
+        this.immediateDominators = other.immediateDominators;
+        this.childrenOffsets = other.childrenOffsets;
+        this.children = other.children;
+        this.preOrder = other.preOrder;
+        this.postOrder = other.postOrder;
+        this.depths = other.depths;
+    }
+
+    /**
+     * Returns a copy of this tree for a CFG sharing the same blocks and edges as the CFG of this tree.
+     *
+     * @param cfg the CFG sharing the same blocks and edges
+     * @return a copy of this tree for the provided CFG
+     */
+    DominatorTree copyFor(ControlFlowGraph cfg) {
+        return new DominatorTree(this, cfg);
+    }
+
+    /**
+     * Computes the dominator tree of the provided CFG.
+     *
+     * @param cfg the CFG
+     * @return the dominator tree of the provided CFG
+     */
+    public static DominatorTree dominators(ControlFlowGraph cfg) {
+        return new DominatorTree(cfg, false);
+    }
+
+    /**
+     * Computes the post-dominator tree of the provided CFG.
+     *
+     * @param cfg the CFG
+     * @return the post-dominator tree of the provided CFG
+     */
+    public static DominatorTree postDominators(ControlFlowGraph cfg) {
+        return new DominatorTree(cfg, true);
+    }
+
+    /**
+     * Returns the blocks reachable from the root, in post-order of a depth first search
+     * following edges in the direction of this tree.
+     */
+    private int[] cfgPostOrder() {
+        final int nbBlocks = cfg.getNbBlocks();
+        final int[] results = new int[nbBlocks];
+        int nbResults = 0;
+        final boolean[] visited = new boolean[nbBlocks];
+        final int[] blocksStack = new int[nbBlocks];
+        final int[] nextNeighbours = new int[nbBlocks];
+        int stackSize = 0;
+        visited[root] = true;
+        blocksStack[stackSize] = root;
+        nextNeighbours[stackSize++] = neighboursBegin(root);
+        while (stackSize > 0) {
+            final int block = blocksStack[stackSize - 1];
+            final int next = nextNeighbours[stackSize - 1];
+            if (next < neighboursEnd(block)) {
+                nextNeighbours[stackSize - 1]++;
+                final int neighbour = neighbour(next);
+                if (!visited[neighbour]) {
+                    visited[neighbour] = true;
+                    blocksStack[stackSize] = neighbour;
+                    nextNeighbours[stackSize++] = neighboursBegin(neighbour);
+                }
+            } else {
+                results[nbResults++] = block;
+                stackSize--;
+            }
+        }
+        return Arrays.copyOf(results, nbResults);
+    }
+
+    private int neighboursBegin(int block) {
+        return postDominators ? cfg.getPredecessorsBegin(block) : cfg.getSuccessorsBegin(block);
+    }
+
+    private int neighboursEnd(int block) {
+        return postDominators ? cfg.getPredecessorsEnd(block) : cfg.getSuccessorsEnd(block);
+    }
+
+    private int neighbour(int index) {
+        return postDominators
+                ? cfg.getEdgeSource(cfg.getPredecessorEdge(index))
+                : cfg.getEdgeTarget(index);
+    }
+
+    private int predecessorsBegin(int block) {
+        return postDominators ? cfg.getSuccessorsBegin(block) : cfg.getPredecessorsBegin(block);
+    }
+
+    private int predecessorsEnd(int block) {
+        return postDominators ? cfg.getSuccessorsEnd(block) : cfg.getPredecessorsEnd(block);
+    }
+
+    private int predecessor(int index) {
+        return postDominators
+                ? cfg.getEdgeTarget(index)
+                : cfg.getEdgeSource(cfg.getPredecessorEdge(index));
+    }
+
+    private void computeImmediateDominators(int[] blocksInPostOrder) {
+        final int[] postOrderNumbers = new int[cfg.getNbBlocks()];
+        for (int i = 0; i < blocksInPostOrder.length; i++) {
+            postOrderNumbers[blocksInPostOrder[i]] = i;
+        }
+        immediateDominators[root] = root;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            // visit blocks in reverse post-order, skipping the root
+            for (int i = blocksInPostOrder.length - 2; i >= 0; i--) {
+                final int block = blocksInPostOrder[i];
+                int newIdom = UNDEFINED;
+                for (int p = predecessorsBegin(block); p < predecessorsEnd(block); p++) {
+                    final int pred = predecessor(p);
+                    if (immediateDominators[pred] != UNDEFINED) {
+                        newIdom = newIdom == UNDEFINED ? pred : intersect(pred, newIdom, postOrderNumbers);
+                    }
+                }
+                if (immediateDominators[block] != newIdom) {
+                    immediateDominators[block] = newIdom;
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    private int intersect(int block1, int block2, int[] postOrderNumbers) {
+        int finger1 = block1;
+        int finger2 = block2;
+        while (finger1 != finger2) {
+            while (postOrderNumbers[finger1] < postOrderNumbers[finger2]) {
+                finger1 = immediateDominators[finger1];
+            }
+            while (postOrderNumbers[finger2] < postOrderNumbers[finger1]) {
+                finger2 = immediateDominators[finger2];
+            }
+        }
+        return finger1;
+    }
+
+    private void numberDominatorTree() {
+        final int[] blocksStack = new int[cfg.getNbBlocks()];
+        final int[] nextChildren = new int[cfg.getNbBlocks()];
+        int stackSize = 0;
+        int preOrderNumber = 0;
+        int postOrderNumber = 0;
+        preOrder[root] = preOrderNumber++;
+        depths[root] = 0;
+        blocksStack[stackSize] = root;
+        nextChildren[stackSize++] = childrenOffsets[root];
+        while (stackSize > 0) {
+            final int block = blocksStack[stackSize - 1];
+            final int next = nextChildren[stackSize - 1];
+            if (next < childrenOffsets[block + 1]) {
+                nextChildren[stackSize - 1]++;
+                final int child = children[next];
+                preOrder[child] = preOrderNumber++;
+                depths[child] = depths[block] + 1;
+                blocksStack[stackSize] = child;
+                nextChildren[stackSize++] = childrenOffsets[child];
+            } else {
+                postOrder[block] = postOrderNumber++;
+                stackSize--;
+            }
+        }
+    }
+
+    /**
+     * Returns the CFG this tree has been computed for.
+     *
+     * @return the CFG this tree has been computed for
+     */
+    public ControlFlowGraph getControlFlowGraph() {
+        return cfg;
+    }
+
+    /**
+     * Returns whether this tree is a post-dominator tree.
+     *
+     * @return true if this tree is a post-dominator tree, false if it is a dominator tree
+     */
+    public boolean isPostDominatorTree() {
+        return postDominators;
+    }
+
+    /**
+     * Returns the root of this tree: the entry block for a dominator tree,
+     * the exit block for a post-dominator tree.
+     *
+     * @return the root of this tree
+     */
+    public int getRoot() {
+        return root;
+    }
+
+    /**
+     * Returns whether the provided block is part of this tree.
+     *
+     * @param block the block id
+     * @return true if the provided block is part of this tree, false otherwise
+     */
+    public boolean contains(int block) {
+        return preOrder[block] != UNDEFINED;
+    }
+
+    /**
+     * Returns the immediate dominator (resp. post-dominator) of the provided block.
+     *
+     * @param block the block id
+     * @return the immediate dominator of the provided block,
+     *         or -1 for the root and for blocks which are not part of this tree
+     */
+    public int getImmediateDominator(int block) {
+        if (block == root) {
+            return UNDEFINED;
+        }
+        return immediateDominators[block];
+    }
+
+    /**
+     * Returns the blocks immediately dominated by the provided block.
+     *
+     * @param block the block id
+     * @return the blocks immediately dominated by the provided block
+     */
+    public int[] getChildren(int block) {
+        return Arrays.copyOfRange(children, childrenOffsets[block], childrenOffsets[block + 1]);
+    }
+
+    /**
+     * Returns the depth of the provided block in this tree.
+     *
+     * @param block the block id
+     * @return the depth of the provided block in this tree, 0 for the root, -1 for blocks not part of this tree
+     */
+    public int getDepth(int block) {
+        return depths[block];
+    }
+
+    /**
+     * Returns whether block {@code a} dominates (resp. post-dominates) block {@code b}.
+     * A block dominates itself.
+     *
+     * @param a the potentially dominating block id
+     * @param b the potentially dominated block id
+     * @return true if block {@code a} dominates block {@code b}, false otherwise
+     */
+    public boolean dominates(int a, int b) {
+        return contains(a) && contains(b)
+                && preOrder[a] <= preOrder[b]
+                && postOrder[b] <= postOrder[a];
+    }
+
+    /**
+     * Returns whether block {@code a} strictly dominates (resp. post-dominates) block {@code b}.
+     *
+     * @param a the potentially dominating block id
+     * @param b the potentially dominated block id
+     * @return true if block {@code a} strictly dominates block {@code b}, false otherwise
+     */
+    public boolean strictlyDominates(int a, int b) {
+        return a != b && dominates(a, b);
+    }
+
+    /**
+     * Returns the nearest common dominator (resp. post-dominator) of the two provided blocks.
+     *
+     * @param a the first block id
+     * @param b the second block id
+     * @return the nearest common dominator of the two provided blocks,
+     *         or -1 if one of them is not part of this tree
+     */
+    public int getNearestCommonDominator(int a, int b) {
+        if (!contains(a) || !contains(b)) {
+            return UNDEFINED;
+        }
+        int finger1 = a;
+        int finger2 = b;
+        while (depths[finger1] > depths[finger2]) {
+            finger1 = immediateDominators[finger1];
+        }
+        while (depths[finger2] > depths[finger1]) {
+            finger2 = immediateDominators[finger2];
+        }
+        while (finger1 != finger2) {
+            finger1 = immediateDominators[finger1];
+            finger2 = immediateDominators[finger2];
+        }
+        return finger1;
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.autorefactor.util.UnhandledException;
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+
+/**
+ * The well-known exception types which can be implicitly thrown while evaluating Java expressions.
+ * <p>
+ * They are resolved once per AST and cached as a property of its root node:
+ * for {@link ITypeBinding#equals(Object)} to work, all type bindings must have been loaded
+ * from the same compilation unit. No type is resolved when the AST has no bindings.
+ * </p>
+ * <p>
+ * Each type is identified by a bit, so a set of these types fits in an {@code int} mask.
+ * </p>
+ */
+final class ExceptionTypes {
+
+    /** The {@code java.lang.RuntimeException} type. */
+    static final int RUNTIME_EXCEPTION = 1 << 0;
+    /** The {@code java.lang.Error} type. */
+    static final int ERROR = 1 << 1;
+    /** The {@code java.lang.NullPointerException} type. */
+    static final int NULL_POINTER_EXCEPTION = 1 << 2;
+    /** The {@code java.lang.ArrayIndexOutOfBoundsException} type. */
+    static final int ARRAY_INDEX_OUT_OF_BOUNDS_EXCEPTION = 1 << 3;
+    /** The {@code java.lang.NegativeArraySizeException} type. */
+    static final int NEGATIVE_ARRAY_SIZE_EXCEPTION = 1 << 4;
+    /** The {@code java.lang.ArithmeticException} type. */
+    static final int ARITHMETIC_EXCEPTION = 1 << 5;
+    /** The {@code java.lang.ClassCastException} type. */
+    static final int CLASS_CAST_EXCEPTION = 1 << 6;
+    /** The unchecked exception types which any invoked method or constructor can throw. */
+    static final int INVOCATION_EXCEPTIONS = RUNTIME_EXCEPTION | ERROR;
+    /** The number of well-known exception types. */
+    private static final int NB_TYPES = 7;
+
+    private static final String PROPERTY = ExceptionTypes.class.getName();
+
+    /** The type bindings, indexed by the position of their bit. */
+    private final ITypeBinding[] types = new ITypeBinding[NB_TYPES];
+    /** The mask of the types which could be resolved. */
+    final int resolvedTypesMask;
+    /** The masks of the subtypes and of the supertypes of each caught type, type bindings are unique per AST. */
+    private final Map<ITypeBinding, int[]> masksByCaughtType = new IdentityHashMap<ITypeBinding, int[]>();
+
+    private ExceptionTypes(ASTNode root) {
+        final AST ast = root.getAST();
+        final ITypeBinding runtimeException = ast.resolveWellKnownType("java.lang.RuntimeException");
+        types[0] = runtimeException;
+        types[1] = ast.resolveWellKnownType("java.lang.Error");
+        if (runtimeException != null) {
+            types[2] = resolveType(root, runtimeException, "java.lang.NullPointerException");
+            types[3] = resolveType(root, runtimeException, "java.lang.ArrayIndexOutOfBoundsException");
+            types[4] = resolveType(root, runtimeException, "java.lang.NegativeArraySizeException");
+            types[5] = resolveType(root, runtimeException, "java.lang.ArithmeticException");
+            types[6] = resolveType(root, runtimeException, "java.lang.ClassCastException");
+        }
+        int mask = 0;
+        for (int i = 0; i < NB_TYPES; i++) {
+            if (types[i] != null) {
+                mask |= 1 << i;
+            }
+        }
+        this.resolvedTypesMask = mask;
+    }
+
+    /**
+     * Returns the mask of the types which are always caught by a catch clause catching the provided types.
+     *
+     * @param caughtTypes the caught types, a null type standing for an unresolved type
+     * @return the mask of the types which are always caught
+     */
+    int getAlwaysCaughtMask(List<ITypeBinding> caughtTypes) {
+        int result = 0;
+        for (ITypeBinding caughtType : caughtTypes) {
+            if (caughtType != null) {
+                result |= getMasks(caughtType)[0];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the mask of the types which may be caught by a catch clause catching the provided types.
+     *
+     * @param caughtTypes the caught types, a null type standing for an unresolved type
+     * @return the mask of the types which may be caught
+     */
+    int getMayBeCaughtMask(List<ITypeBinding> caughtTypes) {
+        int result = 0;
+        for (ITypeBinding caughtType : caughtTypes) {
+            if (caughtType == null) {
+                // cannot tell, so be conservative
+                return resolvedTypesMask;
+            }
+            final int[] masks = getMasks(caughtType);
+            result |= masks[0] | masks[1];
+        }
+        return result;
+    }
+
+    /**
+     * Returns the masks of the subtypes and of the supertypes of the provided type.
+     * They are computed once per caught type, because checking subtyping is costly.
+     */
+    private synchronized int[] getMasks(ITypeBinding caughtType) {
+        int[] results = masksByCaughtType.get(caughtType);
+        if (results == null) {
+            results = new int[2];
+            for (int i = 0; i < NB_TYPES; i++) {
+                final ITypeBinding type = types[i];
+                if (type != null) {
+                    if (type == caughtType || type.isSubTypeCompatible(caughtType)) {
+                        results[0] |= 1 << i;
+                    } else if (caughtType.isSubTypeCompatible(type)) {
+                        results[1] |= 1 << i;
+                    }
+                }
+            }
+            masksByCaughtType.put(caughtType, results);
+        }
+        return results;
+    }
+
+    /**
+     * Returns the well-known exception types for the AST of the provided node.
+     *
+     * @param node any node of the AST
+     * @return the well-known exception types for the AST of the provided node
+     */
+    static ExceptionTypes of(ASTNode node) {
+        final ASTNode root = node.getRoot();
+        synchronized (root) {
+            ExceptionTypes result = (ExceptionTypes) root.getProperty(PROPERTY);
+            if (result == null) {
+                result = new ExceptionTypes(root);
+                root.setProperty(PROPERTY, result);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * FIXME Horribly brittle hack that uses reflection to resolve type bindings.
+     * <p>
+     * But how could I do otherwise?
+     * <p>
+     *
+     * @see org.eclipse.jdt.core.dom.DefaultBindingResolver#resolveWellKnownType(String)
+     */
+    private ITypeBinding resolveType(ASTNode root, ITypeBinding runtimeException, String fullyQualifiedName) {
+        try {
+            final Field f1 = runtimeException.getClass().getDeclaredField("resolver");
+            f1.setAccessible(true);
+            Object bindingResolver = f1.get(runtimeException);
+
+            final Field f2 = bindingResolver.getClass().getDeclaredField("scope");
+            f2.setAccessible(true);
+            Object compilationUnitScope = f2.get(bindingResolver);
+
+            final Method m2 = compilationUnitScope.getClass().getSuperclass()
+                    .getDeclaredMethod("getType", char[][].class, int.class);
+            m2.setAccessible(true);
+            final char[][] simpleNamesArray = toSimpleNamesArray(fullyQualifiedName);
+            final Object internalTypeBinding =
+                    m2.invoke(compilationUnitScope, simpleNamesArray, 3);
+
+            final Method m1 = bindingResolver.getClass().getDeclaredMethod("getTypeBinding",
+                    internalTypeBinding.getClass().getSuperclass().getSuperclass());
+            m1.setAccessible(true);
+            return (ITypeBinding) m1.invoke(bindingResolver, internalTypeBinding);
+        } catch (Exception e) {
+            throw new UnhandledException(root, e);
+        }
+    }
+
+    private char[][] toSimpleNamesArray(String fullyQualifiedName) {
+        final String[] simpleNames = fullyQualifiedName.split("\\.");
+        final char[][] result = new char[simpleNames.length][];
+        for (int i = 0; i < simpleNames.length; i++) {
+            result[i] = simpleNames[i].toCharArray();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.util.BitSet;
+
+import static org.autorefactor.cfg.ReachingDefinitions.*;
+import static org.autorefactor.cfg.VariableAccess.*;
+
+/**
+ * Live variables analysis: computes which variables may be read before being written again,
+ * at each point of a method.
+ * <p>
+ * Facts are variable ids. No variables are live at the exit of the method.
+ * </p>
+ */
+public class LiveVariables extends DataFlowAnalysis {
+
+    /**
+     * Builds an instance of this class and runs the analysis.
+     *
+     * @param cfg the CFG to analyze
+     */
+    public LiveVariables(ControlFlowGraph cfg) {
+        super(cfg, false, true);
+        solve();
+    }
+
+    private LiveVariables(ControlFlowGraph cfg, LiveVariables other) {
+        super(cfg, other);
+    }
+
+    /**
+     * Returns a copy of this analysis for a CFG with the same dataflow as the analyzed CFG.
+     *
+     * @param cfg the CFG with the same dataflow
+     * @return a copy of this analysis for the provided CFG
+     * @see ControlFlowGraph#hasSameDataFlowAs(ControlFlowGraph)
+     */
+    LiveVariables copyFor(ControlFlowGraph cfg) {
+        return new LiveVariables(cfg, this);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected int getNbFacts() {
+        return cfg.getNbVariables();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void computeGenKill(int block, BitSet gen, BitSet kill) {
+        for (int a = cfg.getVariableAccessesBegin(block); a < cfg.getVariableAccessesEnd(block); a++) {
+            final int variable = cfg.getAccessedVariable(a);
+            final int accessType = cfg.getAccessType(a);
+            // an access both reading and writing a variable reads it first
+            if ((accessType & READ) != 0 && !kill.get(variable)) {
+                gen.set(variable);
+            }
+            if (isDefinition(accessType)) {
+                kill.set(variable);
+            }
+        }
+    }
+
+    /**
+     * Returns the variables live at the start of the provided block.
+     *
+     * @param block the block id
+     * @return the ids of the variables live at the start of the provided block
+     */
+    public BitSet getLiveIn(int block) {
+        return getFactsIn(block);
+    }
+
+    /**
+     * Returns the variables live at the end of the provided block.
+     *
+     * @param block the block id
+     * @return the ids of the variables live at the end of the provided block
+     */
+    public BitSet getLiveOut(int block) {
+        return getFactsOut(block);
+    }
+
+    /**
+     * Returns whether the provided variable is live at the start of the provided block.
+     *
+     * @param block the block id
+     * @param variable the variable id
+     * @return true if the provided variable is live at the start of the provided block, false otherwise
+     */
+    public boolean isLiveIn(int block, int variable) {
+        return factsIn(block).get(variable);
+    }
+
+    /**
+     * Returns whether the provided variable is live at the end of the provided block.
+     *
+     * @param block the block id
+     * @param variable the variable id
+     * @return true if the provided variable is live at the end of the provided block, false otherwise
+     */
+    public boolean isLiveOut(int block, int variable) {
+        return factsOut(block).get(variable);
+    }
+
+    /**
+     * Returns whether the accessed variable is live right after the provided variable access.
+     * For a definition, false means the written value is never read.
+     *
+     * @param access the variable access id
+     * @return true if the accessed variable is live right after the provided variable access, false otherwise
+     */
+    public boolean isLiveAfter(int access) {
+        final int block = cfg.getVariableAccessBlock(access);
+        final int variable = cfg.getAccessedVariable(access);
+        boolean live = factsOut(block).get(variable);
+        for (int a = cfg.getVariableAccessesEnd(block) - 1; a > access; a--) {
+            if (cfg.getAccessedVariable(a) == variable) {
+                final int accessType = cfg.getAccessType(a);
+                if (isDefinition(accessType)) {
+                    live = false;
+                }
+                if ((accessType & READ) != 0) {
+                    live = true;
+                }
+            }
+        }
+        return live;
+    }
+}
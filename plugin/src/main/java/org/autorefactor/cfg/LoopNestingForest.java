@@ -0,0 +1,261 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import org.autorefactor.util.IllegalArgumentException;
+
+/**
+ * Loop-nesting forest of a {@link ControlFlowGraph}.
+ * <p>
+ * Loops are natural loops: a back edge is an edge whose target (the loop header) dominates its source,
+ * and the loop body is made of the header plus all the blocks which can reach the source of a back edge
+ * without going through the header. Back edges sharing the same header make up a single loop.
+ * Java source code only produces reducible CFGs, so all loops are found this way.
+ * </p>
+ * <p>
+ * Loop ids are ordered by header block id, which means outer loops come before the loops they contain.
+ * </p>
+ */
+public final class LoopNestingForest {
+
+    private static final int NO_LOOP = -1;
+
+    private final ControlFlowGraph cfg;
+    private final int[] headers;
+    private final BitSet[] bodies;
+    private final int[] parents;
+    private final int[] depths;
+    /** The innermost loop containing each block. */
+    private final int[] innermostLoops;
+
+    /**
+     * Builds the loop-nesting forest of the CFG of the provided dominator tree.
+     *
+     * @param dominators the dominator tree of a CFG
+     */
+    public LoopNestingForest(DominatorTree dominators) {
+        if (dominators.isPostDominatorTree()) {
+            throw new IllegalArgumentException(null, "Expected a dominator tree, not a post-dominator tree");
+        }
+        this.cfg = dominators.getControlFlowGraph();
+        final int nbBlocks = cfg.getNbBlocks();
+
+        final List<Integer> headersList = new ArrayList<Integer>();
+        final List<BitSet> bodiesList = new ArrayList<BitSet>();
+        for (int header = 0; header < nbBlocks; header++) {
+            BitSet body = null;
+            for (int i = cfg.getPredecessorsBegin(header); i < cfg.getPredecessorsEnd(header); i++) {
+                final int source = cfg.getEdgeSource(cfg.getPredecessorEdge(i));
+                if (dominators.dominates(header, source)) {
+                    if (body == null) {
+                        body = new BitSet(nbBlocks);
+                        body.set(header);
+                    }
+                    addNaturalLoopBody(source, body, dominators);
+                }
+            }
+            if (body != null) {
+                headersList.add(header);
+                bodiesList.add(body);
+            }
+        }
+
+        final int nbLoops = headersList.size();
+        this.headers = new int[nbLoops];
+        this.bodies = bodiesList.toArray(new BitSet[nbLoops]);
+        this.parents = new int[nbLoops];
+        this.depths = new int[nbLoops];
+        this.innermostLoops = new int[nbBlocks];
+        Arrays.fill(innermostLoops, NO_LOOP);
+        // block ids are numbered in reverse post-order,
+        // so an enclosing loop is always visited before the loops it contains
+        for (int loop = 0; loop < nbLoops; loop++) {
+            final int header = headersList.get(loop);
+            headers[loop] = header;
+            parents[loop] = innermostLoops[header];
+            depths[loop] = parents[loop] == NO_LOOP ? 1 : depths[parents[loop]] + 1;
+            final BitSet body = bodies[loop];
+            for (int b = body.nextSetBit(0); b >= 0; b = body.nextSetBit(b + 1)) {
+                innermostLoops[b] = loop;
+            }
+        }
+    }
+
+    private LoopNestingForest(LoopNestingForest other, ControlFlowGraph cfg) {
+        this.cfg = cfg;
+        this.headers = other.headers;
+        this.bodies = other.bodies;
+        this.parents = other.parents;
+        this.depths = other.depths;
+        this.innermostLoops = other.innermostLoops;
+    }
+
+    /**
+     * Returns a copy of this forest for a CFG sharing the same blocks and edges as the CFG of this forest.
+     *
+     * @param cfg the CFG sharing the same blocks and edges
+     * @return a copy of this forest for the provided CFG
+     */
+    LoopNestingForest copyFor(ControlFlowGraph cfg) {
+        return new LoopNestingForest(this, cfg);
+    }
+
+    /** Adds to the body all the blocks reaching the provided block without going through the loop header. */
+    private void addNaturalLoopBody(int backEdgeSource, BitSet body, DominatorTree dominators) {
+        if (body.get(backEdgeSource)) {
+            return;
+        }
+        final int[] toVisit = new int[cfg.getNbBlocks()];
+        int nbToVisit = 0;
+        body.set(backEdgeSource);
+        toVisit[nbToVisit++] = backEdgeSource;
+        while (nbToVisit > 0) {
+            final int block = toVisit[--nbToVisit];
+            for (int i = cfg.getPredecessorsBegin(block); i < cfg.getPredecessorsEnd(block); i++) {
+                final int pred = cfg.getEdgeSource(cfg.getPredecessorEdge(i));
+                // ignore dead code
+                if (!body.get(pred) && dominators.contains(pred)) {
+                    body.set(pred);
+                    toVisit[nbToVisit++] = pred;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the CFG this forest has been computed for.
+     *
+     * @return the CFG this forest has been computed for
+     */
+    public ControlFlowGraph getControlFlowGraph() {
+        return cfg;
+    }
+
+    /**
+     * Returns the number of loops in the CFG.
+     *
+     * @return the number of loops in the CFG
+     */
+    public int getNbLoops() {
+        return headers.length;
+    }
+
+    /**
+     * Returns the header block of the provided loop.
+     *
+     * @param loop the loop id
+     * @return the header block id of the provided loop
+     */
+    public int getHeader(int loop) {
+        return headers[loop];
+    }
+
+    /**
+     * Returns the blocks making up the body of the provided loop, including its header and nested loops.
+     *
+     * @param loop the loop id
+     * @return the block ids making up the body of the provided loop
+     */
+    public BitSet getBody(int loop) {
+        return (BitSet) bodies[loop].clone();
+    }
+
+    /**
+     * Returns whether the provided loop contains the provided block.
+     *
+     * @param loop the loop id
+     * @param block the block id
+     * @return true if the provided loop contains the provided block, false otherwise
+     */
+    public boolean contains(int loop, int block) {
+        return bodies[loop].get(block);
+    }
+
+    /**
+     * Returns the loop directly enclosing the provided loop.
+     *
+     * @param loop the loop id
+     * @return the loop directly enclosing the provided loop, or -1 for outermost loops
+     */
+    public int getParent(int loop) {
+        return parents[loop];
+    }
+
+    /**
+     * Returns the nesting depth of the provided loop.
+     *
+     * @param loop the loop id
+     * @return the nesting depth of the provided loop, 1 for outermost loops
+     */
+    public int getDepth(int loop) {
+        return depths[loop];
+    }
+
+    /**
+     * Returns the innermost loop containing the provided block.
+     *
+     * @param block the block id
+     * @return the innermost loop containing the provided block, or -1 if the block is not in a loop
+     */
+    public int getInnermostLoop(int block) {
+        return innermostLoops[block];
+    }
+
+    /**
+     * Returns the loop nesting depth of the provided block.
+     *
+     * @param block the block id
+     * @return the loop nesting depth of the provided block, 0 if the block is not in a loop
+     */
+    public int getLoopDepth(int block) {
+        final int loop = innermostLoops[block];
+        return loop != NO_LOOP ? depths[loop] : 0;
+    }
+
+    /**
+     * Returns the blocks outside the provided loop which are targets of edges leaving the loop.
+     *
+     * @param loop the loop id
+     * @return the exit block ids of the provided loop
+     */
+    public BitSet getExitBlocks(int loop) {
+        final BitSet body = bodies[loop];
+        final BitSet results = new BitSet(cfg.getNbBlocks());
+        for (int b = body.nextSetBit(0); b >= 0; b = body.nextSetBit(b + 1)) {
+            for (int e = cfg.getSuccessorsBegin(b); e < cfg.getSuccessorsEnd(b); e++) {
+                if (!body.get(cfg.getEdgeTarget(e))) {
+                    results.set(cfg.getEdgeTarget(e));
+                }
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+import java.util.BitSet;
+
+import static org.autorefactor.cfg.VariableAccess.*;
+
+/**
+ * Reaching definitions analysis: computes which variable definitions may reach each point of a method.
+ * <p>
+ * Facts are variable access ids. Declarations and writes are definitions,
+ * and each definition kills all the other definitions of the same variable.
+ * </p>
+ */
+public class ReachingDefinitions extends DataFlowAnalysis {
+
+    /** The definitions of each variable, indexed by variable id. */
+    private final BitSet[] definitionsByVariable;
+
+    /**
+     * Builds an instance of this class and runs the analysis.
+     *
+     * @param cfg the CFG to analyze
+     */
+    public ReachingDefinitions(ControlFlowGraph cfg) {
+        super(cfg, true, true);
+        this.definitionsByVariable = new BitSet[cfg.getNbVariables()];
+        for (int v = 0; v < definitionsByVariable.length; v++) {
+            definitionsByVariable[v] = new BitSet();
+        }
+        for (int a = 0; a < cfg.getNbVariableAccesses(); a++) {
+            if (isDefinition(cfg.getAccessType(a))) {
+                definitionsByVariable[cfg.getAccessedVariable(a)].set(a);
+            }
+        }
+        solve();
+    }
+
+    private ReachingDefinitions(ControlFlowGraph cfg, ReachingDefinitions other) {
+        super(cfg, other);
+        this.definitionsByVariable = other.definitionsByVariable;
+    }
+
+    /**
+     * Returns a copy of this analysis for a CFG with the same dataflow as the analyzed CFG.
+     *
+     * @param cfg the CFG with the same dataflow
+     * @return a copy of this analysis for the provided CFG
+     * @see ControlFlowGraph#hasSameDataFlowAs(ControlFlowGraph)
+     */
+    ReachingDefinitions copyFor(ControlFlowGraph cfg) {
+        return new ReachingDefinitions(cfg, this);
+    }
+
+    /**
+     * Returns whether the provided access type defines the value of a variable.
+     *
+     * @param accessType the access type
+     * @return true if the provided access type defines the value of a variable, false otherwise
+     */
+    public static boolean isDefinition(int accessType) {
+        return (accessType & (DECL_INIT | DECL_UNINIT | WRITE)) != 0;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected int getNbFacts() {
+        return cfg.getNbVariableAccesses();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    protected void computeGenKill(int block, BitSet gen, BitSet kill) {
+        for (int a = cfg.getVariableAccessesBegin(block); a < cfg.getVariableAccessesEnd(block); a++) {
+            if (isDefinition(cfg.getAccessType(a))) {
+                final BitSet definitions = definitionsByVariable[cfg.getAccessedVariable(a)];
+                kill.or(definitions);
+                gen.andNot(definitions);
+                gen.set(a);
+            }
+        }
+    }
+
+    /**
+     * Returns the definitions of the provided variable.
+     *
+     * @param variable the variable id
+     * @return the variable access ids defining the provided variable
+     */
+    public BitSet getDefinitions(int variable) {
+        return (BitSet) definitionsByVariable[variable].clone();
+    }
+
+    /**
+     * Returns the definitions reaching the start of the provided block.
+     *
+     * @param block the block id
+     * @return the variable access ids of the definitions reaching the start of the provided block
+     */
+    public BitSet getReachingDefinitions(int block) {
+        return getFactsIn(block);
+    }
+
+    /**
+     * Returns the definitions of the provided variable reaching the start of the provided block.
+     *
+     * @param block the block id
+     * @param variable the variable id
+     * @return the variable access ids of the definitions of the provided variable
+     *         reaching the start of the provided block
+     */
+    public BitSet getReachingDefinitions(int block, int variable) {
+        final BitSet results = getFactsIn(block);
+        results.and(definitionsByVariable[variable]);
+        return results;
+    }
+
+    /**
+     * Returns the definitions of the accessed variable which reach the provided variable access.
+     * A definition does not reach itself.
+     *
+     * @param access the variable access id
+     * @return the variable access ids of the definitions reaching the provided variable access
+     */
+    public BitSet getDefinitionsReaching(int access) {
+        final int block = cfg.getVariableAccessBlock(access);
+        final int variable = cfg.getAccessedVariable(access);
+        final BitSet results = getReachingDefinitions(block, variable);
+        for (int a = cfg.getVariableAccessesBegin(block); a < access; a++) {
+            if (cfg.getAccessedVariable(a) == variable && isDefinition(cfg.getAccessType(a))) {
+                results.clear();
+                results.set(a);
+            }
+        }
+        return results;
+    }
+}
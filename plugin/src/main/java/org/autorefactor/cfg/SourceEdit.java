@@ -0,0 +1,179 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.cfg;
+
+/**
+ * Describes how the source code of a node changed between two parses of the same compilation unit,
+ * as a single edited range surrounded by an unchanged prefix and an unchanged suffix.
+ * <p>
+ * Positions located in the unchanged prefix or suffix can be relocated from the previous source
+ * to the new source. Positions located in the edited range cannot.
+ * </p>
+ */
+final class SourceEdit {
+
+    private static final int UNDEFINED = -1;
+
+    private final int previousStart;
+    private final int previousEnd;
+    private final int newStart;
+    private final int newEnd;
+    /** Shift applied to the positions located before the edited range. */
+    private final int prefixShift;
+
+    private SourceEdit(int previousStart, int previousEnd, int newStart, int newEnd, int prefixShift) {
+        this.previousStart = previousStart;
+        this.previousEnd = previousEnd;
+        this.newStart = newStart;
+        this.newEnd = newEnd;
+        this.prefixShift = prefixShift;
+    }
+
+    /**
+     * Computes the edit turning the provided range of the previous source into the provided range of the new source,
+     * by skipping their common prefix and their common suffix.
+     *
+     * @param previousSource the previous source
+     * @param previousRangeStart the start position of the range in the previous source
+     * @param previousRangeEnd the end position of the range in the previous source
+     * @param newSource the new source
+     * @param newRangeStart the start position of the range in the new source
+     * @param newRangeEnd the end position of the range in the new source
+     * @return the edit turning the previous range into the new range
+     */
+    static SourceEdit between(String previousSource, int previousRangeStart, int previousRangeEnd,
+            String newSource, int newRangeStart, int newRangeEnd) {
+        final int maxLength = Math.min(previousRangeEnd - previousRangeStart, newRangeEnd - newRangeStart);
+        int prefix = 0;
+        while (prefix < maxLength
+                && previousSource.charAt(previousRangeStart + prefix) == newSource.charAt(newRangeStart + prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < maxLength - prefix
+                && previousSource.charAt(previousRangeEnd - 1 - suffix)
+                    == newSource.charAt(newRangeEnd - 1 - suffix)) {
+            suffix++;
+        }
+        return new SourceEdit(previousRangeStart + prefix, previousRangeEnd - suffix,
+                newRangeStart + prefix, newRangeEnd - suffix, newRangeStart - previousRangeStart);
+    }
+
+    /**
+     * Returns whether the source did not change.
+     *
+     * @return true if the source did not change, false otherwise
+     */
+    boolean isEmpty() {
+        return previousStart == previousEnd && newStart == newEnd;
+    }
+
+    /**
+     * Returns the start position of the edited range in the previous source.
+     *
+     * @return the start position of the edited range in the previous source
+     */
+    int getPreviousStart() {
+        return previousStart;
+    }
+
+    /**
+     * Returns the end position of the edited range in the previous source.
+     *
+     * @return the end position of the edited range in the previous source
+     */
+    int getPreviousEnd() {
+        return previousEnd;
+    }
+
+    /**
+     * Returns the start position of the edited range in the new source.
+     *
+     * @return the start position of the edited range in the new source
+     */
+    int getNewStart() {
+        return newStart;
+    }
+
+    /**
+     * Returns the end position of the edited range in the new source.
+     *
+     * @return the end position of the edited range in the new source
+     */
+    int getNewEnd() {
+        return newEnd;
+    }
+
+    /**
+     * Relocates the start position of a node from the previous source to the new source.
+     * A node starting where text was inserted is considered to start after the inserted text.
+     *
+     * @param position the start position of a node in the previous source
+     * @return the start position of the node in the new source, or -1 if it is located in the edited range
+     */
+    int relocateStart(int position) {
+        if (position < previousStart) {
+            return position + prefixShift;
+        } else if (position >= previousEnd) {
+            return position + newEnd - previousEnd;
+        }
+        return UNDEFINED;
+    }
+
+    /**
+     * Relocates the end position of a node from the previous source to the new source.
+     * A node ending where text was inserted is considered to end before the inserted text.
+     *
+     * @param position the end position of a node in the previous source
+     * @return the end position of the node in the new source, or -1 if it is located in the edited range
+     */
+    int relocateEnd(int position) {
+        if (position <= previousStart) {
+            return position + prefixShift;
+        } else if (position >= previousEnd) {
+            return position + newEnd - previousEnd;
+        }
+        return UNDEFINED;
+    }
+
+    /**
+     * Returns whether the provided range of the previous source overlaps or touches the edited range.
+     *
+     * @param start the start position of the range in the previous source
+     * @param end the end position of the range in the previous source
+     * @return true if the provided range overlaps or touches the edited range, false otherwise
+     */
+    boolean touches(int start, int end) {
+        return start <= previousEnd && previousStart <= end;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[previous=" + previousStart + "-" + previousEnd
+                + ", new=" + newStart + "-" + newEnd + "]";
+    }
+}
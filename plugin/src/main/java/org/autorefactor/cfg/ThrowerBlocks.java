@@ -1,97 +1,249 @@
 package org.autorefactor.cfg;
 
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
-import org.eclipse.jdt.core.dom.Expression;
 import org.eclipse.jdt.core.dom.ITypeBinding;
 
 /**
- * Holds all the basic blocks that can potentially throw.
+ * Holds all the basic blocks that can potentially throw, with the types of the exceptions they can throw.
+ * <p>
+ * Exceptions explicitly thrown by a throw statement, or declared by an invoked method or constructor,
+ * are kept apart from the exceptions implicitly thrown while evaluating expressions,
+ * like {@link NullPointerException} or the unchecked exceptions any invoked method can throw.
+ * Implicit exceptions are only wired to catch clauses and finally blocks:
+ * wiring them to the exit block would connect nearly every block to it.
+ * They are recorded as masks of {@link ExceptionTypes} bits, so catch clauses are matched against them
+ * with bitwise operations instead of costly subtyping checks for each throwing block.
+ * </p>
  */
 class ThrowerBlocks {
 
-    private final Map<CFGBasicBlock, Set<ITypeBinding>> potentialThrowingBlocks =
-            new HashMap<CFGBasicBlock, Set<ITypeBinding>>();
-    private final Map<CFGEdgeBuilder, Set<ITypeBinding>> potentialThrowingEdges =
-            new HashMap<CFGEdgeBuilder, Set<ITypeBinding>>();
+    private final Map<CFGBasicBlock, List<ITypeBinding>> explicitThrows =
+            new LinkedHashMap<CFGBasicBlock, List<ITypeBinding>>();
+    /** The masks of the implicitly thrown exception types, see {@link ExceptionTypes}. */
+    private final Map<CFGBasicBlock, Integer> implicitThrows = new LinkedHashMap<CFGBasicBlock, Integer>();
+    /** The implicitly thrown exception types, null when they are not recorded. */
+    private final ExceptionTypes exceptionTypes;
+    /** Whether the explicitly thrown exceptions are recorded, otherwise no exception edges are built from them. */
+    private final boolean recordExplicitThrows;
+
+    public ThrowerBlocks() {
+        this(null, true);
+    }
+
+    /**
+     * Builds an instance of this class.
+     *
+     * @param exceptionTypes the implicitly thrown exception types, or null to not record implicit exceptions
+     * @param recordExplicitThrows whether to record the explicitly thrown exceptions
+     */
+    ThrowerBlocks(ExceptionTypes exceptionTypes, boolean recordExplicitThrows) {
+        this.exceptionTypes = exceptionTypes;
+        this.recordExplicitThrows = recordExplicitThrows;
+    }
 
     public void addThrow(CFGBasicBlock basicBlock, ITypeBinding... exceptionTypes) {
-        if (exceptionTypes != null && exceptionTypes.length > 0) {
-            potentialThrowingBlocks.put(basicBlock, newSet(exceptionTypes));
+        if (recordExplicitThrows && basicBlock != null && exceptionTypes != null) {
+            for (ITypeBinding exceptionType : exceptionTypes) {
+                if (exceptionType != null) {
+                    addType(getTypes(explicitThrows, basicBlock), exceptionType);
+                }
+            }
         }
     }
 
-    public void addThrow(CFGEdgeBuilder liveEdge, Set<ITypeBinding> exceptionTypes) {
-        if (exceptionTypes != null && !exceptionTypes.isEmpty()) {
-            potentialThrowingEdges.put(liveEdge, exceptionTypes);
+    /**
+     * Records that the provided block can implicitly throw the provided exception types.
+     *
+     * @param basicBlock the throwing block
+     * @param exceptionTypesMask the mask of {@link ExceptionTypes} bits of the thrown exception types
+     */
+    public void addImplicitThrow(CFGBasicBlock basicBlock, int exceptionTypesMask) {
+        if (exceptionTypes != null && basicBlock != null) {
+            addMask(implicitThrows, basicBlock, exceptionTypesMask & exceptionTypes.resolvedTypesMask);
         }
     }
 
-    public void addThrow(Expression e, ITypeBinding... newExceptions) {
-        // TODO JNR remove
+    private static List<ITypeBinding> getTypes(Map<CFGBasicBlock, List<ITypeBinding>> throwsMap,
+            CFGBasicBlock basicBlock) {
+        List<ITypeBinding> types = throwsMap.get(basicBlock);
+        if (types == null) {
+            // a block only throws a few exception types, a list is cheaper than a set
+            types = new ArrayList<ITypeBinding>(4);
+            throwsMap.put(basicBlock, types);
+        }
+        return types;
     }
 
-    private HashSet<ITypeBinding> newSet(ITypeBinding... exceptionTypes) {
-        return new HashSet<ITypeBinding>(Arrays.asList(exceptionTypes));
+    private static void addType(List<ITypeBinding> types, ITypeBinding exceptionType) {
+        if (!types.contains(exceptionType)) {
+            types.add(exceptionType);
+        }
     }
 
-    public List<CFGBasicBlock> selectBlocksThrowing(ITypeBinding exceptionTypeToFind) {
-        final List<CFGBasicBlock> results = new LinkedList<CFGBasicBlock>();
-        for (Entry<CFGBasicBlock, Set<ITypeBinding>> entry : potentialThrowingBlocks.entrySet()) {
-            final Set<ITypeBinding> thrownTypes = entry.getValue();
-            if (exceptionTypeToFind == null || thrownTypes.contains(exceptionTypeToFind)) {
-                results.add(entry.getKey());
+    private static void addMask(Map<CFGBasicBlock, Integer> masks, CFGBasicBlock basicBlock, int mask) {
+        if (mask != 0) {
+            final Integer previousMask = masks.get(basicBlock);
+            if (previousMask == null) {
+                masks.put(basicBlock, mask);
+            } else if ((previousMask | mask) != previousMask) {
+                masks.put(basicBlock, previousMask | mask);
             }
         }
+    }
+
+    public boolean isEmpty() {
+        return explicitThrows.isEmpty() && implicitThrows.isEmpty();
+    }
+
+    public Set<CFGBasicBlock> getThrowingBlocks() {
+        final Set<CFGBasicBlock> results = new LinkedHashSet<CFGBasicBlock>(explicitThrows.keySet());
+        results.addAll(implicitThrows.keySet());
         return results;
     }
 
-    public Map<CFGBasicBlock, Set<ITypeBinding>> selectBlocksThrowingOtherThan(
-            Set<ITypeBinding> exceptionTypesToReject) {
-        Map<CFGBasicBlock, Set<ITypeBinding>> results = new HashMap<CFGBasicBlock, Set<ITypeBinding>>();
-        for (Entry<CFGBasicBlock, Set<ITypeBinding>> entry : potentialThrowingBlocks.entrySet()) {
-            final Set<ITypeBinding> bindings = getNonMatching(
-                    exceptionTypesToReject, entry.getValue());
-            if (!bindings.isEmpty()) {
-                results.put(entry.getKey(), bindings);
+    public Set<CFGBasicBlock> getExplicitThrowingBlocks() {
+        return explicitThrows.keySet();
+    }
+
+    /**
+     * Returns the blocks throwing an exception which can be caught by a catch clause catching the provided types,
+     * and which is not always caught by a previous catch clause.
+     */
+    public List<CFGBasicBlock> selectBlocksThrowing(List<ITypeBinding> caughtTypes,
+            List<ITypeBinding> previouslyCaughtTypes) {
+        int mayBeCaughtMask = 0;
+        if (exceptionTypes != null) {
+            mayBeCaughtMask = exceptionTypes.getMayBeCaughtMask(caughtTypes)
+                    & ~exceptionTypes.getAlwaysCaughtMask(previouslyCaughtTypes);
+        }
+
+        final List<CFGBasicBlock> results = new ArrayList<CFGBasicBlock>();
+        // same order as getThrowingBlocks(), without building the set
+        for (Entry<CFGBasicBlock, List<ITypeBinding>> entry : explicitThrows.entrySet()) {
+            final CFGBasicBlock basicBlock = entry.getKey();
+            if (mayBeCaught(entry.getValue(), caughtTypes, previouslyCaughtTypes)
+                    || mayBeCaught(implicitThrows.get(basicBlock), mayBeCaughtMask)) {
+                results.add(basicBlock);
+            }
+        }
+        for (Entry<CFGBasicBlock, Integer> entry : implicitThrows.entrySet()) {
+            final CFGBasicBlock basicBlock = entry.getKey();
+            if (!explicitThrows.containsKey(basicBlock) && mayBeCaught(entry.getValue(), mayBeCaughtMask)) {
+                results.add(basicBlock);
             }
         }
         return results;
     }
 
-    public List<CFGEdgeBuilder> selectEdgesThrowing(ITypeBinding exceptionTypeToFind) {
-        final List<CFGEdgeBuilder> results = new LinkedList<CFGEdgeBuilder>();
-        for (Entry<CFGEdgeBuilder, Set<ITypeBinding>> entry : potentialThrowingEdges.entrySet()) {
-            final Set<ITypeBinding> thrownTypes = entry.getValue();
-            if (exceptionTypeToFind == null || thrownTypes.contains(exceptionTypeToFind)) {
-                results.add(entry.getKey());
+    private boolean mayBeCaught(Integer thrownTypesMask, int mayBeCaughtMask) {
+        return thrownTypesMask != null && (thrownTypesMask & mayBeCaughtMask) != 0;
+    }
+
+    private boolean mayBeCaught(List<ITypeBinding> thrownTypes, List<ITypeBinding> caughtTypes,
+            List<ITypeBinding> previouslyCaughtTypes) {
+        for (ITypeBinding thrownType : thrownTypes) {
+            if (mayBeCaught(thrownType, caughtTypes, previouslyCaughtTypes)) {
+                return true;
             }
         }
-        return results;
+        return false;
     }
 
-    private Set<ITypeBinding> getNonMatching(Set<ITypeBinding> exceptionTypes,
-            Set<ITypeBinding> thrownTypes) {
-        final Set<ITypeBinding> results = new HashSet<ITypeBinding>();
-        for (ITypeBinding thrownType : thrownTypes) {
-            if (!exceptionTypes.contains(thrownType)) {
-                results.add(thrownType);
+    private boolean mayBeCaught(ITypeBinding thrownType, List<ITypeBinding> caughtTypes,
+            List<ITypeBinding> previouslyCaughtTypes) {
+        if (!isAlwaysCaught(thrownType, previouslyCaughtTypes)) {
+            for (ITypeBinding caughtType : caughtTypes) {
+                if (caughtType == null
+                        || isSubType(thrownType, caughtType)
+                        || isSubType(caughtType, thrownType)) {
+                    return true;
+                }
             }
         }
-        return results;
+        return false;
+    }
+
+    private static boolean isAlwaysCaught(ITypeBinding thrownType, List<ITypeBinding> caughtTypes) {
+        for (ITypeBinding caughtType : caughtTypes) {
+            if (caughtType != null && isSubType(thrownType, caughtType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSubType(ITypeBinding type, ITypeBinding superType) {
+        // bindings are unique per AST, so the identity check avoids most of the costly lookups
+        return type == superType || type.isSubTypeCompatible(superType);
+    }
+
+    /**
+     * Adds to the provided thrower blocks the exceptions which are not always caught by the provided types.
+     */
+    public void addUncaughtThrowsTo(ThrowerBlocks throwers, List<ITypeBinding> caughtTypes) {
+        if (throwers.recordExplicitThrows) {
+            for (Entry<CFGBasicBlock, List<ITypeBinding>> entry : explicitThrows.entrySet()) {
+                for (ITypeBinding thrownType : entry.getValue()) {
+                    if (!isAlwaysCaught(thrownType, caughtTypes)) {
+                        addType(getTypes(throwers.explicitThrows, entry.getKey()), thrownType);
+                    }
+                }
+            }
+        }
+        if (throwers.exceptionTypes != null && !implicitThrows.isEmpty()) {
+            final int uncaughtMask = ~exceptionTypes.getAlwaysCaughtMask(caughtTypes);
+            for (Entry<CFGBasicBlock, Integer> entry : implicitThrows.entrySet()) {
+                addMask(throwers.implicitThrows, entry.getKey(), entry.getValue() & uncaughtMask);
+            }
+        }
+    }
+
+    /**
+     * Adds to the provided thrower blocks all the exceptions held by this object,
+     * thrown again by the provided blocks.
+     */
+    public void addRethrowsTo(ThrowerBlocks throwers, Collection<CFGBasicBlock> rethrowingBlocks) {
+        if (throwers.recordExplicitThrows && !explicitThrows.isEmpty()) {
+            final List<ITypeBinding> thrownTypes = new ArrayList<ITypeBinding>();
+            for (List<ITypeBinding> types : explicitThrows.values()) {
+                for (ITypeBinding type : types) {
+                    addType(thrownTypes, type);
+                }
+            }
+            for (CFGBasicBlock rethrowingBlock : rethrowingBlocks) {
+                final List<ITypeBinding> types = getTypes(throwers.explicitThrows, rethrowingBlock);
+                for (ITypeBinding thrownType : thrownTypes) {
+                    addType(types, thrownType);
+                }
+            }
+        }
+        if (throwers.exceptionTypes != null) {
+            int thrownTypesMask = 0;
+            for (Integer mask : implicitThrows.values()) {
+                thrownTypesMask |= mask;
+            }
+            for (CFGBasicBlock rethrowingBlock : rethrowingBlocks) {
+                addMask(throwers.implicitThrows, rethrowingBlock, thrownTypesMask);
+            }
+        }
+    }
+
+    public void addAll(ThrowerBlocks throwers) {
+        throwers.addUncaughtThrowsTo(this, Collections.<ITypeBinding> emptyList());
     }
 
     @Override
     public String toString() {
-        return "potentialThrowingBlocks=" + potentialThrowingBlocks
-                + " potentialThrowingEdges=" + potentialThrowingEdges;
+        return "explicitThrows=" + explicitThrows + " implicitThrows=" + implicitThrows;
     }
 
 }
@@ -30,7 +30,6 @@ import java.util.Collection;
 import java.util.List;
 
 import org.autorefactor.util.IllegalArgumentException;
-import org.autorefactor.util.NotImplementedException;
 import org.eclipse.jdt.core.dom.AST;
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.ArrayCreation;
@@ -42,18 +41,22 @@ import org.eclipse.jdt.core.dom.BooleanLiteral;
 import org.eclipse.jdt.core.dom.CastExpression;
 import org.eclipse.jdt.core.dom.CatchClause;
 import org.eclipse.jdt.core.dom.ClassInstanceCreation;
+import org.eclipse.jdt.core.dom.EnhancedForStatement;
 import org.eclipse.jdt.core.dom.Expression;
 import org.eclipse.jdt.core.dom.ExpressionStatement;
+import org.eclipse.jdt.core.dom.FieldDeclaration;
 import org.eclipse.jdt.core.dom.ITypeBinding;
 import org.eclipse.jdt.core.dom.IfStatement;
 import org.eclipse.jdt.core.dom.InfixExpression;
 import org.eclipse.jdt.core.dom.MarkerAnnotation;
 import org.eclipse.jdt.core.dom.MethodInvocation;
 import org.eclipse.jdt.core.dom.Name;
+import org.eclipse.jdt.core.dom.NullLiteral;
 import org.eclipse.jdt.core.dom.NumberLiteral;
 import org.eclipse.jdt.core.dom.ParameterizedType;
 import org.eclipse.jdt.core.dom.ParenthesizedExpression;
 import org.eclipse.jdt.core.dom.PrefixExpression;
+import org.eclipse.jdt.core.dom.PrimitiveType;
 import org.eclipse.jdt.core.dom.ReturnStatement;
 import org.eclipse.jdt.core.dom.SimpleName;
 import org.eclipse.jdt.core.dom.SimpleType;
@@ -65,6 +68,9 @@ import org.eclipse.jdt.core.dom.StructuralPropertyDescriptor;
 import org.eclipse.jdt.core.dom.ThrowStatement;
 import org.eclipse.jdt.core.dom.TryStatement;
 import org.eclipse.jdt.core.dom.Type;
+import org.eclipse.jdt.core.dom.TypeLiteral;
+import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
+import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
 
 import static org.autorefactor.refactoring.ASTHelper.*;
 import static org.autorefactor.util.Utils.*;
@@ -186,15 +192,6 @@ public class ASTBuilder {
         return ce;
     }
 
-    private Type type(String typeName) {
-        final String[] names = typeName.split("\\.");
-        if (names.length == 1) {
-            return ast.newSimpleType(ast.newSimpleName(names[0]));
-        } else {
-            throw new NotImplementedException(null);
-        }
-    }
-
     /**
      * Builds a new {@link CatchClause} instance.
      *
@@ -309,6 +306,86 @@ public class ASTBuilder {
         return ASTNode.copySubtrees(ast, nodes);
     }
 
+    /**
+     * Builds a new {@link SingleVariableDeclaration} instance.
+     *
+     * @param type the declared variable type
+     * @param varName the declared variable name
+     * @return a new single variable declaration
+     */
+    public SingleVariableDeclaration declareSingleVariable(Type type, String varName) {
+        final SingleVariableDeclaration svd = ast.newSingleVariableDeclaration();
+        svd.setType(type);
+        svd.setName(ast.newSimpleName(varName));
+        return svd;
+    }
+
+    /**
+     * Builds a new {@link VariableDeclarationStatement} instance.
+     *
+     * @param type the declared variable type
+     * @param varName the declared variable name
+     * @param initializer the variable initializer
+     * @return a new variable declaration statement
+     */
+    public VariableDeclarationStatement declareStmt(Type type, String varName, Expression initializer) {
+        final VariableDeclarationFragment fragment = ast.newVariableDeclarationFragment();
+        fragment.setName(ast.newSimpleName(varName));
+        fragment.setInitializer(initializer);
+        final VariableDeclarationStatement vds = ast.newVariableDeclarationStatement(fragment);
+        vds.setType(type);
+        return vds;
+    }
+
+    /**
+     * Builds a new {@link FieldDeclaration} instance.
+     *
+     * @param modifierFlags the field modifiers, as a bitwise-or of {@link org.eclipse.jdt.core.dom.Modifier} flags
+     * @param type the declared field type
+     * @param fieldName the declared field name
+     * @param initializer the field initializer
+     * @return a new field declaration
+     */
+    @SuppressWarnings("unchecked")
+    public FieldDeclaration declareField(int modifierFlags, Type type, String fieldName, Expression initializer) {
+        final VariableDeclarationFragment fragment = ast.newVariableDeclarationFragment();
+        fragment.setName(ast.newSimpleName(fieldName));
+        fragment.setInitializer(initializer);
+        final FieldDeclaration fd = ast.newFieldDeclaration(fragment);
+        modifiers(fd).addAll(ast.newModifiers(modifierFlags));
+        fd.setType(type);
+        return fd;
+    }
+
+    /**
+     * Builds a new {@link EnhancedForStatement} instance.
+     *
+     * @param parameter the declaration of the variable receiving each element
+     * @param expression the array or {@link Iterable} to iterate over
+     * @param body the loop body
+     * @return a new enhanced for statement
+     */
+    public EnhancedForStatement foreach(SingleVariableDeclaration parameter, Expression expression, Statement body) {
+        final EnhancedForStatement efs = ast.newEnhancedForStatement();
+        efs.setParameter(parameter);
+        efs.setExpression(expression);
+        efs.setBody(body);
+        return efs;
+    }
+
+    /**
+     * Builds a new {@link ParameterizedType} instance.
+     *
+     * @param typeName the type name, which may be qualified
+     * @param typeArguments the type arguments
+     * @return a new parameterized type
+     */
+    public ParameterizedType genericType(String typeName, Type... typeArguments) {
+        final ParameterizedType type = ast.newParameterizedType(newSimpleType(typeName));
+        addAll(typeArguments(type), typeArguments);
+        return type;
+    }
+
     /**
      * Builds a new {@link IfStatement} instance.
      *
@@ -602,6 +679,15 @@ public class ASTBuilder {
         return not(parenthesizeIfNeeded(copy.perform(this, expr)));
     }
 
+    /**
+     * Builds a new {@link NullLiteral} instance.
+     *
+     * @return a new null literal
+     */
+    public NullLiteral null0() {
+        return ast.newNullLiteral();
+    }
+
     /**
      * Builds a new {@link NumberLiteral} instance.
      *
@@ -717,6 +803,32 @@ public class ASTBuilder {
         return tryS;
     }
 
+    /**
+     * Builds a new {@link Type} instance.
+     *
+     * @param typeName the type name, which may be a primitive type name or a qualified type name
+     * @return a new type
+     */
+    public Type type(String typeName) {
+        final PrimitiveType.Code primitiveCode = PrimitiveType.toCode(typeName);
+        if (primitiveCode != null) {
+            return ast.newPrimitiveType(primitiveCode);
+        }
+        return newSimpleType(typeName);
+    }
+
+    /**
+     * Builds a new {@link TypeLiteral} instance.
+     *
+     * @param type the type of the type literal
+     * @return a new type literal
+     */
+    public TypeLiteral typeLiteral(Type type) {
+        final TypeLiteral tl = ast.newTypeLiteral();
+        tl.setType(type);
+        return tl;
+    }
+
     /**
      * Parenthesizes the provided expression if its type requires it.
      *
@@ -34,7 +34,6 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeSet;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -47,10 +46,8 @@ import org.eclipse.jdt.core.dom.LineComment;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.text.edits.DeleteEdit;
 import org.eclipse.text.edits.InsertEdit;
-import org.eclipse.text.edits.MultiTextEdit;
 import org.eclipse.text.edits.ReplaceEdit;
 import org.eclipse.text.edits.TextEdit;
-import org.eclipse.text.edits.TextEditVisitor;
 
 import static org.autorefactor.refactoring.ASTHelper.*;
 import static org.autorefactor.refactoring.SourceLocation.*;
@@ -123,7 +120,7 @@ public class ASTCommentRewriter {
      * @param document the provided document to edit
      * @param edits where to add edits
      */
-    public void addEdits(IDocument document, TextEdit edits) {
+    public void addEdits(IDocument document, TextEditNormalizer edits) {
         final String source = document.get();
         final List<TextEdit> commentEdits = new LinkedList<TextEdit>();
         addRemovalEdits(commentEdits, source);
@@ -131,42 +128,23 @@ public class ASTCommentRewriter {
         addBlockCommentToJavadocEdits(commentEdits);
         addLineCommentsToJavadocEdits(commentEdits, source);
         if (!commentEdits.isEmpty() && !anyOverlaps(edits, commentEdits)) {
-            edits.addChildren(commentEdits.toArray(new TextEdit[commentEdits.size()]));
+            for (TextEdit commentEdit : commentEdits) {
+                edits.addEdit(commentEdit);
+            }
         }
         // else, code edits take priority. Give up applying current text edits.
         // They will be retried in the next refactoring loop.
     }
 
-    private boolean anyOverlaps(TextEdit edits, List<TextEdit> commentEdits) {
+    private boolean anyOverlaps(TextEditNormalizer edits, List<TextEdit> commentEdits) {
         for (TextEdit commentEdit : commentEdits) {
-            if (overlaps(edits, commentEdit)) {
+            if (edits.overlapsWithTreeEdits(toSourceLoc(commentEdit))) {
                 return true;
             }
         }
         return false;
     }
 
-    private boolean overlaps(TextEdit edits, TextEdit edit2) {
-        final SourceLocation range = toSourceLoc(edit2);
-        final AtomicBoolean overlaps = new AtomicBoolean();
-        edits.accept(new TextEditVisitor() {
-            @Override
-            public boolean visit(MultiTextEdit edit) {
-                // move on there is nothing to check here
-                return VISIT_SUBTREE;
-            }
-
-            @Override
-            public boolean visitNode(TextEdit edit) {
-                if (!overlaps.get()) {
-                    overlaps.set(range.overlapsWith(toSourceLoc(edit)));
-                }
-                return !overlaps.get();
-            }
-        });
-        return overlaps.get();
-    }
-
     private SourceLocation toSourceLoc(TextEdit edit) {
         return new SourceLocation(edit.getOffset(), edit.getLength());
     }
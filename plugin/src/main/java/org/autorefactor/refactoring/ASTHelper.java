@@ -42,6 +42,7 @@ import org.autorefactor.util.NotImplementedException;
 import org.eclipse.jdt.core.dom.AST;
 import org.eclipse.jdt.core.dom.ASTMatcher;
 import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
 import org.eclipse.jdt.core.dom.AbstractTypeDeclaration;
 import org.eclipse.jdt.core.dom.AnnotationTypeDeclaration;
 import org.eclipse.jdt.core.dom.AnnotationTypeMemberDeclaration;
@@ -134,6 +135,7 @@ import org.eclipse.jdt.core.dom.TypeDeclarationStatement;
 import org.eclipse.jdt.core.dom.TypeLiteral;
 import org.eclipse.jdt.core.dom.TypeParameter;
 import org.eclipse.jdt.core.dom.UnionType;
+import org.eclipse.jdt.core.dom.VariableDeclaration;
 import org.eclipse.jdt.core.dom.VariableDeclarationExpression;
 import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
 import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
@@ -444,6 +446,18 @@ public final class ASTHelper {
         return node.catchClauses();
     }
 
+    /**
+     * Generecized version of the equivalent JDT method.
+     *
+     * @param node the node on which to call the equivalent JDT method
+     * @return a List of expressions
+     * @see ArrayCreation#dimensions()
+     */
+    @SuppressWarnings("unchecked")
+    public static List<Expression> dimensions(ArrayCreation node) {
+        return node.dimensions();
+    }
+
     /**
      * Generecized version of the equivalent JDT method.
      *
@@ -576,6 +590,18 @@ public final class ASTHelper {
         return node.modifiers();
     }
 
+    /**
+     * Generecized version of the equivalent JDT method.
+     *
+     * @param node the node on which to call the equivalent JDT method
+     * @return a List of expressions
+     * @see VariableDeclarationStatement#modifiers()
+     */
+    @SuppressWarnings("unchecked")
+    public static List<IExtendedModifier> modifiers(VariableDeclarationStatement node) {
+        return node.modifiers();
+    }
+
     /**
      * Generecized version of the equivalent JDT method.
      *
@@ -924,6 +950,187 @@ public final class ASTHelper {
         return null;
     }
 
+    /**
+     * Returns the type arguments of the type used to declare the provided variable, if it is parameterized.
+     *
+     * @param variable the variable name
+     * @return the type arguments of the declared type of the provided variable,
+     *         or null if it is not declared with a parameterized type in the current compilation unit
+     */
+    public static List<Type> getDeclaredTypeArguments(SimpleName variable) {
+        final ASTNode declNode = ((CompilationUnit) variable.getRoot()).findDeclaringNode(variable.resolveBinding());
+        Type declaredType = null;
+        if (declNode instanceof SingleVariableDeclaration) {
+            final SingleVariableDeclaration svd = (SingleVariableDeclaration) declNode;
+            if (svd.getExtraDimensions() == 0 && !svd.isVarargs()) {
+                declaredType = svd.getType();
+            }
+        } else if (declNode instanceof VariableDeclarationFragment
+                && ((VariableDeclarationFragment) declNode).getExtraDimensions() == 0) {
+            final ASTNode parent = declNode.getParent();
+            if (parent instanceof VariableDeclarationStatement) {
+                declaredType = ((VariableDeclarationStatement) parent).getType();
+            } else if (parent instanceof VariableDeclarationExpression) {
+                declaredType = ((VariableDeclarationExpression) parent).getType();
+            } else if (parent instanceof FieldDeclaration) {
+                declaredType = ((FieldDeclaration) parent).getType();
+            }
+        }
+        if (declaredType instanceof ParameterizedType) {
+            return typeArguments((ParameterizedType) declaredType);
+        }
+        return null;
+    }
+
+    /**
+     * Returns a name which is not used by any identifier of the body declaration enclosing the provided node,
+     * by suffixing the provided name with a number if needed.
+     *
+     * @param node the node where the name will be declared
+     * @param baseName the preferred name
+     * @return a name which does not clash with the identifiers used around the provided node
+     */
+    public static String getUniqueName(ASTNode node, String baseName) {
+        final Set<String> identifiers = new HashSet<String>();
+        getAncestor(node, BodyDeclaration.class).accept(new ASTVisitor() {
+            @Override
+            public boolean visit(SimpleName simpleName) {
+                identifiers.add(simpleName.getIdentifier());
+                return VISIT_SUBTREE;
+            }
+        });
+        String result = baseName;
+        for (int i = 2; identifiers.contains(result); i++) {
+            result = baseName + i;
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether the provided type can be referred to by its simple name in the compilation unit
+     * of the provided node, because it is imported there.
+     *
+     * @param node a node of the compilation unit
+     * @param qualifiedTypeName the qualified name of the type
+     * @return true if the provided type is imported by a single type import, or by an on-demand import
+     *         which is not shadowed by a single type import, false otherwise
+     */
+    public static boolean isImported(ASTNode node, String qualifiedTypeName) {
+        final int lastDot = qualifiedTypeName.lastIndexOf('.');
+        final String packageName = qualifiedTypeName.substring(0, lastDot);
+        final String simpleNameSuffix = qualifiedTypeName.substring(lastDot);
+        boolean result = false;
+        for (ImportDeclaration importDecl : imports((CompilationUnit) node.getRoot())) {
+            final String name = importDecl.getName().getFullyQualifiedName();
+            if (importDecl.isStatic()) {
+                continue;
+            } else if (importDecl.isOnDemand()) {
+                result |= packageName.equals(name);
+            } else if (qualifiedTypeName.equals(name)) {
+                return true;
+            } else if (name.endsWith(simpleNameSuffix)) {
+                return false;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether the object referenced by the provided local variable may be accessed
+     * by code which does not belong to the body declaration declaring this variable,
+     * for example by another thread.
+     * <p>
+     * The object escapes when a reference to the local variable:
+     * <ul>
+     * <li>is assigned to another variable or field, or initializes another variable,</li>
+     * <li>is passed as an argument to a method or constructor,</li>
+     * <li>is returned or thrown,</li>
+     * <li>is captured by an anonymous or local class,</li>
+     * <li>is the receiver of a method invocation whose result may be the object itself or a view on it,
+     * and this result escapes.</li>
+     * </ul>
+     * This analysis is conservative: any other use of the variable is considered to make it escape.
+     * </p>
+     *
+     * @param localVariable the declaration of the local variable
+     * @return true if the object referenced by the local variable may escape, false if it cannot
+     */
+    public static boolean isEscaping(final VariableDeclaration localVariable) {
+        final IVariableBinding varBinding = localVariable.resolveBinding();
+        if (varBinding == null || varBinding.isField() || varBinding.isParameter()) {
+            return true;
+        }
+        final BodyDeclaration bodyDecl = getAncestor(localVariable, BodyDeclaration.class);
+        final boolean[] result = { false };
+        bodyDecl.accept(new ASTVisitor() {
+            @Override
+            public boolean visit(SimpleName node) {
+                if (!result[0]
+                        && node != localVariable.getName()
+                        && varBinding.equals(node.resolveBinding())) {
+                    result[0] = getAncestor(node, BodyDeclaration.class) != bodyDecl
+                            || isEscapingValue(node, varBinding.getType());
+                }
+                return VISIT_SUBTREE;
+            }
+        });
+        return result[0];
+    }
+
+    private static boolean isEscapingValue(Expression value, ITypeBinding objectType) {
+        final ASTNode parent = value.getParent();
+        switch (parent.getNodeType()) {
+        case PARENTHESIZED_EXPRESSION:
+        case CAST_EXPRESSION:
+            return isEscapingValue((Expression) parent, objectType);
+
+        case EXPRESSION_STATEMENT:
+        case INFIX_EXPRESSION:
+        case INSTANCEOF_EXPRESSION:
+        case SYNCHRONIZED_STATEMENT:
+            // only the value of the object or its identity is used
+            return false;
+
+        case ENHANCED_FOR_STATEMENT:
+            return value.getLocationInParent() != EnhancedForStatement.EXPRESSION_PROPERTY;
+
+        case ASSIGNMENT:
+            // the variable is overwritten, the assigned object must not be used anywhere else
+            return value.getLocationInParent() != Assignment.LEFT_HAND_SIDE_PROPERTY
+                    || !(parent.getParent() instanceof ExpressionStatement);
+
+        case METHOD_INVOCATION:
+            return value.getLocationInParent() != MethodInvocation.EXPRESSION_PROPERTY
+                    || isEscapingResult((MethodInvocation) parent, objectType);
+
+        default:
+            return true;
+        }
+    }
+
+    private static boolean isEscapingResult(MethodInvocation mi, ITypeBinding objectType) {
+        if (mi.getParent() instanceof ExpressionStatement) {
+            return false;
+        }
+        final IMethodBinding methodBinding = mi.resolveMethodBinding();
+        if (methodBinding == null) {
+            return true;
+        }
+        final ITypeBinding returnType = methodBinding.getReturnType();
+        if (returnType.isPrimitive()
+                || returnType.isArray()
+                || hasType(returnType, "java.lang.String")
+                || methodBinding.getMethodDeclaration().getReturnType().isTypeVariable()) {
+            // the result can be neither the object itself, nor a view on it
+            return false;
+        }
+        if (objectType.isAssignmentCompatible(returnType)) {
+            // the result may be the object itself, like with StringBuffer.append()
+            return isEscapingValue(mi, objectType);
+        }
+        return true;
+    }
+
     // AST checks
 
     /**
@@ -970,6 +1177,17 @@ public final class ASTHelper {
         return node != null && operator.equals(node.getOperator());
     }
 
+    /**
+     * Returns whether the provided infix expression is a string concatenation.
+     *
+     * @param node the infix expression to analyze
+     * @return true if the provided infix expression is a string concatenation, false otherwise
+     */
+    public static boolean isStringConcat(InfixExpression node) {
+        return hasOperator(node, InfixExpression.Operator.PLUS)
+                && hasType(node, "java.lang.String");
+    }
+
     /**
      * Returns whether the provided expression evaluates to exactly one of the provided type.
      *
@@ -1021,9 +1239,33 @@ public final class ASTHelper {
      * @return true if the provided type binding is an instance of the qualified type name, false otherwise
      */
     public static boolean instanceOf(ITypeBinding typeBinding, String qualifiedTypeName) {
+        if (typeBinding == null) {
+            return false;
+        }
+        if (qualifiedTypeName.equals(typeBinding.getQualifiedName())
+                || qualifiedTypeName.equals(typeBinding.getErasure().getQualifiedName())) {
+            return true;
+        }
+        final Set<String> supertypes = getCachedSupertypes(typeBinding);
+        if (supertypes != null) {
+            return supertypes.contains(qualifiedTypeName);
+        }
         return findImplementedType(typeBinding, qualifiedTypeName) != null;
     }
 
+    /**
+     * Returns the erasure qualified names of all the supertypes of the provided type
+     * from the current {@link TypeHierarchyCache}.
+     *
+     * @param typeBinding the type binding
+     * @return the erasure qualified names of all the supertypes of the provided type,
+     *         or null if they are not available from the current {@link TypeHierarchyCache}
+     */
+    private static Set<String> getCachedSupertypes(ITypeBinding typeBinding) {
+        final TypeHierarchyCache cache = TypeHierarchyCache.getCurrent();
+        return cache != null ? cache.getSupertypes(typeBinding) : null;
+    }
+
     /**
      * Returns whether the provided expression represents an array.
      *
@@ -1114,6 +1356,11 @@ public final class ASTHelper {
                 || qualifiedTypeName.equals(typeErasure.getQualifiedName())) {
             return typeBinding;
         }
+        final Set<String> supertypes = getCachedSupertypes(typeBinding);
+        if (supertypes != null && !supertypes.contains(qualifiedTypeName)) {
+            // no need to walk the type hierarchy
+            return null;
+        }
         final Set<String> visitedClasses = new HashSet<String>();
         visitedClasses.add(typeErasure.getQualifiedName());
         return findImplementedType(typeBinding, qualifiedTypeName, visitedClasses);
@@ -1188,6 +1435,9 @@ public final class ASTHelper {
     /**
      * Returns whether the provided method invocation invokes a method with the provided method signature.
      * The method signature is compared against the erasure of the invoked method.
+     * <p>
+     * Prefer {@link #isMethod(MethodInvocation, MethodSignature)} with method signatures
+     * registered up front in static fields.
      *
      * @param node the method invocation to compare
      * @param typeQualifiedName the qualified name of the type declaring the method
@@ -1207,6 +1457,51 @@ public final class ASTHelper {
                 || methodBinding.getParameterTypes().length != parameterTypesQualifiedNames.length) {
             return false;
         }
+        final MethodSignature signature =
+                MethodSignature.of(typeQualifiedName, methodName, parameterTypesQualifiedNames);
+        return MethodSignatureMatches.of(node.getAST()).matches(methodBinding, signature);
+    }
+
+    /**
+     * Returns whether the provided method invocation invokes a method with the provided method signature.
+     * The method signature is compared against the erasure of the invoked method.
+     * <p>
+     * The result is computed once per invoked method and per compilation unit.
+     *
+     * @param node the method invocation to compare
+     * @param signature the method signature
+     * @return true if the provided method invocation matches the provided method signature, false otherwise
+     */
+    public static boolean isMethod(MethodInvocation node, MethodSignature signature) {
+        if (node == null) {
+            return false;
+        }
+        final IMethodBinding methodBinding = node.resolveMethodBinding();
+        // let's do the fast checks first
+        if (methodBinding == null
+                || !signature.getMethodName().equals(methodBinding.getName())
+                || methodBinding.getParameterTypes().length != signature.getParameterCount()) {
+            return false;
+        }
+        return MethodSignatureMatches.of(node.getAST()).matches(methodBinding, signature);
+    }
+
+    /**
+     * Returns whether the provided method binding matches the provided method signature,
+     * without using the memoized results.
+     *
+     * @param methodBinding the method binding
+     * @param signature the method signature
+     * @return true if the provided method binding matches the provided method signature, false otherwise
+     */
+    static boolean matchesMethodSignature(IMethodBinding methodBinding, MethodSignature signature) {
+        final String typeQualifiedName = signature.getTypeQualifiedName();
+        final String methodName = signature.getMethodName();
+        final String[] parameterTypesQualifiedNames = signature.parameterTypesQualifiedNames();
+        if (!methodName.equals(methodBinding.getName())
+                || methodBinding.getParameterTypes().length != parameterTypesQualifiedNames.length) {
+            return false;
+        }
         // ok more heavy checks now
         final ITypeBinding declaringClazz = methodBinding.getDeclaringClass();
         final ITypeBinding implementedType =
@@ -1240,7 +1535,8 @@ public final class ASTHelper {
             return false;
         }
         for (int i = 0; i < typesQualifiedNames.length; i++) {
-            if (!typesQualifiedNames[i].equals(typeBindings[i].getQualifiedName())) {
+            // parameters of generic methods, like Collections.synchronizedList(List<T>), are parameterized
+            if (!typesQualifiedNames[i].equals(typeBindings[i].getErasure().getQualifiedName())) {
                 return false;
             }
         }
@@ -1309,6 +1605,34 @@ public final class ASTHelper {
         return results;
     }
 
+    /**
+     * Returns a set made of the keys of all the method bindings which are overridden by the provided method binding.
+     * Contrary to {@link #getOverridenMethods(IMethodBinding)}, the result comes from
+     * the current {@link TypeHierarchyCache} when there is one.
+     *
+     * @param overridingMethod the overriding method binding
+     * @return a set made of the keys of all the method bindings which are overridden
+     *         by the provided method binding
+     */
+    public static Set<String> getOverridenMethodKeys(IMethodBinding overridingMethod) {
+        final TypeHierarchyCache cache = TypeHierarchyCache.getCurrent();
+        if (cache != null) {
+            final Set<String> results = cache.getOverridenMethodKeys(overridingMethod);
+            if (results != null) {
+                return new HashSet<String>(results);
+            }
+        }
+        return toKeys(getOverridenMethods(overridingMethod));
+    }
+
+    static Set<String> toKeys(Set<IMethodBinding> methodBindings) {
+        final Set<String> results = new HashSet<String>();
+        for (IMethodBinding methodBinding : methodBindings) {
+            results.add(methodBinding.getKey());
+        }
+        return results;
+    }
+
     private static void findOverridenMethods(IMethodBinding overridingMethod, Set<IMethodBinding> results,
             ITypeBinding declaringClass) {
         final ITypeBinding superclass = declaringClass.getSuperclass();
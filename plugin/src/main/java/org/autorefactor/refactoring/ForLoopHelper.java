@@ -156,6 +156,66 @@ public final class ForLoopHelper {
         return null;
     }
 
+    /**
+     * Returns the number of iterations of this for loop when it counts from zero up to a bound
+     * which is known before the loop starts and which cannot be negative:
+     * a constant, the length of an array or the size of a collection.
+     *
+     * @param node the for statement
+     * @return the bound of this for loop if it gives the number of iterations, null otherwise
+     */
+    public static Expression getIterationCount(ForStatement node) {
+        final Expression bound = getUpperBound(node);
+        if (bound != null
+                && (buildForLoopContent(getInitializerOperand(initializers(node).get(0)), bound) != null
+                        || isPositiveOrZero(bound))) {
+            return bound;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the exclusive upper bound of this for loop when it counts up by one from zero,
+     * like {@code for (int i = 0; i < bound; i++)}.
+     * The bound is reevaluated before each iteration.
+     *
+     * @param node the for statement
+     * @return the exclusive upper bound of this for loop if it counts up by one from zero, null otherwise
+     */
+    public static Expression getUpperBound(ForStatement node) {
+        final List<Expression> initializers = initializers(node);
+        final List<Expression> updaters = updaters(node);
+        final InfixExpression condition = as(node.getExpression(), InfixExpression.class);
+        if (initializers.size() != 1
+                || updaters.size() != 1
+                || condition == null
+                || condition.hasExtendedOperands()) {
+            return null;
+        }
+        final Expression loopVar;
+        final Expression bound;
+        if (hasOperator(condition, LESS)) {
+            loopVar = condition.getLeftOperand();
+            bound = condition.getRightOperand();
+        } else if (hasOperator(condition, GREATER)) {
+            loopVar = condition.getRightOperand();
+            bound = condition.getLeftOperand();
+        } else {
+            return null;
+        }
+        final Name init = getInitializerOperand(initializers.get(0));
+        if (isSameVariable(init, loopVar)
+                && isSameVariable(init, getUpdaterOperand(updaters.get(0)))) {
+            return bound;
+        }
+        return null;
+    }
+
+    private static boolean isPositiveOrZero(final Expression expr) {
+        final Object val = expr.resolveConstantExpressionValue();
+        return val instanceof Integer && ((Integer) val).intValue() >= 0;
+    }
+
     private static Name getUpdaterOperand(Expression updater) {
         Expression updaterOperand = null;
         if (updater instanceof PostfixExpression) {
@@ -0,0 +1,206 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A method signature, as matched by {@link ASTHelper#isMethod(org.eclipse.jdt.core.dom.MethodInvocation,
+ * MethodSignature)}.
+ * <p>
+ * Method signatures are registered in a signature table where each of them receives a unique id.
+ * Refactoring rules should register the signatures they look for up front in static fields,
+ * so matching a method invocation against them does not need to look up the signature table.
+ * Looking up an already registered signature neither allocates nor locks.
+ */
+public final class MethodSignature {
+    /**
+     * The signature table, indexed by method name.
+     * The arrays are never modified once published: registering a signature replaces the array.
+     */
+    private static final ConcurrentMap<String, MethodSignature[]> SIGNATURES_BY_METHOD_NAME =
+            new ConcurrentHashMap<String, MethodSignature[]>();
+    /** Guards the registration of new signatures. */
+    private static final Object REGISTRATION_LOCK = new Object();
+    /** The number of registered signatures, guarded by {@link #REGISTRATION_LOCK}. */
+    private static int nbSignatures;
+
+    private final String typeQualifiedName;
+    private final String methodName;
+    private final String[] parameterTypesQualifiedNames;
+    private final int id;
+
+    private MethodSignature(String typeQualifiedName, String methodName, String[] parameterTypesQualifiedNames,
+            int id) {
+        this.typeQualifiedName = typeQualifiedName;
+        this.methodName = methodName;
+        this.parameterTypesQualifiedNames = parameterTypesQualifiedNames;
+        this.id = id;
+    }
+
+    /**
+     * Returns the method signature registered in the signature table for the provided parameters,
+     * registering it if it is not already there.
+     *
+     * @param typeQualifiedName the qualified name of the type declaring the method
+     * @param methodName the method name
+     * @param parameterTypesQualifiedNames the qualified names of the parameter types
+     * @return the registered method signature
+     */
+    public static MethodSignature of(String typeQualifiedName, String methodName,
+            String... parameterTypesQualifiedNames) {
+        final MethodSignature registered = find(SIGNATURES_BY_METHOD_NAME.get(methodName),
+                typeQualifiedName, parameterTypesQualifiedNames);
+        if (registered != null) {
+            return registered;
+        }
+        return register(typeQualifiedName, methodName, parameterTypesQualifiedNames);
+    }
+
+    private static MethodSignature register(String typeQualifiedName, String methodName,
+            String[] parameterTypesQualifiedNames) {
+        synchronized (REGISTRATION_LOCK) {
+            final MethodSignature[] signatures = SIGNATURES_BY_METHOD_NAME.get(methodName);
+            final MethodSignature registered = find(signatures, typeQualifiedName, parameterTypesQualifiedNames);
+            if (registered != null) {
+                return registered;
+            }
+            final MethodSignature result = new MethodSignature(typeQualifiedName, methodName,
+                    parameterTypesQualifiedNames.clone(), nbSignatures++);
+            final MethodSignature[] newSignatures;
+            if (signatures != null) {
+                newSignatures = Arrays.copyOf(signatures, signatures.length + 1);
+            } else {
+                newSignatures = new MethodSignature[1];
+            }
+            newSignatures[newSignatures.length - 1] = result;
+            SIGNATURES_BY_METHOD_NAME.put(methodName, newSignatures);
+            return result;
+        }
+    }
+
+    private static MethodSignature find(MethodSignature[] signatures, String typeQualifiedName,
+            String[] parameterTypesQualifiedNames) {
+        if (signatures != null) {
+            for (MethodSignature signature : signatures) {
+                if (signature.typeQualifiedName.equals(typeQualifiedName)
+                        && Arrays.equals(signature.parameterTypesQualifiedNames, parameterTypesQualifiedNames)) {
+                    return signature;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the qualified name of the type declaring the method.
+     *
+     * @return the qualified name of the type declaring the method
+     */
+    public String getTypeQualifiedName() {
+        return typeQualifiedName;
+    }
+
+    /**
+     * Returns the method name.
+     *
+     * @return the method name
+     */
+    public String getMethodName() {
+        return methodName;
+    }
+
+    /**
+     * Returns the qualified names of the parameter types.
+     *
+     * @return the qualified names of the parameter types
+     */
+    public String[] getParameterTypesQualifiedNames() {
+        return parameterTypesQualifiedNames.clone();
+    }
+
+    /** Avoids the defensive copy for use by {@link ASTHelper}. */
+    String[] parameterTypesQualifiedNames() {
+        return parameterTypesQualifiedNames;
+    }
+
+    /**
+     * Returns the number of parameters of the method.
+     *
+     * @return the number of parameters of the method
+     */
+    public int getParameterCount() {
+        return parameterTypesQualifiedNames.length;
+    }
+
+    /**
+     * Returns the unique id of this method signature in the signature table.
+     *
+     * @return the unique id of this method signature in the signature table
+     */
+    int getId() {
+        return id;
+    }
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + typeQualifiedName.hashCode();
+        result = prime * result + methodName.hashCode();
+        result = prime * result + Arrays.hashCode(parameterTypesQualifiedNames);
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final MethodSignature other = (MethodSignature) obj;
+        return typeQualifiedName.equals(other.typeQualifiedName)
+                && methodName.equals(other.methodName)
+                && Arrays.equals(parameterTypesQualifiedNames, other.parameterTypesQualifiedNames);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(typeQualifiedName).append(".").append(methodName).append("(");
+        for (int i = 0; i < parameterTypesQualifiedNames.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(parameterTypesQualifiedNames[i]);
+        }
+        return sb.append(")").toString();
+    }
+}
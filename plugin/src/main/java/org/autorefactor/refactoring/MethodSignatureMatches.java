@@ -0,0 +1,130 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.eclipse.jdt.core.dom.AST;
+import org.eclipse.jdt.core.dom.IMethodBinding;
+
+/**
+ * Memoizes, for the method bindings of a compilation unit, which registered {@link MethodSignature}s they match.
+ * <p>
+ * The matches of a method binding against a method signature are computed once
+ * per {@link IMethodBinding#getKey()} and per compilation unit. Every later query is a bitset lookup.
+ * <p>
+ * Only the binding keys are kept: method bindings reference their binding resolver, which references the AST.
+ * Keeping them would prevent the weakly referenced AST from ever being garbage collected.
+ */
+final class MethodSignatureMatches {
+    /** The memoized matches, one instance per compilation unit. */
+    private static final Map<AST, MethodSignatureMatches> MATCHES_BY_AST =
+            new WeakHashMap<AST, MethodSignatureMatches>();
+
+    /** The method signature ids matched by a method binding. */
+    private static final class Matches {
+        /** The ids of the method signatures against which the method binding has already been matched. */
+        private final BitSet computed = new BitSet();
+        /** The ids of the method signatures matched by the method binding. */
+        private final BitSet matched = new BitSet();
+    }
+
+    private final Map<String, Matches> matchesByKey = new HashMap<String, Matches>();
+
+    private MethodSignatureMatches() {
+        super();
+    }
+
+    /**
+     * Returns the memoized matches for the compilation unit represented by the provided AST.
+     *
+     * @param ast the AST of the compilation unit
+     * @return the memoized matches for the compilation unit
+     */
+    static MethodSignatureMatches of(AST ast) {
+        synchronized (MATCHES_BY_AST) {
+            MethodSignatureMatches result = MATCHES_BY_AST.get(ast);
+            if (result == null) {
+                result = new MethodSignatureMatches();
+                MATCHES_BY_AST.put(ast, result);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Returns whether the provided method binding matches the provided method signature,
+     * computing it only the first time this question is asked.
+     *
+     * @param methodBinding the method binding
+     * @param signature the method signature
+     * @return true if the provided method binding matches the provided method signature, false otherwise
+     */
+    synchronized boolean matches(IMethodBinding methodBinding, MethodSignature signature) {
+        final Matches matches = getMatches(methodBinding);
+        if (matches == null) {
+            return ASTHelper.matchesMethodSignature(methodBinding, signature);
+        }
+        final int id = signature.getId();
+        if (!matches.computed.get(id)) {
+            matches.computed.set(id);
+            if (ASTHelper.matchesMethodSignature(methodBinding, signature)) {
+                matches.matched.set(id);
+            }
+        }
+        return matches.matched.get(id);
+    }
+
+    /**
+     * Returns whether the match of the provided method binding against the provided method signature
+     * has already been computed.
+     *
+     * @param methodBinding the method binding
+     * @param signature the method signature
+     * @return true if the match has already been computed, false otherwise
+     */
+    synchronized boolean isMemoized(IMethodBinding methodBinding, MethodSignature signature) {
+        final String key = methodBinding.getKey();
+        final Matches matches = key != null ? matchesByKey.get(key) : null;
+        return matches != null && matches.computed.get(signature.getId());
+    }
+
+    private Matches getMatches(IMethodBinding methodBinding) {
+        final String key = methodBinding.getKey();
+        if (key == null) {
+            return null;
+        }
+        Matches matches = matchesByKey.get(key);
+        if (matches == null) {
+            matches = new Matches();
+            matchesByKey.put(key, matches);
+        }
+        return matches;
+    }
+}
@@ -51,7 +51,6 @@ import org.eclipse.jdt.core.dom.rewrite.ListRewrite;
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.swt.widgets.Display;
-import org.eclipse.text.edits.TextEdit;
 
 /**
  * Class aggregating all the refactorings performed by a refactoring rule until
@@ -372,13 +371,14 @@ public class Refactorings {
      * @throws BadLocationException if trying to access a non existing position
      */
     public void applyTo(final IDocument document) throws BadLocationException {
-        final TextEdit edits = rewrite.rewriteAST(document, null);
+        final TextEditNormalizer edits = new TextEditNormalizer(rewrite.rewriteAST(document, null));
         commentRewriter.addEdits(document, edits);
         sourceRewriter.addEdits(document, edits);
         applyEditsToDocument(edits, document);
     }
 
-    private void applyEditsToDocument(final TextEdit edits, final IDocument document) throws BadLocationException {
+    private void applyEditsToDocument(final TextEditNormalizer edits, final IDocument document)
+            throws BadLocationException {
         // Call this operation on the SWT Display Thread with syncExec(),
         // because it changes or adds something to the GUI.
         // Otherwise it would throw an Invalid thread access Exception.
@@ -386,7 +386,7 @@ public class Refactorings {
             @Override
             public BadLocationException call() throws Exception {
                 try {
-                    edits.apply(document);
+                    edits.applyTo(document);
                     return null;
                 } catch (BadLocationException e) {
                     return e;
@@ -34,7 +34,6 @@ import java.util.Set;
 import org.eclipse.jface.text.IDocument;
 import org.eclipse.text.edits.DeleteEdit;
 import org.eclipse.text.edits.ReplaceEdit;
-import org.eclipse.text.edits.TextEdit;
 
 /** Directly rewrites source code. */
 public class SourceRewriter {
@@ -67,14 +66,14 @@ public class SourceRewriter {
      * @param document the document to edit
      * @param edits where to add edits
      */
-    public void addEdits(IDocument document, TextEdit edits) {
+    public void addEdits(IDocument document, TextEditNormalizer edits) {
         for (SourceLocation loc : this.removals) {
-            edits.addChild(new DeleteEdit(loc.getStartPosition(), loc.getLength()));
+            edits.addEdit(new DeleteEdit(loc.getStartPosition(), loc.getLength()));
         }
         for (Entry<SourceLocation, String> entry : this.replacements.entrySet()) {
             SourceLocation loc = entry.getKey();
             String replacement = entry.getValue();
-            edits.addChild(new ReplaceEdit(loc.getStartPosition(), loc.getLength(), replacement));
+            edits.addEdit(new ReplaceEdit(loc.getStartPosition(), loc.getLength(), replacement));
         }
     }
 }
@@ -0,0 +1,282 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.autorefactor.util.IllegalStateException;
+import org.eclipse.jface.text.BadLocationException;
+import org.eclipse.jface.text.IDocument;
+import org.eclipse.text.edits.DeleteEdit;
+import org.eclipse.text.edits.InsertEdit;
+import org.eclipse.text.edits.MalformedTreeException;
+import org.eclipse.text.edits.MultiTextEdit;
+import org.eclipse.text.edits.RangeMarker;
+import org.eclipse.text.edits.ReplaceEdit;
+import org.eclipse.text.edits.TextEdit;
+import org.eclipse.text.edits.TextEditVisitor;
+
+/**
+ * Normalizes the text edits computed for a document before applying them.
+ * <p>
+ * Inserting many children in a {@link TextEdit} tree is costly because each insertion
+ * looks up and validates its position among the existing children.
+ * Instead, this class collects the insertions, deletions and replacements in a flat list,
+ * sorts them once, merges adjacent edits, then splices them into the document contents in one pass.
+ * <p>
+ * Edit trees which cannot be flattened, for example because they contain the move or copy edits
+ * generated by {@link org.eclipse.jdt.core.dom.rewrite.ASTRewrite}, are applied through the {@link TextEdit} API.
+ */
+public class TextEditNormalizer {
+    /** Orders the edits by offset, insertions at the same offset keeping their relative order. */
+    private static final Comparator<TextEdit> OFFSET_COMPARATOR = new Comparator<TextEdit>() {
+        @Override
+        public int compare(TextEdit e1, TextEdit e2) {
+            if (e1.getOffset() != e2.getOffset()) {
+                return e1.getOffset() < e2.getOffset() ? -1 : 1;
+            }
+            if (e1.getLength() != e2.getLength()) {
+                return e1.getLength() < e2.getLength() ? -1 : 1;
+            }
+            return 0;
+        }
+    };
+
+    private final TextEdit root;
+    /** The leaf edits, or null if the edit tree cannot be flattened. */
+    private final List<TextEdit> edits;
+    /** The number of leaf edits coming from the edit tree, they are sorted in document order. */
+    private final int nbRootEdits;
+
+    /**
+     * Builds an instance of this class.
+     *
+     * @param root the root of the edit tree, like the one returned by
+     *        {@link org.eclipse.jdt.core.dom.rewrite.ASTRewrite#rewriteAST(IDocument, java.util.Map)}
+     */
+    public TextEditNormalizer(TextEdit root) {
+        this.root = root;
+        final List<TextEdit> leaves = new ArrayList<TextEdit>();
+        if (collectLeaves(root, leaves)) {
+            this.edits = leaves;
+            this.nbRootEdits = leaves.size();
+        } else {
+            this.edits = null;
+            this.nbRootEdits = 0;
+        }
+    }
+
+    private static boolean collectLeaves(TextEdit edit, List<TextEdit> leaves) {
+        if (edit instanceof MultiTextEdit || edit instanceof RangeMarker) {
+            for (TextEdit child : edit.getChildren()) {
+                if (!collectLeaves(child, leaves)) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (edit instanceof ReplaceEdit
+                || edit instanceof DeleteEdit
+                || edit instanceof InsertEdit) {
+            if (edit.hasChildren()) {
+                return false;
+            }
+            leaves.add(edit);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether the edit tree could be flattened.
+     *
+     * @return true if the edit tree could be flattened, false otherwise
+     */
+    public boolean isFlat() {
+        return edits != null;
+    }
+
+    /**
+     * Adds the provided edit to the edits to apply.
+     *
+     * @param edit the edit to add
+     * @throws MalformedTreeException if the edit tree cannot be flattened
+     *         and the provided edit overlaps with another edit
+     */
+    public void addEdit(TextEdit edit) {
+        if (edits != null) {
+            edits.add(edit);
+        } else {
+            root.addChild(edit);
+        }
+    }
+
+    /**
+     * Returns whether the provided source location overlaps with one of the edits
+     * from the edit tree passed to the constructor.
+     *
+     * @param range the source location to check
+     * @return true if the provided source location overlaps with one of the edits from the edit tree,
+     *         false otherwise
+     */
+    public boolean overlapsWithTreeEdits(final SourceLocation range) {
+        if (edits == null) {
+            return overlapsWithTree(range);
+        }
+        // the edit tree leaves do not overlap and are sorted,
+        // so their end positions are sorted too
+        int low = 0;
+        int high = nbRootEdits;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            final TextEdit edit = edits.get(mid);
+            if (edit.getOffset() + edit.getLength() < range.getStartPosition()) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low < nbRootEdits && range.overlapsWith(toSourceLoc(edits.get(low)));
+    }
+
+    private boolean overlapsWithTree(final SourceLocation range) {
+        final AtomicBoolean overlaps = new AtomicBoolean();
+        root.accept(new TextEditVisitor() {
+            @Override
+            public boolean visit(MultiTextEdit edit) {
+                // move on there is nothing to check here
+                return true;
+            }
+
+            @Override
+            public boolean visitNode(TextEdit edit) {
+                if (!overlaps.get()) {
+                    overlaps.set(range.overlapsWith(toSourceLoc(edit)));
+                }
+                return !overlaps.get();
+            }
+        });
+        return overlaps.get();
+    }
+
+    private static SourceLocation toSourceLoc(TextEdit edit) {
+        return new SourceLocation(edit.getOffset(), edit.getLength());
+    }
+
+    /**
+     * Returns the flattened edits, sorted by offset and where adjacent edits have been merged together.
+     *
+     * @return the normalized edits, all of them being {@link ReplaceEdit}s
+     * @throws MalformedTreeException if some edits overlap
+     * @throws IllegalStateException if the edit tree cannot be flattened
+     */
+    public List<ReplaceEdit> normalize() {
+        if (edits == null) {
+            throw new IllegalStateException(null,
+                    "The edit tree cannot be flattened since it contains move or copy edits");
+        }
+        final TextEdit[] sorted = edits.toArray(new TextEdit[edits.size()]);
+        // stable sort: keeps the order of the insertions made at the same offset
+        Arrays.sort(sorted, OFFSET_COMPARATOR);
+
+        final List<ReplaceEdit> results = new ArrayList<ReplaceEdit>();
+        int i = 0;
+        while (i < sorted.length) {
+            final int offset = sorted[i].getOffset();
+            int end = offset + sorted[i].getLength();
+            final StringBuilder text = new StringBuilder(getText(sorted[i]));
+            i++;
+            while (i < sorted.length && sorted[i].getOffset() <= end) {
+                if (sorted[i].getOffset() < end) {
+                    throw new MalformedTreeException(root, sorted[i], "Overlapping text edits");
+                }
+                end += sorted[i].getLength();
+                text.append(getText(sorted[i]));
+                i++;
+            }
+            results.add(new ReplaceEdit(offset, end - offset, text.toString()));
+        }
+        return results;
+    }
+
+    private static String getText(TextEdit edit) {
+        if (edit instanceof ReplaceEdit) {
+            return ((ReplaceEdit) edit).getText();
+        } else if (edit instanceof InsertEdit) {
+            return ((InsertEdit) edit).getText();
+        }
+        return "";
+    }
+
+    /**
+     * Returns the result of applying the normalized edits to the provided source.
+     *
+     * @param source the source to edit
+     * @return the edited source
+     * @throws BadLocationException if an edit lies outside of the source
+     */
+    public String applyTo(String source) throws BadLocationException {
+        final List<ReplaceEdit> normalizedEdits = normalize();
+        int resultLength = source.length();
+        for (ReplaceEdit edit : normalizedEdits) {
+            resultLength += edit.getText().length() - edit.getLength();
+        }
+
+        final StringBuilder sb = new StringBuilder(resultLength);
+        int pos = 0;
+        for (ReplaceEdit edit : normalizedEdits) {
+            final int end = edit.getOffset() + edit.getLength();
+            if (edit.getOffset() < 0 || end > source.length()) {
+                throw new BadLocationException("Edit " + edit + " is outside of the source of length "
+                        + source.length());
+            }
+            sb.append(source, pos, edit.getOffset());
+            sb.append(edit.getText());
+            pos = end;
+        }
+        sb.append(source, pos, source.length());
+        return sb.toString();
+    }
+
+    /**
+     * Applies the edits to the provided document.
+     * <p>
+     * When the edit tree could be flattened, the document contents are set only once.
+     *
+     * @param document the document to edit
+     * @throws BadLocationException if an edit lies outside of the document
+     */
+    public void applyTo(IDocument document) throws BadLocationException {
+        if (edits == null) {
+            root.apply(document);
+        } else if (!edits.isEmpty()) {
+            document.set(applyTo(document.get()));
+        }
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.AbstractTypeDeclaration;
+import org.eclipse.jdt.core.dom.AnnotationTypeDeclaration;
+import org.eclipse.jdt.core.dom.AnonymousClassDeclaration;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.EnumDeclaration;
+import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+
+/**
+ * Cache of type hierarchy information, keyed by binding key.
+ * <p>
+ * An instance is scoped to one refactoring run and one java project: binding keys are only meaningful
+ * inside a java project, and the type hierarchy can change between two runs.
+ * It holds the supertype closure of the types and the methods overridden by the methods.
+ * Since these only hold strings, they can be shared by all the ASTs created for the java project.
+ * <p>
+ * The cache for the current thread is made available to {@link ASTHelper} via {@link #setCurrent(TypeHierarchyCache)}.
+ * When there is no current cache, {@link ASTHelper} walks the type hierarchy every time.
+ * <p>
+ * This class is thread-safe, so it can be shared by the jobs refactoring the same java project.
+ */
+public class TypeHierarchyCache {
+    private static final ThreadLocal<TypeHierarchyCache> CURRENT = new ThreadLocal<TypeHierarchyCache>();
+
+    private final String name;
+    /** Erasure qualified names of all the supertypes, keyed by type binding key. */
+    private final ConcurrentMap<String, Set<String>> supertypes = new ConcurrentHashMap<String, Set<String>>();
+    /** Keys of all the overridden methods, keyed by method binding key. */
+    private final ConcurrentMap<String, Set<String>> overriddenMethods =
+            new ConcurrentHashMap<String, Set<String>>();
+    private final AtomicLong nbHits = new AtomicLong();
+    private final AtomicLong nbMisses = new AtomicLong();
+    private final AtomicLong nbInvalidations = new AtomicLong();
+    /** Time spent computing the missing cache entries. */
+    private final AtomicLong missesDurationNanos = new AtomicLong();
+
+    /**
+     * Builds an instance of this class.
+     *
+     * @param name the name of the java project, used in the statistics
+     */
+    public TypeHierarchyCache(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Returns the type hierarchy cache used by the current thread.
+     *
+     * @return the type hierarchy cache used by the current thread, or null if there is none
+     */
+    public static TypeHierarchyCache getCurrent() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Sets the type hierarchy cache used by the current thread.
+     *
+     * @param cache the type hierarchy cache to use, or null to stop using one
+     */
+    public static void setCurrent(TypeHierarchyCache cache) {
+        if (cache != null) {
+            CURRENT.set(cache);
+        } else {
+            CURRENT.remove();
+        }
+    }
+
+    /**
+     * Returns the erasure qualified names of all the supertypes of the provided type,
+     * the provided type itself excluded.
+     *
+     * @param typeBinding the type binding
+     * @return the erasure qualified names of all the supertypes of the provided type,
+     *         or null if the provided type cannot be cached
+     */
+    Set<String> getSupertypes(ITypeBinding typeBinding) {
+        final String key = getKey(typeBinding);
+        if (key == null) {
+            return null;
+        }
+        Set<String> result = supertypes.get(key);
+        if (result != null) {
+            nbHits.incrementAndGet();
+            return result;
+        }
+        final long start = System.nanoTime();
+        final Set<String> results = new HashSet<String>();
+        collectSupertypes(typeBinding, results);
+        result = Collections.unmodifiableSet(results);
+        supertypes.put(key, result);
+        recordMiss(start);
+        return result;
+    }
+
+    private static void collectSupertypes(ITypeBinding typeBinding, Set<String> results) {
+        final ITypeBinding superclass = typeBinding.getSuperclass();
+        if (superclass != null && results.add(superclass.getErasure().getQualifiedName())) {
+            collectSupertypes(superclass, results);
+        }
+        for (ITypeBinding itfBinding : typeBinding.getInterfaces()) {
+            if (results.add(itfBinding.getErasure().getQualifiedName())) {
+                collectSupertypes(itfBinding, results);
+            }
+        }
+    }
+
+    /**
+     * Returns the keys of all the methods overridden by the provided method.
+     *
+     * @param methodBinding the overriding method binding
+     * @return the keys of all the methods overridden by the provided method,
+     *         or null if the provided method cannot be cached
+     */
+    Set<String> getOverridenMethodKeys(IMethodBinding methodBinding) {
+        final String key = methodBinding.isRecovered() ? null : methodBinding.getKey();
+        if (key == null) {
+            return null;
+        }
+        Set<String> result = overriddenMethods.get(key);
+        if (result != null) {
+            nbHits.incrementAndGet();
+            return result;
+        }
+        final long start = System.nanoTime();
+        result = Collections.unmodifiableSet(ASTHelper.toKeys(ASTHelper.getOverridenMethods(methodBinding)));
+        overriddenMethods.put(key, result);
+        recordMiss(start);
+        return result;
+    }
+
+    private String getKey(ITypeBinding typeBinding) {
+        if (typeBinding.isRecovered()) {
+            return null;
+        }
+        return typeBinding.getKey();
+    }
+
+    private void recordMiss(long start) {
+        missesDurationNanos.addAndGet(System.nanoTime() - start);
+        nbMisses.incrementAndGet();
+    }
+
+    /** Invalidates all the cache entries. */
+    public void invalidate() {
+        supertypes.clear();
+        overriddenMethods.clear();
+        nbInvalidations.incrementAndGet();
+    }
+
+    /**
+     * Invalidates all the cache entries if the type declarations changed between the two provided ASTs
+     * of the same compilation unit.
+     *
+     * @param before the compilation unit before it was refactored
+     * @param after the compilation unit after it was refactored
+     */
+    public void invalidateIfTypeDeclarationsChanged(CompilationUnit before, CompilationUnit after) {
+        if (!getTypeDeclarations(before).equals(getTypeDeclarations(after))) {
+            invalidate();
+        }
+    }
+
+    /**
+     * Returns, for each type declared in the provided compilation unit,
+     * its binding key followed by the binding keys of its direct supertypes.
+     */
+    private static List<String> getTypeDeclarations(CompilationUnit node) {
+        final List<String> results = new ArrayList<String>();
+        node.accept(new ASTVisitor() {
+            @Override
+            public boolean visit(AnnotationTypeDeclaration node) {
+                return addTypeDeclaration(node);
+            }
+
+            @Override
+            public boolean visit(AnonymousClassDeclaration node) {
+                addTypeDeclaration(node.resolveBinding());
+                return true;
+            }
+
+            @Override
+            public boolean visit(EnumDeclaration node) {
+                return addTypeDeclaration(node);
+            }
+
+            @Override
+            public boolean visit(TypeDeclaration node) {
+                return addTypeDeclaration(node);
+            }
+
+            private boolean addTypeDeclaration(AbstractTypeDeclaration node) {
+                addTypeDeclaration(node.resolveBinding());
+                return true;
+            }
+
+            private void addTypeDeclaration(ITypeBinding typeBinding) {
+                if (typeBinding == null) {
+                    results.add(null);
+                    return;
+                }
+                final StringBuilder sb = new StringBuilder(typeBinding.getKey());
+                if (typeBinding.getSuperclass() != null) {
+                    sb.append(" extends ").append(typeBinding.getSuperclass().getKey());
+                }
+                for (ITypeBinding itfBinding : typeBinding.getInterfaces()) {
+                    sb.append(" implements ").append(itfBinding.getKey());
+                }
+                results.add(sb.toString());
+            }
+        });
+        return results;
+    }
+
+    /**
+     * Returns the statistics of this cache, suitable for the profiling output.
+     *
+     * @return the statistics of this cache
+     */
+    public String getStatistics() {
+        final long hits = nbHits.get();
+        final long misses = nbMisses.get();
+        final long total = hits + misses;
+        final long hitRatePercent = total != 0 ? hits * 100 / total : 0;
+        final long averageMissNanos = misses != 0 ? missesDurationNanos.get() / misses : 0;
+        final long savedMillis = hits * averageMissNanos / 1000000;
+        return "Type hierarchy cache for java project " + name + ":"
+            + " hits=" + hits
+            + " misses=" + misses
+            + " hit rate=" + hitRatePercent + "%"
+            + " invalidations=" + nbInvalidations.get()
+            + " time spent on misses=" + missesDurationNanos.get() / 1000000 + "ms"
+            + " estimated time saved=" + savedMillis + "ms";
+    }
+
+    @Override
+    public String toString() {
+        return getStatistics();
+    }
+}
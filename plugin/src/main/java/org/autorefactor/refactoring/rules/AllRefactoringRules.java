@@ -69,7 +69,9 @@ public final class AllRefactoringRules {
                 new RemoveUselessNullCheckRefactoring(),
                 new WorkWithNullCheckedExpressionFirstRefactoring(),
                 new VectorOldToNewAPIRefactoring(),
+                new UseUnsynchronizedLocalObjectsRefactoring(),
                 new PrimitiveWrapperCreationRefactoring(),
+                new UsePrimitiveLocalVariableRefactoring(),
                 new BooleanRefactoring(),
                 new AddBracketsToControlStatementRefactoring(),
                 new InvertEqualsRefactoring(),
@@ -77,8 +79,7 @@ public final class AllRefactoringRules {
                 new RemoveUnneededThisExpressionRefactoring(),
                 new StringRefactoring(),
                 new BigDecimalRefactoring(),
-                // TODO JNR implement
-                // new ForeachRefactoring(),
+                new ForeachRefactoring(),
                 new DeadCodeEliminationRefactoring(),
                 new CollapseIfStatementRefactoring(),
                 new CommonCodeInIfElseStatementRefactoring(),
@@ -87,7 +88,10 @@ public final class AllRefactoringRules {
                 new UseDiamondOperatorRefactoring(),
                 new UseMultiCatchRefactoring(),
                 new CollectionRefactoring(),
+                new PresizeCollectionRefactoring(),
                 new MapRefactoring(),
+                new UseEnumCollectionsRefactoring(),
+                new HoistLoopInvariantCallsRefactoring(),
                 new NoAssignmentInIfConditionRefactoring(),
                 new IfElseIfRefactoring(),
                 new CommonIfInIfElseRefactoring(),
@@ -96,7 +100,9 @@ public final class AllRefactoringRules {
                 // TODO JNR - to be completed
                 // new ReduceVariableScopeRefactoring(),
                 new StringBuilderRefactoring(),
+                new LoggingRefactoring(),
                 new UseStringContainsRefactoring(),
+                new PrecompileRegexRefactoring(),
                 new PushNegationDownRefactoring(),
                 new CommentsRefactoring(),
                 new RemoveFieldsDefaultValuesRefactoring(),
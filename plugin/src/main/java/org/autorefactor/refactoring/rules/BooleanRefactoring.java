@@ -33,6 +33,7 @@ import java.util.Map;
 
 import org.autorefactor.refactoring.ASTBuilder;
 import org.autorefactor.refactoring.ASTBuilder.Copy;
+import org.autorefactor.refactoring.MethodSignature;
 import org.autorefactor.util.IllegalArgumentException;
 import org.autorefactor.util.IllegalStateException;
 import org.autorefactor.util.NotImplementedException;
@@ -476,10 +477,15 @@ public class BooleanRefactoring extends AbstractRefactoringRule {
         return false;
     }
 
+    private static final MethodSignature BOOLEAN_VALUE_OF_STRING =
+            MethodSignature.of("java.lang.Boolean", "valueOf", "java.lang.String");
+    private static final MethodSignature BOOLEAN_VALUE_OF_BOOLEAN =
+            MethodSignature.of("java.lang.Boolean", "valueOf", "boolean");
+
     @Override
     public boolean visit(MethodInvocation node) {
-        if (isMethod(node, "java.lang.Boolean", "valueOf", "java.lang.String")
-                || isMethod(node, "java.lang.Boolean", "valueOf", "boolean")) {
+        if (isMethod(node, BOOLEAN_VALUE_OF_STRING)
+                || isMethod(node, BOOLEAN_VALUE_OF_BOOLEAN)) {
             final BooleanLiteral l = as(arguments(node), BooleanLiteral.class);
             if (l != null) {
                 ctx.getRefactorings().replace(node,
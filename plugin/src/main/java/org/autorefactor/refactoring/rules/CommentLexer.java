@@ -0,0 +1,493 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules;
+
+/**
+ * Hand-written lexer classifying comments in a single linear pass.
+ * <p>
+ * It replaces the battery of regular expressions previously used by {@link CommentsRefactoring}.
+ * Some of these regular expressions were using reluctant quantifiers in {@code DOTALL} mode
+ * and backtracked badly on long javadocs.
+ * Each method documents the regular expression it stands for
+ * and must give exactly the same results.
+ * <p>
+ * Whitespaces are understood as the regular expression {@code \s} character class, i.e. {@code [ \t\n\x0B\f\r]}.
+ */
+public final class CommentLexer {
+
+    /** The comment is empty. */
+    public static final int EMPTY = 1;
+    /** The javadoc only contains <code>{&#64;inheritDoc}</code>. */
+    public static final int ONLY_INHERIT_DOC = 1 << 1;
+    /** The javadoc contains one of the punctuation characters among '.', '?', '!' or ':'. */
+    public static final int HAS_PUNCTUATION = 1 << 2;
+    /** The javadoc first letter is a lowercase letter. */
+    public static final int FIRST_LETTER_LOWERCASE = 1 << 3;
+    /** The line comment is a TODO generated by Eclipse. */
+    public static final int GENERATED_TODO = 1 << 4;
+    /** The line comment is an instruction to locally enable/disable a tool like checkstyle or JDT. */
+    public static final int TOOLS_CONTROL_INSTRUCTION = 1 << 5;
+
+    private static final String JAVADOC_START = "/**";
+    private static final String BLOCK_COMMENT_START = "/*";
+    private static final String BLOCK_COMMENT_END = "*/";
+    private static final String LINE_COMMENT_START = "//";
+    private static final String INHERIT_DOC = "{@inheritDoc}";
+    private static final String TODO_AUTO_GENERATED = "TODO Auto-generated ";
+    private static final String[] TODO_AUTO_GENERATED_ENDS = { "method stub", "constructor stub", "catch block" };
+    private static final String TODO_HANDLE_EXCEPTION = "TODO: handle exception";
+
+    private CommentLexer() {
+        // utility class ctor is private
+    }
+
+    /**
+     * Classifies the provided line comment.
+     * <p>
+     * Stands for the following regular expressions:
+     * <ul>
+     * <li>{@link #EMPTY}: <code>//\s*</code></li>
+     * <li>{@link #GENERATED_TODO}: <code>//\s*(:?(?:TODO Auto-generated (?:(?:(?:method|constructor) stub)
+     * |(?:catch block)))|(?:TODO: handle exception))\s*</code></li>
+     * <li>{@link #TOOLS_CONTROL_INSTRUCTION}: <code>//\s*&#64;\w+:\w+</code></li>
+     * </ul>
+     *
+     * @param comment the line comment text, including the leading "//"
+     * @return one of the {@link #EMPTY}, {@link #GENERATED_TODO}, {@link #TOOLS_CONTROL_INSTRUCTION} flags,
+     *         or 0 if the line comment does not fall in any of these categories
+     */
+    public static int classifyLineComment(String comment) {
+        if (!comment.startsWith(LINE_COMMENT_START)) {
+            return 0;
+        }
+        final int length = comment.length();
+        final int start = skipWhitespaces(comment, LINE_COMMENT_START.length(), length);
+        if (start == length) {
+            return EMPTY;
+        }
+        final char c = comment.charAt(start);
+        if (c == '@') {
+            final int colon = skipWordChars(comment, start + 1, length);
+            if (colon > start + 1
+                    && colon < length
+                    && comment.charAt(colon) == ':'
+                    && colon + 1 < length
+                    && skipWordChars(comment, colon + 1, length) == length) {
+                return TOOLS_CONTROL_INSTRUCTION;
+            }
+            return 0;
+        }
+        final int todoEnd = endOfGeneratedTodo(comment, start);
+        if (todoEnd != -1 && skipWhitespaces(comment, todoEnd, length) == length) {
+            return GENERATED_TODO;
+        }
+        return 0;
+    }
+
+    private static int endOfGeneratedTodo(String comment, int start) {
+        if (comment.startsWith(TODO_HANDLE_EXCEPTION, start)) {
+            return start + TODO_HANDLE_EXCEPTION.length();
+        }
+        int idx = start;
+        if (comment.charAt(idx) == ':') {
+            // the original regex was using "(:?" instead of "(?:", this is now part of the specification
+            idx++;
+        }
+        if (comment.startsWith(TODO_AUTO_GENERATED, idx)) {
+            idx += TODO_AUTO_GENERATED.length();
+            for (String end : TODO_AUTO_GENERATED_ENDS) {
+                if (comment.startsWith(end, idx)) {
+                    return idx + end.length();
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Classifies the provided block comment.
+     * <p>
+     * Stands for the following regular expression:
+     * <ul>
+     * <li>{@link #EMPTY}: <code>/\*\s*(\*\s*)*\*&#47;</code></li>
+     * </ul>
+     *
+     * @param comment the block comment text, including the leading "/*" and the trailing "*&#47;"
+     * @return the {@link #EMPTY} flag, or 0 if the block comment is not empty
+     */
+    public static int classifyBlockComment(String comment) {
+        final int length = comment.length();
+        if (length < BLOCK_COMMENT_START.length() + BLOCK_COMMENT_END.length()
+                || !comment.startsWith(BLOCK_COMMENT_START)
+                || !comment.endsWith(BLOCK_COMMENT_END)) {
+            return 0;
+        }
+        final int end = length - BLOCK_COMMENT_END.length();
+        for (int i = BLOCK_COMMENT_START.length(); i < end; i++) {
+            if (!isBlank(comment.charAt(i))) {
+                return 0;
+            }
+        }
+        return EMPTY;
+    }
+
+    /**
+     * Classifies the provided javadoc in one linear pass.
+     * <p>
+     * Stands for the following regular expressions:
+     * <ul>
+     * <li>{@link #EMPTY}: <code>/\*\*\s*(\*\s*)*\*&#47;</code></li>
+     * <li>{@link #ONLY_INHERIT_DOC}: <code>/\*\*\s*(\*\s*)*\{&#64;inheritDoc\}\s*(\*\s*)*\*&#47;</code></li>
+     * <li>{@link #HAS_PUNCTUATION}: <code>\.|\?|!|:</code> (find)</li>
+     * <li>{@link #FIRST_LETTER_LOWERCASE}: <code>(/\*\*\s*(?:(?:\r|\n|\r\n|\s)\s*\*)*\s*)(\w)(.*)</code>
+     * in {@code DOTALL} mode, where the second group is a lowercase letter</li>
+     * </ul>
+     *
+     * @param comment the javadoc text, including the leading "/**" and the trailing "*&#47;"
+     * @return a bit mask made of the {@link #EMPTY}, {@link #ONLY_INHERIT_DOC}, {@link #HAS_PUNCTUATION}
+     *         and {@link #FIRST_LETTER_LOWERCASE} flags
+     */
+    public static int classifyJavadoc(String comment) {
+        final int length = comment.length();
+        final boolean isWellFormed = length >= JAVADOC_START.length() + BLOCK_COMMENT_END.length()
+                && comment.startsWith(JAVADOC_START)
+                && comment.endsWith(BLOCK_COMMENT_END);
+        final int contentStart = JAVADOC_START.length();
+        final int contentEnd = length - BLOCK_COMMENT_END.length();
+
+        int result = 0;
+        int firstNonBlank = -1;
+        int lastNonBlank = -1;
+        boolean starNotAfterWhitespace = false;
+        for (int i = 0; i < length; i++) {
+            final char c = comment.charAt(i);
+            if (c == '.' || c == '?' || c == '!' || c == ':') {
+                result |= HAS_PUNCTUATION;
+            }
+            if (contentStart <= i && i < contentEnd) {
+                if (isBlank(c)) {
+                    if (c == '*' && firstNonBlank == -1 && !isWhitespace(comment.charAt(i - 1))) {
+                        starNotAfterWhitespace = true;
+                    }
+                } else {
+                    if (firstNonBlank == -1) {
+                        firstNonBlank = i;
+                    }
+                    lastNonBlank = i;
+                }
+            }
+        }
+
+        if (!isWellFormed) {
+            return result;
+        }
+        if (firstNonBlank == -1) {
+            return result | EMPTY;
+        }
+        if (comment.startsWith(INHERIT_DOC, firstNonBlank)
+                && lastNonBlank == firstNonBlank + INHERIT_DOC.length() - 1) {
+            result |= ONLY_INHERIT_DOC;
+        }
+        final char firstLetter = comment.charAt(firstNonBlank);
+        if (!starNotAfterWhitespace && 'a' <= firstLetter && firstLetter <= 'z') {
+            result |= FIRST_LETTER_LOWERCASE;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the index of the first letter of the provided javadoc,
+     * i.e. the index of the second group of the regular expression
+     * <code>(/\*\*\s*(?:(?:\r|\n|\r\n|\s)\s*\*)*\s*)(\w)(.*)</code> in {@code DOTALL} mode.
+     *
+     * @param comment the javadoc text, including the leading "/**"
+     * @return the index of the first letter of the provided javadoc,
+     *         or -1 if the regular expression would not match
+     */
+    public static int indexOfJavadocFirstLetter(String comment) {
+        if (!comment.startsWith(JAVADOC_START)) {
+            return -1;
+        }
+        final int length = comment.length();
+        for (int i = JAVADOC_START.length(); i < length; i++) {
+            final char c = comment.charAt(i);
+            if (c == '*') {
+                if (!isWhitespace(comment.charAt(i - 1))) {
+                    return -1;
+                }
+            } else if (!isWhitespace(c)) {
+                return isWordChar(c) ? i : -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Removes the empty lines at the start of the provided block comment or javadoc.
+     * <p>
+     * Stands for the regular expressions <code>(/\*)(?:\s*\*)+(\s*\*)</code>
+     * and <code>(/\*\*)(?:\s*\*)+(\s*\*)</code> (find), then replacing the first match with the two groups.
+     *
+     * @param comment the block comment or javadoc text
+     * @param isJavadoc whether the comment is a javadoc
+     * @return the comment without the empty lines at its start,
+     *         or null if there are no empty lines at the start of the comment
+     */
+    public static String removeEmptyLinesAtStart(String comment, boolean isJavadoc) {
+        final String commentStart = isJavadoc ? JAVADOC_START : BLOCK_COMMENT_START;
+        final int length = comment.length();
+        int start = comment.indexOf(commentStart);
+        while (start != -1) {
+            // (?:\s*\*)+(\s*\*) matches the longest run of whitespaces and stars
+            // containing at least two stars, and ending with a star
+            int nbStars = 0;
+            int lastStarGroupStart = -1;
+            int groupStart = start + commentStart.length();
+            for (int i = groupStart; i < length && isBlank(comment.charAt(i)); i++) {
+                if (comment.charAt(i) == '*') {
+                    nbStars++;
+                    lastStarGroupStart = groupStart;
+                    groupStart = i + 1;
+                }
+            }
+            if (nbStars >= 2) {
+                return comment.substring(0, start) + commentStart + comment.substring(lastStarGroupStart);
+            }
+            start = comment.indexOf(commentStart, start + 1);
+        }
+        return null;
+    }
+
+    /**
+     * Removes the empty lines at the end of the provided block comment or javadoc.
+     * <p>
+     * Stands for the regular expression <code>(?:\*\s*)*\*\s*(\*&#47;)</code> (find),
+     * then replacing the first match with the group.
+     *
+     * @param comment the block comment or javadoc text
+     * @return the comment without the empty lines at its end,
+     *         or null if there are no empty lines at the end of the comment
+     */
+    public static String removeEmptyLinesAtEnd(String comment) {
+        final int length = comment.length();
+        int i = 0;
+        while (i < length) {
+            if (comment.charAt(i) != '*') {
+                i++;
+                continue;
+            }
+            // all the stars inside this run of whitespaces and stars end up in the same place
+            final int firstStar = i;
+            while (i < length && isBlank(comment.charAt(i))) {
+                i++;
+            }
+            final int lastStar = i - 1;
+            if (i < length
+                    && comment.charAt(i) == '/'
+                    && comment.charAt(lastStar) == '*'
+                    && firstStar < lastStar) {
+                return comment.substring(0, firstStar) + BLOCK_COMMENT_END + comment.substring(i + 1);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the index of the first javadoc tag in the provided javadoc.
+     * <p>
+     * Stands for the regular expression <code>(^|\/\*\*)\s*(?:\*\s*)?&#64;\w+</code>
+     * in {@code MULTILINE} mode (find).
+     *
+     * @param comment the javadoc text
+     * @return the index of the first javadoc tag, or -1 if there are none
+     */
+    public static int indexOfFirstJavadocTag(String comment) {
+        final int length = comment.length();
+        // Memoize the whitespace runs: the candidate positions only increase,
+        // so whitespaces are only skipped once, which keeps this method linear
+        int wsRunStart = -1;
+        int wsRunEnd = -1;
+        int starWsRunStart = -1;
+        int starWsRunEnd = -1;
+        for (int i = 0; i < length; i++) {
+            final boolean isLineStart = isLineStart(comment, i);
+            final boolean isJavadocStart = comment.startsWith(JAVADOC_START, i);
+            for (int candidate = 0; candidate < 2; candidate++) {
+                final int tagSearchStart;
+                if (candidate == 0 && isLineStart) {
+                    tagSearchStart = i;
+                } else if (candidate == 1 && isJavadocStart) {
+                    tagSearchStart = i + JAVADOC_START.length();
+                } else {
+                    continue;
+                }
+
+                final int afterWs;
+                if (wsRunStart <= tagSearchStart && tagSearchStart <= wsRunEnd) {
+                    afterWs = wsRunEnd;
+                } else {
+                    afterWs = skipWhitespaces(comment, tagSearchStart, length);
+                    wsRunStart = tagSearchStart;
+                    wsRunEnd = afterWs;
+                }
+                if (isTagAt(comment, afterWs, length)) {
+                    return i;
+                }
+                if (afterWs < length && comment.charAt(afterWs) == '*') {
+                    final int afterStar = afterWs + 1;
+                    final int afterStarWs;
+                    if (starWsRunStart <= afterStar && afterStar <= starWsRunEnd) {
+                        afterStarWs = starWsRunEnd;
+                    } else {
+                        afterStarWs = skipWhitespaces(comment, afterStar, length);
+                        starWsRunStart = afterStar;
+                        starWsRunEnd = afterStarWs;
+                    }
+                    if (isTagAt(comment, afterStarWs, length)) {
+                        return i;
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isTagAt(String comment, int idx, int length) {
+        return idx + 1 < length
+                && comment.charAt(idx) == '@'
+                && isWordChar(comment.charAt(idx + 1));
+    }
+
+    /**
+     * Returns the position where to insert the missing punctuation in the provided javadoc text.
+     * <p>
+     * Stands for the end of the first group of the regular expression
+     * <code>(.*?)((?:\s*(?:\r|\n|\r\n)*\s*)*(?:\*&#47;)?)</code> in {@code DOTALL} mode.
+     *
+     * @param comment the javadoc text
+     * @param end the end index of the javadoc text to consider
+     * @return the position where to insert the missing punctuation
+     */
+    public static int indexOfMissingPunctuation(String comment, int end) {
+        int idx = end;
+        if (idx >= BLOCK_COMMENT_END.length() && comment.startsWith(BLOCK_COMMENT_END, idx - 2)) {
+            idx -= BLOCK_COMMENT_END.length();
+        }
+        while (idx > 0 && isWhitespace(comment.charAt(idx - 1))) {
+            idx--;
+        }
+        return idx;
+    }
+
+    /**
+     * Returns the text of the provided comment on a single line.
+     * <p>
+     * Stands for replacing all the occurrences of the regular expression
+     * <code>\s*(\r\n|\r|\n)\s*\*</code> with a space, then replacing all the occurrences
+     * of the regular expression <code>\s+</code> with a space, and finally trimming the result.
+     *
+     * @param comment the comment text
+     * @param start the start index of the comment text to consider
+     * @param end the end index of the comment text to consider
+     * @return the text of the provided comment on a single line
+     */
+    public static String toSingleLine(String comment, int start, int end) {
+        final StringBuilder sb = new StringBuilder(end - start);
+        boolean pendingSpace = false;
+        int i = start;
+        while (i < end) {
+            final char c = comment.charAt(i);
+            if (isWhitespace(c)) {
+                boolean hasNewline = false;
+                while (i < end && isWhitespace(comment.charAt(i))) {
+                    final char ws = comment.charAt(i);
+                    hasNewline |= ws == '\r' || ws == '\n';
+                    i++;
+                }
+                if (hasNewline && i < end && comment.charAt(i) == '*') {
+                    // drop the star at the start of the line
+                    i++;
+                }
+                pendingSpace = true;
+            } else {
+                if (pendingSpace) {
+                    sb.append(' ');
+                    pendingSpace = false;
+                }
+                sb.append(c);
+                i++;
+            }
+        }
+        if (pendingSpace) {
+            sb.append(' ');
+        }
+        return sb.toString().trim();
+    }
+
+    private static boolean isLineStart(String s, int idx) {
+        if (idx == 0) {
+            return true;
+        }
+        if (idx >= s.length()) {
+            return false;
+        }
+        final char previous = s.charAt(idx - 1);
+        if (previous == '\r') {
+            // "\r\n" is only one line terminator
+            return s.charAt(idx) != '\n';
+        }
+        return previous == '\n' || previous == '\u0085' || previous == '\u2028' || previous == '\u2029';
+    }
+
+    private static int skipWhitespaces(String s, int idx, int end) {
+        while (idx < end && isWhitespace(s.charAt(idx))) {
+            idx++;
+        }
+        return idx;
+    }
+
+    private static int skipWordChars(String s, int idx, int end) {
+        while (idx < end && isWordChar(s.charAt(idx))) {
+            idx++;
+        }
+        return idx;
+    }
+
+    private static boolean isBlank(char c) {
+        return c == '*' || isWhitespace(c);
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static boolean isWordChar(char c) {
+        return ('a' <= c && c <= 'z')
+                || ('A' <= c && c <= 'Z')
+                || ('0' <= c && c <= '9')
+                || c == '_';
+    }
+}
@@ -30,8 +30,6 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.TreeMap;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.autorefactor.refactoring.SourceLocation;
 import org.autorefactor.util.NotImplementedException;
@@ -51,6 +49,7 @@ import org.eclipse.jdt.core.dom.TextElement;
 import org.eclipse.jdt.core.dom.TypeDeclaration;
 
 import static org.autorefactor.refactoring.ASTHelper.*;
+import static org.autorefactor.refactoring.rules.CommentLexer.*;
 import static org.eclipse.jdt.core.dom.TagElement.*;
 
 /**
@@ -84,37 +83,6 @@ public class CommentsRefactoring extends AbstractRefactoringRule {
         return "Comments";
     }
 
-    private static final Pattern EMPTY_LINE_COMMENT = Pattern.compile("//\\s*");
-    private static final Pattern EMPTY_BLOCK_COMMENT = Pattern.compile("/\\*\\s*(\\*\\s*)*\\*/");
-    private static final Pattern EMPTY_JAVADOC = Pattern.compile("/\\*\\*\\s*(\\*\\s*)*\\*/");
-    private static final Pattern EMPTY_LINE_AT_START_OF_BLOCK_COMMENT = Pattern.compile("(/\\*)(?:\\s*\\*)+(\\s*\\*)");
-    private static final Pattern EMPTY_LINE_AT_START_OF_JAVADOC = Pattern.compile("(/\\*\\*)(?:\\s*\\*)+(\\s*\\*)");
-    private static final Pattern EMPTY_LINE_AT_END_OF_BLOCK_COMMENT = Pattern.compile("(?:\\*\\s*)*\\*\\s*(\\*/)");
-    private static final Pattern JAVADOC_ONLY_INHERITDOC =
-            Pattern.compile("/\\*\\*\\s*(\\*\\s*)*\\{@inheritDoc\\}\\s*(\\*\\s*)*\\*/");
-    private static final Pattern ECLIPSE_GENERATED_TODOS = Pattern.compile("//\\s*"
-            + "(:?"
-            +   "(?:TODO Auto-generated (?:(?:(?:method|constructor) stub)|(?:catch block)))"
-            + "|"
-            +   "(?:TODO: handle exception)"
-            + ")"
-            + "\\s*");
-    /**
-     * Ignore special instructions to locally enable/disable tools working on java code:
-     * <ul>
-     * <li>checkstyle</li>
-     * <li>JDT</li>
-     * </ul>
-     */
-    private static final Pattern TOOLS_CONTROL_INSTRUCTIONS = Pattern.compile("//\\s*@\\w+:\\w+");
-    private static final Pattern JAVADOC_HAS_PUNCTUATION = Pattern.compile("\\.|\\?|!|:");
-    private static final Pattern JAVADOC_WITHOUT_PUNCTUATION =
-            Pattern.compile("(.*?)((?:\\s*(?:\\r|\\n|\\r\\n)*\\s*)*(?:\\*/)?)", Pattern.DOTALL);
-    private static final Pattern FIRST_JAVADOC_TAG =
-            Pattern.compile("(^|\\/\\*\\*)\\s*(?:\\*\\s*)?@\\w+", Pattern.MULTILINE);
-    private static final Pattern JAVADOC_FIRST_LETTER_LOWERCASE =
-            Pattern.compile("(/\\*\\*\\s*(?:(?:\\r|\\n|\\r\\n|\\s)\\s*\\*)*\\s*)(\\w)(.*)", Pattern.DOTALL);
-
     private CompilationUnit astRoot;
     private final List<Pair<SourceLocation, Comment>> comments = new ArrayList<Pair<SourceLocation, Comment>>();
 
@@ -126,7 +94,7 @@ public class CommentsRefactoring extends AbstractRefactoringRule {
     @Override
     public boolean visit(BlockComment node) {
         final String comment = getComment(node);
-        if (EMPTY_BLOCK_COMMENT.matcher(comment).matches()) {
+        if ((classifyBlockComment(comment) & EMPTY) != 0) {
             this.ctx.getRefactorings().remove(node);
             return DO_NOT_VISIT_SUBTREE;
         }
@@ -135,13 +103,15 @@ public class CommentsRefactoring extends AbstractRefactoringRule {
             this.ctx.getRefactorings().toJavadoc(node);
             return DO_NOT_VISIT_SUBTREE;
         }
-        final Matcher emptyLineAtStartMatcher = EMPTY_LINE_AT_START_OF_BLOCK_COMMENT.matcher(comment);
-        if (emptyLineAtStartMatcher.find()) {
-            return replaceEmptyLineAtStartOfComment(node, emptyLineAtStartMatcher);
+        final String withoutEmptyLineAtStart = removeEmptyLinesAtStart(comment, false);
+        if (withoutEmptyLineAtStart != null) {
+            this.ctx.getRefactorings().replace(node, withoutEmptyLineAtStart);
+            return DO_NOT_VISIT_SUBTREE;
         }
-        final Matcher emptyLineAtEndMatcher = EMPTY_LINE_AT_END_OF_BLOCK_COMMENT.matcher(comment);
-        if (emptyLineAtEndMatcher.find()) {
-            return replaceEmptyLineAtEndOfComment(node, emptyLineAtEndMatcher);
+        final String withoutEmptyLineAtEnd = removeEmptyLinesAtEnd(comment);
+        if (withoutEmptyLineAtEnd != null) {
+            this.ctx.getRefactorings().replace(node, withoutEmptyLineAtEnd);
+            return DO_NOT_VISIT_SUBTREE;
         }
         final String replacement = getReplacement(comment, false);
         if (replacement != null && !replacement.equals(comment)) {
@@ -153,9 +123,7 @@ public class CommentsRefactoring extends AbstractRefactoringRule {
 
     private String getReplacement(String comment, boolean isJavadoc) {
         int commentLineLength = this.ctx.getJavaProjectOptions().getCommentLineLength();
-        String commentNoStartNorEnd = comment.substring(0, comment.length() - 2).substring(isJavadoc ? 3 : 2);
-        String commentWithSpaces = commentNoStartNorEnd.replaceAll("\\s*(\\r\\n|\\r|\\n)\\s*\\*", " ");
-        String commentContent = commentWithSpaces.replaceAll("\\s+", " ").trim();
+        String commentContent = toSingleLine(comment, isJavadoc ? 3 : 2, comment.length() - 2);
         if (commentContent.length() + (isJavadoc ? 7 : 6) < commentLineLength) {
             return (isJavadoc ? "/** " : "/* ") + commentContent + " */";
         }
@@ -193,20 +161,23 @@ public class CommentsRefactoring extends AbstractRefactoringRule {
     public boolean visit(Javadoc node) {
         final String comment = getComment(node);
         final boolean isWellFormattedInheritDoc = "/** {@inheritDoc} */".equals(comment);
-        final Matcher emptyLineAtStartMatcher = EMPTY_LINE_AT_START_OF_JAVADOC.matcher(comment);
-        final Matcher emptyLineAtEndMatcher = EMPTY_LINE_AT_END_OF_BLOCK_COMMENT.matcher(comment);
-        if (EMPTY_JAVADOC.matcher(comment).matches()) {
+        final int javadocKind = classifyJavadoc(comment);
+        final String withoutEmptyLineAtStart = removeEmptyLinesAtStart(comment, true);
+        final String withoutEmptyLineAtEnd = removeEmptyLinesAtEnd(comment);
+        if ((javadocKind & EMPTY) != 0) {
             this.ctx.getRefactorings().remove(node);
             return DO_NOT_VISIT_SUBTREE;
-        } else if (emptyLineAtStartMatcher.find()) {
-            return replaceEmptyLineAtStartOfComment(node, emptyLineAtStartMatcher);
-        } else if (emptyLineAtEndMatcher.find()) {
-            return replaceEmptyLineAtEndOfComment(node, emptyLineAtEndMatcher);
+        } else if (withoutEmptyLineAtStart != null) {
+            this.ctx.getRefactorings().replace(node, withoutEmptyLineAtStart);
+            return DO_NOT_VISIT_SUBTREE;
+        } else if (withoutEmptyLineAtEnd != null) {
+            this.ctx.getRefactorings().replace(node, withoutEmptyLineAtEnd);
+            return DO_NOT_VISIT_SUBTREE;
         } else if (allTagsEmpty(tags(node))) {
             this.ctx.getRefactorings().remove(node);
             return DO_NOT_VISIT_SUBTREE;
         } else if (!isWellFormattedInheritDoc
-                && JAVADOC_ONLY_INHERITDOC.matcher(comment).matches()) {
+                && (javadocKind & ONLY_INHERIT_DOC) != 0) {
             // Put on one line only to augment vertical density of code
             int startLine = this.astRoot.getLineNumber(node.getStartPosition());
             int endLine = this.astRoot.getLineNumber(node.getStartPosition() + node.getLength());
@@ -218,16 +189,18 @@ public class CommentsRefactoring extends AbstractRefactoringRule {
             this.ctx.getRefactorings().replace(node, comment.replace("/**", "/*"));
             return DO_NOT_VISIT_SUBTREE;
         } else if (!isWellFormattedInheritDoc
-                && !JAVADOC_HAS_PUNCTUATION.matcher(comment).find()) {
+                && (javadocKind & HAS_PUNCTUATION) == 0) {
             final String newComment = addPeriodAtEndOfFirstLine(node, comment);
             if (newComment != null) {
                 this.ctx.getRefactorings().replace(node, newComment);
                 return DO_NOT_VISIT_SUBTREE;
             }
-        } else {
-            final Matcher m = JAVADOC_FIRST_LETTER_LOWERCASE.matcher(comment);
-            if (m.matches() && Character.isLowerCase(m.group(2).charAt(0))) {
-                String newComment = m.group(1) + m.group(2).toUpperCase() + m.group(3);
+        } else if ((javadocKind & FIRST_LETTER_LOWERCASE) != 0) {
+            final int firstLetter = indexOfJavadocFirstLetter(comment);
+            if (firstLetter != -1) {
+                String newComment = comment.substring(0, firstLetter)
+                        + comment.substring(firstLetter, firstLetter + 1).toUpperCase()
+                        + comment.substring(firstLetter + 1);
                 if (!newComment.equals(comment)) {
                     this.ctx.getRefactorings().replace(node, newComment);
                     return DO_NOT_VISIT_SUBTREE;
@@ -253,42 +226,25 @@ public class CommentsRefactoring extends AbstractRefactoringRule {
         return true;
     }
 
-    private boolean replaceEmptyLineAtStartOfComment(Comment node, Matcher matcher) {
-        final String replacement = matcher.replaceFirst(matcher.group(1) + matcher.group(2));
-        this.ctx.getRefactorings().replace(node, replacement);
-        return DO_NOT_VISIT_SUBTREE;
-    }
-
-    private boolean replaceEmptyLineAtEndOfComment(Comment node, Matcher matcher) {
-        final String replacement = matcher.replaceFirst(matcher.group(1));
-        this.ctx.getRefactorings().replace(node, replacement);
-        return DO_NOT_VISIT_SUBTREE;
-    }
-
     private String addPeriodAtEndOfFirstLine(Javadoc node, String comment) {
-        String beforeFirstTag = comment;
-        String afterFirstTag = "";
-        final Matcher m = FIRST_JAVADOC_TAG.matcher(comment);
-        if (m.find()) {
-            if (m.start() == 0) {
+        int beforeFirstTag = comment.length();
+        final int firstTag = indexOfFirstJavadocTag(comment);
+        if (firstTag != -1) {
+            if (firstTag == 0) {
                 return null;
             }
-            beforeFirstTag = comment.substring(0, m.start());
-            afterFirstTag = comment.substring(m.start());
+            beforeFirstTag = firstTag;
         }
-        final Matcher matcher = JAVADOC_WITHOUT_PUNCTUATION.matcher(beforeFirstTag);
-        if (matcher.matches()) {
-            final List<TagElement> tagElements = tags(node);
-            if (tagElements.size() >= 2) {
-                final TagElement firstLine = tagElements.get(0);
-                final int relativeStart = firstLine.getStartPosition() - node.getStartPosition();
-                final int endOfFirstLine = relativeStart + firstLine.getLength();
-                return comment.substring(0, endOfFirstLine) + "." + comment.substring(endOfFirstLine);
-                // TODO JNR do the replace here, not outside this method
-            }
-            return matcher.group(1) + "." + matcher.group(2) + afterFirstTag;
+        final List<TagElement> tagElements = tags(node);
+        if (tagElements.size() >= 2) {
+            final TagElement firstLine = tagElements.get(0);
+            final int relativeStart = firstLine.getStartPosition() - node.getStartPosition();
+            final int endOfFirstLine = relativeStart + firstLine.getLength();
+            return comment.substring(0, endOfFirstLine) + "." + comment.substring(endOfFirstLine);
+            // TODO JNR do the replace here, not outside this method
         }
-        return null;
+        final int missingPunctuation = indexOfMissingPunctuation(comment, beforeFirstTag);
+        return comment.substring(0, missingPunctuation) + "." + comment.substring(missingPunctuation);
     }
 
     private boolean allTagsEmpty(List<TagElement> tags) {
@@ -384,13 +340,16 @@ public class CommentsRefactoring extends AbstractRefactoringRule {
     @Override
     public boolean visit(LineComment node) {
         final String comment = getComment(node);
-        if (EMPTY_LINE_COMMENT.matcher(comment).matches()) {
+        final int lineCommentKind = classifyLineComment(comment);
+        if ((lineCommentKind & EMPTY) != 0) {
             this.ctx.getRefactorings().remove(node);
             return DO_NOT_VISIT_SUBTREE;
-        } else if (ECLIPSE_GENERATED_TODOS.matcher(comment).matches()) {
+        } else if ((lineCommentKind & GENERATED_TODO) != 0) {
             this.ctx.getRefactorings().remove(node);
             return DO_NOT_VISIT_SUBTREE;
-        } else if (TOOLS_CONTROL_INSTRUCTIONS.matcher(comment).matches()) {
+        } else if ((lineCommentKind & TOOLS_CONTROL_INSTRUCTION) != 0) {
+            // ignore special instructions to locally enable/disable tools working on java code,
+            // like checkstyle or JDT
             return VISIT_SUBTREE;
         } else {
             final ASTNode nextNode = getNextNode(node);
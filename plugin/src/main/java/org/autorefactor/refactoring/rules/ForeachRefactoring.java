@@ -25,25 +25,70 @@
  */
 package org.autorefactor.refactoring.rules;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.autorefactor.refactoring.ASTBuilder;
+import org.autorefactor.refactoring.ForLoopHelper.ForLoopContent;
+import org.autorefactor.refactoring.MethodSignature;
+import org.autorefactor.refactoring.Refactorings;
 import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.ASTVisitor;
-import org.eclipse.jdt.core.dom.FieldAccess;
+import org.eclipse.jdt.core.dom.Assignment;
+import org.eclipse.jdt.core.dom.Block;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.EnhancedForStatement;
+import org.eclipse.jdt.core.dom.Expression;
 import org.eclipse.jdt.core.dom.ForStatement;
-import org.eclipse.jdt.core.dom.QualifiedName;
+import org.eclipse.jdt.core.dom.IBinding;
+import org.eclipse.jdt.core.dom.IExtendedModifier;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
+import org.eclipse.jdt.core.dom.ImportDeclaration;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.eclipse.jdt.core.dom.Name;
+import org.eclipse.jdt.core.dom.ParameterizedType;
+import org.eclipse.jdt.core.dom.PostfixExpression;
+import org.eclipse.jdt.core.dom.PrefixExpression;
 import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.SingleVariableDeclaration;
+import org.eclipse.jdt.core.dom.Statement;
+import org.eclipse.jdt.core.dom.Type;
+import org.eclipse.jdt.core.dom.VariableDeclarationExpression;
+import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
+import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
 import org.eclipse.jdt.core.dom.WhileStatement;
 
 import static org.autorefactor.refactoring.ASTHelper.*;
+import static org.autorefactor.refactoring.ForLoopHelper.*;
+import static org.autorefactor.refactoring.ForLoopHelper.ContainerType.*;
+import static org.autorefactor.refactoring.ForLoopHelper.IterationType.*;
 
 /** See {@link #getDescription()} method. */
 @SuppressWarnings("javadoc")
 public class ForeachRefactoring extends AbstractRefactoringRule {
 
+    private static final String OBJECT = "java.lang.Object";
+    private static final MethodSignature LIST_GET = MethodSignature.of("java.util.List", "get", "int");
+    private static final MethodSignature MAP_KEY_SET = MethodSignature.of("java.util.Map", "keySet");
+    private static final MethodSignature MAP_GET = MethodSignature.of("java.util.Map", "get", OBJECT);
+    private static final MethodSignature MAP_CONTAINS_KEY = MethodSignature.of("java.util.Map", "containsKey", OBJECT);
+    private static final MethodSignature MAP_CONTAINS_VALUE =
+            MethodSignature.of("java.util.Map", "containsValue", OBJECT);
+    private static final MethodSignature MAP_IS_EMPTY = MethodSignature.of("java.util.Map", "isEmpty");
+    private static final MethodSignature MAP_SIZE = MethodSignature.of("java.util.Map", "size");
+    private static final MethodSignature SET_ITERATOR = MethodSignature.of("java.util.Set", "iterator");
+    private static final MethodSignature ITERATOR_HAS_NEXT = MethodSignature.of("java.util.Iterator", "hasNext");
+    private static final MethodSignature ITERATOR_NEXT = MethodSignature.of("java.util.Iterator", "next");
+    private static final MethodSignature ITERATOR_REMOVE = MethodSignature.of("java.util.Iterator", "remove");
+
     @Override
     public String getDescription() {
         return ""
             + "Replaces \"while\"/\"for with iterator\"/\"for with index loops\" into foreach loops"
             + " (applicable to arrays or Iterable)."
+            + " For now, only \"for with index\" loops over lists which do not implement java.util.RandomAccess"
+            + " are replaced, because each List.get() call traverses such lists.\n"
             + "Replaces Map.keySet() iteration with calls to Map.get()} into iterations over Map.entrySet().";
     }
 
@@ -52,34 +97,179 @@ public class ForeachRefactoring extends AbstractRefactoringRule {
         return "Foreach";
     }
 
+    /** Finds the uses of the index variable and of the list variable in the body of a loop. */
     private static class VariableUseVisitor extends ASTVisitor {
+        private final Name indexVariable;
+        private final Name listVariable;
+        private final List<MethodInvocation> listGets = new ArrayList<MethodInvocation>();
+        private boolean onlyListGets = true;
+
+        public VariableUseVisitor(ForLoopContent loopContent) {
+            this.indexVariable = loopContent.getLoopVariable();
+            this.listVariable = loopContent.getContainerVariable();
+        }
+
         @Override
         public boolean visit(SimpleName node) {
-            ASTNode parent = node.getParent();
-            if (parent instanceof QualifiedName
-                    || parent instanceof FieldAccess) {
-                return DO_NOT_VISIT_SUBTREE;
+            final ASTNode parent = node.getParent();
+            if (isSameVariable(node, indexVariable)) {
+                if (isListGet(parent) && arg0((MethodInvocation) parent) == node) {
+                    listGets.add((MethodInvocation) parent);
+                } else {
+                    onlyListGets = false;
+                }
+            } else if (isSameVariable(node, listVariable)) {
+                if (!isListGet(parent) || ((MethodInvocation) parent).getExpression() != node) {
+                    onlyListGets = false;
+                }
             }
-            return DO_NOT_VISIT_SUBTREE;
+            return VISIT_SUBTREE;
+        }
+
+        private boolean isListGet(ASTNode node) {
+            if (node instanceof MethodInvocation) {
+                final MethodInvocation mi = (MethodInvocation) node;
+                return isMethod(mi, LIST_GET)
+                        && isSameVariable(mi.getExpression(), listVariable)
+                        && isSameVariable(arg0(mi), indexVariable);
+            }
+            return false;
         }
     }
 
-    @Override
-    public boolean visit(ForStatement node) {
-        final VariableUseVisitor variableUseVisitor = new VariableUseVisitor();
-        node.accept(variableUseVisitor);
+    /** Finds the uses of the key variable and of the map variable in the body of a loop over Map.keySet(). */
+    private static class KeySetUseVisitor extends ASTVisitor {
+        private final Name mapVariable;
+        private final Name keyVariable;
+        private final List<MethodInvocation> mapGets = new ArrayList<MethodInvocation>();
+        private boolean keyUsedElsewhere;
+        private boolean canUseEntrySet = true;
+
+        public KeySetUseVisitor(MethodInvocation keySet, Name keyVariable) {
+            this.mapVariable = (Name) keySet.getExpression();
+            this.keyVariable = keyVariable;
+        }
+
+        @Override
+        public boolean visit(SimpleName node) {
+            if (isDeclaration(node)) {
+                return VISIT_SUBTREE;
+            }
+            final ASTNode parent = node.getParent();
+            if (isSameVariable(node, keyVariable)) {
+                if (isMapGet(parent) && arg0((MethodInvocation) parent) == node) {
+                    mapGets.add((MethodInvocation) parent);
+                } else if (isAssigned(node)) {
+                    // Map.get() would then look up another key
+                    canUseEntrySet = false;
+                } else {
+                    keyUsedElsewhere = true;
+                }
+            } else if (isSameVariable(node, mapVariable)) {
+                if (!isMapRead(parent) || ((MethodInvocation) parent).getExpression() != node) {
+                    // the map might be written to
+                    canUseEntrySet = false;
+                }
+            }
+            return VISIT_SUBTREE;
+        }
+
+        private boolean isMapGet(ASTNode node) {
+            if (node instanceof MethodInvocation) {
+                final MethodInvocation mi = (MethodInvocation) node;
+                return isMethod(mi, MAP_GET)
+                        && isSameVariable(mi.getExpression(), mapVariable)
+                        && isSameVariable(arg0(mi), keyVariable);
+            }
+            return false;
+        }
+
+        private boolean isMapRead(ASTNode node) {
+            if (node instanceof MethodInvocation) {
+                final MethodInvocation mi = (MethodInvocation) node;
+                return isMethod(mi, MAP_GET)
+                        || isMethod(mi, MAP_CONTAINS_KEY)
+                        || isMethod(mi, MAP_CONTAINS_VALUE)
+                        || isMethod(mi, MAP_IS_EMPTY)
+                        || isMethod(mi, MAP_SIZE);
+            }
+            return false;
+        }
 
-        if (initializers(node).size() == 1) {
-            initializers(node);
+        private boolean isAssigned(SimpleName node) {
+            final ASTNode parent = node.getParent();
+            if (parent instanceof Assignment) {
+                return ((Assignment) parent).getLeftHandSide() == node;
+            } else if (parent instanceof PrefixExpression) {
+                final PrefixExpression pe = (PrefixExpression) parent;
+                return hasOperator(pe, PrefixExpression.Operator.INCREMENT)
+                        || hasOperator(pe, PrefixExpression.Operator.DECREMENT);
+            }
+            return parent instanceof PostfixExpression;
         }
+    }
+
+    /** Checks an iterator variable is only used to iterate, and possibly to remove elements. */
+    private static class IteratorUseVisitor extends ASTVisitor {
+        private final Name iteratorVariable;
+        private int nbNextCalls;
+        private boolean onlyIterates = true;
+
+        public IteratorUseVisitor(Name iteratorVariable) {
+            this.iteratorVariable = iteratorVariable;
+        }
+
+        @Override
+        public boolean visit(SimpleName node) {
+            if (!isDeclaration(node) && isSameVariable(node, iteratorVariable)) {
+                final ASTNode parent = node.getParent();
+                final MethodInvocation mi = parent instanceof MethodInvocation ? (MethodInvocation) parent : null;
+                if (mi == null || mi.getExpression() != node) {
+                    onlyIterates = false;
+                } else if (isMethod(mi, ITERATOR_NEXT)) {
+                    nbNextCalls++;
+                } else if (!isMethod(mi, ITERATOR_HAS_NEXT) && !isMethod(mi, ITERATOR_REMOVE)) {
+                    onlyIterates = false;
+                }
+            }
+            return VISIT_SUBTREE;
+        }
+    }
+
+    private static boolean isDeclaration(SimpleName node) {
+        return node.getLocationInParent() == VariableDeclarationFragment.NAME_PROPERTY
+                || node.getLocationInParent() == SingleVariableDeclaration.NAME_PROPERTY;
+    }
 
-        node.getExpression();
-        updaters(node);
-        node.getBody();
+    @Override
+    public boolean visit(ForStatement node) {
+        final ForLoopContent loopContent = iterateOverContainer(node);
+        if (loopContent != null
+                && COLLECTION.equals(loopContent.getContainerType())
+                && INDEX.equals(loopContent.getIterationType())
+                // the index variable must not be used after the loop
+                && initializers(node).get(0) instanceof VariableDeclarationExpression
+                && isLocalVariable(loopContent.getContainerVariable())
+                && instanceOf(loopContent.getContainerVariable(), "java.util.List")
+                // List.get() is cheap for random access lists: no need to allocate an iterator
+                && !instanceOf(loopContent.getContainerVariable(), "java.util.RandomAccess")) {
+            final VariableUseVisitor visitor = new VariableUseVisitor(loopContent);
+            node.getBody().accept(visitor);
+            if (visitor.onlyListGets && !visitor.listGets.isEmpty()) {
+                return replaceWithForeach(node, (SimpleName) loopContent.getContainerVariable(), visitor.listGets);
+            }
+        }
+        final List<Expression> initializers = initializers(node);
+        if (initializers.size() == 1 && updaters(node).isEmpty()) {
+            final VariableDeclarationExpression vde = as(initializers.get(0), VariableDeclarationExpression.class);
+            if (vde != null && fragments(vde).size() == 1) {
+                return maybeReplaceIterationOverKeySet(node.getExpression(), node.getBody(),
+                        vde.getType(), fragments(vde).get(0), node);
+            }
+        }
         // TODO JNR iterate over array with index
         // TODO JNR iterate over array with temporary variable with generics
         // TODO JNR iterate over array with temporary variable without generics
-        // TODO JNR iterate over col with index
         // TODO JNR iterate over col with temporary variable with generics
         // TODO JNR iterate over col with temporary variable without generics
         // TODO JNR iterate over col with Iterator with generics
@@ -90,10 +280,133 @@ public class ForeachRefactoring extends AbstractRefactoringRule {
         return VISIT_SUBTREE;
     }
 
+    /**
+     * Only accepts local variables: methods invoked from the loop body could modify a list stored in a field,
+     * and the iterator of the foreach loop would then throw a ConcurrentModificationException.
+     */
+    private boolean isLocalVariable(Name name) {
+        if (name instanceof SimpleName) {
+            final IBinding binding = name.resolveBinding();
+            return binding instanceof IVariableBinding && !((IVariableBinding) binding).isField();
+        }
+        return false;
+    }
+
+    private boolean replaceWithForeach(ForStatement node, SimpleName list, List<MethodInvocation> listGets) {
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        final Refactorings r = this.ctx.getRefactorings();
+        final VariableDeclarationStatement elementDecl = getElementDeclaration(node, listGets);
+        final SingleVariableDeclaration parameter;
+        if (elementDecl != null) {
+            // reuse the variable declared from the list element, like "String s = list.get(i);"
+            final VariableDeclarationFragment vdf = fragments(elementDecl).get(0);
+            parameter = b.declareSingleVariable(b.copy(elementDecl.getType()), vdf.getName().getIdentifier());
+            for (IExtendedModifier modifier : modifiers(elementDecl)) {
+                modifiers(parameter).add((IExtendedModifier) b.copy((ASTNode) modifier));
+            }
+            r.remove(elementDecl);
+        } else {
+            final Type elementType = getElementType(list, listGets.get(0).resolveTypeBinding());
+            if (elementType == null) {
+                return VISIT_SUBTREE;
+            }
+            final String elementName = getElementName(node, list);
+            parameter = b.declareSingleVariable(b.copy(elementType), elementName);
+            for (MethodInvocation listGet : listGets) {
+                r.replace(listGet, b.simpleName(elementName));
+            }
+        }
+        r.replace(node, b.foreach(parameter, b.copy(list), b.move(node.getBody())));
+        return DO_NOT_VISIT_SUBTREE;
+    }
+
+    /** Returns the declaration of a variable initialized with the only list element read by the loop, if any. */
+    private VariableDeclarationStatement getElementDeclaration(ForStatement node, List<MethodInvocation> listGets) {
+        final List<Statement> stmts = asList(node.getBody());
+        if (listGets.size() == 1 && !stmts.isEmpty() && stmts.get(0) instanceof VariableDeclarationStatement) {
+            final VariableDeclarationStatement vds = (VariableDeclarationStatement) stmts.get(0);
+            if (fragments(vds).size() == 1) {
+                final VariableDeclarationFragment vdf = fragments(vds).get(0);
+                if (vdf.getExtraDimensions() == 0
+                        && vdf.getInitializer() != null
+                        && removeParentheses(vdf.getInitializer()) == listGets.get(0)) {
+                    return vds;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the type argument of the declared type of the list variable,
+     * provided it is the type of the list elements.
+     */
+    private Type getElementType(SimpleName list, ITypeBinding elementTypeBinding) {
+        final List<Type> typeArgs = getDeclaredTypeArguments(list);
+        if (typeArgs != null && typeArgs.size() == 1 && isSameType(typeArgs.get(0), elementTypeBinding)) {
+            return typeArgs.get(0);
+        }
+        return null;
+    }
+
+    private boolean isSameType(Type type, ITypeBinding typeBinding) {
+        final ITypeBinding binding = type.resolveBinding();
+        return !type.isWildcardType() && binding != null && binding.isEqualTo(typeBinding);
+    }
+
+    /** Derives the name of the foreach variable from the name of the list, avoiding any name clash. */
+    private String getElementName(ForStatement node, SimpleName list) {
+        final String listName = list.getIdentifier();
+        String baseName = "element";
+        if (listName.endsWith("List") && listName.length() > "List".length()) {
+            baseName = listName.substring(0, listName.length() - "List".length());
+        } else if (listName.endsWith("s") && listName.length() > 1) {
+            baseName = listName.substring(0, listName.length() - 1);
+        }
+
+        return getUniqueName(node, baseName);
+    }
+
+    @Override
+    public boolean visit(EnhancedForStatement node) {
+        final MethodInvocation keySet = as(node.getExpression(), MethodInvocation.class);
+        if (isKeySet(keySet)) {
+            final SingleVariableDeclaration key = node.getParameter();
+            final KeySetUseVisitor visitor = new KeySetUseVisitor(keySet, key.getName());
+            node.getBody().accept(visitor);
+            final List<Type> mapTypeArgs = getMapTypeArguments(keySet, visitor);
+            if (mapTypeArgs != null) {
+                final ASTBuilder b = this.ctx.getASTBuilder();
+                final Refactorings r = this.ctx.getRefactorings();
+                final String entryName = getUniqueName(node, "entry");
+                r.replace(keySet, b.invoke(b.copy(keySet.getExpression()), "entrySet"));
+                r.replace(key, b.declareSingleVariable(newEntryType(node, mapTypeArgs), entryName));
+                if (visitor.keyUsedElsewhere) {
+                    final VariableDeclarationStatement keyDecl = b.declareStmt(b.copy(key.getType()),
+                            key.getName().getIdentifier(), b.invoke(b.simpleName(entryName), "getKey"));
+                    for (IExtendedModifier modifier : modifiers(key)) {
+                        modifiers(keyDecl).add((IExtendedModifier) b.copy((ASTNode) modifier));
+                    }
+                    if (node.getBody() instanceof Block) {
+                        r.insertAt(keyDecl, 0, Block.STATEMENTS_PROPERTY, node.getBody());
+                    } else {
+                        r.replace(node.getBody(), b.block(keyDecl, b.move(node.getBody())));
+                    }
+                }
+                replaceMapGets(visitor.mapGets, entryName);
+                return DO_NOT_VISIT_SUBTREE;
+            }
+        }
+        return VISIT_SUBTREE;
+    }
+
     @Override
     public boolean visit(WhileStatement node) {
-        node.getExpression();
-        node.getBody();
+        final VariableDeclarationStatement vds = as(getPreviousSibling(node), VariableDeclarationStatement.class);
+        if (vds != null && fragments(vds).size() == 1) {
+            return maybeReplaceIterationOverKeySet(node.getExpression(), node.getBody(),
+                    vds.getType(), fragments(vds).get(0), node.getParent());
+        }
         // TODO JNR iterate over array with index
         // TODO JNR iterate over array with temporary variable with generics
         // TODO JNR iterate over array with temporary variable without generics
@@ -107,4 +420,120 @@ public class ForeachRefactoring extends AbstractRefactoringRule {
         // be careful with use of index/iterator inside the loop
         return VISIT_SUBTREE;
     }
+
+    /**
+     * Replaces a loop over an iterator on Map.keySet() which starts with "K key = iterator.next();"
+     * and calls Map.get(key), with a loop over an iterator on Map.entrySet().
+     */
+    private boolean maybeReplaceIterationOverKeySet(Expression condition, Statement body,
+            Type iteratorType, VariableDeclarationFragment iteratorDecl, ASTNode iteratorScope) {
+        final Name iterator = iteratorDecl.getName();
+        final MethodInvocation iteratorCall = as(iteratorDecl.getInitializer(), MethodInvocation.class);
+        final MethodInvocation hasNext = as(condition, MethodInvocation.class);
+        final List<Statement> stmts = asList(body);
+        if (!isMethod(iteratorCall, SET_ITERATOR)
+                || !isKeySet(as(iteratorCall.getExpression(), MethodInvocation.class))
+                || !isMethod(hasNext, ITERATOR_HAS_NEXT)
+                || !isSameVariable(hasNext.getExpression(), iterator)
+                || !(iteratorType instanceof ParameterizedType)
+                || typeArguments((ParameterizedType) iteratorType).size() != 1
+                || stmts.isEmpty()) {
+            return VISIT_SUBTREE;
+        }
+        final VariableDeclarationStatement keyDecl = as(stmts.get(0), VariableDeclarationStatement.class);
+        if (keyDecl == null || fragments(keyDecl).size() != 1) {
+            return VISIT_SUBTREE;
+        }
+        final VariableDeclarationFragment keyFragment = fragments(keyDecl).get(0);
+        final MethodInvocation next = as(keyFragment.getInitializer(), MethodInvocation.class);
+        if (!isMethod(next, ITERATOR_NEXT)
+                || !isSameVariable(next.getExpression(), iterator)
+                || keyFragment.getExtraDimensions() != 0) {
+            return VISIT_SUBTREE;
+        }
+        final IteratorUseVisitor iteratorVisitor = new IteratorUseVisitor(iterator);
+        iteratorScope.accept(iteratorVisitor);
+        if (!iteratorVisitor.onlyIterates || iteratorVisitor.nbNextCalls != 1) {
+            return VISIT_SUBTREE;
+        }
+
+        final MethodInvocation keySet = (MethodInvocation) iteratorCall.getExpression();
+        final KeySetUseVisitor visitor = new KeySetUseVisitor(keySet, keyFragment.getName());
+        body.accept(visitor);
+        final List<Type> mapTypeArgs = getMapTypeArguments(keySet, visitor);
+        if (mapTypeArgs == null) {
+            return VISIT_SUBTREE;
+        }
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        final Refactorings r = this.ctx.getRefactorings();
+        final String entryName = getUniqueName(body, "entry");
+        r.replace(keySet, b.invoke(b.copy(keySet.getExpression()), "entrySet"));
+        r.replace(typeArguments((ParameterizedType) iteratorType).get(0), newEntryType(body, mapTypeArgs));
+        final VariableDeclarationStatement entryDecl =
+                b.declareStmt(newEntryType(body, mapTypeArgs), entryName, b.copy(next));
+        if (visitor.keyUsedElsewhere) {
+            r.insertBefore(entryDecl, keyDecl);
+            r.replace(next, b.invoke(b.simpleName(entryName), "getKey"));
+        } else {
+            r.replace(keyDecl, entryDecl);
+        }
+        replaceMapGets(visitor.mapGets, entryName);
+        return DO_NOT_VISIT_SUBTREE;
+    }
+
+    private boolean isKeySet(MethodInvocation mi) {
+        return isMethod(mi, MAP_KEY_SET) && mi.getExpression() instanceof SimpleName;
+    }
+
+    /**
+     * Returns the key and value types used to declare the map, provided the loop only reads from the map
+     * and calls Map.get() with the key.
+     */
+    private List<Type> getMapTypeArguments(MethodInvocation keySet, KeySetUseVisitor visitor) {
+        if (!visitor.canUseEntrySet || visitor.mapGets.isEmpty()) {
+            return null;
+        }
+        final List<Type> typeArgs = getDeclaredTypeArguments((SimpleName) keySet.getExpression());
+        final ITypeBinding keySetType = keySet.resolveTypeBinding();
+        if (typeArgs != null
+                && typeArgs.size() == 2
+                && keySetType != null
+                && keySetType.getTypeArguments().length == 1
+                && isSameType(typeArgs.get(0), keySetType.getTypeArguments()[0])
+                && isSameType(typeArgs.get(1), visitor.mapGets.get(0).resolveTypeBinding())) {
+            return typeArgs;
+        }
+        return null;
+    }
+
+    private ParameterizedType newEntryType(ASTNode node, List<Type> mapTypeArgs) {
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        return b.genericType(getEntryTypeName((CompilationUnit) node.getRoot()),
+                b.copy(mapTypeArgs.get(0)), b.copy(mapTypeArgs.get(1)));
+    }
+
+    /** Returns the shortest name of the Map.Entry type allowed by the imports of the compilation unit. */
+    private String getEntryTypeName(CompilationUnit cu) {
+        String result = "java.util.Map.Entry";
+        for (ImportDeclaration importDecl : imports(cu)) {
+            if (!importDecl.isStatic()) {
+                final String importName = importDecl.getName().getFullyQualifiedName();
+                final String entryImportName = importDecl.isOnDemand() ? "java.util.Map" : "java.util.Map.Entry";
+                final String mapImportName = importDecl.isOnDemand() ? "java.util" : "java.util.Map";
+                if (entryImportName.equals(importName)) {
+                    return "Entry";
+                } else if (mapImportName.equals(importName)) {
+                    result = "Map.Entry";
+                }
+            }
+        }
+        return result;
+    }
+
+    private void replaceMapGets(List<MethodInvocation> mapGets, String entryName) {
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        for (MethodInvocation mapGet : mapGets) {
+            this.ctx.getRefactorings().replace(mapGet, b.invoke(b.simpleName(entryName), "getValue"));
+        }
+    }
 }
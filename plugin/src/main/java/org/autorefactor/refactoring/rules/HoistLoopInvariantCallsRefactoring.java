@@ -0,0 +1,358 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.autorefactor.cfg.ControlFlowGraph;
+import org.autorefactor.cfg.ControlFlowGraphCache;
+import org.autorefactor.cfg.ReachingDefinitions;
+import org.autorefactor.refactoring.ASTBuilder;
+import org.autorefactor.refactoring.ForLoopHelper;
+import org.autorefactor.refactoring.MethodSignature;
+import org.eclipse.jdt.core.dom.ASTMatcher;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.AnonymousClassDeclaration;
+import org.eclipse.jdt.core.dom.Block;
+import org.eclipse.jdt.core.dom.BodyDeclaration;
+import org.eclipse.jdt.core.dom.ClassInstanceCreation;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.ForStatement;
+import org.eclipse.jdt.core.dom.IBinding;
+import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
+import org.eclipse.jdt.core.dom.InfixExpression;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.eclipse.jdt.core.dom.Modifier;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.Statement;
+import org.eclipse.jdt.core.dom.SuperMethodInvocation;
+import org.eclipse.jdt.core.dom.TypeDeclarationStatement;
+import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
+import org.eclipse.jdt.core.dom.WhileStatement;
+
+import static org.autorefactor.refactoring.ASTHelper.*;
+import static org.eclipse.jdt.core.dom.InfixExpression.Operator.*;
+
+/** See {@link #getDescription()} method. */
+@SuppressWarnings("javadoc")
+public class HoistLoopInvariantCallsRefactoring extends AbstractRefactoringRule {
+    /** The methods of immutable objects which always return the same value for the same arguments. */
+    private static final MethodSignature[] IMMUTABLE_RECEIVER_ACCESSORS = {
+        MethodSignature.of("java.lang.String", "length"),
+        MethodSignature.of("java.lang.String", "isEmpty"),
+        MethodSignature.of("java.lang.String", "charAt", "int"),
+        MethodSignature.of("java.lang.String", "indexOf", "int"),
+        MethodSignature.of("java.lang.String", "indexOf", "java.lang.String"),
+    };
+    /** The accessors of mutable objects, which only return the same value while the object is not modified. */
+    private static final MethodSignature[] MUTABLE_RECEIVER_ACCESSORS = {
+        MethodSignature.of("java.util.Collection", "size"),
+        MethodSignature.of("java.util.Collection", "isEmpty"),
+        MethodSignature.of("java.util.Map", "size"),
+        MethodSignature.of("java.util.Map", "isEmpty"),
+    };
+    /** The methods which do not modify any collection or map, in addition to the accessors above. */
+    private static final MethodSignature[] SIDE_EFFECT_FREE_METHODS = {
+        MethodSignature.of("java.lang.Object", "equals", "java.lang.Object"),
+        MethodSignature.of("java.lang.String", "substring", "int"),
+        MethodSignature.of("java.lang.String", "substring", "int", "int"),
+        MethodSignature.of("java.lang.String", "startsWith", "java.lang.String"),
+        MethodSignature.of("java.lang.String", "endsWith", "java.lang.String"),
+        MethodSignature.of("java.lang.String", "trim"),
+        MethodSignature.of("java.util.Collection", "contains", "java.lang.Object"),
+        MethodSignature.of("java.util.List", "get", "int"),
+        MethodSignature.of("java.util.List", "indexOf", "java.lang.Object"),
+        MethodSignature.of("java.util.Map", "get", "java.lang.Object"),
+        MethodSignature.of("java.util.Map", "containsKey", "java.lang.Object"),
+    };
+
+    @Override
+    public String getDescription() {
+        return ""
+            + "Hoists the side-effect free method calls which are reevaluated by each loop condition,"
+            + " like String.length() or Collection.size(), into a local variable declared before the loop,"
+            + " when the receiver and the arguments are local variables not modified by the loop."
+            + " Collections are only considered when they are created by the current method and never escape it,"
+            + " and when the loop only calls methods known to not modify them.";
+    }
+
+    @Override
+    public String getName() {
+        return "Hoist loop invariant method calls";
+    }
+
+    @Override
+    public boolean visit(ForStatement node) {
+        final MethodInvocation bound = as(ForLoopHelper.getUpperBound(node), MethodInvocation.class);
+        if (bound != null && hoist(node, bound)) {
+            return DO_NOT_VISIT_SUBTREE;
+        }
+        return VISIT_SUBTREE;
+    }
+
+    @Override
+    public boolean visit(WhileStatement node) {
+        final InfixExpression condition = as(node.getExpression(), InfixExpression.class);
+        if (condition != null
+                && !condition.hasExtendedOperands()
+                && (hasOperator(condition, LESS)
+                        || hasOperator(condition, LESS_EQUALS)
+                        || hasOperator(condition, GREATER)
+                        || hasOperator(condition, GREATER_EQUALS)
+                        || hasOperator(condition, EQUALS)
+                        || hasOperator(condition, NOT_EQUALS))) {
+            final MethodInvocation leftOperand = as(condition.getLeftOperand(), MethodInvocation.class);
+            final MethodInvocation rightOperand = as(condition.getRightOperand(), MethodInvocation.class);
+            if ((leftOperand != null && hoist(node, leftOperand))
+                    || (rightOperand != null && hoist(node, rightOperand))) {
+                return DO_NOT_VISIT_SUBTREE;
+            }
+        }
+        return VISIT_SUBTREE;
+    }
+
+    /**
+     * Declares a local variable initialized with the provided method call right before the loop,
+     * and replaces the method call, and all its equivalent calls in the loop, with this local variable.
+     */
+    private boolean hoist(Statement loop, MethodInvocation mi) {
+        final boolean isImmutableReceiver = isOneOf(mi, IMMUTABLE_RECEIVER_ACCESSORS);
+        final BodyDeclaration bodyDecl = getAncestor(loop, BodyDeclaration.class);
+        if (!(loop.getParent() instanceof Block)
+                || (!isImmutableReceiver && !isOneOf(mi, MUTABLE_RECEIVER_ACCESSORS))
+                || !(bodyDecl instanceof MethodDeclaration)) {
+            return false;
+        }
+        final MethodDeclaration md = (MethodDeclaration) bodyDecl;
+        final ControlFlowGraphCache cfgCache = this.ctx.getControlFlowGraphCache();
+        final ControlFlowGraph cfg = cfgCache.getControlFlowGraph(md);
+        if (cfg == null) {
+            return false;
+        }
+        final ReachingDefinitions reachingDefs = cfgCache.getReachingDefinitions(md);
+        if (!isLoopInvariant(mi, loop, cfg, reachingDefs)
+                || (!isImmutableReceiver
+                        && (!isNonEscapingNewObject((SimpleName) mi.getExpression(), cfg, reachingDefs)
+                                || !isSideEffectFree(loop)))) {
+            return false;
+        }
+
+        final List<MethodInvocation> sameCalls = new ArrayList<MethodInvocation>();
+        sameCalls.add(mi);
+        collectSameCalls(mi, loop, cfg, reachingDefs, sameCalls);
+
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        final SimpleName receiver = as(mi.getExpression(), SimpleName.class);
+        final String varName =
+                getUniqueName(loop, receiver.getIdentifier() + capitalize(mi.getName().getIdentifier()));
+        this.ctx.getRefactorings().insertBefore(
+                b.declareStmt(b.type(mi.resolveTypeBinding().getName()), varName, b.copy(mi)), loop);
+        for (MethodInvocation sameCall : sameCalls) {
+            this.ctx.getRefactorings().replace(sameCall, b.simpleName(varName));
+        }
+        return true;
+    }
+
+    private String capitalize(String s) {
+        return Character.toUpperCase(s.charAt(0)) + s.substring(1);
+    }
+
+    /**
+     * Returns whether the provided method call always returns the same primitive value while the loop runs:
+     * its receiver must be a local variable and its arguments must be constants or local variables,
+     * and none of the definitions of these local variables reaching the method call can be inside the loop.
+     */
+    private boolean isLoopInvariant(MethodInvocation mi, Statement loop, ControlFlowGraph cfg,
+            ReachingDefinitions reachingDefs) {
+        final ITypeBinding typeBinding = mi.resolveTypeBinding();
+        if (typeBinding == null
+                || !typeBinding.isPrimitive()
+                || !isDefinedOutsideLoop(mi.getExpression(), loop, cfg, reachingDefs)) {
+            return false;
+        }
+        for (Expression arg : arguments(mi)) {
+            if (arg.resolveConstantExpressionValue() == null
+                    && !isDefinedOutsideLoop(arg, loop, cfg, reachingDefs)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isDefinedOutsideLoop(Expression expr, Statement loop, ControlFlowGraph cfg,
+            ReachingDefinitions reachingDefs) {
+        final SimpleName name = as(expr, SimpleName.class);
+        if (name == null || !isLocalVariable(name)) {
+            return false;
+        }
+        final int access = getAccess(cfg, name);
+        if (access == -1) {
+            return false;
+        }
+        final BitSet definitions = reachingDefs.getDefinitionsReaching(access);
+        if (definitions.isEmpty()) {
+            return false;
+        }
+        for (int def = definitions.nextSetBit(0); def >= 0; def = definitions.nextSetBit(def + 1)) {
+            if (isInside(cfg.getAccessNode(def), loop)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the provided local variable always references an object created by the current method,
+     * which cannot be modified by any other code because it never escapes this local variable.
+     */
+    private boolean isNonEscapingNewObject(SimpleName localVariable, ControlFlowGraph cfg,
+            ReachingDefinitions reachingDefs) {
+        final ASTNode declNode =
+                ((CompilationUnit) localVariable.getRoot()).findDeclaringNode(localVariable.resolveBinding());
+        if (!(declNode instanceof VariableDeclarationFragment)
+                || !(((VariableDeclarationFragment) declNode).getInitializer() instanceof ClassInstanceCreation)
+                || isEscaping((VariableDeclarationFragment) declNode)) {
+            return false;
+        }
+        // the variable must not be assigned another object before reaching the method call
+        final BitSet definitions = reachingDefs.getDefinitionsReaching(getAccess(cfg, localVariable));
+        for (int def = definitions.nextSetBit(0); def >= 0; def = definitions.nextSetBit(def + 1)) {
+            if (cfg.getAccessNode(def) != declNode) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isLocalVariable(SimpleName name) {
+        final IBinding binding = name.resolveBinding();
+        return binding instanceof IVariableBinding && !((IVariableBinding) binding).isField();
+    }
+
+    private int getAccess(ControlFlowGraph cfg, SimpleName name) {
+        for (int a = 0; a < cfg.getNbVariableAccesses(); a++) {
+            if (cfg.getAccessNode(a) == name) {
+                return a;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isInside(ASTNode node, ASTNode ancestor) {
+        for (ASTNode n = node; n != null; n = n.getParent()) {
+            if (n == ancestor) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Collects the calls in the loop which are equivalent to the provided loop invariant method call. */
+    private void collectSameCalls(final MethodInvocation mi, final Statement loop, final ControlFlowGraph cfg,
+            final ReachingDefinitions reachingDefs, final List<MethodInvocation> results) {
+        loop.accept(new ASTVisitor() {
+            @Override
+            public boolean visit(AnonymousClassDeclaration node) {
+                return DO_NOT_VISIT_SUBTREE;
+            }
+
+            @Override
+            public boolean visit(TypeDeclarationStatement node) {
+                return DO_NOT_VISIT_SUBTREE;
+            }
+
+            @Override
+            public boolean visit(MethodInvocation node) {
+                if (node != mi
+                        && match(new ASTMatcher(), node, mi)
+                        && isLoopInvariant(node, loop, cfg, reachingDefs)) {
+                    results.add(node);
+                    return DO_NOT_VISIT_SUBTREE;
+                }
+                return VISIT_SUBTREE;
+            }
+        });
+    }
+
+    /**
+     * Returns whether the loop cannot modify any collection or map,
+     * because it does not create objects and only calls methods known to be side-effect free.
+     */
+    private boolean isSideEffectFree(Statement loop) {
+        final boolean[] result = { true };
+        loop.accept(new ASTVisitor() {
+            @Override
+            public boolean visit(ClassInstanceCreation node) {
+                result[0] = false;
+                return DO_NOT_VISIT_SUBTREE;
+            }
+
+            @Override
+            public boolean visit(SuperMethodInvocation node) {
+                result[0] = false;
+                return DO_NOT_VISIT_SUBTREE;
+            }
+
+            @Override
+            public boolean visit(MethodInvocation node) {
+                if (!isSideEffectFree(node)) {
+                    result[0] = false;
+                    return DO_NOT_VISIT_SUBTREE;
+                }
+                return VISIT_SUBTREE;
+            }
+        });
+        return result[0];
+    }
+
+    private boolean isSideEffectFree(MethodInvocation node) {
+        if (isOneOf(node, IMMUTABLE_RECEIVER_ACCESSORS)
+                || isOneOf(node, MUTABLE_RECEIVER_ACCESSORS)
+                || isOneOf(node, SIDE_EFFECT_FREE_METHODS)) {
+            return true;
+        }
+        final IMethodBinding methodBinding = node.resolveMethodBinding();
+        return methodBinding != null
+                && Modifier.isStatic(methodBinding.getModifiers())
+                && hasType(methodBinding.getDeclaringClass(), "java.lang.Math");
+    }
+
+    private boolean isOneOf(MethodInvocation node, MethodSignature[] signatures) {
+        for (MethodSignature signature : signatures) {
+            if (isMethod(node, signature)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -28,22 +28,34 @@ package org.autorefactor.refactoring.rules;
 import java.util.List;
 
 import org.autorefactor.refactoring.ASTBuilder;
+import org.autorefactor.refactoring.MethodSignature;
+import org.autorefactor.refactoring.Refactorings;
 import org.autorefactor.util.NotImplementedException;
 import org.eclipse.jdt.core.dom.ArrayAccess;
+import org.eclipse.jdt.core.dom.ArrayCreation;
 import org.eclipse.jdt.core.dom.Assignment;
+import org.eclipse.jdt.core.dom.Block;
 import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.FieldAccess;
 import org.eclipse.jdt.core.dom.ForStatement;
 import org.eclipse.jdt.core.dom.IBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
 import org.eclipse.jdt.core.dom.IVariableBinding;
+import org.eclipse.jdt.core.dom.IfStatement;
 import org.eclipse.jdt.core.dom.InfixExpression;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.eclipse.jdt.core.dom.Name;
 import org.eclipse.jdt.core.dom.NumberLiteral;
 import org.eclipse.jdt.core.dom.PostfixExpression;
 import org.eclipse.jdt.core.dom.PrefixExpression;
+import org.eclipse.jdt.core.dom.QualifiedName;
+import org.eclipse.jdt.core.dom.ReturnStatement;
 import org.eclipse.jdt.core.dom.SimpleName;
 import org.eclipse.jdt.core.dom.Statement;
 import org.eclipse.jdt.core.dom.TryStatement;
 import org.eclipse.jdt.core.dom.VariableDeclarationExpression;
 import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
+import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
 
 import static org.autorefactor.refactoring.ASTHelper.*;
 import static org.autorefactor.util.Utils.*;
@@ -53,13 +65,22 @@ import static org.eclipse.jdt.core.dom.InfixExpression.Operator.*;
 /** See {@link #getDescription()} method. */
 @SuppressWarnings("javadoc")
 public class HotSpotIntrinsicedAPIsRefactoring extends AbstractRefactoringRule {
+    private static final MethodSignature STRING_CHAR_AT =
+            MethodSignature.of("java.lang.String", "charAt", "int");
+    private static final MethodSignature STRING_LENGTH =
+            MethodSignature.of("java.lang.String", "length");
 
     @Override
     public String getDescription() {
         return ""
             + "Refactors code patterns to use intrinsiced APIs in Hotspot JVM.\n"
             + "Intrinsics are APIs that receive special treatment when JITed:"
-            + " they can be compiled down to use very efficient CPU instructions.";
+            + " they can be compiled down to use very efficient CPU instructions.\n"
+            + "It replaces loops:\n"
+            + "- copying arrays with System.arraycopy() or Arrays.copyOf(),\n"
+            + "- filling arrays with Arrays.fill(),\n"
+            + "- comparing arrays with Arrays.equals(),\n"
+            + "- looking for a char in a String with String.indexOf().";
     }
 
     @Override
@@ -74,6 +95,8 @@ public class HotSpotIntrinsicedAPIsRefactoring extends AbstractRefactoringRule {
         private Expression srcPos;
         private Expression destArrayExpr;
         private Expression destPos;
+        /** The exclusive upper bound of the index. */
+        private Expression endPos;
         private Expression length;
 
         /** {@inheritDoc} */
@@ -111,16 +134,330 @@ public class HotSpotIntrinsicedAPIsRefactoring extends AbstractRefactoringRule {
                     params.destArrayExpr = aaLHS.getArray();
                     params.srcArrayExpr = aaRHS.getArray();
                     if (haveSameType(params.srcArrayExpr, params.destArrayExpr)) {
+                        final ArrayCreation destCreation = getArrayCreationBefore(node, params.destArrayExpr);
+                        if (destCreation != null
+                                && isCopyOfWholeArray(node, aaLHS, aaRHS, params)
+                                && isSameVariable(arrayCreationDimension(destCreation), params.endPos)) {
+                            return replaceWithArraysCopyOf(node, destCreation, params);
+                        }
                         params.destPos = calcIndex(aaLHS.getIndex(), params);
                         params.srcPos = calcIndex(aaRHS.getIndex(), params);
                         return replaceWithSystemArrayCopyCloneAll(node, params);
                     }
+                } else if (lhs instanceof ArrayAccess) {
+                    final ArrayAccess aaLHS = (ArrayAccess) lhs;
+                    if (isFillingArray(node, aaLHS, rhs, params)) {
+                        return replaceWithArraysFill(node, aaLHS.getArray(), rhs, params);
+                    }
+                }
+            }
+
+            final IfStatement is = as(stmts.get(0), IfStatement.class);
+            if (is != null
+                    && is.getElseStatement() == null
+                    && hasDeclaredIndex(node)) {
+                final InfixExpression ie = as(is.getExpression(), InfixExpression.class);
+                if (hasOperator(ie, NOT_EQUALS)
+                        && !ie.hasExtendedOperands()
+                        && isReturn(is.getThenStatement(), Boolean.FALSE)) {
+                    return maybeReplaceWithArraysEquals(node, ie.getLeftOperand(), ie.getRightOperand(), params);
+                } else if (hasOperator(ie, EQUALS)
+                        && !ie.hasExtendedOperands()
+                        && isReturnIndex(is.getThenStatement(), params)) {
+                    return maybeReplaceWithStringIndexOf(node, ie, params);
                 }
             }
         }
         return VISIT_SUBTREE;
     }
 
+    /**
+     * Returns whether the loop copies the whole source array to the destination array,
+     * in the same order and starting from index zero.
+     */
+    private boolean isCopyOfWholeArray(ForStatement node, ArrayAccess aaLHS, ArrayAccess aaRHS,
+            SystemArrayCopyParams params) {
+        return hasDeclaredIndex(node)
+                && isIndex(aaLHS.getIndex(), params)
+                && isIndex(aaRHS.getIndex(), params)
+                && isZero(params.indexStartPos)
+                && params.srcArrayExpr instanceof Name
+                && !isSameVariable(params.srcArrayExpr, params.destArrayExpr)
+                && isArrayLength(params.endPos, params.srcArrayExpr)
+                // Arrays.copyOf() returns an array of the same runtime type as the source array
+                && isPrimitive(params.srcArrayExpr.resolveTypeBinding().getComponentType());
+    }
+
+    /**
+     * Returns the array creation initializing the provided array variable,
+     * when it is declared by the statement right before the provided loop.
+     */
+    private ArrayCreation getArrayCreationBefore(ForStatement node, Expression arrayVar) {
+        final VariableDeclarationStatement vds = as(getPreviousSibling(node), VariableDeclarationStatement.class);
+        if (vds != null && fragments(vds).size() == 1) {
+            final VariableDeclarationFragment vdf = fragments(vds).get(0);
+            final ArrayCreation ac = as(vdf.getInitializer(), ArrayCreation.class);
+            if (isSameVariable(vdf.getName(), arrayVar)
+                    && ac != null
+                    && ac.getInitializer() == null
+                    && ac.getType().getDimensions() == 1
+                    && dimensions(ac).size() == 1) {
+                return ac;
+            }
+        }
+        return null;
+    }
+
+    private Expression arrayCreationDimension(ArrayCreation node) {
+        return dimensions(node).get(0);
+    }
+
+    private boolean replaceWithArraysCopyOf(ForStatement node, ArrayCreation destCreation,
+            SystemArrayCopyParams params) {
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        final Refactorings r = this.ctx.getRefactorings();
+        r.replace(destCreation,
+                b.invoke(arraysClass(node), "copyOf", b.copy(params.srcArrayExpr), b.copy(params.endPos)));
+        r.remove(node);
+        return DO_NOT_VISIT_SUBTREE;
+    }
+
+    /**
+     * Returns whether the loop assigns the same value to a range of elements of an array,
+     * and whether this range is known to be valid for {@link java.util.Arrays#fill(int[], int, int, int)}.
+     */
+    private boolean isFillingArray(ForStatement node, ArrayAccess aaLHS, Expression value,
+            SystemArrayCopyParams params) {
+        final Integer startPos = intValue(params.indexStartPos);
+        final Integer endPos = intValue(params.endPos);
+        return hasDeclaredIndex(node)
+                && isIndex(aaLHS.getIndex(), params)
+                && (aaLHS.getArray() instanceof Name || aaLHS.getArray() instanceof FieldAccess)
+                && isLoopInvariant(value, params)
+                && startPos != null
+                && startPos >= 0
+                && ((endPos != null && endPos >= startPos)
+                        || (startPos == 0 && isArrayLength(params.endPos, null)));
+    }
+
+    private boolean isLoopInvariant(Expression expr, SystemArrayCopyParams params) {
+        return isConstant(expr)
+                || (expr instanceof SimpleName
+                        && getVariableBinding(expr) != null
+                        && !isIndex(expr, params));
+    }
+
+    private boolean replaceWithArraysFill(ForStatement node, Expression array, Expression value,
+            SystemArrayCopyParams params) {
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        final ITypeBinding componentType = array.resolveTypeBinding().getComponentType();
+        final Expression fillValue;
+        if (isPrimitive(componentType, "byte")
+                || isPrimitive(componentType, "char")
+                || isPrimitive(componentType, "short")) {
+            // int constants are not implicitly narrowed when passed as method arguments
+            fillValue = isPrimitive(value, componentType.getName())
+                    ? b.copy(value) : b.cast(componentType.getName(), b.copy(value));
+        } else {
+            fillValue = b.copy(value);
+        }
+        final MethodInvocation fill;
+        if (isZero(params.indexStartPos) && isArrayLength(params.endPos, array)) {
+            fill = b.invoke(arraysClass(node), "fill", b.copy(array), fillValue);
+        } else {
+            fill = b.invoke(arraysClass(node), "fill", b.copy(array),
+                    b.copy(params.indexStartPos), b.copy(params.endPos), fillValue);
+        }
+        this.ctx.getRefactorings().replace(node, b.toStmt(fill));
+        return DO_NOT_VISIT_SUBTREE;
+    }
+
+    /**
+     * Replaces a loop comparing two arrays element by element, guarded by a comparison of their lengths.
+     * Floating point arrays are excluded because {@link java.util.Arrays#equals(double[], double[])}
+     * does not compare their elements with {@code ==}.
+     */
+    private boolean maybeReplaceWithArraysEquals(ForStatement node, Expression leftOperand, Expression rightOperand,
+            SystemArrayCopyParams params) {
+        final ArrayAccess aa1 = as(leftOperand, ArrayAccess.class);
+        final ArrayAccess aa2 = as(rightOperand, ArrayAccess.class);
+        if (aa1 == null
+                || aa2 == null
+                || !isIndex(aa1.getIndex(), params)
+                || !isIndex(aa2.getIndex(), params)
+                || !isZero(params.indexStartPos)) {
+            return VISIT_SUBTREE;
+        }
+        final Expression array1 = aa1.getArray();
+        final Expression array2 = aa2.getArray();
+        if (!(array1 instanceof Name)
+                || !(array2 instanceof Name)
+                || isSameVariable(array1, array2)
+                || !haveSameType(array1, array2)
+                || !isPrimitive(array1.resolveTypeBinding().getComponentType())
+                || isPrimitive(array1.resolveTypeBinding().getComponentType(), "float")
+                || isPrimitive(array1.resolveTypeBinding().getComponentType(), "double")
+                || (!isArrayLength(params.endPos, array1) && !isArrayLength(params.endPos, array2))) {
+            return VISIT_SUBTREE;
+        }
+
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        final Refactorings r = this.ctx.getRefactorings();
+        final IfStatement previousIf = as(getPreviousSibling(node), IfStatement.class);
+        final Statement nextStmt = getNextSibling(node);
+        if (previousIf != null
+                && previousIf.getElseStatement() == null
+                && isReturn(previousIf.getThenStatement(), Boolean.FALSE)
+                && isLengthComparison(previousIf.getExpression(), NOT_EQUALS, array1, array2)
+                && isReturn(nextStmt, Boolean.TRUE)) {
+            // if (a1.length != a2.length) return false; for (...) {...} return true;
+            r.replace(previousIf,
+                    b.return0(b.invoke(arraysClass(node), "equals", b.copy(array1), b.copy(array2))));
+            r.remove(node);
+            r.remove(nextStmt);
+            return DO_NOT_VISIT_SUBTREE;
+        }
+
+        if (node.getParent() instanceof Block
+                && node.getParent().getParent() instanceof IfStatement) {
+            // if (a1.length == a2.length) { for (...) {...} return true; } return false;
+            final List<Statement> thenStmts = statements((Block) node.getParent());
+            final IfStatement lengthIf = (IfStatement) node.getParent().getParent();
+            final Statement elseStmt = lengthIf.getElseStatement();
+            final Statement nextIfStmt = getNextSibling(lengthIf);
+            if (thenStmts.size() == 2
+                    && thenStmts.get(0) == node
+                    && isReturn(thenStmts.get(1), Boolean.TRUE)
+                    && isLengthComparison(lengthIf.getExpression(), EQUALS, array1, array2)
+                    && (elseStmt != null
+                            ? isReturn(elseStmt, Boolean.FALSE)
+                            : isReturn(nextIfStmt, Boolean.FALSE))) {
+                r.replace(lengthIf,
+                        b.return0(b.invoke(arraysClass(node), "equals", b.copy(array1), b.copy(array2))));
+                if (elseStmt == null) {
+                    r.remove(nextIfStmt);
+                }
+                return DO_NOT_VISIT_SUBTREE;
+            }
+        }
+        return VISIT_SUBTREE;
+    }
+
+    private boolean isLengthComparison(Expression expr, InfixExpression.Operator operator,
+            Expression array1, Expression array2) {
+        final InfixExpression ie = as(expr, InfixExpression.class);
+        if (hasOperator(ie, operator) && !ie.hasExtendedOperands()) {
+            final Expression leftOp = ie.getLeftOperand();
+            final Expression rightOp = ie.getRightOperand();
+            return (isArrayLength(leftOp, array1) && isArrayLength(rightOp, array2))
+                    || (isArrayLength(leftOp, array2) && isArrayLength(rightOp, array1));
+        }
+        return false;
+    }
+
+    /**
+     * Replaces a loop looking for a char in a String followed by {@code return -1;}.
+     * Only a non negative constant start index is supported because
+     * {@link String#indexOf(int, int)} accepts a negative index where {@link String#charAt(int)} throws.
+     */
+    private boolean maybeReplaceWithStringIndexOf(ForStatement node, InfixExpression ie,
+            SystemArrayCopyParams params) {
+        MethodInvocation charAt = as(ie.getLeftOperand(), MethodInvocation.class);
+        Expression searched = ie.getRightOperand();
+        if (!isMethod(charAt, STRING_CHAR_AT)) {
+            charAt = as(ie.getRightOperand(), MethodInvocation.class);
+            searched = ie.getLeftOperand();
+        }
+        final Integer startPos = intValue(params.indexStartPos);
+        final MethodInvocation length = as(params.endPos, MethodInvocation.class);
+        final Statement nextStmt = getNextSibling(node);
+        if (isMethod(charAt, STRING_CHAR_AT)
+                && isIndex(arg0(charAt), params)
+                && charAt.getExpression() instanceof Name
+                && isMethod(length, STRING_LENGTH)
+                && isSameVariable(charAt.getExpression(), length.getExpression())
+                // String.indexOf(int) also matches supplementary code points, a char never does
+                && isPrimitive(searched, "char")
+                && isLoopInvariant(searched, params)
+                && startPos != null
+                && startPos >= 0
+                && isReturn(nextStmt, -1)) {
+            final ASTBuilder b = this.ctx.getASTBuilder();
+            final Refactorings r = this.ctx.getRefactorings();
+            final MethodInvocation indexOf;
+            if (startPos == 0) {
+                indexOf = b.invoke(b.copy(charAt.getExpression()), "indexOf", b.copy(searched));
+            } else {
+                indexOf = b.invoke(b.copy(charAt.getExpression()), "indexOf",
+                        b.copy(searched), b.copy(params.indexStartPos));
+            }
+            r.replace(node, b.return0(indexOf));
+            r.remove(nextStmt);
+            return DO_NOT_VISIT_SUBTREE;
+        }
+        return VISIT_SUBTREE;
+    }
+
+    /** The loop index must not be observable after the loop when the loop is removed. */
+    private boolean hasDeclaredIndex(ForStatement node) {
+        return initializers(node).size() == 1
+                && initializers(node).get(0) instanceof VariableDeclarationExpression;
+    }
+
+    private boolean isIndex(Expression expr, SystemArrayCopyParams params) {
+        return equalNotNull(params.indexVarBinding, getVariableBinding(expr));
+    }
+
+    private boolean isZero(Expression expr) {
+        final Integer value = intValue(expr);
+        return value != null && value == 0;
+    }
+
+    /**
+     * Returns whether the provided expression reads the length of the provided array,
+     * or the length of any array when the provided array is null.
+     */
+    private boolean isArrayLength(Expression expr, Expression array) {
+        final Expression arrayExpr;
+        if (expr instanceof QualifiedName) {
+            final QualifiedName qn = (QualifiedName) expr;
+            if (!"length".equals(qn.getName().getIdentifier())) {
+                return false;
+            }
+            arrayExpr = qn.getQualifier();
+        } else if (expr instanceof FieldAccess) {
+            final FieldAccess fa = (FieldAccess) expr;
+            if (!"length".equals(fa.getName().getIdentifier())) {
+                return false;
+            }
+            arrayExpr = fa.getExpression();
+        } else {
+            return false;
+        }
+        return isArray(arrayExpr)
+                && (array == null || isSameVariable(arrayExpr, array));
+    }
+
+    private boolean isReturn(Statement stmt, Object constantValue) {
+        final ReturnStatement rs = as(stmt, ReturnStatement.class);
+        return rs != null
+                && rs.getExpression() != null
+                && constantValue.equals(rs.getExpression().resolveConstantExpressionValue());
+    }
+
+    private boolean isReturnIndex(Statement stmt, SystemArrayCopyParams params) {
+        final ReturnStatement rs = as(stmt, ReturnStatement.class);
+        return rs != null && isIndex(rs.getExpression(), params);
+    }
+
+    private Expression arraysClass(ForStatement node) {
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        if (isImported(node, "java.util.Arrays")) {
+            return b.simpleName("Arrays");
+        }
+        return b.name("java", "util", "Arrays");
+    }
+
     private Expression calcIndex(Expression index, SystemArrayCopyParams params) {
         if (index instanceof SimpleName) {
             final IVariableBinding idxVar = getVariableBinding(index);
@@ -160,12 +497,12 @@ public class HotSpotIntrinsicedAPIsRefactoring extends AbstractRefactoringRule {
         } else if (expr1Value != null && expr1Value == 0) {
             throw new NotImplementedException(expr2, "Code is not implemented for negating expr2: " + expr2);
         } else if (expr2Value != null && expr2Value == 0) {
-            return b.copy(expr1);
+            return expr1;
         }
         return b.infixExpr(
-                b.copy(expr1),
+                copy(expr1),
                 InfixExpression.Operator.MINUS,
-                b.copy(expr2));
+                copy(expr2));
     }
 
     private Expression plus(Expression expr1, Expression expr2) {
@@ -176,14 +513,23 @@ public class HotSpotIntrinsicedAPIsRefactoring extends AbstractRefactoringRule {
         if (expr1Value != null && expr2Value != null) {
             return b.int0(expr1Value + expr2Value);
         } else if (expr1Value != null && expr1Value == 0) {
-            return b.copy(expr2);
+            return expr2;
         } else if (expr2Value != null && expr2Value == 0) {
-            return b.copy(expr1);
+            return expr1;
         }
         return b.infixExpr(
-                b.copy(expr1),
+                copy(expr1),
                 InfixExpression.Operator.PLUS,
-                b.copy(expr2));
+                copy(expr2));
+    }
+
+    /**
+     * Copies the provided expression when it belongs to the original AST.
+     * The expressions built by {@link #plus(Expression, Expression)} and {@link #minus(Expression, Expression)}
+     * already hold copies of the original nodes: copying them again would lose these copies.
+     */
+    private Expression copy(Expression expr) {
+        return expr.getStartPosition() != -1 ? this.ctx.getASTBuilder().copy(expr) : expr;
     }
 
     private Integer intValue(Expression expr) {
@@ -204,28 +550,27 @@ public class HotSpotIntrinsicedAPIsRefactoring extends AbstractRefactoringRule {
             if (hasOperator(ie, LESS)) {
                 IVariableBinding conditionIdx = getVariableBinding(ie.getLeftOperand());
                 if (equalNotNull(incrementedIdx, conditionIdx)) {
-                    params.length = ie.getRightOperand();
+                    params.endPos = ie.getRightOperand();
                 }
             } else if (hasOperator(ie, LESS_EQUALS)) {
                 IVariableBinding conditionIdx = getVariableBinding(ie.getLeftOperand());
                 if (equalNotNull(incrementedIdx, conditionIdx)) {
-                    params.length = minus(
-                            plus(ie.getRightOperand(), ctx.getAST().newNumberLiteral("1")),
-                            params.indexStartPos);
+                    params.endPos = plus(ie.getRightOperand(), ctx.getAST().newNumberLiteral("1"));
                 }
             } else if (hasOperator(ie, GREATER)) {
                 IVariableBinding conditionIdx = getVariableBinding(ie.getRightOperand());
                 if (equalNotNull(incrementedIdx, conditionIdx)) {
-                    params.length = ie.getLeftOperand();
+                    params.endPos = ie.getLeftOperand();
                 }
             } else if (hasOperator(ie, GREATER_EQUALS)) {
                 IVariableBinding conditionIdx = getVariableBinding(ie.getRightOperand());
                 if (equalNotNull(incrementedIdx, conditionIdx)) {
-                    params.length = minus(
-                            plus(ie.getLeftOperand(), ctx.getAST().newNumberLiteral("1")),
-                            params.indexStartPos);
+                    params.endPos = plus(ie.getLeftOperand(), ctx.getAST().newNumberLiteral("1"));
                 }
             }
+            if (params.endPos != null) {
+                params.length = minus(params.endPos, params.indexStartPos);
+            }
         }
     }
 
@@ -246,10 +591,10 @@ public class HotSpotIntrinsicedAPIsRefactoring extends AbstractRefactoringRule {
         final ASTBuilder b = this.ctx.getASTBuilder();
         return replaceWithSystemArrayCopy(node,
                 b.copy(params.srcArrayExpr),
-                b.copy(params.srcPos),
+                copy(params.srcPos),
                 b.copy(params.destArrayExpr),
-                b.copy(params.destPos),
-                b.copy(params.length));
+                copy(params.destPos),
+                copy(params.length));
     }
 
     private boolean replaceWithSystemArrayCopy(ForStatement node,
@@ -0,0 +1,288 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.autorefactor.refactoring.ASTBuilder;
+import org.autorefactor.refactoring.MethodSignature;
+import org.eclipse.jdt.core.dom.ASTMatcher;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.Block;
+import org.eclipse.jdt.core.dom.BodyDeclaration;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.ExpressionStatement;
+import org.eclipse.jdt.core.dom.FieldAccess;
+import org.eclipse.jdt.core.dom.IfStatement;
+import org.eclipse.jdt.core.dom.InfixExpression;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.eclipse.jdt.core.dom.Name;
+import org.eclipse.jdt.core.dom.StringLiteral;
+import org.eclipse.jdt.core.dom.ThisExpression;
+
+import static org.autorefactor.refactoring.ASTHelper.*;
+
+/** See {@link #getDescription()} method. */
+@SuppressWarnings("javadoc")
+public class LoggingRefactoring extends AbstractRefactoringRule {
+    /** The loggers supporting messages with "{}" placeholders. */
+    private static final String[] PARAMETERIZED_LOGGERS = { "org.slf4j.Logger", "org.apache.logging.log4j.Logger" };
+    private static final String[] PARAMETERIZED_LEVELS = { "trace", "debug", "info", "warn", "error" };
+    private static final List<MethodSignature> STRING_FORMAT_METHODS = Arrays.asList(
+        MethodSignature.of("java.lang.String", "format", "java.lang.String", "java.lang.Object[]"),
+        MethodSignature.of("java.lang.String", "format", "java.util.Locale", "java.lang.String", "java.lang.Object[]"));
+    /** The logging methods which take a single message, which can be replaced by a parameterized message. */
+    private static final List<MethodSignature> PARAMETERIZABLE_METHODS = new ArrayList<MethodSignature>();
+    /** The logging methods for low levels, mapped to the method checking whether this level is enabled. */
+    private static final Map<MethodSignature, String> GUARD_METHODS = new HashMap<MethodSignature, String>();
+    /** The java.util.logging methods for low levels, mapped to the name of their level. */
+    private static final Map<MethodSignature, String> JUL_LEVELS = new HashMap<MethodSignature, String>();
+
+    static {
+        for (String logger : PARAMETERIZED_LOGGERS) {
+            for (String level : PARAMETERIZED_LEVELS) {
+                PARAMETERIZABLE_METHODS.add(MethodSignature.of(logger, level, "java.lang.String"));
+                PARAMETERIZABLE_METHODS.add(
+                        MethodSignature.of(logger, level, "java.lang.String", "java.lang.Throwable"));
+            }
+            addGuardMethods(logger, "trace", "java.lang.String", "isTraceEnabled");
+            addGuardMethods(logger, "debug", "java.lang.String", "isDebugEnabled");
+        }
+        // log4j 1.x
+        addGuardMethods("org.apache.log4j.Logger", "trace", "java.lang.Object", "isTraceEnabled");
+        addGuardMethods("org.apache.log4j.Category", "debug", "java.lang.Object", "isDebugEnabled");
+        // commons-logging
+        addGuardMethods("org.apache.commons.logging.Log", "trace", "java.lang.Object", "isTraceEnabled");
+        addGuardMethods("org.apache.commons.logging.Log", "debug", "java.lang.Object", "isDebugEnabled");
+        // java.util.logging
+        JUL_LEVELS.put(MethodSignature.of("java.util.logging.Logger", "fine", "java.lang.String"), "FINE");
+        JUL_LEVELS.put(MethodSignature.of("java.util.logging.Logger", "finer", "java.lang.String"), "FINER");
+        JUL_LEVELS.put(MethodSignature.of("java.util.logging.Logger", "finest", "java.lang.String"), "FINEST");
+    }
+
+    private static void addGuardMethods(String logger, String methodName, String messageType, String guardMethod) {
+        GUARD_METHODS.put(MethodSignature.of(logger, methodName, messageType), guardMethod);
+        GUARD_METHODS.put(MethodSignature.of(logger, methodName, messageType, "java.lang.Throwable"), guardMethod);
+    }
+
+    @Override
+    public String getDescription() {
+        return ""
+            + "Avoids building log messages which are not logged:\n"
+            + "- replaces string concatenations passed to SLF4J and Log4j 2 loggers"
+            + " by parameterized messages using \"{}\" placeholders,\n"
+            + "- wraps the trace and debug logging calls with other string concatenations or String.format() calls"
+            + " in a check that the logging level is enabled, for SLF4J, Log4j, commons-logging"
+            + " and java.util.logging.";
+    }
+
+    @Override
+    public String getName() {
+        return "Logging";
+    }
+
+    @Override
+    public boolean visit(MethodInvocation node) {
+        if (arguments(node).isEmpty() || !isSideEffectFree(node.getExpression())) {
+            return VISIT_SUBTREE;
+        }
+        final Expression message = arg0(node);
+        if (message instanceof InfixExpression
+                && isAnyMethod(node, PARAMETERIZABLE_METHODS)
+                && maybeUseParameterizedMessage(node, (InfixExpression) message)) {
+            return DO_NOT_VISIT_SUBTREE;
+        }
+        if (isExpensive(message)
+                && node.getParent() instanceof ExpressionStatement
+                && !isGuarded(node)) {
+            final Expression guard = getGuard(node);
+            if (guard != null) {
+                final ASTBuilder b = this.ctx.getASTBuilder();
+                final ExpressionStatement stmt = (ExpressionStatement) node.getParent();
+                final IfStatement guardedStmt = b.if0(guard, b.block(b.copy(stmt)));
+                if (stmt.getParent() instanceof Block) {
+                    this.ctx.getRefactorings().replace(stmt, guardedStmt);
+                } else {
+                    // an else clause following the statement would otherwise belong to the new if statement
+                    this.ctx.getRefactorings().replace(stmt, b.block(guardedStmt));
+                }
+                return DO_NOT_VISIT_SUBTREE;
+            }
+        }
+        return VISIT_SUBTREE;
+    }
+
+    /** The logger will be evaluated twice, so it must be a variable. */
+    private boolean isSideEffectFree(Expression logger) {
+        return logger instanceof Name
+                || (logger instanceof FieldAccess
+                        && ((FieldAccess) logger).getExpression() instanceof ThisExpression);
+    }
+
+    private boolean isExpensive(Expression message) {
+        if (message instanceof InfixExpression) {
+            return isStringConcat((InfixExpression) message) && message.resolveConstantExpressionValue() == null;
+        }
+        return message instanceof MethodInvocation
+                && isAnyMethod((MethodInvocation) message, STRING_FORMAT_METHODS);
+    }
+
+    /**
+     * Replaces a message built by concatenating strings with a parameterized message, where each
+     * non literal operand becomes a "{}" placeholder, so the message is only built when it is logged.
+     */
+    private boolean maybeUseParameterizedMessage(MethodInvocation node, InfixExpression message) {
+        if (!isStringConcat(message) || message.resolveConstantExpressionValue() != null) {
+            return false;
+        }
+        final List<Expression> operands = new ArrayList<Expression>();
+        if (!collectConcatenatedOperands(message, operands)) {
+            return false;
+        }
+        final StringBuilder format = new StringBuilder();
+        final List<Expression> params = new ArrayList<Expression>();
+        for (Expression operand : operands) {
+            if (operand instanceof StringLiteral) {
+                final String literal = ((StringLiteral) operand).getLiteralValue();
+                if (literal.indexOf('{') != -1 || literal.indexOf('}') != -1 || literal.indexOf('\\') != -1) {
+                    // placeholders and escape characters would be interpreted by the logger
+                    return false;
+                }
+                format.append(literal);
+            } else if (isArray(operand)
+                    || (removeParentheses(operand) instanceof InfixExpression
+                            && isExpensive(removeParentheses(operand)))) {
+                // arrays are formatted differently, and nested concatenations would still be eagerly built
+                return false;
+            } else {
+                format.append("{}");
+                params.add(operand);
+            }
+        }
+        if (!params.isEmpty() && instanceOf(params.get(params.size() - 1), "java.lang.Throwable")) {
+            // the logger would log a last throwable argument with its stack trace instead of formatting it
+            return false;
+        }
+
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        final List<Expression> args = new ArrayList<Expression>();
+        args.add(b.string(format.toString()));
+        for (Expression param : params) {
+            args.add(b.copy(param));
+        }
+        if (arguments(node).size() == 2) {
+            // the throwable
+            args.add(b.copy(arguments(node).get(1)));
+        }
+        this.ctx.getRefactorings().replace(node,
+                b.invoke(b.copy(node.getExpression()), node.getName().getIdentifier(), args));
+        return true;
+    }
+
+    /**
+     * Collects the operands of the provided string concatenation, from left to right.
+     * Returns false when the first operands are added as numbers before being converted to a string.
+     */
+    private boolean collectConcatenatedOperands(InfixExpression concat, List<Expression> results) {
+        final Expression leftOperand = concat.getLeftOperand();
+        if (leftOperand instanceof InfixExpression && isStringConcat((InfixExpression) leftOperand)) {
+            if (!collectConcatenatedOperands((InfixExpression) leftOperand, results)) {
+                return false;
+            }
+        } else if (hasType(leftOperand, "java.lang.String") || hasType(concat.getRightOperand(), "java.lang.String")) {
+            results.add(leftOperand);
+        } else {
+            return false;
+        }
+        results.add(concat.getRightOperand());
+        results.addAll(extendedOperands(concat));
+        return true;
+    }
+
+    /** Returns whether the logging call is already inside an if statement checking the logging level. */
+    private boolean isGuarded(MethodInvocation node) {
+        for (ASTNode parent = node.getParent();
+                parent != null && !(parent instanceof BodyDeclaration);
+                parent = parent.getParent()) {
+            if (parent instanceof IfStatement
+                    && callsLevelCheck(((IfStatement) parent).getExpression(), node.getExpression())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean callsLevelCheck(Expression condition, final Expression logger) {
+        final boolean[] result = { false };
+        condition.accept(new ASTVisitor() {
+            @Override
+            public boolean visit(MethodInvocation node) {
+                final String methodName = node.getName().getIdentifier();
+                if ((methodName.startsWith("is")
+                        && (methodName.endsWith("Enabled") || "isLoggable".equals(methodName)
+                                || "isEnabledFor".equals(methodName)))
+                        && match(new ASTMatcher(), node.getExpression(), logger)) {
+                    result[0] = true;
+                }
+                return VISIT_SUBTREE;
+            }
+        });
+        return result[0];
+    }
+
+    private Expression getGuard(MethodInvocation node) {
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        for (Entry<MethodSignature, String> entry : GUARD_METHODS.entrySet()) {
+            if (isMethod(node, entry.getKey())) {
+                return b.invoke(b.copy(node.getExpression()), entry.getValue());
+            }
+        }
+        for (Entry<MethodSignature, String> entry : JUL_LEVELS.entrySet()) {
+            if (isMethod(node, entry.getKey())) {
+                final String levelClass = isImported(node, "java.util.logging.Level")
+                        ? "Level" : "java.util.logging.Level";
+                return b.invoke(b.copy(node.getExpression()), "isLoggable",
+                        b.name((levelClass + "." + entry.getValue()).split("\\.")));
+            }
+        }
+        return null;
+    }
+
+    private boolean isAnyMethod(MethodInvocation node, List<MethodSignature> signatures) {
+        for (MethodSignature signature : signatures) {
+            if (isMethod(node, signature)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
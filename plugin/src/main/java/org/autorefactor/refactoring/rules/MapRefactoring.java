@@ -28,17 +28,30 @@ package org.autorefactor.refactoring.rules;
 import java.util.List;
 
 import org.autorefactor.refactoring.ASTBuilder;
+import org.autorefactor.refactoring.MethodSignature;
 import org.autorefactor.refactoring.Refactorings;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.ArrayCreation;
 import org.eclipse.jdt.core.dom.Assignment;
+import org.eclipse.jdt.core.dom.Block;
+import org.eclipse.jdt.core.dom.BodyDeclaration;
 import org.eclipse.jdt.core.dom.ClassInstanceCreation;
 import org.eclipse.jdt.core.dom.Expression;
 import org.eclipse.jdt.core.dom.ExpressionStatement;
 import org.eclipse.jdt.core.dom.IBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
 import org.eclipse.jdt.core.dom.IVariableBinding;
+import org.eclipse.jdt.core.dom.IfStatement;
 import org.eclipse.jdt.core.dom.InfixExpression;
 import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.eclipse.jdt.core.dom.Modifier;
+import org.eclipse.jdt.core.dom.PrefixExpression;
+import org.eclipse.jdt.core.dom.ReturnStatement;
 import org.eclipse.jdt.core.dom.SimpleName;
 import org.eclipse.jdt.core.dom.Statement;
+import org.eclipse.jdt.core.dom.StringLiteral;
+import org.eclipse.jdt.core.dom.Type;
 import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
 import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
 
@@ -48,6 +61,17 @@ import static org.eclipse.jdt.core.dom.InfixExpression.Operator.*;
 /** See {@link #getDescription()} method. */
 @SuppressWarnings("javadoc")
 public class MapRefactoring extends AbstractRefactoringRule {
+    private static final MethodSignature MAP_CONTAINS_KEY =
+            MethodSignature.of("java.util.Map", "containsKey", "java.lang.Object");
+    private static final MethodSignature MAP_CONTAINS_VALUE =
+            MethodSignature.of("java.util.Map", "containsValue", "java.lang.Object");
+    private static final MethodSignature MAP_GET = MethodSignature.of("java.util.Map", "get", "java.lang.Object");
+    private static final MethodSignature MAP_PUT =
+            MethodSignature.of("java.util.Map", "put", "java.lang.Object", "java.lang.Object");
+    private static final MethodSignature MAP_REMOVE = MethodSignature.of("java.util.Map", "remove", "java.lang.Object");
+    private static final MethodSignature MAP_CLEAR = MethodSignature.of("java.util.Map", "clear");
+    private static final MethodSignature MAP_IS_EMPTY = MethodSignature.of("java.util.Map", "isEmpty");
+    private static final MethodSignature MAP_SIZE = MethodSignature.of("java.util.Map", "size");
 
     @Override
     public String getDescription() {
@@ -55,7 +79,9 @@ public class MapRefactoring extends AbstractRefactoringRule {
             + "Map related refactorings:\n"
             + "- replaces creating a new Map, then invoking Map.putAll() on it,"
             + " by creating the new Map with the other Map as parameter,\n"
-            + "- replaces some checks on Map.size() with checks on Map.isEmpty().";
+            + "- replaces some checks on Map.size() with checks on Map.isEmpty(),\n"
+            + "- replaces calls to Map.containsKey() followed by calls to Map.get() or Map.put()"
+            + " with a single call to Map.get() followed by a null check, when the map cannot contain null values.";
     }
 
     @Override
@@ -142,6 +168,277 @@ public class MapRefactoring extends AbstractRefactoringRule {
             && ((SimpleName) expr).resolveBinding().equals(varBinding);
     }
 
+    /** Finds whether a local map can only contain non null values, by looking at all its uses. */
+    private static final class NonNullValuesVisitor extends ASTVisitor {
+        private final IVariableBinding mapVariable;
+        private final BodyDeclaration bodyDecl;
+        private boolean isDeclaredEmpty;
+        private boolean hasNonNullValues = true;
+
+        private NonNullValuesVisitor(IVariableBinding mapVariable, BodyDeclaration bodyDecl) {
+            this.mapVariable = mapVariable;
+            this.bodyDecl = bodyDecl;
+        }
+
+        @Override
+        public boolean visit(SimpleName node) {
+            if (mapVariable.equals(node.resolveBinding())) {
+                if (node.getLocationInParent() == VariableDeclarationFragment.NAME_PROPERTY) {
+                    isDeclaredEmpty = isNewEmptyMap(((VariableDeclarationFragment) node.getParent()).getInitializer());
+                } else if (node.getLocationInParent() == ReturnStatement.EXPRESSION_PROPERTY) {
+                    // the map can only be modified once the analyzed method has returned
+                    hasNonNullValues &= getAncestor(node, BodyDeclaration.class) == bodyDecl;
+                } else if (node.getLocationInParent() != MethodInvocation.EXPRESSION_PROPERTY
+                        || !keepsNonNullValues((MethodInvocation) node.getParent())) {
+                    hasNonNullValues = false;
+                }
+            }
+            return VISIT_SUBTREE;
+        }
+
+        private boolean isNewEmptyMap(Expression initializer) {
+            final ClassInstanceCreation cic = as(initializer, ClassInstanceCreation.class);
+            if (cic == null || cic.getAnonymousClassDeclaration() != null) {
+                return false;
+            }
+            final List<Expression> args = arguments(cic);
+            return (args.isEmpty() || (args.size() == 1 && isPrimitive(args.get(0), "int")))
+                    && hasType(cic,
+                            "java.util.HashMap",
+                            "java.util.IdentityHashMap",
+                            "java.util.LinkedHashMap",
+                            "java.util.TreeMap",
+                            "java.util.WeakHashMap");
+        }
+
+        private boolean keepsNonNullValues(MethodInvocation mi) {
+            if (isMethod(mi, MAP_PUT)) {
+                return isNonNull(arguments(mi).get(1));
+            }
+            return isMethod(mi, MAP_GET)
+                    || isMethod(mi, MAP_CONTAINS_KEY)
+                    || isMethod(mi, MAP_CONTAINS_VALUE)
+                    || isMethod(mi, MAP_REMOVE)
+                    || isMethod(mi, MAP_CLEAR)
+                    || isMethod(mi, MAP_IS_EMPTY)
+                    || isMethod(mi, MAP_SIZE);
+        }
+
+        private boolean isNonNull(Expression expr) {
+            return expr instanceof ClassInstanceCreation
+                    || expr instanceof ArrayCreation
+                    || expr instanceof StringLiteral
+                    // primitives are autoboxed
+                    || isPrimitive(expr)
+                    || (expr instanceof InfixExpression && hasType(expr, "java.lang.String"));
+        }
+    }
+
+    @Override
+    public boolean visit(IfStatement node) {
+        if (!(node.getParent() instanceof Block)) {
+            return VISIT_SUBTREE;
+        }
+        final PrefixExpression pe = as(node.getExpression(), PrefixExpression.class);
+        if (hasOperator(pe, PrefixExpression.Operator.NOT)) {
+            final MethodInvocation containsKey = as(pe.getOperand(), MethodInvocation.class);
+            if (isMethod(containsKey, MAP_CONTAINS_KEY)
+                    && containsKey.getExpression() != null
+                    && node.getElseStatement() == null) {
+                return maybeReplaceContainsKeyThenPut(node, containsKey);
+            }
+        } else {
+            final MethodInvocation containsKey = as(node.getExpression(), MethodInvocation.class);
+            if (isMethod(containsKey, MAP_CONTAINS_KEY)
+                    && containsKey.getExpression() != null) {
+                return maybeReplaceContainsKeyThenGet(node, containsKey);
+            }
+        }
+        return VISIT_SUBTREE;
+    }
+
+    /**
+     * Replaces:
+     * <pre>
+     * if (map.containsKey(key)) {
+     *     V value = map.get(key);
+     *     ...
+     * }
+     * </pre>
+     * with:
+     * <pre>
+     * V value = map.get(key);
+     * if (value != null) {
+     *     ...
+     * }
+     * </pre>
+     */
+    private boolean maybeReplaceContainsKeyThenGet(IfStatement node, MethodInvocation containsKey) {
+        final List<Statement> thenStmts = asList(node.getThenStatement());
+        if (thenStmts.isEmpty()) {
+            return VISIT_SUBTREE;
+        }
+        final VariableDeclarationStatement valueDecl = as(thenStmts.get(0), VariableDeclarationStatement.class);
+        final SimpleName valueName = getValueName(valueDecl, containsKey);
+        if (valueName == null
+                // the value variable scope now extends to the whole block enclosing the if statement
+                || countIdentifiers(node.getParent(), valueName) != countIdentifiers(node.getThenStatement(), valueName)
+                || !hasNonNullValues(containsKey.getExpression())) {
+            return VISIT_SUBTREE;
+        }
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        final Refactorings r = this.ctx.getRefactorings();
+        r.insertBefore(b.move(valueDecl), node);
+        r.replace(node.getExpression(),
+                b.infixExpr(b.simpleName(valueName.getIdentifier()), NOT_EQUALS, b.null0()));
+        return DO_NOT_VISIT_SUBTREE;
+    }
+
+    /**
+     * Replaces:
+     * <pre>
+     * if (!map.containsKey(key)) {
+     *     map.put(key, newValue);
+     * }
+     * map.get(key).doSomething(); // or: V value = map.get(key);
+     * </pre>
+     * with:
+     * <pre>
+     * V value = map.get(key);
+     * if (value == null) {
+     *     value = newValue;
+     *     map.put(key, value);
+     * }
+     * value.doSomething();
+     * </pre>
+     */
+    private boolean maybeReplaceContainsKeyThenPut(IfStatement node, MethodInvocation containsKey) {
+        final List<Statement> thenStmts = asList(node.getThenStatement());
+        if (thenStmts.size() != 1) {
+            return VISIT_SUBTREE;
+        }
+        final MethodInvocation put = asExpression(thenStmts.get(0), MethodInvocation.class);
+        if (!isMethod(put, MAP_PUT)
+                || !isSameMapAndKey(containsKey, put)
+                || !hasNonNullValues(containsKey.getExpression())) {
+            return VISIT_SUBTREE;
+        }
+
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        final Refactorings r = this.ctx.getRefactorings();
+        final Statement nextStmt = getNextSibling(node);
+        final VariableDeclarationStatement nextDecl = as(nextStmt, VariableDeclarationStatement.class);
+        final SimpleName nextDeclName = getValueName(nextDecl, containsKey);
+        final String valueName;
+        if (nextDeclName != null) {
+            if (countIdentifiers(node, nextDeclName) != 0) {
+                return VISIT_SUBTREE;
+            }
+            valueName = nextDeclName.getIdentifier();
+            r.insertBefore(b.move(nextDecl), node);
+        } else {
+            final MethodInvocation nextMi = asExpression(nextStmt, MethodInvocation.class);
+            final MethodInvocation get = nextMi != null ? as(nextMi.getExpression(), MethodInvocation.class) : null;
+            final Type valueType = getValueType(containsKey.getExpression());
+            if (!isMethod(get, MAP_GET)
+                    || !isSameMapAndKey(containsKey, get)
+                    || valueType == null) {
+                return VISIT_SUBTREE;
+            }
+            valueName = getUniqueName(node, "value");
+            r.insertBefore(b.declareStmt(b.copy(valueType), valueName, b.copy(get)), node);
+            r.replace(get, b.simpleName(valueName));
+        }
+        r.replace(node.getExpression(), b.infixExpr(b.simpleName(valueName), EQUALS, b.null0()));
+        r.replace(node.getThenStatement(), b.block(
+                b.toStmt(b.assign(b.simpleName(valueName), Assignment.Operator.ASSIGN,
+                        b.copy(arguments(put).get(1)))),
+                b.toStmt(b.invoke(b.copy(put.getExpression()), "put",
+                        b.copy(arg0(put)), b.simpleName(valueName)))));
+        return DO_NOT_VISIT_SUBTREE;
+    }
+
+    /**
+     * Returns the name of the declared variable if it is initialized with a call to Map.get() on the same key.
+     * The variable must be assignable, and it must have the exact type of the map values,
+     * so it can be passed back to Map.put().
+     */
+    private SimpleName getValueName(VariableDeclarationStatement vds, MethodInvocation containsKey) {
+        if (vds != null
+                && fragments(vds).size() == 1
+                && !vds.getType().isPrimitiveType()
+                && !Modifier.isFinal(vds.getModifiers())) {
+            final VariableDeclarationFragment fragment = fragments(vds).get(0);
+            final MethodInvocation get = as(fragment.getInitializer(), MethodInvocation.class);
+            final ITypeBinding declaredType = vds.getType().resolveBinding();
+            if (fragment.getExtraDimensions() == 0
+                    && isMethod(get, MAP_GET)
+                    && isSameMapAndKey(containsKey, get)
+                    && declaredType != null
+                    && declaredType.isEqualTo(get.resolveTypeBinding())) {
+                return fragment.getName();
+            }
+        }
+        return null;
+    }
+
+    private Type getValueType(Expression map) {
+        if (map instanceof SimpleName) {
+            final List<Type> typeArgs = getDeclaredTypeArguments((SimpleName) map);
+            if (typeArgs != null
+                    && typeArgs.size() == 2
+                    && !typeArgs.get(1).isWildcardType()) {
+                return typeArgs.get(1);
+            }
+        }
+        return null;
+    }
+
+    private boolean isSameMapAndKey(MethodInvocation mi1, MethodInvocation mi2) {
+        final Expression key1 = arg0(mi1);
+        final Expression key2 = arg0(mi2);
+        final Object constantKey = key1.resolveConstantExpressionValue();
+        return isSameVariable(mi1.getExpression(), mi2.getExpression())
+                && (isSameVariable(key1, key2)
+                        || (constantKey != null && constantKey.equals(key2.resolveConstantExpressionValue())));
+    }
+
+    /**
+     * Returns whether the provided map cannot contain null values,
+     * so that calling Map.get() is enough to know whether it contains a key.
+     */
+    private boolean hasNonNullValues(Expression map) {
+        if (instanceOf(map, "java.util.concurrent.ConcurrentMap") || instanceOf(map, "java.util.Hashtable")) {
+            return true;
+        }
+        if (map instanceof SimpleName) {
+            final IBinding binding = ((SimpleName) map).resolveBinding();
+            if (binding instanceof IVariableBinding
+                    && !((IVariableBinding) binding).isField()
+                    && !((IVariableBinding) binding).isParameter()) {
+                final BodyDeclaration bodyDecl = getAncestor(map, BodyDeclaration.class);
+                final NonNullValuesVisitor visitor = new NonNullValuesVisitor((IVariableBinding) binding, bodyDecl);
+                bodyDecl.accept(visitor);
+                return visitor.isDeclaredEmpty && visitor.hasNonNullValues;
+            }
+        }
+        return false;
+    }
+
+    private int countIdentifiers(ASTNode node, final SimpleName name) {
+        final int[] count = new int[1];
+        node.accept(new ASTVisitor() {
+            @Override
+            public boolean visit(SimpleName simpleName) {
+                if (simpleName.getIdentifier().equals(name.getIdentifier())) {
+                    count[0]++;
+                }
+                return VISIT_SUBTREE;
+            }
+        });
+        return count[0];
+    }
+
     @Override
     public boolean visit(InfixExpression node) {
         final MethodInvocation leftMi = as(node.getLeftOperand(), MethodInvocation.class);
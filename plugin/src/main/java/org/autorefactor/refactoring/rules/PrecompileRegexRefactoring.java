@@ -0,0 +1,404 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.autorefactor.refactoring.ASTBuilder;
+import org.autorefactor.refactoring.MethodSignature;
+import org.autorefactor.refactoring.Refactorings;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.AbstractTypeDeclaration;
+import org.eclipse.jdt.core.dom.AnnotationTypeDeclaration;
+import org.eclipse.jdt.core.dom.AnonymousClassDeclaration;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.FieldAccess;
+import org.eclipse.jdt.core.dom.FieldDeclaration;
+import org.eclipse.jdt.core.dom.IBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
+import org.eclipse.jdt.core.dom.Initializer;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.eclipse.jdt.core.dom.Modifier;
+import org.eclipse.jdt.core.dom.QualifiedName;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.StringLiteral;
+import org.eclipse.jdt.core.dom.StructuralPropertyDescriptor;
+import org.eclipse.jdt.core.dom.SuperFieldAccess;
+import org.eclipse.jdt.core.dom.TypeDeclaration;
+
+import static org.autorefactor.refactoring.ASTHelper.*;
+
+/** See {@link #getDescription()} method. */
+@SuppressWarnings("javadoc")
+public class PrecompileRegexRefactoring extends AbstractRefactoringRule {
+    private static final String PATTERN_CLASS = "java.util.regex.Pattern";
+    private static final MethodSignature STRING_MATCHES =
+            MethodSignature.of("java.lang.String", "matches", "java.lang.String");
+    private static final MethodSignature STRING_REPLACE_ALL =
+            MethodSignature.of("java.lang.String", "replaceAll", "java.lang.String", "java.lang.String");
+    private static final MethodSignature STRING_REPLACE_FIRST =
+            MethodSignature.of("java.lang.String", "replaceFirst", "java.lang.String", "java.lang.String");
+    private static final MethodSignature STRING_SPLIT =
+            MethodSignature.of("java.lang.String", "split", "java.lang.String");
+    private static final MethodSignature STRING_SPLIT_LIMIT =
+            MethodSignature.of("java.lang.String", "split", "java.lang.String", "int");
+    private static final MethodSignature PATTERN_COMPILE =
+            MethodSignature.of(PATTERN_CLASS, "compile", "java.lang.String");
+    private static final MethodSignature PATTERN_COMPILE_FLAGS =
+            MethodSignature.of(PATTERN_CLASS, "compile", "java.lang.String", "int");
+    private static final MethodSignature PATTERN_MATCHES =
+            MethodSignature.of(PATTERN_CLASS, "matches", "java.lang.String", "java.lang.CharSequence");
+    /** The characters which prevent {@link String#split(String)} from taking its fast path. */
+    private static final String REGEX_METACHARS = ".$|()[{^?*+\\";
+
+    @Override
+    public String getDescription() {
+        return ""
+            + "Precompiles the constant regular expressions passed to String.matches(), String.replaceAll(),"
+            + " String.replaceFirst(), String.split(), Pattern.compile() and Pattern.matches()"
+            + " into private static final Pattern fields, instead of compiling them on each call.";
+    }
+
+    @Override
+    public String getName() {
+        return "Precompile regular expressions";
+    }
+
+    /** Collects the invocations compiling a constant regular expression which can be lifted to a field. */
+    private final class RegexInvocationsVisitor extends ASTVisitor {
+        private final List<MethodInvocation> invocations = new ArrayList<MethodInvocation>();
+
+        @Override
+        public boolean visit(TypeDeclaration node) {
+            // nested types which can declare static fields get their own fields
+            return !canDeclareStaticFields(node);
+        }
+
+        @Override
+        public boolean visit(FieldDeclaration node) {
+            // static fields are only initialized once
+            return !Modifier.isStatic(node.getModifiers());
+        }
+
+        @Override
+        public boolean visit(Initializer node) {
+            return !Modifier.isStatic(node.getModifiers());
+        }
+
+        @Override
+        public boolean visit(MethodInvocation node) {
+            if (getRegex(node) != null) {
+                invocations.add(node);
+                // nested invocations are handled on the next pass
+                return DO_NOT_VISIT_SUBTREE;
+            }
+            return VISIT_SUBTREE;
+        }
+    }
+
+    @Override
+    public boolean visit(TypeDeclaration node) {
+        if (!canDeclareStaticFields(node)) {
+            return VISIT_SUBTREE;
+        }
+        final RegexInvocationsVisitor visitor = new RegexInvocationsVisitor();
+        for (ASTNode bodyDecl : bodyDeclarations(node)) {
+            bodyDecl.accept(visitor);
+        }
+        if (visitor.invocations.isEmpty()) {
+            return VISIT_SUBTREE;
+        }
+
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        final Refactorings r = this.ctx.getRefactorings();
+        final CompilationUnit cu = (CompilationUnit) node.getRoot();
+        final String patternType = isImported(cu, PATTERN_CLASS) ? "Pattern" : PATTERN_CLASS;
+        final Set<String> usedNames = getUsedNames(cu);
+        final Map<String, String> fieldNames = new HashMap<String, String>();
+        int insertionIndex = 0;
+        for (MethodInvocation mi : visitor.invocations) {
+            final StringLiteral regex = getRegex(mi);
+            final Expression flags = isMethod(mi, PATTERN_COMPILE_FLAGS) ? arguments(mi).get(1) : null;
+            final String key = regex.getLiteralValue() + (flags != null ? "\0" + flags : "");
+            String fieldName = fieldNames.get(key);
+            if (fieldName == null) {
+                fieldName = getUniqueName(usedNames, "PATTERN");
+                usedNames.add(fieldName);
+                fieldNames.put(key, fieldName);
+
+                final Expression compile = flags != null
+                        ? b.invoke(b.name(patternType.split("\\.")), "compile", b.copy(regex), copyFlags(flags, node))
+                        : b.invoke(b.name(patternType.split("\\.")), "compile", b.copy(regex));
+                r.insertAt(b.declareField(Modifier.PRIVATE | Modifier.STATIC | Modifier.FINAL,
+                                b.type(patternType), fieldName, compile),
+                        insertionIndex++, TypeDeclaration.BODY_DECLARATIONS_PROPERTY, node);
+            }
+            r.replace(mi, usePattern(mi, fieldName));
+        }
+        return VISIT_SUBTREE;
+    }
+
+    private Expression usePattern(MethodInvocation mi, String fieldName) {
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        final List<Expression> args = arguments(mi);
+        if (isMethod(mi, STRING_MATCHES)) {
+            return b.invoke(b.invoke(fieldName, "matcher", b.move(mi.getExpression())), "matches");
+        } else if (isMethod(mi, STRING_REPLACE_ALL) || isMethod(mi, STRING_REPLACE_FIRST)) {
+            return b.invoke(b.invoke(fieldName, "matcher", b.move(mi.getExpression())),
+                    mi.getName().getIdentifier(), b.move(args.get(1)));
+        } else if (isMethod(mi, STRING_SPLIT)) {
+            return b.invoke(fieldName, "split", b.move(mi.getExpression()));
+        } else if (isMethod(mi, STRING_SPLIT_LIMIT)) {
+            return b.invoke(fieldName, "split", b.move(mi.getExpression()), b.move(args.get(1)));
+        } else if (isMethod(mi, PATTERN_MATCHES)) {
+            return b.invoke(b.invoke(fieldName, "matcher", b.move(args.get(1))), "matches");
+        }
+        // Pattern.compile()
+        return b.simpleName(fieldName);
+    }
+
+    /**
+     * Returns the constant regular expression compiled by the provided method invocation
+     * when it can be precompiled.
+     */
+    private StringLiteral getRegex(MethodInvocation mi) {
+        final boolean isSplit = isMethod(mi, STRING_SPLIT) || isMethod(mi, STRING_SPLIT_LIMIT);
+        if (!isSplit
+                && !isMethod(mi, STRING_MATCHES)
+                && !isMethod(mi, STRING_REPLACE_ALL)
+                && !isMethod(mi, STRING_REPLACE_FIRST)
+                && !isMethod(mi, PATTERN_COMPILE)
+                && !(isMethod(mi, PATTERN_COMPILE_FLAGS) && isStaticConstant(arguments(mi).get(1)))
+                && !isMethod(mi, PATTERN_MATCHES)) {
+            return null;
+        }
+        final StringLiteral regex = as(arguments(mi).get(0), StringLiteral.class);
+        if (regex == null
+                || (isSplit && isSplitFastPath(regex.getLiteralValue()))
+                || !isValid(regex.getLiteralValue())) {
+            return null;
+        }
+        return regex;
+    }
+
+    /**
+     * Mirrors the check done by {@link String#split(String, int)} to split on a single character
+     * without compiling the regular expression.
+     */
+    private boolean isSplitFastPath(String regex) {
+        final char c;
+        if (regex.length() == 1) {
+            c = regex.charAt(0);
+            if (REGEX_METACHARS.indexOf(c) != -1) {
+                return false;
+            }
+        } else if (regex.length() == 2 && regex.charAt(0) == '\\') {
+            c = regex.charAt(1);
+            if (Character.isLetterOrDigit(c) && c < 128) {
+                return false;
+            }
+        } else {
+            return false;
+        }
+        return c < Character.MIN_HIGH_SURROGATE || c > Character.MAX_LOW_SURROGATE;
+    }
+
+    /** Invalid regular expressions must keep failing at the call site, not when initializing the class. */
+    private boolean isValid(String regex) {
+        try {
+            Pattern.compile(regex);
+            return true;
+        } catch (PatternSyntaxException e) {
+            return false;
+        }
+    }
+
+    /** Returns whether the provided expression can be moved to a static field initializer. */
+    private boolean isStaticConstant(Expression expr) {
+        if (expr.resolveConstantExpressionValue() == null) {
+            return false;
+        }
+        final boolean[] result = { true };
+        expr.accept(new ASTVisitor() {
+            @Override
+            public boolean visit(SimpleName node) {
+                final IBinding binding = node.resolveBinding();
+                if (binding instanceof IVariableBinding
+                        && (!((IVariableBinding) binding).isField()
+                                || !Modifier.isStatic(binding.getModifiers()))) {
+                    result[0] = false;
+                }
+                return VISIT_SUBTREE;
+            }
+        });
+        return result[0];
+    }
+
+    /**
+     * Copies the provided flags, qualifying the fields declared by the provided type with its name:
+     * the new field is inserted before these fields, where their simple names would be illegal forward references.
+     */
+    private Expression copyFlags(Expression flags, TypeDeclaration typeDecl) {
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        final ITypeBinding typeBinding = typeDecl.resolveBinding();
+        final List<ASTNode> nodes = getNodesInPreOrder(flags);
+        final List<Integer> fieldIndexes = new ArrayList<Integer>();
+        for (int i = 0; i < nodes.size(); i++) {
+            if (isUnqualifiedFieldOf(nodes.get(i), typeBinding)) {
+                fieldIndexes.add(i);
+            }
+        }
+        if (fieldIndexes.isEmpty()) {
+            return b.copy(flags);
+        }
+
+        // copy the nodes to be able to modify them: the copy has the same structure as the original
+        final Expression copy = b.copySubtree(flags);
+        final List<ASTNode> copiedNodes = getNodesInPreOrder(copy);
+        Expression result = copy;
+        for (int i : fieldIndexes) {
+            final SimpleName fieldName = (SimpleName) copiedNodes.get(i);
+            final Expression qualifiedName = b.name(typeDecl.getName().getIdentifier(), fieldName.getIdentifier());
+            if (fieldName == copy) {
+                result = qualifiedName;
+            } else {
+                replaceInParent(fieldName, qualifiedName);
+            }
+        }
+        return result;
+    }
+
+    private boolean isUnqualifiedFieldOf(ASTNode node, ITypeBinding typeBinding) {
+        if (!(node instanceof SimpleName)
+                || node.getLocationInParent() == QualifiedName.NAME_PROPERTY
+                || node.getLocationInParent() == FieldAccess.NAME_PROPERTY
+                || node.getLocationInParent() == SuperFieldAccess.NAME_PROPERTY) {
+            return false;
+        }
+        final IBinding binding = ((SimpleName) node).resolveBinding();
+        return binding instanceof IVariableBinding
+                && ((IVariableBinding) binding).isField()
+                && typeBinding != null
+                && typeBinding.isEqualTo(((IVariableBinding) binding).getDeclaringClass());
+    }
+
+    private List<ASTNode> getNodesInPreOrder(ASTNode node) {
+        final List<ASTNode> results = new ArrayList<ASTNode>();
+        node.accept(new ASTVisitor() {
+            @Override
+            public void preVisit(ASTNode n) {
+                results.add(n);
+            }
+        });
+        return results;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void replaceInParent(ASTNode node, ASTNode replacement) {
+        final StructuralPropertyDescriptor location = node.getLocationInParent();
+        if (location.isChildListProperty()) {
+            final List<ASTNode> siblings = (List<ASTNode>) node.getParent().getStructuralProperty(location);
+            siblings.set(siblings.indexOf(node), replacement);
+        } else {
+            node.getParent().setStructuralProperty(location, replacement);
+        }
+    }
+
+    /** Only top level classes and static nested classes can declare non constant static fields. */
+    private boolean canDeclareStaticFields(TypeDeclaration node) {
+        if (node.isInterface()) {
+            return false;
+        }
+        final ASTNode parent = node.getParent();
+        return parent instanceof CompilationUnit
+                || (parent instanceof AbstractTypeDeclaration
+                        && (Modifier.isStatic(node.getModifiers()) || isInterface(parent)));
+    }
+
+    private boolean isInterface(ASTNode node) {
+        return node instanceof AnnotationTypeDeclaration
+                || (node instanceof TypeDeclaration && ((TypeDeclaration) node).isInterface());
+    }
+
+    /**
+     * Returns the identifiers which a new field must not shadow: the identifiers used in the compilation unit
+     * and the names of the fields inherited by the classes it declares.
+     */
+    private Set<String> getUsedNames(CompilationUnit cu) {
+        final Set<String> results = new HashSet<String>();
+        cu.accept(new ASTVisitor() {
+            @Override
+            public boolean visit(SimpleName node) {
+                results.add(node.getIdentifier());
+                return VISIT_SUBTREE;
+            }
+
+            @Override
+            public boolean visit(TypeDeclaration node) {
+                addInheritedFieldNames(node.resolveBinding());
+                return VISIT_SUBTREE;
+            }
+
+            @Override
+            public boolean visit(AnonymousClassDeclaration node) {
+                addInheritedFieldNames(node.resolveBinding());
+                return VISIT_SUBTREE;
+            }
+
+            private void addInheritedFieldNames(ITypeBinding typeBinding) {
+                if (typeBinding == null) {
+                    return;
+                }
+                for (IVariableBinding field : typeBinding.getDeclaredFields()) {
+                    results.add(field.getName());
+                }
+                addInheritedFieldNames(typeBinding.getSuperclass());
+                for (ITypeBinding interfaceBinding : typeBinding.getInterfaces()) {
+                    addInheritedFieldNames(interfaceBinding);
+                }
+            }
+        });
+        return results;
+    }
+
+    private String getUniqueName(Set<String> usedNames, String baseName) {
+        String result = baseName;
+        for (int i = 2; usedNames.contains(result); i++) {
+            result = baseName + i;
+        }
+        return result;
+    }
+}
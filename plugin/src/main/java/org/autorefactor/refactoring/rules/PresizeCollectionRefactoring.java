@@ -0,0 +1,203 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules;
+
+import java.util.List;
+
+import org.autorefactor.refactoring.ASTBuilder;
+import org.autorefactor.refactoring.MethodSignature;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.Assignment;
+import org.eclipse.jdt.core.dom.ClassInstanceCreation;
+import org.eclipse.jdt.core.dom.EnhancedForStatement;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.ExpressionStatement;
+import org.eclipse.jdt.core.dom.ForStatement;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.Statement;
+import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
+import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
+
+import static org.autorefactor.refactoring.ASTHelper.*;
+import static org.autorefactor.refactoring.ForLoopHelper.*;
+import static org.eclipse.jdt.core.dom.InfixExpression.Operator.*;
+
+/** See {@link #getDescription()} method. */
+@SuppressWarnings("javadoc")
+public class PresizeCollectionRefactoring extends AbstractRefactoringRule {
+    private static final MethodSignature COLLECTION_ADD =
+            MethodSignature.of("java.util.Collection", "add", "java.lang.Object");
+    private static final MethodSignature MAP_PUT =
+            MethodSignature.of("java.util.Map", "put", "java.lang.Object", "java.lang.Object");
+    private static final MethodSignature STRING_BUILDER_APPEND_CHAR =
+            MethodSignature.of("java.lang.StringBuilder", "append", "char");
+    /** The default load factor of {@link java.util.HashMap} and {@link java.util.HashSet}. */
+    private static final float DEFAULT_LOAD_FACTOR = 0.75f;
+
+    @Override
+    public String getDescription() {
+        return ""
+            + "Presizes ArrayList, HashMap, HashSet and StringBuilder instances"
+            + " created right before a loop which adds exactly one element per iteration,"
+            + " when the number of iterations is known before the loop starts.";
+    }
+
+    @Override
+    public String getName() {
+        return "Presize collections";
+    }
+
+    /** Counts the uses of a variable inside a loop, and records the one filling it. */
+    private static final class FillVisitor extends ASTVisitor {
+        private final SimpleName variable;
+        private final MethodSignature fillMethod;
+        private MethodInvocation fillCall;
+        private int nbUses;
+
+        private FillVisitor(SimpleName variable, MethodSignature fillMethod) {
+            this.variable = variable;
+            this.fillMethod = fillMethod;
+        }
+
+        @Override
+        public boolean visit(SimpleName node) {
+            if (isSameVariable(node, variable)) {
+                nbUses++;
+                if (node.getLocationInParent() == MethodInvocation.EXPRESSION_PROPERTY
+                        && isMethod((MethodInvocation) node.getParent(), fillMethod)) {
+                    fillCall = (MethodInvocation) node.getParent();
+                }
+            }
+            return VISIT_SUBTREE;
+        }
+    }
+
+    @Override
+    public boolean visit(VariableDeclarationStatement node) {
+        final List<VariableDeclarationFragment> fragments = fragments(node);
+        if (fragments.size() == 1) {
+            final VariableDeclarationFragment fragment = fragments.get(0);
+            return maybePresize(node, fragment.getName(),
+                    as(fragment.getInitializer(), ClassInstanceCreation.class));
+        }
+        return VISIT_SUBTREE;
+    }
+
+    @Override
+    public boolean visit(ExpressionStatement node) {
+        final Assignment as = asExpression(node, Assignment.class);
+        if (hasOperator(as, Assignment.Operator.ASSIGN)
+                && as.getLeftHandSide() instanceof SimpleName) {
+            return maybePresize(node, (SimpleName) as.getLeftHandSide(),
+                    as(as.getRightHandSide(), ClassInstanceCreation.class));
+        }
+        return VISIT_SUBTREE;
+    }
+
+    private boolean maybePresize(Statement node, SimpleName variable, ClassInstanceCreation cic) {
+        if (cic == null
+                || !arguments(cic).isEmpty()
+                || cic.getAnonymousClassDeclaration() != null) {
+            return VISIT_SUBTREE;
+        }
+        final MethodSignature fillMethod = getFillMethod(cic);
+        final Statement loop = getNextSibling(node);
+        final Expression iterationCount = countIterations(loop);
+        if (fillMethod == null
+                || iterationCount == null
+                || !isFilledOncePerIteration(loop, variable, fillMethod)) {
+            return VISIT_SUBTREE;
+        }
+
+        final boolean isHashBased = hasType(cic, "java.util.HashMap", "java.util.HashSet");
+        this.ctx.getRefactorings().insertAt(
+                getCapacity(iterationCount, isHashBased), 0, ClassInstanceCreation.ARGUMENTS_PROPERTY, cic);
+        return DO_NOT_VISIT_SUBTREE;
+    }
+
+    private MethodSignature getFillMethod(ClassInstanceCreation cic) {
+        if (hasType(cic, "java.util.ArrayList", "java.util.HashSet")) {
+            return COLLECTION_ADD;
+        } else if (hasType(cic, "java.util.HashMap")) {
+            return MAP_PUT;
+        } else if (hasType(cic, "java.lang.StringBuilder")) {
+            // only appending chars gives an exact capacity
+            return STRING_BUILDER_APPEND_CHAR;
+        }
+        return null;
+    }
+
+    /**
+     * Returns an expression computing the number of iterations of the provided loop before it starts.
+     * The returned expression is either a node to copy from the loop, or a new node.
+     */
+    private Expression countIterations(Statement loop) {
+        if (loop instanceof ForStatement) {
+            return getIterationCount((ForStatement) loop);
+        } else if (loop instanceof EnhancedForStatement) {
+            final Expression iterable = ((EnhancedForStatement) loop).getExpression();
+            if (iterable instanceof SimpleName) {
+                final ASTBuilder b = this.ctx.getASTBuilder();
+                final String identifier = ((SimpleName) iterable).getIdentifier();
+                if (isArray(iterable)) {
+                    return b.name(identifier, "length");
+                } else if (instanceOf(iterable, "java.util.Collection")) {
+                    return b.invoke(identifier, "size");
+                }
+            }
+        }
+        return null;
+    }
+
+    private boolean isFilledOncePerIteration(Statement loop, SimpleName variable, MethodSignature fillMethod) {
+        final FillVisitor visitor = new FillVisitor(variable, fillMethod);
+        loop.accept(visitor);
+        if (visitor.nbUses != 1 || visitor.fillCall == null) {
+            return false;
+        }
+        final Statement body = loop instanceof ForStatement
+                ? ((ForStatement) loop).getBody()
+                : ((EnhancedForStatement) loop).getBody();
+        return asList(body).contains(visitor.fillCall.getParent());
+    }
+
+    private Expression getCapacity(Expression iterationCount, boolean isHashBased) {
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        if (!isHashBased) {
+            return b.copy(iterationCount);
+        }
+        // the table must hold the elements without exceeding the load factor, otherwise it gets rehashed
+        final Object constantCount = iterationCount.resolveConstantExpressionValue();
+        if (constantCount instanceof Integer) {
+            return b.int0((int) ((Integer) constantCount / DEFAULT_LOAD_FACTOR) + 1);
+        }
+        return b.infixExpr(
+                b.cast("int", b.parenthesize(b.infixExpr(b.copy(iterationCount), DIVIDE, b.number("0.75f")))),
+                PLUS,
+                b.int0(1));
+    }
+}
@@ -25,6 +25,7 @@
  */
 package org.autorefactor.refactoring.rules;
 
+import org.autorefactor.cfg.ControlFlowGraphCache;
 import org.autorefactor.refactoring.ASTBuilder;
 import org.autorefactor.refactoring.JavaProjectOptions;
 import org.autorefactor.refactoring.Refactorings;
@@ -49,6 +50,9 @@ public class RefactoringContext {
     private final Refactorings refactorings;
     private final ASTBuilder astBuilder;
     private final JavaProjectOptions options;
+    private ControlFlowGraphCache cfgCache;
+    /** The cache of a context created for a previous AST of the same compilation unit, if any. */
+    private ControlFlowGraphCache previousCfgCache;
 
     /**
      * Builds an instance of this class.
@@ -58,11 +62,32 @@ public class RefactoringContext {
      * @param options the Java project options used to compile the project
      */
     public RefactoringContext(ICompilationUnit compilationUnit, CompilationUnit astRoot, JavaProjectOptions options) {
+        this(compilationUnit, astRoot, options, null);
+    }
+
+    /**
+     * Builds an instance of this class, which control flow graphs will be updated from the ones of the provided
+     * context rather than built from scratch.
+     *
+     * @param compilationUnit the compilation unit to refactor
+     * @param astRoot the compilation unit, root of the AST
+     * @param options the Java project options used to compile the project
+     * @param previousCtx the context used to refactor the previous AST of the same compilation unit,
+     *        or null if there is none
+     */
+    public RefactoringContext(ICompilationUnit compilationUnit, CompilationUnit astRoot, JavaProjectOptions options,
+            RefactoringContext previousCtx) {
         this.compilationUnit = compilationUnit;
         this.astRoot = astRoot;
         this.refactorings = new Refactorings(astRoot.getAST());
         this.astBuilder = new ASTBuilder(refactorings);
         this.options = options;
+        if (previousCtx != null) {
+            synchronized (previousCtx) {
+                this.previousCfgCache = previousCtx.cfgCache != null
+                        ? previousCtx.cfgCache : previousCtx.previousCfgCache;
+            }
+        }
     }
 
     /**
@@ -110,6 +135,25 @@ public class RefactoringContext {
         return refactorings;
     }
 
+    /**
+     * Returns the cache of the control flow graphs of the methods of the compilation unit to refactor.
+     * <p>
+     * The cache is created on first access and is shared by all the refactoring rules
+     * running on the current AST. When this context was created from a previous context,
+     * the cache updates the control flow graphs of the previous AST.
+     *
+     * @return the cache of the control flow graphs of the methods of the compilation unit to refactor
+     */
+    public synchronized ControlFlowGraphCache getControlFlowGraphCache() {
+        if (cfgCache == null) {
+            final String source = getSource(astRoot);
+            cfgCache = previousCfgCache != null
+                    ? previousCfgCache.update(source) : new ControlFlowGraphCache(source, options);
+            previousCfgCache = null;
+        }
+        return cfgCache;
+    }
+
     String getSource(ASTNode node) {
         try {
             return compilationUnit.getSource();
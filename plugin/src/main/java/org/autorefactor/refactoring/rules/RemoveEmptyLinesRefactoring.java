@@ -25,8 +25,8 @@
  */
 package org.autorefactor.refactoring.rules;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Arrays;
+import java.util.List;
 
 import org.autorefactor.refactoring.Refactorings;
 import org.autorefactor.refactoring.SourceLocation;
@@ -35,6 +35,7 @@ import org.eclipse.jdt.core.dom.ASTNode;
 import org.eclipse.jdt.core.dom.AbstractTypeDeclaration;
 import org.eclipse.jdt.core.dom.AnnotationTypeDeclaration;
 import org.eclipse.jdt.core.dom.Block;
+import org.eclipse.jdt.core.dom.Comment;
 import org.eclipse.jdt.core.dom.CompilationUnit;
 import org.eclipse.jdt.core.dom.EnumDeclaration;
 import org.eclipse.jdt.core.dom.MethodDeclaration;
@@ -61,15 +62,200 @@ public class RemoveEmptyLinesRefactoring extends AbstractRefactoringRule {
         return "Remove empty lines";
     }
 
+    /**
+     * Table of the current source file built by one forward scan over the source.
+     * It records the newlines, the runs of whitespaces, the runs of empty lines
+     * and the opening curlies outside comments, so the visitors can answer from it
+     * without scanning the source again.
+     */
+    private static final class SourceTable {
+        private final String source;
+        private final String newlineChars;
+        /** Start positions of the newlines, in increasing order. */
+        private int[] newlines = new int[64];
+        private int nbNewlines;
+        /** Start positions of the runs of whitespaces, in increasing order. */
+        private int[] wsRunStarts = new int[64];
+        /** End positions (exclusive) of the runs of whitespaces, in increasing order. */
+        private int[] wsRunEnds = new int[64];
+        private int nbWsRuns;
+        /** Positions of the opening curlies outside of comments, in increasing order. */
+        private int[] openingCurlies = new int[16];
+        private int nbOpeningCurlies;
+        /**
+         * Runs of at least two empty lines, stored as triples:
+         * the start of the first newline, the start of the third newline
+         * and the end of the last newline to remove.
+         */
+        private int[] emptyLines = new int[3 * 4];
+        private int nbEmptyLines;
+
+        private SourceTable(String source, String newlineChars, List<Comment> comments) {
+            this.source = source;
+            this.newlineChars = newlineChars;
+            scan(comments);
+        }
+
+        private void scan(List<Comment> comments) {
+            final int length = source.length();
+            final int newlineLength = newlineChars.length();
+            final char newlineFirstChar = newlineChars.charAt(0);
+            int commentIdx = 0;
+            int wsRunStart = -1;
+            // Detection of the empty lines. It stands for finding the regex
+            // (NL\s*?NL\s*?)(?:NL\s*?)+ where NL is the newline chars:
+            // three newlines separated by whitespaces, followed by directly adjacent newlines
+            int nbNewlinesInRun = 0;
+            int firstNewline = -1;
+            int thirdNewline = -1;
+            int lastNewlineEnd = -1;
+            for (int i = 0; i < length; i++) {
+                final char c = source.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    if (wsRunStart == -1) {
+                        wsRunStart = i;
+                    }
+                } else if (wsRunStart != -1) {
+                    addWhitespaceRun(wsRunStart, i);
+                    wsRunStart = -1;
+                }
+
+                final boolean isNewline = c == newlineFirstChar && source.startsWith(newlineChars, i);
+                if (isNewline) {
+                    newlines = add(newlines, nbNewlines++, i);
+                }
+                if (nbNewlinesInRun == 3) {
+                    if (i < lastNewlineEnd) {
+                        // still inside the last newline
+                    } else if (isNewline) {
+                        lastNewlineEnd = i + newlineLength;
+                    } else {
+                        addEmptyLines(firstNewline, thirdNewline, lastNewlineEnd);
+                        nbNewlinesInRun = 0;
+                    }
+                } else if (isNewline) {
+                    if (nbNewlinesInRun == 0) {
+                        firstNewline = i;
+                    } else if (nbNewlinesInRun == 2) {
+                        thirdNewline = i;
+                        lastNewlineEnd = i + newlineLength;
+                    }
+                    nbNewlinesInRun++;
+                } else if (!isRegexWhitespace(c)) {
+                    nbNewlinesInRun = 0;
+                }
+
+                if (c == '{') {
+                    while (commentIdx < comments.size() && getEndPosition(comments.get(commentIdx)) < i) {
+                        commentIdx++;
+                    }
+                    if (commentIdx >= comments.size() || i < comments.get(commentIdx).getStartPosition()) {
+                        openingCurlies = add(openingCurlies, nbOpeningCurlies++, i);
+                    }
+                }
+            }
+            if (wsRunStart != -1) {
+                addWhitespaceRun(wsRunStart, length);
+            }
+            if (nbNewlinesInRun == 3) {
+                addEmptyLines(firstNewline, thirdNewline, lastNewlineEnd);
+            }
+        }
+
+        private void addWhitespaceRun(int start, int end) {
+            wsRunStarts = add(wsRunStarts, nbWsRuns, start);
+            wsRunEnds = add(wsRunEnds, nbWsRuns, end);
+            nbWsRuns++;
+        }
+
+        private void addEmptyLines(int firstNewline, int thirdNewline, int lastNewlineEnd) {
+            emptyLines = add(emptyLines, 3 * nbEmptyLines, firstNewline);
+            emptyLines = add(emptyLines, 3 * nbEmptyLines + 1, thirdNewline);
+            emptyLines = add(emptyLines, 3 * nbEmptyLines + 2, lastNewlineEnd);
+            nbEmptyLines++;
+        }
+
+        private static int[] add(int[] array, int index, int value) {
+            int[] result = array;
+            if (index >= array.length) {
+                result = Arrays.copyOf(array, 2 * array.length);
+            }
+            result[index] = value;
+            return result;
+        }
+
+        private static boolean isRegexWhitespace(char c) {
+            return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+        }
+
+        /** Equivalent to {@code source.indexOf(newlineChars, fromIndex)}. */
+        private int indexOfNewline(int fromIndex) {
+            final int idx = lowerBound(newlines, nbNewlines, fromIndex);
+            return idx < nbNewlines ? newlines[idx] : -1;
+        }
+
+        /** Equivalent to {@code source.lastIndexOf(newlineChars, fromIndex)}. */
+        private int lastIndexOfNewline(int fromIndex) {
+            final int idx = lowerBound(newlines, nbNewlines, fromIndex + 1) - 1;
+            return idx >= 0 ? newlines[idx] : -1;
+        }
+
+        /**
+         * Returns the first opening curly outside of comments situated at or after the provided index.
+         */
+        private int indexOfOpeningCurly(int fromIndex) {
+            final int idx = lowerBound(openingCurlies, nbOpeningCurlies, fromIndex);
+            return idx < nbOpeningCurlies ? openingCurlies[idx] : -1;
+        }
+
+        private int getIndexOfFirstNonWhitespaceChar(int offset) {
+            if (Character.isWhitespace(source.charAt(offset))) {
+                final int end = wsRunEnds[findWhitespaceRun(offset)];
+                return end < source.length() ? end : -1;
+            }
+            return -1;
+        }
+
+        private int getLastIndexOfNonWhitespaceChar(int fromIndex) {
+            if (fromIndex < 0 || !Character.isWhitespace(source.charAt(fromIndex))) {
+                return fromIndex;
+            }
+            final int start = wsRunStarts[findWhitespaceRun(fromIndex)];
+            return start > 0 ? start - 1 : fromIndex;
+        }
+
+        /** Returns the index of the run of whitespaces containing the provided whitespace position. */
+        private int findWhitespaceRun(int position) {
+            return lowerBound(wsRunStarts, nbWsRuns, position + 1) - 1;
+        }
+
+        /** Returns the index of the first value greater than or equal to the provided key. */
+        private static int lowerBound(int[] sortedValues, int size, int key) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                final int mid = (low + high) >>> 1;
+                if (sortedValues[mid] < key) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+
+    private SourceTable table;
     private String newlineChars;
 
     @Override
     public boolean visit(CompilationUnit node) {
         final String source = this.ctx.getSource(node);
         newlineChars = getNewlineChars(source);
+        table = new SourceTable(source, newlineChars, getCommentList(node));
         final Refactorings r = this.ctx.getRefactorings();
 
-        int index = getIndexOfFirstNonWhitespaceChar(source, 0);
+        int index = table.getIndexOfFirstNonWhitespaceChar(0);
         if (index != -1) {
             r.remove(SourceLocation.fromPositions(0, index));
             return DO_NOT_VISIT_SUBTREE;
@@ -77,42 +263,28 @@ public class RemoveEmptyLinesRefactoring extends AbstractRefactoringRule {
 
         if (node.getPackage() != null) {
             int lastIndex = node.getPackage().getStartPosition();
-            int lastNonWsIndex = getLastIndexOfNonWhitespaceChar(source, lastIndex - 1);
-            int endOfLineIndex = source.indexOf(newlineChars, lastNonWsIndex);
-            if (maybeRemoveEmptyLines(source, endOfLineIndex, lastIndex)) {
+            int lastNonWsIndex = table.getLastIndexOfNonWhitespaceChar(lastIndex - 1);
+            int endOfLineIndex = table.indexOfNewline(lastNonWsIndex);
+            if (maybeRemoveEmptyLines(endOfLineIndex, lastIndex)) {
                 return DO_NOT_VISIT_SUBTREE;
             }
         }
 
         boolean result = VISIT_SUBTREE;
-        final String newline = "(?:" + newlineChars + ")";
-        Matcher m = Pattern.compile("(" + newline + "\\s*?" + newline + "\\s*?" + ")" + "(?:" + newline + "\\s*?)+")
-                .matcher(source);
-        while (m.find()) {
-            r.replace(toSourceLocation(m, 0), substring(source, m, 1));
+        for (int i = 0; i < table.nbEmptyLines; i++) {
+            // keep the first two newlines of the run
+            final int start = table.emptyLines[3 * i];
+            final int endOfKeptNewlines = table.emptyLines[3 * i + 1];
+            final int end = table.emptyLines[3 * i + 2];
+            r.replace(SourceLocation.fromPositions(start, end), source.substring(start, endOfKeptNewlines));
             result = DO_NOT_VISIT_SUBTREE;
         }
         return result;
     }
 
-    private int getIndexOfFirstNonWhitespaceChar(String s, int offset) {
-        if (Character.isWhitespace(s.charAt(offset))) {
-            for (int i = offset; i < s.length(); i++) {
-                if (!Character.isWhitespace(s.charAt(i))) {
-                    return i;
-                }
-            }
-        }
-        return -1;
-    }
-
-    private int getLastIndexOfNonWhitespaceChar(String s, int fromIndex) {
-        for (int i = fromIndex; 0 <= i; i--) {
-            if (!Character.isWhitespace(s.charAt(i))) {
-                return i;
-            }
-        }
-        return fromIndex;
+    @Override
+    public void endVisit(CompilationUnit node) {
+        table = null;
     }
 
     private String getNewlineChars(String source) {
@@ -127,14 +299,6 @@ public class RemoveEmptyLinesRefactoring extends AbstractRefactoringRule {
                 "Cannot determine end of line encoding for source " + this.ctx.getCompilationUnit());
     }
 
-    private SourceLocation toSourceLocation(Matcher m, int groupNumber) {
-        return SourceLocation.fromPositions(m.start(groupNumber), m.end(groupNumber));
-    }
-
-    private String substring(String s, Matcher m, int groupNumber) {
-        return s.substring(m.start(groupNumber), m.end(groupNumber));
-    }
-
     @Override
     public boolean visit(AnnotationTypeDeclaration node) {
         return visit((AbstractTypeDeclaration) node);
@@ -151,43 +315,30 @@ public class RemoveEmptyLinesRefactoring extends AbstractRefactoringRule {
     }
 
     private boolean visit(AbstractTypeDeclaration node) {
-        final String source = this.ctx.getSource(node);
-        int openingCurlyIndex = findOpeningCurlyForTypeBody(node, source);
-        int newLineBeforeOpeningCurly = source.lastIndexOf(newlineChars, openingCurlyIndex) + newlineChars.length();
-        int lastNonWsIndex = getLastIndexOfNonWhitespaceChar(source, openingCurlyIndex - 1);
-        int endOfLineIndex = source.indexOf(newlineChars, lastNonWsIndex);
-        if (maybeRemoveEmptyLines(source, endOfLineIndex, newLineBeforeOpeningCurly)) {
+        int openingCurlyIndex = table.indexOfOpeningCurly(node.getStartPosition());
+        int newLineBeforeOpeningCurly = table.lastIndexOfNewline(openingCurlyIndex) + newlineChars.length();
+        int lastNonWsIndex = table.getLastIndexOfNonWhitespaceChar(openingCurlyIndex - 1);
+        int endOfLineIndex = table.indexOfNewline(lastNonWsIndex);
+        if (maybeRemoveEmptyLines(endOfLineIndex, newLineBeforeOpeningCurly)) {
             return DO_NOT_VISIT_SUBTREE;
         }
 
-        int newLineAfterOpeningCurly = source.indexOf(newlineChars, openingCurlyIndex) + newlineChars.length();
-        int lastNonWsIndex2 = getIndexOfFirstNonWhitespaceChar(source, newLineAfterOpeningCurly);
-        int endOfLineIndex2 = source.lastIndexOf(newlineChars, lastNonWsIndex2) + newlineChars.length();
-        if (maybeRemoveEmptyLines(source, openingCurlyIndex + 1, endOfLineIndex2)) {
+        int newLineAfterOpeningCurly = table.indexOfNewline(openingCurlyIndex) + newlineChars.length();
+        int lastNonWsIndex2 = table.getIndexOfFirstNonWhitespaceChar(newLineAfterOpeningCurly);
+        int endOfLineIndex2 = table.lastIndexOfNewline(lastNonWsIndex2) + newlineChars.length();
+        if (maybeRemoveEmptyLines(openingCurlyIndex + 1, endOfLineIndex2)) {
             return DO_NOT_VISIT_SUBTREE;
         }
         return visitNodeWithClosingCurly(node);
     }
 
-    private int findOpeningCurlyForTypeBody(AbstractTypeDeclaration node, String source) {
-        int pos = node.getStartPosition();
-        while (true) {
-            int firstCurly = source.indexOf("{", pos);
-            if (!this.ctx.isInComment(firstCurly)) {
-                return firstCurly;
-            }
-            pos = firstCurly + 1;
-        }
-    }
-
     @Override
     public boolean visit(MethodDeclaration node) {
-        final String source = this.ctx.getSource(node);
         int openingCurlyIndex = node.getBody().getStartPosition();
-        int newLineBeforeOpeningCurly = source.lastIndexOf(newlineChars, openingCurlyIndex) + newlineChars.length();
-        int lastNonWsIndex = getLastIndexOfNonWhitespaceChar(source, openingCurlyIndex - 1);
-        int endOfLineIndex = source.indexOf(newlineChars, lastNonWsIndex);
-        if (maybeRemoveEmptyLines(source, endOfLineIndex, newLineBeforeOpeningCurly)) {
+        int newLineBeforeOpeningCurly = table.lastIndexOfNewline(openingCurlyIndex) + newlineChars.length();
+        int lastNonWsIndex = table.getLastIndexOfNonWhitespaceChar(openingCurlyIndex - 1);
+        int endOfLineIndex = table.indexOfNewline(lastNonWsIndex);
+        if (maybeRemoveEmptyLines(endOfLineIndex, newLineBeforeOpeningCurly)) {
             return DO_NOT_VISIT_SUBTREE;
         }
         return visit(node.getBody());
@@ -195,13 +346,12 @@ public class RemoveEmptyLinesRefactoring extends AbstractRefactoringRule {
 
     @Override
     public boolean visit(Block node) {
-        final String source = this.ctx.getSource(node);
         int openingCurlyIndex = node.getStartPosition();
-        int newLineAfterOpeningCurly = source.indexOf(newlineChars, openingCurlyIndex) + newlineChars.length();
+        int newLineAfterOpeningCurly = table.indexOfNewline(openingCurlyIndex) + newlineChars.length();
         if (newLineAfterOpeningCurly < getEndPosition(node)) {
-            int lastNonWsIndex = getIndexOfFirstNonWhitespaceChar(source, newLineAfterOpeningCurly);
-            int endOfLineIndex = source.lastIndexOf(newlineChars, lastNonWsIndex) + newlineChars.length();
-            if (maybeRemoveEmptyLines(source, openingCurlyIndex + 1, endOfLineIndex)) {
+            int lastNonWsIndex = table.getIndexOfFirstNonWhitespaceChar(newLineAfterOpeningCurly);
+            int endOfLineIndex = table.lastIndexOfNewline(lastNonWsIndex) + newlineChars.length();
+            if (maybeRemoveEmptyLines(openingCurlyIndex + 1, endOfLineIndex)) {
                 return DO_NOT_VISIT_SUBTREE;
             }
         }
@@ -209,21 +359,19 @@ public class RemoveEmptyLinesRefactoring extends AbstractRefactoringRule {
     }
 
     private boolean visitNodeWithClosingCurly(ASTNode node) {
-        final String source = this.ctx.getSource(node);
-
-        int closingCurlyIndex = source.lastIndexOf('}', getEndPosition(node));
-        int newLineBeforeClosingCurly = source.lastIndexOf(newlineChars, closingCurlyIndex) + newlineChars.length();
-        int lastNonWsIndex = getLastIndexOfNonWhitespaceChar(source, closingCurlyIndex - 1);
-        int endOfLineIndex = source.indexOf(newlineChars, lastNonWsIndex);
-        if (maybeRemoveEmptyLines(source, endOfLineIndex, newLineBeforeClosingCurly)) {
+        int closingCurlyIndex = table.source.lastIndexOf('}', getEndPosition(node));
+        int newLineBeforeClosingCurly = table.lastIndexOfNewline(closingCurlyIndex) + newlineChars.length();
+        int lastNonWsIndex = table.getLastIndexOfNonWhitespaceChar(closingCurlyIndex - 1);
+        int endOfLineIndex = table.indexOfNewline(lastNonWsIndex);
+        if (maybeRemoveEmptyLines(endOfLineIndex, newLineBeforeClosingCurly)) {
             return DO_NOT_VISIT_SUBTREE;
         }
         return VISIT_SUBTREE;
     }
 
-    private boolean maybeRemoveEmptyLines(String source, int endOfLineIndex, int newLineIndex) {
+    private boolean maybeRemoveEmptyLines(int endOfLineIndex, int newLineIndex) {
         if (endOfLineIndex < newLineIndex
-                && !equals(source, endOfLineIndex, newLineIndex, newlineChars)) {
+                && !equals(table.source, endOfLineIndex, newLineIndex, newlineChars)) {
             this.ctx.getRefactorings().replace(
                     SourceLocation.fromPositions(endOfLineIndex, newLineIndex),
                     newlineChars);
@@ -35,33 +35,82 @@ import java.util.ListIterator;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.autorefactor.refactoring.ASTBuilder;
+import org.autorefactor.refactoring.MethodSignature;
+import org.autorefactor.refactoring.Refactorings;
 import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.Assignment;
 import org.eclipse.jdt.core.dom.ClassInstanceCreation;
+import org.eclipse.jdt.core.dom.DoStatement;
+import org.eclipse.jdt.core.dom.EnhancedForStatement;
 import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.ExpressionStatement;
 import org.eclipse.jdt.core.dom.FieldAccess;
+import org.eclipse.jdt.core.dom.ForStatement;
+import org.eclipse.jdt.core.dom.IExtendedModifier;
 import org.eclipse.jdt.core.dom.ITypeBinding;
 import org.eclipse.jdt.core.dom.InfixExpression;
 import org.eclipse.jdt.core.dom.InfixExpression.Operator;
 import org.eclipse.jdt.core.dom.MethodInvocation;
 import org.eclipse.jdt.core.dom.Name;
+import org.eclipse.jdt.core.dom.NullLiteral;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.Statement;
 import org.eclipse.jdt.core.dom.StringLiteral;
+import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
+import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
+import org.eclipse.jdt.core.dom.WhileStatement;
 
 import static org.autorefactor.refactoring.ASTHelper.*;
-import static org.eclipse.jdt.core.dom.InfixExpression.Operator.*;
 
 /** See {@link #getDescription()} method. */
 @SuppressWarnings("javadoc")
 public class StringBuilderRefactoring extends AbstractRefactoringRule {
+    private static final MethodSignature STRING_SUBSTRING =
+            MethodSignature.of("java.lang.String", "substring", "int", "int");
+    private static final MethodSignature CHAR_SEQUENCE_SUB_SEQUENCE =
+            MethodSignature.of("java.lang.CharSequence", "subSequence", "int", "int");
+    private static final MethodSignature STRING_BUILDER_TO_STRING =
+            MethodSignature.of("java.lang.StringBuilder", "toString");
+    private static final MethodSignature STRING_BUFFER_TO_STRING =
+            MethodSignature.of("java.lang.StringBuffer", "toString");
+    private static final MethodSignature OBJECT_TO_STRING = MethodSignature.of("java.lang.Object", "toString");
+    private static final MethodSignature[] PRIMITIVE_TO_STRING_METHODS = {
+        MethodSignature.of("java.lang.Boolean", "toString", "boolean"),
+        MethodSignature.of("java.lang.Byte", "toString", "byte"),
+        MethodSignature.of("java.lang.Character", "toString", "char"),
+        MethodSignature.of("java.lang.Short", "toString", "short"),
+        MethodSignature.of("java.lang.Integer", "toString", "int"),
+        MethodSignature.of("java.lang.Long", "toString", "long"),
+        MethodSignature.of("java.lang.Float", "toString", "float"),
+        MethodSignature.of("java.lang.Double", "toString", "double"),
+    };
+    private static final MethodSignature[] STRING_VALUE_OF_METHODS = {
+        MethodSignature.of("java.lang.String", "valueOf", "java.lang.Object"),
+        MethodSignature.of("java.lang.String", "valueOf", "boolean"),
+        MethodSignature.of("java.lang.Boolean", "valueOf", "boolean"),
+        MethodSignature.of("java.lang.String", "valueOf", "char"),
+        MethodSignature.of("java.lang.Character", "valueOf", "char"),
+        MethodSignature.of("java.lang.String", "valueOf", "int"),
+        MethodSignature.of("java.lang.Integer", "valueOf", "int"),
+        MethodSignature.of("java.lang.String", "valueOf", "long"),
+        MethodSignature.of("java.lang.Long", "valueOf", "long"),
+        MethodSignature.of("java.lang.String", "valueOf", "float"),
+        MethodSignature.of("java.lang.Float", "valueOf", "float"),
+        MethodSignature.of("java.lang.String", "valueOf", "double"),
+        MethodSignature.of("java.lang.Double", "valueOf", "double"),
+    };
 
     @Override
     public String getDescription() {
         return ""
             + "Refactors to a proper use of StringBuilders:\n"
-            + "- convert StringBuffer to StringBuilder,\n"
             + "- replace String concatenations using operator '+' as parameters"
             + " of StringBuffer/StringBuilder.append(),\n"
             + "- replace chained call to StringBuffer/StringBuilder constructor followed by calls to append()"
-            + " and call toString() with straight String concatenation using operator '+'.";
+            + " and call toString() with straight String concatenation using operator '+',\n"
+            + "- replace String concatenations using operator '+=' inside a loop"
+            + " with calls to StringBuilder.append() on a StringBuilder created before the loop.";
     }
 
     @Override
@@ -73,15 +122,108 @@ public class StringBuilderRefactoring extends AbstractRefactoringRule {
         return ctx.getJavaProjectOptions().getJavaSERelease().getMinorVersion();
     }
 
+    /** Collects the concatenations to a String variable inside a loop, provided it is not used otherwise. */
+    private static final class ConcatenationsVisitor extends ASTVisitor {
+        private final SimpleName stringVar;
+        private final List<Assignment> concatenations = new ArrayList<Assignment>();
+        private boolean onlyConcatenations = true;
+
+        private ConcatenationsVisitor(SimpleName stringVar) {
+            this.stringVar = stringVar;
+        }
+
+        @Override
+        public boolean visit(SimpleName node) {
+            if (isSameVariable(node, stringVar)) {
+                final Assignment assignment =
+                        node.getParent() instanceof Assignment ? (Assignment) node.getParent() : null;
+                if (assignment != null
+                        && assignment.getLeftHandSide() == node
+                        && hasOperator(assignment, Assignment.Operator.PLUS_ASSIGN)
+                        && assignment.getParent() instanceof ExpressionStatement
+                        && !(assignment.getRightHandSide() instanceof NullLiteral)
+                        && !isArray(assignment.getRightHandSide())) {
+                    concatenations.add(assignment);
+                } else {
+                    onlyConcatenations = false;
+                }
+            }
+            return VISIT_SUBTREE;
+        }
+
+        private boolean canUseStringBuilder() {
+            return onlyConcatenations && !concatenations.isEmpty();
+        }
+    }
+
+    @Override
+    public boolean visit(ForStatement node) {
+        return maybeUseStringBuilderInLoop(node);
+    }
+
+    @Override
+    public boolean visit(EnhancedForStatement node) {
+        return maybeUseStringBuilderInLoop(node);
+    }
+
+    @Override
+    public boolean visit(WhileStatement node) {
+        return maybeUseStringBuilderInLoop(node);
+    }
+
     @Override
-    public boolean visit(ClassInstanceCreation node) {
-        if (getJavaMinorVersion() >= 5
-                && hasType(node, "java.lang.StringBuffer")) {
-            // TODO JNR replace with StringBuilder
-            // check that the current method return type is not StringBuffer
-            // do we need the CFG + live variable analysis first?
+    public boolean visit(DoStatement node) {
+        return maybeUseStringBuilderInLoop(node);
+    }
+
+    /**
+     * Replaces a String variable declared right before the loop and only concatenated to inside the loop
+     * with a StringBuilder, then converts the StringBuilder back to a String right after the loop.
+     * The variable scope ends with the enclosing block, so jumping out of the loop does not change the result.
+     */
+    private boolean maybeUseStringBuilderInLoop(Statement loop) {
+        final VariableDeclarationStatement vds = as(getPreviousSibling(loop), VariableDeclarationStatement.class);
+        if (vds == null
+                || fragments(vds).size() != 1
+                || !hasType(vds.getType().resolveBinding(), "java.lang.String")) {
+            return VISIT_SUBTREE;
         }
-        return VISIT_SUBTREE;
+        final VariableDeclarationFragment fragment = fragments(vds).get(0);
+        final Expression initializer = fragment.getInitializer();
+        if (fragment.getExtraDimensions() != 0
+                || initializer == null
+                // a null String cannot be passed to the StringBuilder constructor
+                || !(initializer.resolveConstantExpressionValue() instanceof String)) {
+            return VISIT_SUBTREE;
+        }
+
+        final ConcatenationsVisitor visitor = new ConcatenationsVisitor(fragment.getName());
+        loop.accept(visitor);
+        if (!visitor.canUseStringBuilder()) {
+            return VISIT_SUBTREE;
+        }
+
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        final Refactorings r = this.ctx.getRefactorings();
+        final String builderType = getJavaMinorVersion() >= 5 ? "StringBuilder" : "StringBuffer";
+        final String stringVarName = fragment.getName().getIdentifier();
+        final String builderName = getUniqueName(loop, stringVarName + "Builder");
+
+        final ClassInstanceCreation newBuilder = isEmptyString(initializer)
+                ? b.new0(builderType)
+                : b.new0(builderType, b.copy(initializer));
+        r.replace(vds, b.declareStmt(b.type(builderType), builderName, newBuilder));
+        for (Assignment concatenation : visitor.concatenations) {
+            r.replace(concatenation,
+                    b.invoke(b.simpleName(builderName), "append", b.copy(concatenation.getRightHandSide())));
+        }
+        final VariableDeclarationStatement stringDecl = b.declareStmt(
+                b.copy(vds.getType()), stringVarName, b.invoke(b.simpleName(builderName), "toString"));
+        for (IExtendedModifier modifier : modifiers(vds)) {
+            modifiers(stringDecl).add((IExtendedModifier) b.copy((ASTNode) modifier));
+        }
+        r.insertAfter(stringDecl, loop);
+        return DO_NOT_VISIT_SUBTREE;
     }
 
     @Override
@@ -173,8 +315,8 @@ public class StringBuilderRefactoring extends AbstractRefactoringRule {
                         createStringAppends(lastExpr, Arrays.asList(arg0)));
                 return DO_NOT_VISIT_SUBTREE;
             }
-            if (isMethod(embeddedMI, "java.lang.String", "substring", "int", "int")
-                    || isMethod(embeddedMI, "java.lang.CharSequence", "subSequence", "int", "int")) {
+            if (isMethod(embeddedMI, STRING_SUBSTRING)
+                    || isMethod(embeddedMI, CHAR_SEQUENCE_SUB_SEQUENCE)) {
                 final ASTBuilder b = this.ctx.getASTBuilder();
                 final Expression stringVar = b.copy(embeddedMI.getExpression());
                 final List<Expression> args = arguments(embeddedMI);
@@ -183,8 +325,8 @@ public class StringBuilderRefactoring extends AbstractRefactoringRule {
                 this.ctx.getRefactorings().replace(node,
                         createAppendSubstring(b, b.copy(lastExpr), stringVar, arg0, arg1));
             }
-        } else if (isMethod(node, "java.lang.StringBuilder", "toString")
-                || isMethod(node, "java.lang.StringBuffer", "toString")) {
+        } else if (isMethod(node, STRING_BUILDER_TO_STRING)
+                || isMethod(node, STRING_BUFFER_TO_STRING)) {
             final LinkedList<Expression> allAppendedStrings = new LinkedList<Expression>();
             final Expression lastExpr = collectAllAppendedStrings(node.getExpression(), allAppendedStrings, null);
             // TODO new StringBuffer().append(" bla").append("bla").toString();
@@ -231,21 +373,14 @@ public class StringBuilderRefactoring extends AbstractRefactoringRule {
             final Expression expr = iter.next();
             if (expr.getNodeType() == ASTNode.METHOD_INVOCATION) {
                 final MethodInvocation mi = (MethodInvocation) expr;
-                if (isMethod(mi, "java.lang.Object", "toString")) {
+                if (isMethod(mi, OBJECT_TO_STRING)) {
                     if (mi.getExpression() != null) {
                         iter.set(mi.getExpression());
                     } else {
                         iter.set(this.ctx.getAST().newThisExpression());
                     }
                     result = true;
-                } else if (isMethod(mi, "java.lang.Boolean", "toString", "boolean")
-                        || isMethod(mi, "java.lang.Byte", "toString", "byte")
-                        || isMethod(mi, "java.lang.Character", "toString", "char")
-                        || isMethod(mi, "java.lang.Short", "toString", "short")
-                        || isMethod(mi, "java.lang.Integer", "toString", "int")
-                        || isMethod(mi, "java.lang.Long", "toString", "long")
-                        || isMethod(mi, "java.lang.Float", "toString", "float")
-                        || isMethod(mi, "java.lang.Double", "toString", "double")) {
+                } else if (isAnyMethod(mi, PRIMITIVE_TO_STRING_METHODS)) {
                     iter.set(arg0(mi));
                     result = true;
                 }
@@ -255,19 +390,16 @@ public class StringBuilderRefactoring extends AbstractRefactoringRule {
     }
 
     private boolean isStringValueOf(MethodInvocation mi) {
-        return isMethod(mi, "java.lang.String", "valueOf", "java.lang.Object")
-                || isMethod(mi, "java.lang.String", "valueOf", "boolean")
-                || isMethod(mi, "java.lang.Boolean", "valueOf", "boolean")
-                || isMethod(mi, "java.lang.String", "valueOf", "char")
-                || isMethod(mi, "java.lang.Character", "valueOf", "char")
-                || isMethod(mi, "java.lang.String", "valueOf", "int")
-                || isMethod(mi, "java.lang.Integer", "valueOf", "int")
-                || isMethod(mi, "java.lang.String", "valueOf", "long")
-                || isMethod(mi, "java.lang.Long", "valueOf", "long")
-                || isMethod(mi, "java.lang.String", "valueOf", "float")
-                || isMethod(mi, "java.lang.Float", "valueOf", "float")
-                || isMethod(mi, "java.lang.String", "valueOf", "double")
-                || isMethod(mi, "java.lang.Double", "valueOf", "double");
+        return isAnyMethod(mi, STRING_VALUE_OF_METHODS);
+    }
+
+    private boolean isAnyMethod(MethodInvocation mi, MethodSignature[] signatures) {
+        for (MethodSignature signature : signatures) {
+            if (isMethod(mi, signature)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     private ASTNode createStringAppends(Expression lastExpr, List<Expression> appendedStrings) {
@@ -365,9 +497,4 @@ public class StringBuilderRefactoring extends AbstractRefactoringRule {
         }
         results.addFirst(arg);
     }
-
-    private boolean isStringConcat(InfixExpression node) {
-        return hasOperator(node, PLUS)
-                && hasType(node, "java.lang.String");
-    }
 }
@@ -28,6 +28,7 @@ package org.autorefactor.refactoring.rules;
 import java.util.List;
 
 import org.autorefactor.refactoring.ASTBuilder;
+import org.autorefactor.refactoring.MethodSignature;
 import org.autorefactor.refactoring.Refactorings;
 import org.autorefactor.util.NotImplementedException;
 import org.eclipse.jdt.core.dom.ASTNode;
@@ -71,6 +72,23 @@ public class TestNGAssertRefactoring extends AbstractRefactoringRule {
     }
 
     private static final String OBJECT = "java.lang.Object";
+    private static final String ASSERT = "org.testng.Assert";
+    private static final MethodSignature ASSERT_TRUE = MethodSignature.of(ASSERT, "assertTrue", "boolean");
+    private static final MethodSignature ASSERT_TRUE_WITH_MESSAGE =
+            MethodSignature.of(ASSERT, "assertTrue", "boolean", "java.lang.String");
+    private static final MethodSignature ASSERT_FALSE = MethodSignature.of(ASSERT, "assertFalse", "boolean");
+    private static final MethodSignature ASSERT_FALSE_WITH_MESSAGE =
+            MethodSignature.of(ASSERT, "assertFalse", "boolean", "java.lang.String");
+    private static final MethodSignature ASSERT_EQUALS = MethodSignature.of(ASSERT, "assertEquals", OBJECT, OBJECT);
+    private static final MethodSignature ASSERT_EQUALS_WITH_MESSAGE =
+            MethodSignature.of(ASSERT, "assertEquals", OBJECT, OBJECT, "java.lang.String");
+    private static final MethodSignature ASSERT_NOT_EQUALS =
+            MethodSignature.of(ASSERT, "assertNotEquals", OBJECT, OBJECT);
+    private static final MethodSignature ASSERT_NOT_EQUALS_WITH_MESSAGE =
+            MethodSignature.of(ASSERT, "assertNotEquals", OBJECT, OBJECT, "java.lang.String");
+    private static final MethodSignature FAIL = MethodSignature.of(ASSERT, "fail");
+    private static final MethodSignature FAIL_WITH_MESSAGE = MethodSignature.of(ASSERT, "fail", "java.lang.String");
+    private static final MethodSignature OBJECT_EQUALS = MethodSignature.of(OBJECT, "equals", OBJECT);
     private boolean canUseAssertNotEquals;
 
     @Override
@@ -113,17 +131,17 @@ public class TestNGAssertRefactoring extends AbstractRefactoringRule {
 
     @Override
     public boolean visit(MethodInvocation node) {
-        if (isMethod(node, "org.testng.Assert", "assertTrue", "boolean")
-                || isMethod(node, "org.testng.Assert", "assertTrue", "boolean", "java.lang.String")) {
+        if (isMethod(node, ASSERT_TRUE)
+                || isMethod(node, ASSERT_TRUE_WITH_MESSAGE)) {
             return maybeRefactorAssertTrue(node, true);
-        } else if (isMethod(node, "org.testng.Assert", "assertFalse", "boolean")
-                || isMethod(node, "org.testng.Assert", "assertFalse", "boolean", "java.lang.String")) {
+        } else if (isMethod(node, ASSERT_FALSE)
+                || isMethod(node, ASSERT_FALSE_WITH_MESSAGE)) {
             return maybeRefactorAssertTrue(node, false);
-        } else if (isMethod(node, "org.testng.Assert", "assertEquals", OBJECT, OBJECT)
-                || isMethod(node, "org.testng.Assert", "assertEquals", OBJECT, OBJECT, "java.lang.String")) {
+        } else if (isMethod(node, ASSERT_EQUALS)
+                || isMethod(node, ASSERT_EQUALS_WITH_MESSAGE)) {
             return maybeRefactorAssertEquals(node, true);
-        } else if (isMethod(node, "org.testng.Assert", "assertNotEquals", OBJECT, OBJECT)
-                || isMethod(node, "org.testng.Assert", "assertNotEquals", OBJECT, OBJECT, "java.lang.String")) {
+        } else if (isMethod(node, ASSERT_NOT_EQUALS)
+                || isMethod(node, ASSERT_NOT_EQUALS_WITH_MESSAGE)) {
             return maybeRefactorAssertEquals(node, false);
         }
         return VISIT_SUBTREE;
@@ -141,7 +159,7 @@ public class TestNGAssertRefactoring extends AbstractRefactoringRule {
             } else if (hasOperator(arg0Ie, NOT_EQUALS)) {
                 return invokeAssert(node, arg0Ie, isAssertTrue);
             }
-        } else if (isMethod(arg0mi, OBJECT, "equals", OBJECT)) {
+        } else if (isMethod(arg0mi, OBJECT_EQUALS)) {
             String assertName = getAssertName(!isAssertTrue, "Equals");
             if (canUseAssertNotEquals || isAssertEquals(assertName)) {
                 r.replace(node,
@@ -150,7 +168,7 @@ public class TestNGAssertRefactoring extends AbstractRefactoringRule {
             }
         } else if (hasOperator(arg0pe, NOT)) {
             final MethodInvocation negatedMi = as(arg0pe.getOperand(), MethodInvocation.class);
-            if (isMethod(negatedMi, OBJECT, "equals", OBJECT)) {
+            if (isMethod(negatedMi, OBJECT_EQUALS)) {
                 String assertName = getAssertName(isAssertTrue, "Equals");
                 if (canUseAssertNotEquals || isAssertEquals(assertName)) {
                     r.replace(node,
@@ -372,8 +390,8 @@ public class TestNGAssertRefactoring extends AbstractRefactoringRule {
         final List<Statement> stmts = asList(node.getThenStatement());
         if (node.getElseStatement() == null && stmts.size() == 1) {
             final MethodInvocation mi = asExpression(stmts.get(0), MethodInvocation.class);
-            if (isMethod(mi, "org.testng.Assert", "fail")
-                    || isMethod(mi, "org.testng.Assert", "fail", "java.lang.String")) {
+            if (isMethod(mi, FAIL)
+                    || isMethod(mi, FAIL_WITH_MESSAGE)) {
                 final InfixExpression conditionIe = as(node.getExpression(), InfixExpression.class);
                 final MethodInvocation conditionMi = as(node.getExpression(), MethodInvocation.class);
                 final PrefixExpression conditionPe = as(node.getExpression(), PrefixExpression.class);
@@ -384,7 +402,7 @@ public class TestNGAssertRefactoring extends AbstractRefactoringRule {
                     } else if (hasOperator(conditionIe, NOT_EQUALS)) {
                         return invokeAssertForFail(node, mi, conditionIe, false);
                     }
-                } else if (isMethod(conditionMi, OBJECT, "equals", OBJECT)) {
+                } else if (isMethod(conditionMi, OBJECT_EQUALS)) {
                     if (canUseAssertNotEquals) {
                         r.replace(node,
                                 invokeAssertForFail(mi, "assertNotEquals",
@@ -393,7 +411,7 @@ public class TestNGAssertRefactoring extends AbstractRefactoringRule {
                     }
                 } else if (hasOperator(conditionPe, NOT)) {
                     final MethodInvocation negatedMi = as(conditionPe.getOperand(), MethodInvocation.class);
-                    if (isMethod(negatedMi, OBJECT, "equals", OBJECT)) {
+                    if (isMethod(negatedMi, OBJECT_EQUALS)) {
                         r.replace(node,
                                 invokeAssertForFail(mi, "assertEquals",
                                         negatedMi.getExpression(), arg0(negatedMi)));
@@ -0,0 +1,294 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.autorefactor.refactoring.ASTBuilder;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.Assignment;
+import org.eclipse.jdt.core.dom.BodyDeclaration;
+import org.eclipse.jdt.core.dom.ClassInstanceCreation;
+import org.eclipse.jdt.core.dom.CompilationUnit;
+import org.eclipse.jdt.core.dom.EnhancedForStatement;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.FieldAccess;
+import org.eclipse.jdt.core.dom.FieldDeclaration;
+import org.eclipse.jdt.core.dom.IBinding;
+import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.eclipse.jdt.core.dom.Modifier;
+import org.eclipse.jdt.core.dom.Name;
+import org.eclipse.jdt.core.dom.ParameterizedType;
+import org.eclipse.jdt.core.dom.QualifiedName;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.SingleVariableDeclaration;
+import org.eclipse.jdt.core.dom.ThisExpression;
+import org.eclipse.jdt.core.dom.Type;
+import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
+import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
+
+import static org.autorefactor.refactoring.ASTHelper.*;
+
+/** See {@link #getDescription()} method. */
+@SuppressWarnings("javadoc")
+public class UseEnumCollectionsRefactoring extends AbstractRefactoringRule {
+    /** The supertypes of HashMap and TreeMap which are also supertypes of EnumMap. */
+    private static final Set<String> ENUM_MAP_SUPERTYPES = new HashSet<String>(Arrays.asList(
+            "java.lang.Object", "java.util.Map", "java.util.AbstractMap",
+            "java.lang.Cloneable", "java.io.Serializable"));
+    /** The supertypes of HashSet and TreeSet which are also supertypes of EnumSet. */
+    private static final Set<String> ENUM_SET_SUPERTYPES = new HashSet<String>(Arrays.asList(
+            "java.lang.Object", "java.util.Set", "java.util.AbstractSet", "java.util.Collection",
+            "java.util.AbstractCollection", "java.lang.Iterable", "java.lang.Cloneable", "java.io.Serializable"));
+    /** The methods which add the key passed as first argument, EnumMap and EnumSet reject null keys. */
+    private static final Set<String> KEY_ADDING_METHODS = new HashSet<String>(Arrays.asList(
+            "put", "putIfAbsent", "compute", "computeIfAbsent", "computeIfPresent", "merge", "add"));
+    /** The methods which add keys from another collection, which may contain null. */
+    private static final Set<String> BULK_ADDING_METHODS = new HashSet<String>(Arrays.asList(
+            "putAll", "addAll"));
+
+    @Override
+    public String getDescription() {
+        return ""
+            + "Replaces HashMap, TreeMap, HashSet and TreeSet instances with enum keys"
+            + " by EnumMap and EnumSet instances, when they are stored in a local variable or a private field"
+            + " whose uses can all be checked to never add a null key.\n"
+            + "LinkedHashMap and LinkedHashSet are left alone since EnumMap and EnumSet"
+            + " do not preserve the insertion order.";
+    }
+
+    @Override
+    public String getName() {
+        return "Use EnumMap and EnumSet";
+    }
+
+    @Override
+    public boolean visit(ClassInstanceCreation node) {
+        if (node.getLocationInParent() != VariableDeclarationFragment.INITIALIZER_PROPERTY
+                || node.getAnonymousClassDeclaration() != null
+                || node.getExpression() != null
+                || !(node.getType() instanceof ParameterizedType)) {
+            return VISIT_SUBTREE;
+        }
+        final VariableDeclarationFragment fragment = (VariableDeclarationFragment) node.getParent();
+        final boolean isMap = hasType(node, "java.util.HashMap", "java.util.TreeMap");
+        final boolean isSet = hasType(node, "java.util.HashSet", "java.util.TreeSet");
+        final ITypeBinding[] typeArgs = node.resolveTypeBinding().getTypeArguments();
+        if ((!isMap && !isSet)
+                || typeArgs.length == 0
+                || !typeArgs[0].isEnum()
+                || !hasDefaultOrderingConstructorArguments(node)
+                || !hasEnumCollectionSupertype(fragment, isMap ? ENUM_MAP_SUPERTYPES : ENUM_SET_SUPERTYPES)) {
+            return VISIT_SUBTREE;
+        }
+        final ASTNode scope = getScope(fragment);
+        final Type enumType = getEnumType(node, fragment);
+        if (scope == null || enumType == null || !onlyAddsNonNullKeys(fragment, scope, typeArgs[0])) {
+            return VISIT_SUBTREE;
+        }
+
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        if (isMap) {
+            final List<Type> mapTypeArgs = typeArguments((ParameterizedType) node.getType());
+            final Type[] enumMapTypeArgs = new Type[mapTypeArgs.size()];
+            for (int i = 0; i < enumMapTypeArgs.length; i++) {
+                enumMapTypeArgs[i] = b.copy(mapTypeArgs.get(i));
+            }
+            final ClassInstanceCreation enumMap = b.getAST().newClassInstanceCreation();
+            enumMap.setType(b.genericType(getClassName(node, "java.util.EnumMap"), enumMapTypeArgs));
+            arguments(enumMap).add(b.typeLiteral(b.copy(enumType)));
+            this.ctx.getRefactorings().replace(node, enumMap);
+        } else {
+            this.ctx.getRefactorings().replace(node,
+                    b.invoke(b.name(getClassName(node, "java.util.EnumSet").split("\\.")), "noneOf",
+                            b.typeLiteral(b.copy(enumType))));
+        }
+        return DO_NOT_VISIT_SUBTREE;
+    }
+
+    /**
+     * Only the initial capacity and load factor constructors are supported:
+     * copy constructors and comparators may change the content or the ordering.
+     */
+    private boolean hasDefaultOrderingConstructorArguments(ClassInstanceCreation node) {
+        for (Expression arg : arguments(node)) {
+            if (!isPrimitive(arg)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean hasEnumCollectionSupertype(VariableDeclarationFragment fragment, Set<String> supertypes) {
+        final ITypeBinding varType = resolveTypeBinding(fragment);
+        return varType != null
+                && fragment.getExtraDimensions() == 0
+                && supertypes.contains(varType.getErasure().getQualifiedName());
+    }
+
+    /** Returns the nodes where all the uses of the declared variable can be found. */
+    private ASTNode getScope(VariableDeclarationFragment fragment) {
+        final ASTNode parent = fragment.getParent();
+        if (parent instanceof VariableDeclarationStatement) {
+            return getAncestor(fragment, BodyDeclaration.class);
+        } else if (parent instanceof FieldDeclaration
+                && Modifier.isPrivate(((FieldDeclaration) parent).getModifiers())) {
+            return fragment.getRoot();
+        }
+        return null;
+    }
+
+    private Type getEnumType(ClassInstanceCreation node, VariableDeclarationFragment fragment) {
+        final List<Type> typeArgs = typeArguments((ParameterizedType) node.getType());
+        if (!typeArgs.isEmpty()) {
+            return typeArgs.get(0);
+        }
+        // diamond operator
+        final List<Type> declaredTypeArgs = getDeclaredTypeArguments(fragment.getName());
+        return declaredTypeArgs != null && !declaredTypeArgs.isEmpty() ? declaredTypeArgs.get(0) : null;
+    }
+
+    /**
+     * Returns whether the declared variable is never reassigned, and is only used as the receiver of methods
+     * which cannot add a null key, or a key of another type than the provided enum type.
+     */
+    private boolean onlyAddsNonNullKeys(final VariableDeclarationFragment fragment, ASTNode scope,
+            final ITypeBinding enumType) {
+        final IVariableBinding varBinding = fragment.resolveBinding();
+        if (varBinding == null) {
+            return false;
+        }
+        final boolean[] result = { true };
+        scope.accept(new ASTVisitor() {
+            @Override
+            public boolean visit(SimpleName node) {
+                if (result[0]
+                        && node != fragment.getName()
+                        && varBinding.equals(node.resolveBinding())) {
+                    result[0] = isSafeUse(getReference(node), enumType);
+                }
+                return VISIT_SUBTREE;
+            }
+        });
+        return result[0];
+    }
+
+    private Expression getReference(SimpleName node) {
+        if (node.getLocationInParent() == FieldAccess.NAME_PROPERTY
+                && ((FieldAccess) node.getParent()).getExpression() instanceof ThisExpression) {
+            return (FieldAccess) node.getParent();
+        } else if (node.getLocationInParent() == QualifiedName.NAME_PROPERTY) {
+            return (QualifiedName) node.getParent();
+        }
+        return node;
+    }
+
+    private boolean isSafeUse(Expression reference, ITypeBinding enumType) {
+        if (reference.getLocationInParent() == EnhancedForStatement.EXPRESSION_PROPERTY) {
+            return true;
+        } else if (reference.getLocationInParent() != MethodInvocation.EXPRESSION_PROPERTY) {
+            // the collection may be reassigned, passed to other code, etc.
+            return false;
+        }
+        final MethodInvocation mi = (MethodInvocation) reference.getParent();
+        final String methodName = mi.getName().getIdentifier();
+        if (BULK_ADDING_METHODS.contains(methodName)) {
+            return false;
+        } else if (KEY_ADDING_METHODS.contains(methodName)) {
+            // with a raw declared type, a key of another enum type would be rejected by EnumMap and EnumSet
+            return !arguments(mi).isEmpty()
+                    && enumType.equals(arg0(mi).resolveTypeBinding())
+                    && isNonNullEnumValue(arg0(mi));
+        }
+        return true;
+    }
+
+    /**
+     * Returns whether the provided expression can be proven to never evaluate to null:
+     * an enum constant, a call to the static valueOf() method of an enum,
+     * or the variable of a foreach loop over the values() of an enum.
+     */
+    private boolean isNonNullEnumValue(Expression expr) {
+        final Expression key = removeParentheses(expr);
+        if (key instanceof Name) {
+            final IBinding binding = ((Name) key).resolveBinding();
+            if (binding instanceof IVariableBinding) {
+                final IVariableBinding varBinding = (IVariableBinding) binding;
+                return varBinding.isEnumConstant() || isForeachOverEnumValues(key, varBinding);
+            }
+        } else if (key instanceof MethodInvocation) {
+            final IMethodBinding methodBinding = ((MethodInvocation) key).resolveMethodBinding();
+            return methodBinding != null
+                    && Modifier.isStatic(methodBinding.getModifiers())
+                    && methodBinding.getDeclaringClass().isEnum()
+                    && "valueOf".equals(methodBinding.getName());
+        }
+        return false;
+    }
+
+    private boolean isForeachOverEnumValues(Expression key, final IVariableBinding varBinding) {
+        final ASTNode declNode = ((CompilationUnit) key.getRoot()).findDeclaringNode(varBinding);
+        if (!(declNode instanceof SingleVariableDeclaration)
+                || declNode.getLocationInParent() != EnhancedForStatement.PARAMETER_PROPERTY) {
+            return false;
+        }
+        final EnhancedForStatement efs = (EnhancedForStatement) declNode.getParent();
+        final MethodInvocation values = as(efs.getExpression(), MethodInvocation.class);
+        final IMethodBinding valuesBinding = values != null ? values.resolveMethodBinding() : null;
+        if (valuesBinding == null
+                || !Modifier.isStatic(valuesBinding.getModifiers())
+                || !valuesBinding.getDeclaringClass().isEnum()
+                || !"values".equals(valuesBinding.getName())) {
+            return false;
+        }
+        final boolean[] isReassigned = { false };
+        efs.getBody().accept(new ASTVisitor() {
+            @Override
+            public boolean visit(SimpleName node) {
+                if (node.getLocationInParent() == Assignment.LEFT_HAND_SIDE_PROPERTY
+                        && varBinding.equals(node.resolveBinding())) {
+                    isReassigned[0] = true;
+                }
+                return VISIT_SUBTREE;
+            }
+        });
+        return !isReassigned[0];
+    }
+
+    private String getClassName(ASTNode node, String qualifiedClassName) {
+        if (isImported(node, qualifiedClassName)) {
+            return qualifiedClassName.substring(qualifiedClassName.lastIndexOf('.') + 1);
+        }
+        return qualifiedClassName;
+    }
+}
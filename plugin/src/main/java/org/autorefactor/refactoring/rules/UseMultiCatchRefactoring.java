@@ -104,8 +104,8 @@ public class UseMultiCatchRefactoring extends AbstractRefactoringRule {
         }
 
         private boolean areOverridingSameMethod(IMethodBinding binding1, IMethodBinding binding2) {
-            Set<IMethodBinding> commonOverridenMethods = getOverridenMethods(binding1);
-            commonOverridenMethods.retainAll(getOverridenMethods(binding2));
+            Set<String> commonOverridenMethods = getOverridenMethodKeys(binding1);
+            commonOverridenMethods.retainAll(getOverridenMethodKeys(binding2));
             return !commonOverridenMethods.isEmpty();
         }
 
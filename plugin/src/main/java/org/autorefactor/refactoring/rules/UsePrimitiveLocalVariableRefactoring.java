@@ -0,0 +1,282 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.autorefactor.cfg.ControlFlowGraph;
+import org.autorefactor.cfg.ControlFlowGraphCache;
+import org.autorefactor.cfg.LoopNestingForest;
+import org.eclipse.jdt.core.dom.ASTNode;
+import org.eclipse.jdt.core.dom.ArrayAccess;
+import org.eclipse.jdt.core.dom.Assignment;
+import org.eclipse.jdt.core.dom.BodyDeclaration;
+import org.eclipse.jdt.core.dom.CastExpression;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.ExpressionStatement;
+import org.eclipse.jdt.core.dom.ForStatement;
+import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.InfixExpression;
+import org.eclipse.jdt.core.dom.MethodDeclaration;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.eclipse.jdt.core.dom.ParenthesizedExpression;
+import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
+import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
+
+import static org.autorefactor.cfg.VariableAccess.*;
+import static org.autorefactor.refactoring.ASTHelper.*;
+import static org.eclipse.jdt.core.dom.ASTNode.*;
+import static org.eclipse.jdt.core.dom.InfixExpression.Operator.*;
+
+/** See {@link #getDescription()} method. */
+@SuppressWarnings("javadoc")
+public class UsePrimitiveLocalVariableRefactoring extends AbstractRefactoringRule {
+    private static final Map<String, String> PRIMITIVE_TYPES = new HashMap<String, String>();
+
+    static {
+        PRIMITIVE_TYPES.put("java.lang.Byte", "byte");
+        PRIMITIVE_TYPES.put("java.lang.Short", "short");
+        PRIMITIVE_TYPES.put("java.lang.Integer", "int");
+        PRIMITIVE_TYPES.put("java.lang.Long", "long");
+        PRIMITIVE_TYPES.put("java.lang.Float", "float");
+        PRIMITIVE_TYPES.put("java.lang.Double", "double");
+    }
+
+    @Override
+    public String getDescription() {
+        return ""
+            + "Replaces the wrapper type of local variables updated in a loop (Integer, Long, Double, etc.)"
+            + " with the matching primitive type, when they never hold null and are only used as numbers,"
+            + " so that each update no longer boxes a new object.";
+    }
+
+    @Override
+    public String getName() {
+        return "Use primitive local variable";
+    }
+
+    @Override
+    public boolean visit(VariableDeclarationStatement node) {
+        final ITypeBinding wrapperType = node.getType().resolveBinding();
+        if (wrapperType == null || fragments(node).size() != 1) {
+            return VISIT_SUBTREE;
+        }
+        final String primitiveTypeName = PRIMITIVE_TYPES.get(wrapperType.getQualifiedName());
+        final VariableDeclarationFragment fragment = fragments(node).get(0);
+        final MethodDeclaration md = getEnclosingMethod(node);
+        if (primitiveTypeName != null
+                && fragment.getExtraDimensions() == 0
+                && md != null
+                && canUsePrimitiveType(md, fragment, wrapperType)) {
+            this.ctx.getRefactorings().replace(node.getType(), this.ctx.getASTBuilder().type(primitiveTypeName));
+            return DO_NOT_VISIT_SUBTREE;
+        }
+        return VISIT_SUBTREE;
+    }
+
+    private MethodDeclaration getEnclosingMethod(ASTNode node) {
+        ASTNode parent = node.getParent();
+        while (parent != null && !(parent instanceof BodyDeclaration)) {
+            parent = parent.getParent();
+        }
+        return parent instanceof MethodDeclaration ? (MethodDeclaration) parent : null;
+    }
+
+    /**
+     * Returns whether the declared variable can use the primitive type instead of the wrapper type,
+     * by looking at all its accesses recorded in the CFG of the method:
+     * <ul>
+     * <li>every value written to the variable is a primitive, so the variable is never null,</li>
+     * <li>every read unboxes the variable, or boxes it back to the same wrapper type,</li>
+     * <li>the variable is written inside a loop which does not contain its declaration.</li>
+     * </ul>
+     */
+    private boolean canUsePrimitiveType(MethodDeclaration md, VariableDeclarationFragment fragment,
+            ITypeBinding wrapperType) {
+        final ControlFlowGraphCache cfgCache = this.ctx.getControlFlowGraphCache();
+        final ControlFlowGraph cfg = cfgCache.getControlFlowGraph(md);
+        if (cfg == null) {
+            return false;
+        }
+        final int declAccess = getDeclarationAccess(cfg, fragment);
+        if (declAccess == -1
+                || (fragment.getInitializer() != null && !isPrimitive(fragment.getInitializer()))) {
+            return false;
+        }
+        final int variable = cfg.getAccessedVariable(declAccess);
+        final int declBlock = cfg.getVariableAccessBlock(declAccess);
+        final LoopNestingForest loops = cfgCache.getLoopNestingForest(md);
+        boolean isUpdatedInLoop = false;
+        for (int a = 0; a < cfg.getNbVariableAccesses(); a++) {
+            if (a == declAccess || cfg.getAccessedVariable(a) != variable) {
+                continue;
+            }
+            final int accessType = cfg.getAccessType(a);
+            final ASTNode accessNode = cfg.getAccessNode(a);
+            if ((accessType & WRITE) != 0) {
+                // compound assignments, increments and decrements cannot produce null
+                if (((accessType & READ) == 0 && !isPrimitiveAssignment(accessNode))
+                        || !isUpdateValueUnusedOrNumeric(accessNode.getParent(), wrapperType)) {
+                    return false;
+                }
+                isUpdatedInLoop |= isInLoopNotContaining(loops, cfg.getVariableAccessBlock(a), declBlock);
+            } else if ((accessType & READ) != 0 && !isNumericUse(accessNode, wrapperType)) {
+                return false;
+            }
+        }
+        return isUpdatedInLoop;
+    }
+
+    private int getDeclarationAccess(ControlFlowGraph cfg, VariableDeclarationFragment fragment) {
+        for (int a = 0; a < cfg.getNbVariableAccesses(); a++) {
+            if (cfg.getAccessNode(a) == fragment) {
+                return a;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isInLoopNotContaining(LoopNestingForest loops, int block, int declBlock) {
+        for (int loop = loops.getInnermostLoop(block); loop != -1; loop = loops.getParent(loop)) {
+            if (!loops.contains(loop, declBlock)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isPrimitiveAssignment(ASTNode accessNode) {
+        final ASTNode parent = accessNode.getParent();
+        if (parent instanceof Assignment) {
+            final Assignment as = (Assignment) parent;
+            return as.getLeftHandSide() == accessNode && isPrimitive(as.getRightHandSide());
+        }
+        return false;
+    }
+
+    /** The value of an update expression has the type of the variable, so it must be checked like a read. */
+    private boolean isUpdateValueUnusedOrNumeric(ASTNode update, ITypeBinding wrapperType) {
+        final ASTNode parent = update.getParent();
+        return parent instanceof ExpressionStatement
+                || update.getLocationInParent() == ForStatement.UPDATERS_PROPERTY
+                || update.getLocationInParent() == ForStatement.INITIALIZERS_PROPERTY
+                || isNumericUse(update, wrapperType);
+    }
+
+    /** Returns whether the provided read of the variable would behave the same with a primitive variable. */
+    private boolean isNumericUse(ASTNode accessNode, ITypeBinding wrapperType) {
+        ASTNode child = accessNode;
+        ASTNode parent = accessNode.getParent();
+        while (parent instanceof ParenthesizedExpression) {
+            child = parent;
+            parent = parent.getParent();
+        }
+        switch (parent.getNodeType()) {
+        case INFIX_EXPRESSION:
+            final InfixExpression ie = (InfixExpression) parent;
+            if (hasOperator(ie, EQUALS) || hasOperator(ie, NOT_EQUALS)) {
+                // comparing two wrappers compares their references
+                final Expression otherOperand =
+                        ie.getLeftOperand() == child ? ie.getRightOperand() : ie.getLeftOperand();
+                return isPrimitive(otherOperand);
+            }
+            return true;
+        case PREFIX_EXPRESSION:
+        case POSTFIX_EXPRESSION:
+        case SWITCH_STATEMENT:
+            return true;
+        case ARRAY_ACCESS:
+            return ((ArrayAccess) parent).getIndex() == child;
+        case CAST_EXPRESSION:
+            return ((CastExpression) parent).getType().isPrimitiveType();
+        case ASSIGNMENT:
+            final Assignment as = (Assignment) parent;
+            return as.getRightHandSide() == child
+                    && isUnboxedOrSameWrapper(as.getLeftHandSide().resolveTypeBinding(), wrapperType);
+        case VARIABLE_DECLARATION_FRAGMENT:
+            final VariableDeclarationFragment vdf = (VariableDeclarationFragment) parent;
+            return vdf.getInitializer() == child
+                    && isUnboxedOrSameWrapper(resolveTypeBinding(vdf), wrapperType);
+        case RETURN_STATEMENT:
+            final MethodDeclaration md = getEnclosingMethod(parent);
+            return md != null
+                    && md.getReturnType2() != null
+                    && isUnboxedOrSameWrapper(md.getReturnType2().resolveBinding(), wrapperType);
+        case METHOD_INVOCATION:
+            return isArgumentOfNonOverloadedMethod((MethodInvocation) parent, child, wrapperType);
+        default:
+            // the variable is used as an object
+            return false;
+        }
+    }
+
+    private boolean isUnboxedOrSameWrapper(ITypeBinding targetType, ITypeBinding wrapperType) {
+        return targetType != null
+                && (targetType.isPrimitive() || targetType.isEqualTo(wrapperType));
+    }
+
+    /**
+     * Passing a primitive instead of a wrapper could select another overloaded method,
+     * for example {@link java.util.List#remove(int)} instead of {@link java.util.List#remove(Object)}.
+     */
+    private boolean isArgumentOfNonOverloadedMethod(MethodInvocation mi, ASTNode arg, ITypeBinding wrapperType) {
+        final int argIndex = arguments(mi).indexOf(arg);
+        final IMethodBinding methodBinding = mi.resolveMethodBinding();
+        if (argIndex == -1 || methodBinding == null || methodBinding.isVarargs()
+                || !isUnboxedOrSameWrapper(methodBinding.getParameterTypes()[argIndex], wrapperType)) {
+            return false;
+        }
+        return !hasOverload(methodBinding.getDeclaringClass(), methodBinding.getMethodDeclaration(),
+                new HashSet<String>());
+    }
+
+    /** Looks for overloads of the provided method in the provided type, its superclasses and its interfaces. */
+    private boolean hasOverload(ITypeBinding type, IMethodBinding methodDecl, Set<String> visitedTypes) {
+        if (type == null || !visitedTypes.add(type.getErasure().getKey())) {
+            return false;
+        }
+        for (IMethodBinding otherMethod : type.getDeclaredMethods()) {
+            if (otherMethod.getName().equals(methodDecl.getName())
+                    && !otherMethod.isEqualTo(methodDecl)
+                    && !methodDecl.overrides(otherMethod)) {
+                return true;
+            }
+        }
+        if (hasOverload(type.getSuperclass(), methodDecl, visitedTypes)) {
+            return true;
+        }
+        for (ITypeBinding itf : type.getInterfaces()) {
+            if (hasOverload(itf, methodDecl, visitedTypes)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.autorefactor.refactoring.ASTBuilder;
+import org.autorefactor.refactoring.MethodSignature;
+import org.autorefactor.refactoring.Refactorings;
+import org.eclipse.jdt.core.dom.ASTVisitor;
+import org.eclipse.jdt.core.dom.Assignment;
+import org.eclipse.jdt.core.dom.BodyDeclaration;
+import org.eclipse.jdt.core.dom.ClassInstanceCreation;
+import org.eclipse.jdt.core.dom.Expression;
+import org.eclipse.jdt.core.dom.IMethodBinding;
+import org.eclipse.jdt.core.dom.ITypeBinding;
+import org.eclipse.jdt.core.dom.IVariableBinding;
+import org.eclipse.jdt.core.dom.MethodInvocation;
+import org.eclipse.jdt.core.dom.Name;
+import org.eclipse.jdt.core.dom.ParameterizedType;
+import org.eclipse.jdt.core.dom.SimpleName;
+import org.eclipse.jdt.core.dom.SimpleType;
+import org.eclipse.jdt.core.dom.Type;
+import org.eclipse.jdt.core.dom.VariableDeclarationFragment;
+import org.eclipse.jdt.core.dom.VariableDeclarationStatement;
+
+import static org.autorefactor.refactoring.ASTHelper.*;
+
+/** See {@link #getDescription()} method. */
+@SuppressWarnings("javadoc")
+public class UseUnsynchronizedLocalObjectsRefactoring extends AbstractRefactoringRule {
+    private static final Map<String, String> UNSYNCHRONIZED_CLASSES = new HashMap<String, String>();
+    /** The supertypes shared by each synchronized class and its unsynchronized replacement. */
+    private static final Map<String, Set<String>> SHARED_SUPERTYPES = new HashMap<String, Set<String>>();
+    private static final MethodSignature[] SYNCHRONIZED_WRAPPERS = {
+        MethodSignature.of("java.util.Collections", "synchronizedCollection", "java.util.Collection"),
+        MethodSignature.of("java.util.Collections", "synchronizedList", "java.util.List"),
+        MethodSignature.of("java.util.Collections", "synchronizedSet", "java.util.Set"),
+        MethodSignature.of("java.util.Collections", "synchronizedSortedSet", "java.util.SortedSet"),
+        MethodSignature.of("java.util.Collections", "synchronizedMap", "java.util.Map"),
+        MethodSignature.of("java.util.Collections", "synchronizedSortedMap", "java.util.SortedMap"),
+    };
+
+    static {
+        UNSYNCHRONIZED_CLASSES.put("java.lang.StringBuffer", "java.lang.StringBuilder");
+        UNSYNCHRONIZED_CLASSES.put("java.util.Vector", "java.util.ArrayList");
+        UNSYNCHRONIZED_CLASSES.put("java.util.Hashtable", "java.util.HashMap");
+
+        SHARED_SUPERTYPES.put("java.lang.StringBuffer", new HashSet<String>(Arrays.asList(
+                "java.lang.Object", "java.lang.AbstractStringBuilder", "java.lang.CharSequence",
+                "java.lang.Appendable", "java.io.Serializable")));
+        SHARED_SUPERTYPES.put("java.util.Vector", new HashSet<String>(Arrays.asList(
+                "java.lang.Object", "java.util.AbstractList", "java.util.AbstractCollection",
+                "java.util.List", "java.util.Collection", "java.lang.Iterable",
+                "java.util.RandomAccess", "java.lang.Cloneable", "java.io.Serializable")));
+        SHARED_SUPERTYPES.put("java.util.Hashtable", new HashSet<String>(Arrays.asList(
+                "java.lang.Object", "java.util.Map", "java.lang.Cloneable", "java.io.Serializable")));
+    }
+
+    @Override
+    public String getDescription() {
+        return ""
+            + "Replaces StringBuffer, Vector, Hashtable and Collections.synchronized*() wrappers"
+            + " with StringBuilder, ArrayList, HashMap and the wrapped collection"
+            + " when they are only referenced by a local variable which never escapes its method:"
+            + " no other thread can access them, so their synchronization is useless.";
+    }
+
+    @Override
+    public String getName() {
+        return "Use unsynchronized local objects";
+    }
+
+    private int getJavaMinorVersion() {
+        return ctx.getJavaProjectOptions().getJavaSERelease().getMinorVersion();
+    }
+
+    /** Collects the values assigned to a local variable and the method invocations it is the receiver of. */
+    private static final class VariableUsesVisitor extends ASTVisitor {
+        private final IVariableBinding varBinding;
+        private final List<Expression> assignedValues = new ArrayList<Expression>();
+        private final List<MethodInvocation> invocations = new ArrayList<MethodInvocation>();
+
+        private VariableUsesVisitor(IVariableBinding varBinding) {
+            this.varBinding = varBinding;
+        }
+
+        @Override
+        public boolean visit(SimpleName node) {
+            if (varBinding.equals(node.resolveBinding())) {
+                if (node.getLocationInParent() == Assignment.LEFT_HAND_SIDE_PROPERTY) {
+                    assignedValues.add(removeParentheses(((Assignment) node.getParent()).getRightHandSide()));
+                } else if (node.getLocationInParent() == MethodInvocation.EXPRESSION_PROPERTY) {
+                    invocations.add((MethodInvocation) node.getParent());
+                }
+            }
+            return VISIT_SUBTREE;
+        }
+    }
+
+    @Override
+    public boolean visit(VariableDeclarationStatement node) {
+        if (fragments(node).size() != 1) {
+            return VISIT_SUBTREE;
+        }
+        final VariableDeclarationFragment fragment = fragments(node).get(0);
+        final Expression initializer = removeParentheses(fragment.getInitializer());
+        final String synchronizedClass = getSynchronizedClass(initializer);
+        if (synchronizedClass != null) {
+            return maybeReplaceSynchronizedClass(node, fragment, synchronizedClass);
+        } else if (isSynchronizedWrapper(initializer)) {
+            return maybeRemoveSynchronizedWrappers(fragment);
+        }
+        return VISIT_SUBTREE;
+    }
+
+    private boolean maybeReplaceSynchronizedClass(VariableDeclarationStatement node,
+            VariableDeclarationFragment fragment, String synchronizedClass) {
+        final ITypeBinding varType = node.getType().resolveBinding();
+        final Name varTypeName = getTypeName(node.getType());
+        if (varType == null || varTypeName == null || fragment.getExtraDimensions() != 0) {
+            return VISIT_SUBTREE;
+        }
+        final Set<String> sharedSupertypes = SHARED_SUPERTYPES.get(synchronizedClass);
+        final boolean replaceVarType = hasType(varType, synchronizedClass);
+        if (!replaceVarType && !sharedSupertypes.contains(varType.getErasure().getQualifiedName())) {
+            return VISIT_SUBTREE;
+        }
+
+        final VariableUsesVisitor visitor = collectUses(fragment);
+        final List<ClassInstanceCreation> creations = new ArrayList<ClassInstanceCreation>();
+        creations.add((ClassInstanceCreation) removeParentheses(fragment.getInitializer()));
+        for (Expression value : visitor.assignedValues) {
+            if (synchronizedClass.equals(getSynchronizedClass(value))) {
+                creations.add((ClassInstanceCreation) value);
+            } else if (!isNullLiteral(value)) {
+                // the variable may reference an object shared with other code
+                return VISIT_SUBTREE;
+            }
+        }
+        if (replaceVarType) {
+            for (MethodInvocation mi : visitor.invocations) {
+                if (!isDeclaredIn(mi.resolveMethodBinding(), sharedSupertypes)) {
+                    // the replacement class does not have this method, for example Vector.elementAt()
+                    return VISIT_SUBTREE;
+                }
+            }
+        }
+        if (isEscaping(fragment)) {
+            return VISIT_SUBTREE;
+        }
+
+        final String unsynchronizedClass = UNSYNCHRONIZED_CLASSES.get(synchronizedClass);
+        final Refactorings r = this.ctx.getRefactorings();
+        if (replaceVarType) {
+            r.replace(varTypeName, newClassName(node, unsynchronizedClass));
+        }
+        for (ClassInstanceCreation cic : creations) {
+            r.replace(getTypeName(cic.getType()), newClassName(node, unsynchronizedClass));
+        }
+        return DO_NOT_VISIT_SUBTREE;
+    }
+
+    private boolean maybeRemoveSynchronizedWrappers(VariableDeclarationFragment fragment) {
+        final List<MethodInvocation> wrappers = new ArrayList<MethodInvocation>();
+        wrappers.add((MethodInvocation) removeParentheses(fragment.getInitializer()));
+        for (Expression value : collectUses(fragment).assignedValues) {
+            if (isSynchronizedWrapper(value)) {
+                wrappers.add((MethodInvocation) value);
+            } else if (!isNullLiteral(value)) {
+                return VISIT_SUBTREE;
+            }
+        }
+        if (isEscaping(fragment)) {
+            return VISIT_SUBTREE;
+        }
+
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        final Refactorings r = this.ctx.getRefactorings();
+        for (MethodInvocation wrapper : wrappers) {
+            r.replace(wrapper, b.move(arg0(wrapper)));
+        }
+        return DO_NOT_VISIT_SUBTREE;
+    }
+
+    private VariableUsesVisitor collectUses(VariableDeclarationFragment fragment) {
+        final VariableUsesVisitor visitor = new VariableUsesVisitor(fragment.resolveBinding());
+        getAncestor(fragment, BodyDeclaration.class).accept(visitor);
+        return visitor;
+    }
+
+    /**
+     * Returns the synchronized class instantiated by the provided expression
+     * when it has an unsynchronized replacement with the same constructor, null otherwise.
+     */
+    private String getSynchronizedClass(Expression expr) {
+        final ClassInstanceCreation cic = as(expr, ClassInstanceCreation.class);
+        if (cic == null
+                || cic.getAnonymousClassDeclaration() != null
+                || cic.getExpression() != null
+                || getTypeName(cic.getType()) == null) {
+            return null;
+        }
+        if (getJavaMinorVersion() >= 5
+                && hasType(cic, "java.lang.StringBuffer")) {
+            return "java.lang.StringBuffer";
+        } else if (getJavaMinorVersion() >= 2) {
+            if (hasType(cic, "java.util.Vector")
+                    // ArrayList has no equivalent to Vector(int, int) and its capacity increment
+                    && arguments(cic).size() <= 1) {
+                return "java.util.Vector";
+            } else if (hasType(cic, "java.util.Hashtable")) {
+                return "java.util.Hashtable";
+            }
+        }
+        return null;
+    }
+
+    /** Returns whether the provided expression wraps a new collection into a synchronized collection. */
+    private boolean isSynchronizedWrapper(Expression expr) {
+        final MethodInvocation mi = as(expr, MethodInvocation.class);
+        if (mi != null) {
+            for (MethodSignature wrapper : SYNCHRONIZED_WRAPPERS) {
+                if (isMethod(mi, wrapper)) {
+                    final ClassInstanceCreation cic = as(arg0(mi), ClassInstanceCreation.class);
+                    return cic != null && cic.getAnonymousClassDeclaration() == null;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isDeclaredIn(IMethodBinding methodBinding, Set<String> typeNames) {
+        if (methodBinding == null) {
+            return false;
+        }
+        if (typeNames.contains(methodBinding.getDeclaringClass().getErasure().getQualifiedName())) {
+            return true;
+        }
+        for (IMethodBinding overriddenMethod : getOverridenMethods(methodBinding)) {
+            if (typeNames.contains(overriddenMethod.getDeclaringClass().getErasure().getQualifiedName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Name getTypeName(Type type) {
+        if (type instanceof SimpleType) {
+            return ((SimpleType) type).getName();
+        } else if (type instanceof ParameterizedType) {
+            return getTypeName(((ParameterizedType) type).getType());
+        }
+        return null;
+    }
+
+    private Name newClassName(VariableDeclarationStatement node, String qualifiedClassName) {
+        final ASTBuilder b = this.ctx.getASTBuilder();
+        final String simpleName = qualifiedClassName.substring(qualifiedClassName.lastIndexOf('.') + 1);
+        if (qualifiedClassName.startsWith("java.lang.") || isImported(node, qualifiedClassName)) {
+            return b.simpleName(simpleName);
+        }
+        return b.name(qualifiedClassName.split("\\."));
+    }
+}
@@ -28,13 +28,16 @@ package org.autorefactor.ui;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Queue;
+import java.util.Set;
 
 import org.autorefactor.AutoRefactorPlugin;
 import org.autorefactor.refactoring.JavaProjectOptions;
 import org.autorefactor.refactoring.RefactoringRule;
 import org.autorefactor.refactoring.Refactorings;
+import org.autorefactor.refactoring.TypeHierarchyCache;
 import org.autorefactor.refactoring.rules.AggregateASTVisitor;
 import org.autorefactor.refactoring.rules.RefactoringContext;
 import org.autorefactor.util.IllegalStateException;
@@ -108,6 +111,7 @@ public class ApplyRefactoringsJob extends Job {
         final int startSize = refactoringUnits.size();
         monitor.beginTask("", startSize);
         int previousSize = startSize;
+        final Set<TypeHierarchyCache> typeHierarchyCaches = new LinkedHashSet<TypeHierarchyCache>();
         try {
             RefactoringUnit toRefactor;
             while ((toRefactor = refactoringUnits.poll()) != null) {
@@ -116,6 +120,9 @@ public class ApplyRefactoringsJob extends Job {
                 }
                 final ICompilationUnit compilationUnit = toRefactor.getCompilationUnit();
                 final JavaProjectOptions options = toRefactor.getOptions();
+                final TypeHierarchyCache typeHierarchyCache = toRefactor.getTypeHierarchyCache();
+                typeHierarchyCaches.add(typeHierarchyCache);
+                TypeHierarchyCache.setCurrent(typeHierarchyCache);
                 try {
                     monitor.subTask("Applying refactorings to " + getClassName(compilationUnit));
 
@@ -126,6 +133,7 @@ public class ApplyRefactoringsJob extends Job {
                             + compilationUnit.getPath() + "\": " + e.getMessage();
                     throw new UnhandledException(null, msg, e);
                 } finally {
+                    TypeHierarchyCache.setCurrent(null);
                     final int remaining = refactoringUnits.size();
                     monitor.worked(previousSize - remaining);
                     previousSize = remaining;
@@ -133,10 +141,19 @@ public class ApplyRefactoringsJob extends Job {
             }
         } finally {
             monitor.done();
+            logProfilingOutput(typeHierarchyCaches);
         }
         return Status.OK_STATUS;
     }
 
+    private void logProfilingOutput(Set<TypeHierarchyCache> typeHierarchyCaches) {
+        if (AutoRefactorPlugin.getPreferenceHelper().debugModeOn()) {
+            for (TypeHierarchyCache typeHierarchyCache : typeHierarchyCaches) {
+                AutoRefactorPlugin.logInfo(typeHierarchyCache.getStatistics());
+            }
+        }
+    }
+
     private String getClassName(final ICompilationUnit compilationUnit) {
         final String elName = compilationUnit.getElementName();
         final String simpleName = elName.substring(0, elName.lastIndexOf('.'));
@@ -202,6 +219,7 @@ public class ApplyRefactoringsJob extends Job {
         int totalNbLoops = 0;
         List<ASTVisitor> lastLoopVisitors = Collections.emptyList();
         int nbLoopsWithSameVisitors = 0;
+        RefactoringContext previousCtx = null;
         while (true) {
             if (totalNbLoops > 100) {
                 // Oops! Something went wrong.
@@ -215,7 +233,7 @@ public class ApplyRefactoringsJob extends Job {
                 break;
             }
 
-            final RefactoringContext ctx = new RefactoringContext(compilationUnit, astRoot, options);
+            final RefactoringContext ctx = new RefactoringContext(compilationUnit, astRoot, options, previousCtx);
             refactoring.setRefactoringContext(ctx);
 
             final Refactorings refactorings = refactoring.getRefactorings(astRoot);
@@ -246,8 +264,15 @@ public class ApplyRefactoringsJob extends Job {
             // FIXME we should find a way to apply all the changes at
             // the AST level and refresh the bindings
             resetParser(compilationUnit, parser, options);
+            final CompilationUnit previousAstRoot = astRoot;
             astRoot = (CompilationUnit) parser.createAST(null);
+            // the next context updates the control flow graphs built for the previous AST
+            previousCtx = ctx;
             ++totalNbLoops;
+            final TypeHierarchyCache typeHierarchyCache = TypeHierarchyCache.getCurrent();
+            if (typeHierarchyCache != null) {
+                typeHierarchyCache.invalidateIfTypeDeclarationsChanged(previousAstRoot, astRoot);
+            }
 
 
             final List<ASTVisitor> thisLoopVisitors = refactoring.getVisitorsContributingRefactoring();
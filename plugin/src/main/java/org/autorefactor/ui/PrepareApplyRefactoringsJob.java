@@ -36,6 +36,7 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import org.autorefactor.AutoRefactorPlugin;
 import org.autorefactor.refactoring.JavaProjectOptions;
 import org.autorefactor.refactoring.RefactoringRule;
+import org.autorefactor.refactoring.TypeHierarchyCache;
 import org.autorefactor.util.NotImplementedException;
 import org.autorefactor.util.UnhandledException;
 import org.eclipse.core.runtime.IProgressMonitor;
@@ -57,6 +58,8 @@ public class PrepareApplyRefactoringsJob extends Job {
     private final List<IJavaElement> javaElements;
     private final List<RefactoringRule> refactoringRulesToApply;
     private final Map<IJavaElement, JavaProjectOptions> javaProjects = new HashMap<IJavaElement, JavaProjectOptions>();
+    private final Map<IJavaProject, TypeHierarchyCache> typeHierarchyCaches =
+            new HashMap<IJavaProject, TypeHierarchyCache>();
 
     /**
      * Builds an instance of this class.
@@ -168,7 +171,7 @@ public class PrepareApplyRefactoringsJob extends Job {
             cu.makeConsistent(null);
         }
         if (!cu.isReadOnly()) {
-            results.add(new RefactoringUnit(cu, options));
+            results.add(new RefactoringUnit(cu, options, getTypeHierarchyCache(cu)));
         }
     }
 
@@ -183,6 +186,16 @@ public class PrepareApplyRefactoringsJob extends Job {
         return options;
     }
 
+    private TypeHierarchyCache getTypeHierarchyCache(IJavaElement javaElement) {
+        final IJavaProject javaProject = getIJavaProject(javaElement);
+        TypeHierarchyCache cache = typeHierarchyCaches.get(javaProject);
+        if (cache == null) {
+            cache = new TypeHierarchyCache(javaProject.getElementName());
+            typeHierarchyCaches.put(javaProject, cache);
+        }
+        return cache;
+    }
+
     private IJavaProject getIJavaProject(IJavaElement javaElement) {
         if (javaElement instanceof ICompilationUnit
                 || javaElement instanceof IPackageFragment
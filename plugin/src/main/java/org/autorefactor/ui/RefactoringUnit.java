@@ -26,6 +26,7 @@
 package org.autorefactor.ui;
 
 import org.autorefactor.refactoring.JavaProjectOptions;
+import org.autorefactor.refactoring.TypeHierarchyCache;
 import org.eclipse.jdt.core.ICompilationUnit;
 
 /**
@@ -35,10 +36,13 @@ class RefactoringUnit {
 
     private final ICompilationUnit compilationUnit;
     private final JavaProjectOptions options;
+    private final TypeHierarchyCache typeHierarchyCache;
 
-    RefactoringUnit(ICompilationUnit compilationUnit, JavaProjectOptions options) {
+    RefactoringUnit(ICompilationUnit compilationUnit, JavaProjectOptions options,
+            TypeHierarchyCache typeHierarchyCache) {
         this.compilationUnit = compilationUnit;
         this.options = options;
+        this.typeHierarchyCache = typeHierarchyCache;
     }
 
     ICompilationUnit getCompilationUnit() {
@@ -49,6 +53,10 @@ class RefactoringUnit {
         return options;
     }
 
+    TypeHierarchyCache getTypeHierarchyCache() {
+        return typeHierarchyCache;
+    }
+
     @Override
     public String toString() {
         return getCompilationUnit().toString();
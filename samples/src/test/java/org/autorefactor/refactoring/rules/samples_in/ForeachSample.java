@@ -0,0 +1,157 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules.samples_in;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+public class ForeachSample {
+
+    private List<String> fieldList = new LinkedList<String>();
+
+    public int replaceIndexedLoopOverLinkedList(LinkedList<String> names) {
+        int length = 0;
+        for (int i = 0; i < names.size(); i++) {
+            length += names.get(i).length();
+        }
+        return length;
+    }
+
+    public void replaceIndexedLoopOverList(List<Integer> numbers, List<Integer> output) {
+        for (int i = 0; i < numbers.size(); i++) {
+            if (numbers.get(i) > 0) {
+                output.add(numbers.get(i));
+            }
+        }
+    }
+
+    public void reuseElementVariable(List<String> list, StringBuilder sb) {
+        for (int i = 0; i < list.size(); i++) {
+            final String s = list.get(i);
+            sb.append(s).append(", ");
+        }
+    }
+
+    public void avoidNameClash(List<String> items, String item) {
+        for (int i = 0; i < items.size(); i++) {
+            System.out.println(item + items.get(i));
+        }
+    }
+
+    public void doNotReplaceLoopOverRandomAccessList(ArrayList<String> names) {
+        for (int i = 0; i < names.size(); i++) {
+            System.out.println(names.get(i));
+        }
+    }
+
+    public void doNotReplaceWhenIndexIsUsed(List<String> names) {
+        for (int i = 0; i < names.size(); i++) {
+            System.out.println(i + ": " + names.get(i));
+        }
+    }
+
+    public void doNotReplaceWhenListIsModified(List<String> names) {
+        for (int i = 0; i < names.size(); i++) {
+            if (names.get(i).isEmpty()) {
+                names.remove(i);
+            }
+        }
+    }
+
+    public void doNotReplaceWhenIndexIsUsedAfterLoop(List<String> names) {
+        int i;
+        for (i = 0; i < names.size(); i++) {
+            System.out.println(names.get(i));
+        }
+        System.out.println(i);
+    }
+
+    public void doNotReplaceLoopOverField() {
+        for (int i = 0; i < fieldList.size(); i++) {
+            System.out.println(fieldList.get(i));
+        }
+    }
+
+    public int replaceKeySetIteration(Map<String, Integer> map) {
+        int sum = 0;
+        for (String key : map.keySet()) {
+            Integer value = map.get(key);
+            sum += value;
+        }
+        return sum;
+    }
+
+    public void replaceKeySetIterationUsingKey(Map<String, Long> map) {
+        for (String key : map.keySet()) {
+            System.out.println(key + "=" + map.get(key));
+        }
+    }
+
+    public void replaceKeySetIterator(Map<String, Integer> map) {
+        Iterator<String> it = map.keySet().iterator();
+        while (it.hasNext()) {
+            String key = it.next();
+            if (map.get(key) == null) {
+                it.remove();
+            }
+        }
+    }
+
+    public void replaceKeySetIteratorUsingKey(Map<String, Integer> map) {
+        for (Iterator<String> it = map.keySet().iterator(); it.hasNext();) {
+            String key = it.next();
+            System.out.println(key + "=" + map.get(key));
+        }
+    }
+
+    public void replaceKeySetIterationAvoidingNameClash(Map<String, Integer> map, Object entry) {
+        for (String key : map.keySet()) {
+            System.out.println(entry + "=" + map.get(key));
+        }
+    }
+
+    public void doNotReplaceKeySetIterationWhenMapIsWritten(Map<String, Integer> map) {
+        for (String key : map.keySet()) {
+            map.put(key, map.get(key) + 1);
+        }
+    }
+
+    public void doNotReplaceKeySetIterationWhenKeyIsAssigned(Map<String, Integer> map) {
+        for (String key : map.keySet()) {
+            key = key.toLowerCase();
+            System.out.println(map.get(key));
+        }
+    }
+
+    public void doNotReplaceKeySetIterationWithoutGet(Map<String, Integer> map) {
+        for (String key : map.keySet()) {
+            System.out.println(key);
+        }
+    }
+}
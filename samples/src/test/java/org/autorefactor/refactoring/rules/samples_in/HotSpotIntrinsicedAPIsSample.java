@@ -25,6 +25,8 @@
  */
 package org.autorefactor.refactoring.rules.samples_in;
 
+import java.util.Arrays;
+
 public class HotSpotIntrinsicedAPIsSample {
 
     public static void replaceBySystemArrayCopyBasic(int[] src, int[] dest) {
@@ -87,8 +89,50 @@ public class HotSpotIntrinsicedAPIsSample {
         }
     }
 
-    public static void replaceWithArraysCopyOf(int[] src, int[] dest) {
-        // FIXME Should use java.util.Arrays.copyOf()
+    public static void replaceWithArraysFill(int[] array) {
+        for (int i = 0; i < array.length; i++) {
+            array[i] = -1;
+        }
+    }
+
+    public static void replaceWithArraysFillRange(Object[] array, Object value) {
+        for (int i = 2; i <= 5; i++) {
+            array[i] = value;
+        }
+    }
+
+    public static void replaceWithArraysFillNarrowedConstant(byte[] array) {
+        for (int i = 0; i < array.length; i++) {
+            array[i] = 1;
+        }
+    }
+
+    public static void doNotReplaceWithArraysFillIndexDependentValue(int[] array) {
+        for (int i = 0; i < array.length; i++) {
+            array[i] = i;
+        }
+    }
+
+    public static void doNotReplaceWithArraysFillUnknownRange(int[] array, int start) {
+        for (int i = start; i < array.length; i++) {
+            array[i] = 0;
+        }
+    }
+
+    public static int[] replaceWithArraysCopyOf(int[] src) {
+        int[] dest = new int[src.length];
+        for (int i = 0; i < src.length; i++) {
+            dest[i] = src[i];
+        }
+        return dest;
+    }
+
+    public static Object[] doNotReplaceWithArraysCopyOfObjectArray(Object[] src) {
+        Object[] dest = new Object[src.length];
+        for (int i = 0; i < src.length; i++) {
+            dest[i] = src[i];
+        }
+        return dest;
     }
 
     public static void replaceWithArraysCopyOfRange(int[] src, int[] dest) {
@@ -105,7 +149,6 @@ public class HotSpotIntrinsicedAPIsSample {
             }
         }
         return true;
-        // FIXME Should use java.util.Arrays.equals()
     }
 
     public static boolean replaceWithArraysEquals2(int[] src, int[] dest) {
@@ -118,11 +161,45 @@ public class HotSpotIntrinsicedAPIsSample {
             return true;
         }
         return false;
-        // FIXME Should use java.util.Arrays.equals()
     }
 
-    public static void replaceWithStringIndexOf(String s) {
-        // FIXME Should use java.lang.String.indexOf()
+    public static boolean doNotReplaceWithArraysEqualsForDoubles(double[] src, double[] dest) {
+        if (dest.length != src.length) {
+            return false;
+        }
+        for (int i = 0; i < src.length; i++) {
+            if (dest[i] != src[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static int replaceWithStringIndexOf(String s, char c) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public static int replaceWithStringIndexOfFromIndex(String s) {
+        for (int i = 1; i < s.length(); i++) {
+            if ('/' == s.charAt(i)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public static int doNotReplaceWithStringIndexOfForInt(String s, int codePoint) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == codePoint) {
+                return i;
+            }
+        }
+        return -1;
     }
 
 }
@@ -25,8 +25,12 @@
  */
 package org.autorefactor.refactoring.rules.samples_in;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 
 public class MapSample {
 
@@ -72,4 +76,72 @@ public class MapSample {
         System.out.println(0 >= map.size());
         System.out.println(0 > map.size());
     }
+
+    public int replaceContainsKeyThenGet(ConcurrentMap<String, Integer> counts, String word) {
+        if (counts.containsKey(word)) {
+            Integer count = counts.get(word);
+            return count + 1;
+        }
+        return 0;
+    }
+
+    public Map<String, List<String>> replaceContainsKeyThenPutThenGetOnLocalMap(String[] words) {
+        Map<String, List<String>> wordsByFirstLetter = new HashMap<String, List<String>>();
+        for (String word : words) {
+            String firstLetter = word.substring(0, 1);
+            if (!wordsByFirstLetter.containsKey(firstLetter)) {
+                wordsByFirstLetter.put(firstLetter, new ArrayList<String>());
+            }
+            wordsByFirstLetter.get(firstLetter).add(word);
+        }
+        return wordsByFirstLetter;
+    }
+
+    public String replaceContainsKeyThenPutThenGetDeclaration(Hashtable<String, String> cache, String key) {
+        if (!cache.containsKey(key)) {
+            cache.put(key, key.toUpperCase());
+        }
+        String value = cache.get(key);
+        return value;
+    }
+
+    public Integer doNotReplaceContainsKeyWhenMapMayContainNullValues(Map<String, Integer> map, String key) {
+        if (map.containsKey(key)) {
+            Integer value = map.get(key);
+            return value;
+        }
+        return -1;
+    }
+
+    public Map<String, String> doNotReplaceContainsKeyWhenLocalMapMayContainNullValues(String key, String value) {
+        Map<String, String> map = new HashMap<String, String>();
+        if (!map.containsKey(key)) {
+            map.put(key, value);
+        }
+        map.get(key).length();
+        return map;
+    }
+
+    public void doNotReplaceContainsKeyWhenKeysDiffer(ConcurrentMap<String, List<String>> map, String k1, String k2) {
+        if (!map.containsKey(k1)) {
+            map.put(k1, new ArrayList<String>());
+        }
+        map.get(k2).add(k1);
+    }
+
+    public String doNotReplaceContainsKeyThenPutWithFinalDeclaration(Hashtable<String, String> cache, String key) {
+        if (!cache.containsKey(key)) {
+            cache.put(key, key.toUpperCase());
+        }
+        final String value = cache.get(key);
+        return value;
+    }
+
+    public Object doNotReplaceContainsKeyThenPutWithWiderDeclaration(Hashtable<String, String> cache, String key) {
+        if (!cache.containsKey(key)) {
+            cache.put(key, key.toUpperCase());
+        }
+        Object value = cache.get(key);
+        return value;
+    }
 }
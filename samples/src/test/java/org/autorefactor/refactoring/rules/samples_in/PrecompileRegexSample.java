@@ -0,0 +1,97 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules.samples_in;
+
+import java.util.regex.Pattern;
+
+public class PrecompileRegexSample {
+
+    private static final Pattern PATTERN = Pattern.compile("[0-9]+");
+
+    public boolean replaceStringMatches(String s) {
+        return s.matches("[a-z]+");
+    }
+
+    public String replaceStringReplaceAll(String s) {
+        return s.replaceAll("\\s+", " ");
+    }
+
+    public String replaceStringReplaceFirst(String s) {
+        return s.replaceFirst("^0+", "");
+    }
+
+    public String[] replaceStringSplit(String s) {
+        return s.split("\\s*,\\s*");
+    }
+
+    public String[] replaceStringSplitWithLimit(String s) {
+        return s.split("\\s*,\\s*", 2);
+    }
+
+    public Pattern replacePatternCompile() {
+        return Pattern.compile("[a-z]+", Pattern.CASE_INSENSITIVE);
+    }
+
+    public boolean replacePatternMatches(String s) {
+        return Pattern.matches("[a-z]+", s);
+    }
+
+    public Pattern replacePatternCompileWithFlagsDeclaredLater() {
+        return Pattern.compile("[a-z]+[0-9]", FLAGS);
+    }
+
+    private static final int FLAGS = Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+
+    public String[] doNotReplaceSplitOnSingleChar(String s) {
+        return s.split(",");
+    }
+
+    public String[] doNotReplaceSplitOnEscapedChar(String s) {
+        return s.split("\\.");
+    }
+
+    public boolean doNotReplaceNonConstantRegex(String s, String regex) {
+        return s.matches(regex);
+    }
+
+    public boolean doNotReplaceInvalidRegex(String s) {
+        return s.matches("[a-z");
+    }
+
+    public Pattern doNotReplaceNonStaticFlags(int flags) {
+        return Pattern.compile("[a-z]+", flags);
+    }
+
+    public boolean doNotReplaceInStaticField() {
+        return PATTERN.matcher("42").matches();
+    }
+
+    public static class StaticNestedClass {
+        public boolean replaceStringMatches(String s) {
+            return s.matches("a*b");
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules.samples_in;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class PresizeCollectionSample {
+
+    public List<String> presizeArrayListFilledFromCollection(List<Integer> ids) {
+        List<String> names = new ArrayList<String>();
+        for (Integer id : ids) {
+            names.add("name" + id);
+        }
+        return names;
+    }
+
+    public Set<String> presizeHashSetFilledFromArray(String[] words) {
+        Set<String> lowerCases = new HashSet<String>();
+        for (String word : words) {
+            lowerCases.add(word.toLowerCase());
+        }
+        return lowerCases;
+    }
+
+    public Map<Integer, String> presizeHashMapFilledInCountedLoop(List<String> values) {
+        Map<Integer, String> byIndex = new HashMap<Integer, String>();
+        for (int i = 0; i < values.size(); i++) {
+            byIndex.put(i, values.get(i));
+        }
+        return byIndex;
+    }
+
+    public Set<Integer> presizeHashSetWithConstantIterationCount() {
+        Set<Integer> squares;
+        squares = new HashSet<Integer>();
+        for (int i = 0; i < 12; i++) {
+            squares.add(i * i);
+        }
+        return squares;
+    }
+
+    public String presizeStringBuilderAppendingChars() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 26; i++) {
+            sb.append((char) ('a' + i));
+        }
+        return sb.toString();
+    }
+
+    public List<String> doNotPresizeWhenElementsAreFiltered(List<Integer> ids) {
+        List<String> names = new ArrayList<String>();
+        for (Integer id : ids) {
+            if (id > 0) {
+                names.add("name" + id);
+            }
+        }
+        return names;
+    }
+
+    public List<String> doNotPresizeWhenCollectionIsReadInLoop(String[] words) {
+        List<String> distinctWords = new ArrayList<String>();
+        for (String word : words) {
+            if (!distinctWords.contains(word)) {
+                distinctWords.add(word);
+            }
+        }
+        return distinctWords;
+    }
+
+    public List<Integer> doNotPresizeWhenBoundMayBeNegative(int n) {
+        List<Integer> numbers = new ArrayList<Integer>();
+        for (int i = 0; i < n; i++) {
+            numbers.add(i);
+        }
+        return numbers;
+    }
+
+    public String doNotPresizeStringBuilderAppendingStrings(String[] words) {
+        StringBuilder sb = new StringBuilder();
+        for (String word : words) {
+            sb.append(word);
+        }
+        return sb.toString();
+    }
+
+    public List<String> doNotPresizeAlreadySizedCollection(String[] words) {
+        List<String> result = new ArrayList<String>(10);
+        for (String word : words) {
+            result.add(word);
+        }
+        return result;
+    }
+}
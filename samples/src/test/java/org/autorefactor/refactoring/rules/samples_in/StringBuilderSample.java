@@ -141,4 +141,59 @@ public class StringBuilderSample {
         new StringBuilder().append(s.substring(1));
         new StringBuffer().append(s.substring(1));
     }
+
+    public String replaceConcatenationsInLoopWithStringBuilder(String[] words) {
+        String result = "";
+        for (String word : words) {
+            result += word;
+            result += ", ";
+        }
+        return result;
+    }
+
+    public String replaceConcatenationsInCountedLoopWithStringBuilder(int count) {
+        String result = "[";
+        for (int i = 0; i < count; i++) {
+            result += i + ", ";
+        }
+        return result + "]";
+    }
+
+    public String replaceConcatenationsInWhileLoopWithStringBuilder(int count) {
+        int i = count;
+        String digits = "";
+        while (i > 0) {
+            digits += i % 10;
+            i /= 10;
+        }
+        return digits;
+    }
+
+    public String doNotReplaceConcatenationsWhenVariableIsReadInLoop(String[] words) {
+        String result = "";
+        for (String word : words) {
+            result += word;
+            if (result.length() > 10) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    public String doNotReplaceConcatenationsWhenInitializerMayBeNull(String prefix, String[] words) {
+        String result = prefix;
+        for (String word : words) {
+            result += word;
+        }
+        return result;
+    }
+
+    public String doNotReplaceConcatenationsWhenDeclarationIsNotRightBeforeLoop(String[] words) {
+        String result = "";
+        int length = words.length;
+        for (int i = 0; i < length; i++) {
+            result += words[i];
+        }
+        return result;
+    }
 }
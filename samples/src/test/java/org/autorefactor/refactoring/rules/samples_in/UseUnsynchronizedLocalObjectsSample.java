@@ -0,0 +1,125 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules.samples_in;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Vector;
+
+public class UseUnsynchronizedLocalObjectsSample {
+
+    private StringBuffer field;
+
+    public String replaceStringBuffer(String s1, String s2) {
+        StringBuffer sb = new StringBuffer();
+        sb.append(s1).append(s2);
+        return sb.toString();
+    }
+
+    public int replaceVector(Collection<String> strings) {
+        Vector<String> v = new Vector<String>(strings.size());
+        for (String s : strings) {
+            v.add(s);
+        }
+        return v.size();
+    }
+
+    public Integer replaceHashtable(String key, Integer value) {
+        Map<String, Integer> m = new Hashtable<String, Integer>();
+        m.put(key, value);
+        return m.get(key);
+    }
+
+    public boolean replaceSynchronizedList(String s) {
+        List<String> l = Collections.synchronizedList(new ArrayList<String>());
+        l.add(s);
+        return l.isEmpty();
+    }
+
+    public StringBuffer doNotReplaceReturnedStringBuffer(String s) {
+        StringBuffer sb = new StringBuffer();
+        sb.append(s);
+        return sb;
+    }
+
+    public StringBuffer doNotReplaceStringBufferReturnedByChainedCall(String s) {
+        StringBuffer sb = new StringBuffer();
+        return sb.append(s);
+    }
+
+    public void doNotReplaceStringBufferStoredInField(String s) {
+        StringBuffer sb = new StringBuffer(s);
+        field = sb;
+    }
+
+    public int doNotReplaceVectorPassedToMethod(String s) {
+        Vector<String> v = new Vector<String>();
+        Collections.addAll(v, s);
+        return v.size();
+    }
+
+    public String doNotReplaceStringBufferCapturedByAnonymousClass() {
+        final StringBuffer sb = new StringBuffer();
+        Runnable r = new Runnable() {
+            @Override
+            public void run() {
+                sb.append("run");
+            }
+        };
+        r.run();
+        return sb.toString();
+    }
+
+    public String doNotReplaceVectorOnlyMethod(String s) {
+        Vector<String> v = new Vector<String>();
+        v.add(s);
+        return v.firstElement();
+    }
+
+    public int doNotReplaceVectorWithCapacityIncrement(String s) {
+        Vector<String> v = new Vector<String>(10, 10);
+        v.add(s);
+        return v.size();
+    }
+
+    public Set<String> doNotReplaceHashtableWithEscapingView(String key, String value) {
+        Map<String, String> m = new Hashtable<String, String>();
+        m.put(key, value);
+        return m.keySet();
+    }
+
+    public int doNotReplaceSharedObject(List<String> shared) {
+        List<String> l = Collections.synchronizedList(new ArrayList<String>());
+        l = shared;
+        return l.size();
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules.samples_out;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+public class ForeachSample {
+
+    private List<String> fieldList = new LinkedList<String>();
+
+    public int replaceIndexedLoopOverLinkedList(LinkedList<String> names) {
+        int length = 0;
+        for (String name : names) {
+            length += name.length();
+        }
+        return length;
+    }
+
+    public void replaceIndexedLoopOverList(List<Integer> numbers, List<Integer> output) {
+        for (Integer number : numbers) {
+            if (number > 0) {
+                output.add(number);
+            }
+        }
+    }
+
+    public void reuseElementVariable(List<String> list, StringBuilder sb) {
+        for (final String s : list) {
+            sb.append(s).append(", ");
+        }
+    }
+
+    public void avoidNameClash(List<String> items, String item) {
+        for (String item2 : items) {
+            System.out.println(item + item2);
+        }
+    }
+
+    public void doNotReplaceLoopOverRandomAccessList(ArrayList<String> names) {
+        for (int i = 0; i < names.size(); i++) {
+            System.out.println(names.get(i));
+        }
+    }
+
+    public void doNotReplaceWhenIndexIsUsed(List<String> names) {
+        for (int i = 0; i < names.size(); i++) {
+            System.out.println(i + ": " + names.get(i));
+        }
+    }
+
+    public void doNotReplaceWhenListIsModified(List<String> names) {
+        for (int i = 0; i < names.size(); i++) {
+            if (names.get(i).isEmpty()) {
+                names.remove(i);
+            }
+        }
+    }
+
+    public void doNotReplaceWhenIndexIsUsedAfterLoop(List<String> names) {
+        int i;
+        for (i = 0; i < names.size(); i++) {
+            System.out.println(names.get(i));
+        }
+        System.out.println(i);
+    }
+
+    public void doNotReplaceLoopOverField() {
+        for (int i = 0; i < fieldList.size(); i++) {
+            System.out.println(fieldList.get(i));
+        }
+    }
+
+    public int replaceKeySetIteration(Map<String, Integer> map) {
+        int sum = 0;
+        for (Map.Entry<String, Integer> entry : map.entrySet()) {
+            Integer value = entry.getValue();
+            sum += value;
+        }
+        return sum;
+    }
+
+    public void replaceKeySetIterationUsingKey(Map<String, Long> map) {
+        for (Map.Entry<String, Long> entry : map.entrySet()) {
+            String key = entry.getKey();
+            System.out.println(key + "=" + entry.getValue());
+        }
+    }
+
+    public void replaceKeySetIterator(Map<String, Integer> map) {
+        Iterator<Map.Entry<String, Integer>> it = map.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Integer> entry = it.next();
+            if (entry.getValue() == null) {
+                it.remove();
+            }
+        }
+    }
+
+    public void replaceKeySetIteratorUsingKey(Map<String, Integer> map) {
+        for (Iterator<Map.Entry<String, Integer>> it = map.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, Integer> entry = it.next();
+            String key = entry.getKey();
+            System.out.println(key + "=" + entry.getValue());
+        }
+    }
+
+    public void replaceKeySetIterationAvoidingNameClash(Map<String, Integer> map, Object entry) {
+        for (Map.Entry<String, Integer> entry2 : map.entrySet()) {
+            System.out.println(entry + "=" + entry2.getValue());
+        }
+    }
+
+    public void doNotReplaceKeySetIterationWhenMapIsWritten(Map<String, Integer> map) {
+        for (String key : map.keySet()) {
+            map.put(key, map.get(key) + 1);
+        }
+    }
+
+    public void doNotReplaceKeySetIterationWhenKeyIsAssigned(Map<String, Integer> map) {
+        for (String key : map.keySet()) {
+            key = key.toLowerCase();
+            System.out.println(map.get(key));
+        }
+    }
+
+    public void doNotReplaceKeySetIterationWithoutGet(Map<String, Integer> map) {
+        for (String key : map.keySet()) {
+            System.out.println(key);
+        }
+    }
+}
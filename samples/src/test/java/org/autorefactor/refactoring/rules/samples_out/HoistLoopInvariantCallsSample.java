@@ -0,0 +1,173 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules.samples_out;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+public class HoistLoopInvariantCallsSample {
+
+    private String name;
+
+    private List<String> names;
+
+    public int countSpaces(String s) {
+        int count = 0;
+        int sLength = s.length();
+        for (int i = 0; i < sLength; i++) {
+            if (s.charAt(i) == ' ') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int sumWeightedLengths(String[] words) {
+        final List<String> strings = new ArrayList<String>(Arrays.asList(words));
+        int total = 0;
+        int stringsSize = strings.size();
+        for (int i = 0; i < stringsSize; i++) {
+            total += strings.get(i).length() * (stringsSize - i);
+        }
+        return total;
+    }
+
+    public int skipLeadingSpaces(String s, int start) {
+        int i = start;
+        int sLength = s.length();
+        while (i < sLength) {
+            if (s.charAt(i) != ' ') {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    public int countKeys(Map<String, Integer> map, String[] keyArray) {
+        final List<String> keys = new ArrayList<String>(Arrays.asList(keyArray));
+        int count = 0;
+        int i = 0;
+        int keysSize = keys.size();
+        while (keysSize > i) {
+            if (map.containsKey(keys.get(i))) {
+                count++;
+            }
+            i++;
+        }
+        return count;
+    }
+
+    public int doNotHoistWhenReceiverIsReassigned(String s) {
+        int count = 0;
+        while (s.length() > 0) {
+            s = s.substring(1);
+            count++;
+        }
+        return count;
+    }
+
+    public int doNotHoistWhenCollectionIsModified(String[] words) {
+        final List<String> strings = new ArrayList<String>(Arrays.asList(words));
+        for (int i = 0; i < strings.size(); i++) {
+            if (strings.get(i).isEmpty()) {
+                strings.remove(i);
+            }
+        }
+        return strings.size();
+    }
+
+    public void doNotHoistWhenLoopCallsUnknownMethods(String[] words) {
+        final List<String> strings = new ArrayList<String>(Arrays.asList(words));
+        for (int i = 0; i < strings.size(); i++) {
+            process(strings.get(i));
+        }
+    }
+
+    public int doNotHoistFromParameterCollection(List<String> strings) {
+        int total = 0;
+        for (int i = 0; i < strings.size(); i++) {
+            total += strings.get(i).length();
+        }
+        return total;
+    }
+
+    public int doNotHoistFromEscapingCollection(String[] words) {
+        final List<String> strings = new ArrayList<String>(Arrays.asList(words));
+        this.names = strings;
+        int total = 0;
+        for (int i = 0; i < strings.size(); i++) {
+            total += strings.get(i).length();
+        }
+        return total;
+    }
+
+    public int doNotHoistFromReassignedCollection(String[] words, List<String> otherStrings) {
+        List<String> strings = new ArrayList<String>(Arrays.asList(words));
+        if (words.length == 0) {
+            strings = otherStrings;
+        }
+        int total = 0;
+        for (int i = 0; i < strings.size(); i++) {
+            total += strings.get(i).length();
+        }
+        return total;
+    }
+
+    private void process(String s) {
+        this.name = s;
+    }
+
+    public int doNotHoistFieldReceiver() {
+        int count = 0;
+        for (int i = 0; i < name.length(); i++) {
+            process(name);
+            count++;
+        }
+        return count;
+    }
+
+    public int doNotHoistWhenArgumentChanges(String s, char c) {
+        int count = 0;
+        int i = 0;
+        while (i < s.indexOf(c)) {
+            c++;
+            i++;
+            count++;
+        }
+        return count;
+    }
+
+    public int doNotHoistFromNonCountingLoop(String s) {
+        int count = 0;
+        for (int i = s.length() - 1; i >= s.indexOf(' '); i--) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -25,6 +25,8 @@
  */
 package org.autorefactor.refactoring.rules.samples_out;
 
+import java.util.Arrays;
+
 public class HotSpotIntrinsicedAPIsSample {
 
     public static void replaceBySystemArrayCopyBasic(int[] src, int[] dest) {
@@ -103,8 +105,43 @@ public class HotSpotIntrinsicedAPIsSample {
         }
     }
 
-    public static void replaceWithArraysCopyOf(int[] src, int[] dest) {
-        // FIXME Should use java.util.Arrays.copyOf()
+    public static void replaceWithArraysFill(int[] array) {
+        Arrays.fill(array, -1);
+    }
+
+    public static void replaceWithArraysFillRange(Object[] array, Object value) {
+        Arrays.fill(array, 2, 6, value);
+    }
+
+    public static void replaceWithArraysFillNarrowedConstant(byte[] array) {
+        Arrays.fill(array, (byte) 1);
+    }
+
+    public static void doNotReplaceWithArraysFillIndexDependentValue(int[] array) {
+        for (int i = 0; i < array.length; i++) {
+            array[i] = i;
+        }
+    }
+
+    public static void doNotReplaceWithArraysFillUnknownRange(int[] array, int start) {
+        for (int i = start; i < array.length; i++) {
+            array[i] = 0;
+        }
+    }
+
+    public static int[] replaceWithArraysCopyOf(int[] src) {
+        int[] dest = Arrays.copyOf(src, src.length);
+        return dest;
+    }
+
+    public static Object[] doNotReplaceWithArraysCopyOfObjectArray(Object[] src) {
+        Object[] dest = new Object[src.length];
+        try {
+            System.arraycopy(src, 0, dest, 0, src.length);
+        } catch (IndexOutOfBoundsException e) {
+            throw new ArrayIndexOutOfBoundsException(e.getMessage());
+        }
+        return dest;
     }
 
     public static void replaceWithArraysCopyOfRange(int[] src, int[] dest) {
@@ -112,6 +149,14 @@ public class HotSpotIntrinsicedAPIsSample {
     }
 
     public static boolean replaceWithArraysEquals(int[] src, int[] dest) {
+        return Arrays.equals(dest, src);
+    }
+
+    public static boolean replaceWithArraysEquals2(int[] src, int[] dest) {
+        return Arrays.equals(dest, src);
+    }
+
+    public static boolean doNotReplaceWithArraysEqualsForDoubles(double[] src, double[] dest) {
         if (dest.length != src.length) {
             return false;
         }
@@ -121,24 +166,23 @@ public class HotSpotIntrinsicedAPIsSample {
             }
         }
         return true;
-        // FIXME Should use java.util.Arrays.equals()
     }
 
-    public static boolean replaceWithArraysEquals2(int[] src, int[] dest) {
-        if (dest.length == src.length) {
-            for (int i = 0; i < src.length; i++) {
-                if (dest[i] != src[i]) {
-                    return false;
-                }
-            }
-            return true;
-        }
-        return false;
-        // FIXME Should use java.util.Arrays.equals()
+    public static int replaceWithStringIndexOf(String s, char c) {
+        return s.indexOf(c);
     }
 
-    public static void replaceWithStringIndexOf(String s) {
-        // FIXME Should use java.lang.String.indexOf()
+    public static int replaceWithStringIndexOfFromIndex(String s) {
+        return s.indexOf('/', 1);
+    }
+
+    public static int doNotReplaceWithStringIndexOfForInt(String s, int codePoint) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) == codePoint) {
+                return i;
+            }
+        }
+        return -1;
     }
 
 }
@@ -0,0 +1,112 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules.samples_out;
+
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+public class LoggingSample {
+
+    private static final Logger LOGGER = Logger.getLogger(LoggingSample.class.getName());
+
+    private final Logger logger = Logger.getLogger("sample");
+
+    private org.slf4j.Logger slf4jLogger;
+
+    private org.apache.logging.log4j.Logger log4jLogger;
+
+    public void guardConcatenation(String name, int count) {
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Hello " + name + ", you have " + count + " messages");
+        }
+    }
+
+    public void guardStringFormat(List<String> names) {
+        if (LOGGER.isLoggable(Level.FINER)) {
+            LOGGER.finer(String.format("Names: %s", names));
+        }
+    }
+
+    public void guardInstanceLogger(String name) {
+        if (this.logger.isLoggable(Level.FINEST)) {
+            this.logger.finest("Hello " + name);
+        }
+    }
+
+    public void guardStatementFollowedByElse(boolean verbose, String name) {
+        if (verbose) {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Hello " + name);
+            }
+        } else
+            System.out.println("Not verbose");
+    }
+
+    public void doNotGuardAlreadyGuardedCall(String name) {
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Hello " + name);
+        }
+    }
+
+    public void doNotGuardConstantMessage() {
+        LOGGER.fine("Hello " + "world");
+        LOGGER.finest("Hello world");
+    }
+
+    public void doNotGuardHighLevels(String name) {
+        LOGGER.info("Hello " + name);
+        LOGGER.warning("Hello " + name);
+    }
+
+    public void doNotGuardUsedLogger(String name) {
+        Logger.getLogger("sample").fine("Hello " + name);
+    }
+
+    public void useParameterizedMessage(String name, int count) {
+        slf4jLogger.info("Hello {}, you have {} messages", name, count);
+        slf4jLogger.debug("Hello {}", name);
+    }
+
+    public void useParameterizedMessageWithThrowable(String fileName, Exception e) {
+        log4jLogger.error("Cannot open {}", fileName, e);
+    }
+
+    public void doNotParameterizeThrowableArgument(Exception e) {
+        slf4jLogger.warn("Failed: " + e);
+        if (slf4jLogger.isDebugEnabled()) {
+            slf4jLogger.debug("Failed: " + e);
+        }
+    }
+
+    public void doNotParameterizeMessageWithBraces(String name) {
+        slf4jLogger.info("Set {" + name + "}");
+    }
+
+    public void doNotParameterizeArray(String[] names) {
+        log4jLogger.info("Names: " + names);
+    }
+}
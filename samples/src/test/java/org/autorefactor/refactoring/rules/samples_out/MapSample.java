@@ -25,8 +25,12 @@
  */
 package org.autorefactor.refactoring.rules.samples_out;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
 
 public class MapSample {
 
@@ -67,4 +71,75 @@ public class MapSample {
         System.out.println(map.isEmpty());
         System.out.println(false);
     }
+
+    public int replaceContainsKeyThenGet(ConcurrentMap<String, Integer> counts, String word) {
+        Integer count = counts.get(word);
+        if (count != null) {
+            return count + 1;
+        }
+        return 0;
+    }
+
+    public Map<String, List<String>> replaceContainsKeyThenPutThenGetOnLocalMap(String[] words) {
+        Map<String, List<String>> wordsByFirstLetter = new HashMap<String, List<String>>();
+        for (String word : words) {
+            String firstLetter = word.substring(0, 1);
+            List<String> value = wordsByFirstLetter.get(firstLetter);
+            if (value == null) {
+                value = new ArrayList<String>();
+                wordsByFirstLetter.put(firstLetter, value);
+            }
+            value.add(word);
+        }
+        return wordsByFirstLetter;
+    }
+
+    public String replaceContainsKeyThenPutThenGetDeclaration(Hashtable<String, String> cache, String key) {
+        String value = cache.get(key);
+        if (value == null) {
+            value = key.toUpperCase();
+            cache.put(key, value);
+        }
+        return value;
+    }
+
+    public Integer doNotReplaceContainsKeyWhenMapMayContainNullValues(Map<String, Integer> map, String key) {
+        if (map.containsKey(key)) {
+            Integer value = map.get(key);
+            return value;
+        }
+        return -1;
+    }
+
+    public Map<String, String> doNotReplaceContainsKeyWhenLocalMapMayContainNullValues(String key, String value) {
+        Map<String, String> map = new HashMap<String, String>();
+        if (!map.containsKey(key)) {
+            map.put(key, value);
+        }
+        map.get(key).length();
+        return map;
+    }
+
+    public void doNotReplaceContainsKeyWhenKeysDiffer(ConcurrentMap<String, List<String>> map, String k1, String k2) {
+        if (!map.containsKey(k1)) {
+            map.put(k1, new ArrayList<String>());
+        }
+        map.get(k2).add(k1);
+    }
+
+    public String doNotReplaceContainsKeyThenPutWithFinalDeclaration(Hashtable<String, String> cache, String key) {
+        if (!cache.containsKey(key)) {
+            cache.put(key, key.toUpperCase());
+        }
+        final String value = cache.get(key);
+        return value;
+    }
+
+    public Object doNotReplaceContainsKeyThenPutWithWiderDeclaration(Hashtable<String, String> cache, String key) {
+        if (!cache.containsKey(key)) {
+            cache.put(key, key.toUpperCase());
+        }
+        Object value = cache.get(key);
+        return value;
+    }
 }
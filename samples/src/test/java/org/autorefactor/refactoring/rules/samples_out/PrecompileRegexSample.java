@@ -0,0 +1,112 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules.samples_out;
+
+import java.util.regex.Pattern;
+
+public class PrecompileRegexSample {
+
+    private static final Pattern PATTERN2 = Pattern.compile("[a-z]+");
+
+    private static final Pattern PATTERN3 = Pattern.compile("\\s+");
+
+    private static final Pattern PATTERN4 = Pattern.compile("^0+");
+
+    private static final Pattern PATTERN5 = Pattern.compile("\\s*,\\s*");
+
+    private static final Pattern PATTERN6 = Pattern.compile("[a-z]+", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern PATTERN7 = Pattern.compile("[a-z]+[0-9]", PrecompileRegexSample.FLAGS);
+
+    private static final Pattern PATTERN = Pattern.compile("[0-9]+");
+
+    public boolean replaceStringMatches(String s) {
+        return PATTERN2.matcher(s).matches();
+    }
+
+    public String replaceStringReplaceAll(String s) {
+        return PATTERN3.matcher(s).replaceAll(" ");
+    }
+
+    public String replaceStringReplaceFirst(String s) {
+        return PATTERN4.matcher(s).replaceFirst("");
+    }
+
+    public String[] replaceStringSplit(String s) {
+        return PATTERN5.split(s);
+    }
+
+    public String[] replaceStringSplitWithLimit(String s) {
+        return PATTERN5.split(s, 2);
+    }
+
+    public Pattern replacePatternCompile() {
+        return PATTERN6;
+    }
+
+    public boolean replacePatternMatches(String s) {
+        return PATTERN2.matcher(s).matches();
+    }
+
+    public Pattern replacePatternCompileWithFlagsDeclaredLater() {
+        return PATTERN7;
+    }
+
+    private static final int FLAGS = Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+
+    public String[] doNotReplaceSplitOnSingleChar(String s) {
+        return s.split(",");
+    }
+
+    public String[] doNotReplaceSplitOnEscapedChar(String s) {
+        return s.split("\\.");
+    }
+
+    public boolean doNotReplaceNonConstantRegex(String s, String regex) {
+        return s.matches(regex);
+    }
+
+    public boolean doNotReplaceInvalidRegex(String s) {
+        return s.matches("[a-z");
+    }
+
+    public Pattern doNotReplaceNonStaticFlags(int flags) {
+        return Pattern.compile("[a-z]+", flags);
+    }
+
+    public boolean doNotReplaceInStaticField() {
+        return PATTERN.matcher("42").matches();
+    }
+
+    public static class StaticNestedClass {
+
+        private static final Pattern PATTERN2 = Pattern.compile("a*b");
+
+        public boolean replaceStringMatches(String s) {
+            return PATTERN2.matcher(s).matches();
+        }
+    }
+}
@@ -141,4 +141,62 @@ public class StringBuilderSample {
         new StringBuilder().append(s.substring(1));
         new StringBuffer().append(s.substring(1));
     }
+
+    public String replaceConcatenationsInLoopWithStringBuilder(String[] words) {
+        StringBuilder resultBuilder = new StringBuilder();
+        for (String word : words) {
+            resultBuilder.append(word);
+            resultBuilder.append(", ");
+        }
+        String result = resultBuilder.toString();
+        return result;
+    }
+
+    public String replaceConcatenationsInCountedLoopWithStringBuilder(int count) {
+        StringBuilder resultBuilder = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            resultBuilder.append(i).append(", ");
+        }
+        String result = resultBuilder.toString();
+        return result + "]";
+    }
+
+    public String replaceConcatenationsInWhileLoopWithStringBuilder(int count) {
+        int i = count;
+        StringBuilder digitsBuilder = new StringBuilder();
+        while (i > 0) {
+            digitsBuilder.append(i % 10);
+            i /= 10;
+        }
+        String digits = digitsBuilder.toString();
+        return digits;
+    }
+
+    public String doNotReplaceConcatenationsWhenVariableIsReadInLoop(String[] words) {
+        String result = "";
+        for (String word : words) {
+            result += word;
+            if (result.length() > 10) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    public String doNotReplaceConcatenationsWhenInitializerMayBeNull(String prefix, String[] words) {
+        String result = prefix;
+        for (String word : words) {
+            result += word;
+        }
+        return result;
+    }
+
+    public String doNotReplaceConcatenationsWhenDeclarationIsNotRightBeforeLoop(String[] words) {
+        String result = "";
+        int length = words.length;
+        for (int i = 0; i < length; i++) {
+            result += words[i];
+        }
+        return result;
+    }
 }
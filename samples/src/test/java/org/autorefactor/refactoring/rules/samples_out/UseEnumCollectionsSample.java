@@ -0,0 +1,131 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules.samples_out;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+public class UseEnumCollectionsSample {
+
+    public enum Color {
+        RED, GREEN, BLUE
+    }
+
+    private final Map<Color, Integer> counts = new EnumMap<Color, Integer>(Color.class);
+
+    public void countColor(String name) {
+        Integer count = this.counts.get(Color.valueOf(name));
+        this.counts.put(Color.valueOf(name), count != null ? count + 1 : 1);
+    }
+
+    public String replaceMapFilledFromEnumValues(Color color) {
+        Map<Color, String> names = new EnumMap<Color, String>(Color.class);
+        for (Color c : Color.values()) {
+            names.put(c, c.name().toLowerCase());
+        }
+        return names.get(color);
+    }
+
+    public int replaceTreeMap(String value) {
+        Map<Color, String> m = new EnumMap<Color, String>(Color.class);
+        m.put(Color.RED, value);
+        m.put(Color.BLUE, value);
+        int length = 0;
+        for (Map.Entry<Color, String> entry : m.entrySet()) {
+            length += entry.getValue().length();
+        }
+        return length;
+    }
+
+    public boolean replaceHashSet() {
+        Set<Color> colors = EnumSet.noneOf(Color.class);
+        colors.add(Color.RED);
+        colors.add(Color.GREEN);
+        return colors.contains(Color.BLUE);
+    }
+
+    public int replaceTreeSetInCollection(String name) {
+        Collection<Color> colors = EnumSet.noneOf(Color.class);
+        colors.add(Color.valueOf(name));
+        return colors.size();
+    }
+
+    public boolean doNotReplaceWhenKeyMayBeNull(Color c) {
+        Set<Color> colors = new HashSet<Color>();
+        colors.add(c);
+        return colors.contains(Color.RED);
+    }
+
+    public void doNotReplaceWhenAddingAll(Collection<Color> c) {
+        Set<Color> colors = new HashSet<Color>();
+        colors.addAll(c);
+        colors.remove(Color.RED);
+    }
+
+    public Map<Color, String> doNotReplaceEscapingMap() {
+        Map<Color, String> m = new HashMap<Color, String>();
+        m.put(Color.RED, "red");
+        return m;
+    }
+
+    public int doNotReplaceWhenDeclaredAsHashMap() {
+        HashMap<Color, String> m = new HashMap<Color, String>();
+        m.put(Color.RED, "red");
+        return m.size();
+    }
+
+    public int doNotReplaceWhenForeachVariableIsReassigned(Color other) {
+        Set<Color> colors = new HashSet<Color>();
+        for (Color c : Color.values()) {
+            if (c == Color.RED) {
+                c = other;
+            }
+            colors.add(c);
+        }
+        return colors.size();
+    }
+
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    public int doNotReplaceWhenRawMapGetsKeysOfAnotherEnum() {
+        Map m = new HashMap<Color, String>();
+        m.put(TimeUnit.SECONDS, "s");
+        return m.size();
+    }
+
+    public boolean doNotReplaceNonEnumKeys(String s) {
+        Set<String> strings = new TreeSet<String>();
+        strings.add(s);
+        return strings.isEmpty();
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * AutoRefactor - Eclipse plugin to automatically refactor Java code bases.
+ *
+ * Copyright (C) 2015 Jean-Noël Rouvignac - initial API and implementation
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program under LICENSE-GNUGPL.  If not, see
+ * <http://www.gnu.org/licenses/>.
+ *
+ *
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution under LICENSE-ECLIPSE, and is
+ * available at http://www.eclipse.org/legal/epl-v10.html
+ */
+package org.autorefactor.refactoring.rules.samples_out;
+
+import java.util.List;
+
+public class UsePrimitiveLocalVariableSample {
+
+    public long replaceWrapperAccumulator(int[] values) {
+        long total = 0L;
+        for (int value : values) {
+            total += value;
+        }
+        return total;
+    }
+
+    public Integer replaceWrapperCounterReturnedAsWrapper(String[] words) {
+        int count = 0;
+        for (String word : words) {
+            if (word.isEmpty()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public double replaceWrapperAssignedInLoop(double[] values) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (double value : values) {
+            if (value > max) {
+                max = value;
+            }
+        }
+        return max;
+    }
+
+    public Integer doNotReplaceWrapperWhichMayBeNull(Integer[] values) {
+        Integer last = 0;
+        for (Integer value : values) {
+            last = value;
+        }
+        return last;
+    }
+
+    public boolean doNotReplaceWrapperUsedAsObject(int[] values, Object o) {
+        Integer total = 0;
+        for (int value : values) {
+            total += value;
+        }
+        return total.equals(o);
+    }
+
+    public void doNotReplaceWrapperPassedToOverloadedMethod(List<String> list, int n) {
+        Integer index = 0;
+        for (int i = 0; i < n; i++) {
+            index++;
+        }
+        list.remove(index);
+    }
+
+    public Long doNotReplaceWrapperNotUpdatedInLoop(int value) {
+        Long total = 0L;
+        total += value;
+        return total;
+    }
+
+    public void doNotReplaceWrapperPassedToInterfaceOverload(IntegerSink sink, int n) {
+        Integer count = 0;
+        for (int i = 0; i < n; i++) {
+            count++;
+        }
+        sink.accept(count);
+    }
+
+    private interface IntSink {
+        void accept(int i);
+    }
+
+    private abstract static class IntegerSink implements IntSink {
+        public abstract void accept(Integer i);
+    }
+}